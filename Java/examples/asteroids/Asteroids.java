@@ -26,7 +26,11 @@ import javax.swing.Renderer;
 import org.magnos.entity.Entity;
 import org.magnos.entity.EntityIterator;
 import org.magnos.entity.EntityList;
+import org.magnos.entity.EntityQuery;
 import org.magnos.entity.Ents;
+import org.magnos.entity.spatial.PairVisitor;
+import org.magnos.entity.spatial.SpatialAdapter;
+import org.magnos.entity.spatial.SweepAndPrune;
 import org.magnos.entity.vals.FloatVal;
 
 
@@ -77,7 +81,18 @@ public class Asteroids
 	public UpdateState updateState = new UpdateState();
 
 	public EntityIterator iterator = new EntityIterator();
-	public EntityIterator iteratorInner = new EntityIterator();
+	public EntityQuery query = new EntityQuery();
+	public SweepAndPrune collidable = new SweepAndPrune( Filtering.COLLIDABLE, new SpatialAdapter() {
+		public float getX( Entity e ) {
+			return e.get( POSITION ).x;
+		}
+		public float getY( Entity e ) {
+			return e.get( POSITION ).y;
+		}
+		public float getRadius( Entity e ) {
+			return e.get( RADIUS ).v;
+		}
+	} );
 
 	public GameState state;
 	public float stateTime;
@@ -86,27 +101,27 @@ public class Asteroids
 
 	public Asteroids()
 	{
-		Collisions.register( Templates.ASTEROID, Templates.LASER, new CollisionHandler()
+		collidable.register( Templates.ASTEROID, Templates.LASER, new PairVisitor()
 		{
-			public void handle( Entity subject, Entity object )
+			public void visit( Entity subject, Entity object )
 			{
 				handleAsteroidDeath( subject );
 				handleLaserDeath( object );
 			}
 		} );
 
-		Collisions.register( Templates.ASTEROID, Templates.SHIP, new CollisionHandler()
+		collidable.register( Templates.ASTEROID, Templates.SHIP, new PairVisitor()
 		{
-			public void handle( Entity subject, Entity object )
+			public void visit( Entity subject, Entity object )
 			{
 				handleAsteroidDeath( subject );
 				handleShipDeath();
 			}
 		} );
 
-		Collisions.register( Templates.ASTEROID, Templates.ASTEROID, new CollisionHandler()
+		collidable.register( Templates.ASTEROID, Templates.ASTEROID, new PairVisitor()
 		{
-			public void handle( Entity a, Entity b )
+			public void visit( Entity a, Entity b )
 			{
 				handleBouncyCollision( a, b );
 			}
@@ -136,7 +151,9 @@ public class Asteroids
 		}
 
 		entities = new EntityList();
+		entities.setBatched( true );
 		particles = new EntityList( Templates.PARTICLE_SYSTEM );
+		particles.setBatched( true );
 
 		ship = new Entity( Templates.SHIP );
 		ship.set( COLOR, Color.white );
@@ -228,7 +245,7 @@ public class Asteroids
 
 		if (state == GameState.PLAYING)
 		{
-			if (iterator.iterate( entities, Filtering.ASTEROIDS ).count() == 0)
+			if (query.query( Filtering.ASTEROIDS ).count() == 0)
 			{
 				reset();
 				spawn( spawnCount + 1 );
@@ -315,32 +332,8 @@ public class Asteroids
 	 */
 	private void handleCollisions()
 	{
-		for (Entity a : iterator.iterate( entities, Filtering.COLLIDABLE ))
-		{
-			for (Entity b : iteratorInner.iterate( entities, Filtering.COLLIDABLE ))
-			{
-				if (a != b)
-				{
-					Vector ap = a.get( POSITION );
-					float ar = a.get( RADIUS ).v;
-
-					Vector bp = b.get( POSITION );
-					float br = b.get( RADIUS ).v;
-
-					float radiusSum = ar + br;
-
-					if (ap.distanceSq( bp ) <= radiusSum * radiusSum)
-					{
-						CollisionHandler handler = Collisions.getHandler( a.getTemplate(), b.getTemplate() );
-
-						if (handler != null)
-						{
-							handler.handle( a, b );
-						}
-					}
-				}
-			}
-		}
+		collidable.update();
+		collidable.pairs();
 	}
 
 	/**
@@ -459,7 +452,7 @@ public class Asteroids
 	{
 		explosion( 300, ship.get( POSITION ), Color.white, 0.0f, 200.0f, 0.25f, 3.0f );
 
-		for (Entity e : iterator.iterate( entities, Filtering.ASTEROIDS ))
+		for (Entity e : query.query( Filtering.ASTEROIDS ))
 		{
 			explosion( 20, e.get( POSITION ), Color.gray, 20.0f, 200.0f, 0.5f, 2.0f );
 		}
@@ -18,10 +18,13 @@ package asteroids;
 
 import static asteroids.Components.*;
 
+import org.magnos.entity.BatchControl;
 import org.magnos.entity.Control;
 import org.magnos.entity.Controller;
 import org.magnos.entity.Entity;
 import org.magnos.entity.Ents;
+import org.magnos.entity.Template;
+import org.magnos.entity.TemplateComponent;
 import org.magnos.entity.vals.FloatVal;
 
 /**
@@ -35,7 +38,7 @@ public class Controllers
     
     public static Controller PHYSICS = Ents.newController( "physics" );
     
-    public static Controller PHYSICS_ACCEL = Ents.newControllerAlternative( PHYSICS, new Control() {
+    public static Controller PHYSICS_ACCEL = Ents.newControllerAlternative( PHYSICS, new BatchControl() {
         public void update( Entity e, Object updateState ) {
             UpdateState state = (UpdateState)updateState;
             Vector pos = e.get( POSITION );
@@ -44,6 +47,18 @@ public class Controllers
             vel.addsi( acc, state.dt );
             pos.addsi( vel, state.dt );
         }
+        public void update( Template template, Entity[] entities, int offset, int count, Object updateState ) {
+            final float dt = ((UpdateState)updateState).dt;
+            final TemplateComponent<Vector> position = template.getTemplateComponent( POSITION );
+            final TemplateComponent<Vector> velocity = template.getTemplateComponent( VELOCITY );
+            final TemplateComponent<Vector> acceleration = template.getTemplateComponent( ACCELERATION );
+            for (int i = offset, end = offset + count; i < end; i++) {
+                Entity e = entities[i];
+                Vector vel = velocity.get( e );
+                vel.addsi( acceleration.get( e ), dt );
+                position.get( e ).addsi( vel, dt );
+            }
+        }
     });
 
     public static Controller PHYSICS_NOACCEL = Ents.newControllerAlternative( PHYSICS, new Control() {
@@ -30,7 +30,8 @@ import org.magnos.entity.EntityFilter;
 public class Filtering
 {
 	public static EntityFilter ASTEROIDS = template( Templates.ASTEROID );
-	public static EntityFilter WRAPPABLE = and( components( Components.POSITION, Components.RADIUS ), alive() );
+	public static EntityFilter WRAPPABLE = cached( and( components( Components.POSITION, Components.RADIUS ), alive() ) );
 	public static EntityFilter LASERS = template( Templates.LASER );
-	public static EntityFilter COLLIDABLE = and( components( Components.POSITION, Components.RADIUS ), alive() );
+	// Particles never collide, so they're kept out of the sweep and prune.
+	public static EntityFilter COLLIDABLE = cached( and( and( components( Components.POSITION, Components.RADIUS ), not( template( Templates.PARTICLE ) ) ), alive() ) );
 }
@@ -0,0 +1,56 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+/**
+ * A {@link Control} which can update a group of entities that share the same
+ * {@link Template} in a single call. When an {@link EntityList} is batched (see
+ * {@link EntityList#setBatched(boolean)}) it groups it's children by template
+ * and invokes {@link #update(Template, Entity[], int, int, Object)} once per
+ * group instead of {@link #update(Entity, Object)} once per entity, which
+ * lets the implementation be a tight loop (over the
+ * {@link TemplateStorage} of the template if the components are columns). <br/>
+ * <br/>
+ * {@link #update(Entity, Object)} is still invoked when an entity is updated
+ * on it's own, so both methods must produce the same result.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public interface BatchControl extends Control
+{
+
+    /**
+     * Executes controller logic on the given group of entities with the given
+     * updateState. All entities in the group have the given template, are
+     * enabled, and have all of their controllers enabled.
+     * 
+     * @param template
+     *        The template of every entity in the group.
+     * @param entities
+     *        The array containing the group of entities.
+     * @param offset
+     *        The index of the first entity in the group.
+     * @param count
+     *        The number of entities in the group.
+     * @param updateState
+     *        The update state passed to the container.
+     */
+    public void update( Template template, Entity[] entities, int offset, int count, Object updateState );
+
+}
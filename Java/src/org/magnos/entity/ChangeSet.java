@@ -0,0 +1,383 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * The entities which changed the value of a tracked {@link Component} and the
+ * tick they last changed it. A ChangeSet is created with
+ * {@link Ents#track(Component)} and an entity is marked as changed when:
+ * <ul>
+ * <li>{@link Entity#set(Component, Object)} is invoked with the component.</li>
+ * <li>{@link Entity#touch(Component)} is invoked with the component, which
+ * should be done after modifying a mutable value in place.</li>
+ * <li>A primitive setter like {@link ComponentFloat#setFloat(Entity, float)} is
+ * invoked.</li>
+ * </ul>
+ * The tick is the value of {@link Ents#getTick()} when the entity was marked,
+ * so a system which remembers the tick it last ran can process only the
+ * entities with {@link #isChanged(Entity, int)} or walk the changed entities
+ * with {@link #size()} and {@link #getEntity(int)}. The changed entities
+ * accumulate until they're removed with {@link #clear()} or
+ * {@link #removeBefore(int)}, deleted entities are always removed. <br/>
+ * <br/>
+ * Every change is also given a version which is greater than the version of
+ * all changes before it (to any tracked component), so a change can be
+ * ordered against a point in time finer than a tick (see
+ * {@link ReactiveControl}). The changed entities are also linked in the order
+ * of their last change, so walking from {@link #getLatest()} with
+ * {@link #getEarlier(Entity)} visits the entities changed after a version
+ * without visiting the entities which changed before it.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class ChangeSet
+{
+
+    /**
+     * The version of the last change to any tracked component.
+     */
+    protected static final AtomicInteger sequence = new AtomicInteger();
+
+    /**
+     * The component tracked.
+     */
+    protected final Component<?> component;
+
+    /**
+     * The changed entities and the number of changed entities.
+     */
+    protected Entity[] entities = {};
+    protected int size;
+
+    /**
+     * The index of each entity in the changed entities by the entity id, or -1
+     * if the entity with the id hasn't changed.
+     */
+    protected int[] indices = {};
+
+    /**
+     * The tick and version each entity last changed by the entity id.
+     */
+    protected int[] ticks = {};
+    protected int[] versions = {};
+
+    /**
+     * The changed entities in the order of their last change as a linked list
+     * of entity ids, where -1 is the end of the list.
+     */
+    protected int[] earlier = {};
+    protected int[] later = {};
+    protected int earliest = -1;
+    protected int latest = -1;
+
+    /**
+     * The index of this set in the change sets of {@link Ents}, or -1 if the
+     * component is no longer tracked.
+     */
+    protected int registered = -1;
+
+    /**
+     * Instantiates a ChangeSet, this is done by {@link Ents#track(Component)}.
+     * 
+     * @param component
+     *        The component tracked.
+     */
+    protected ChangeSet( Component<?> component )
+    {
+        this.component = component;
+    }
+
+    /**
+     * Marks the entity as changed in the current tick.
+     * 
+     * @param e
+     *        The entity which changed the value of the component.
+     */
+    public synchronized void mark( Entity e )
+    {
+        final int id = e.id;
+
+        if (id >= indices.length)
+        {
+            final int previous = indices.length;
+            final int capacity = Math.max( id + 1, previous + (previous >> 1) + 16 );
+
+            indices = Arrays.copyOf( indices, capacity );
+            ticks = Arrays.copyOf( ticks, capacity );
+            versions = Arrays.copyOf( versions, capacity );
+            earlier = Arrays.copyOf( earlier, capacity );
+            later = Arrays.copyOf( later, capacity );
+
+            Arrays.fill( indices, previous, capacity, -1 );
+        }
+
+        ticks[id] = Ents.tick;
+        versions[id] = sequence.incrementAndGet();
+
+        if (indices[id] != -1)
+        {
+            unlink( id );
+        }
+
+        link( id );
+
+        if (indices[id] == -1)
+        {
+            if (size == entities.length)
+            {
+                entities = Arrays.copyOf( entities, size + (size >> 1) + 16 );
+            }
+
+            indices[id] = size;
+            entities[size++] = e;
+        }
+    }
+
+    /**
+     * Determines whether the entity changed after the given tick.
+     * 
+     * @param e
+     *        The entity to test.
+     * @param since
+     *        The tick to compare to, typically the tick a system last ran.
+     * @return True if the entity changed the value of the component after the
+     *         given tick.
+     */
+    public boolean isChanged( Entity e, int since )
+    {
+        final int id = e.id;
+
+        return id < indices.length && indices[id] != -1 && ticks[id] > since;
+    }
+
+    /**
+     * Returns the tick the entity last changed.
+     * 
+     * @param e
+     *        The entity.
+     * @return The tick the entity last changed, or 0 if it hasn't changed.
+     */
+    public int getTick( Entity e )
+    {
+        final int id = e.id;
+
+        return (id < indices.length && indices[id] != -1 ? ticks[id] : 0);
+    }
+
+    /**
+     * Returns the version of the last change of the entity.
+     * 
+     * @param e
+     *        The entity.
+     * @return The version of the last change of the entity, or 0 if it hasn't
+     *         changed.
+     */
+    public int getVersion( Entity e )
+    {
+        final int id = e.id;
+
+        return (id < indices.length && indices[id] != -1 ? versions[id] : 0);
+    }
+
+    /**
+     * @return The version of the last change to any tracked component.
+     */
+    public static int getLatestVersion()
+    {
+        return sequence.get();
+    }
+
+    /**
+     * Removes the entity from this set.
+     * 
+     * @param e
+     *        The entity to remove.
+     * @return True if the entity was in this set, otherwise false.
+     */
+    public synchronized boolean remove( Entity e )
+    {
+        final int id = e.id;
+
+        if (id >= indices.length || indices[id] == -1)
+        {
+            return false;
+        }
+
+        final int i = indices[id];
+        final Entity last = entities[--size];
+
+        entities[i] = last;
+        indices[last.id] = i;
+        entities[size] = null;
+        indices[id] = -1;
+        unlink( id );
+        ticks[id] = 0;
+        versions[id] = 0;
+
+        return true;
+    }
+
+    /**
+     * Removes the entities which last changed before the given tick.
+     * 
+     * @param tick
+     *        The oldest tick to keep.
+     * @return The number of entities removed.
+     */
+    public synchronized int removeBefore( int tick )
+    {
+        final int previous = size;
+
+        for (int i = size - 1; i >= 0; i--)
+        {
+            final Entity e = entities[i];
+
+            if (ticks[e.id] < tick)
+            {
+                remove( e );
+            }
+        }
+
+        return previous - size;
+    }
+
+    /**
+     * Removes all entities from this set.
+     */
+    public synchronized void clear()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            final int id = entities[i].id;
+
+            indices[id] = -1;
+            ticks[id] = 0;
+            versions[id] = 0;
+            entities[i] = null;
+        }
+
+        size = 0;
+        earliest = -1;
+        latest = -1;
+    }
+
+    /**
+     * @return The number of changed entities in this set.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the changed entity at the given index. The order of the entities
+     * changes as entities are removed.
+     * 
+     * @param index
+     *        The index of the entity, between 0 and {@link #size()}.
+     * @return The reference to the entity.
+     */
+    public Entity getEntity( int index )
+    {
+        return entities[index];
+    }
+
+    /**
+     * Returns the entity which changed most recently. This should not be
+     * called while entities are being marked on other threads.
+     * 
+     * @return The entity which changed most recently, or null if no entity
+     *         has changed.
+     */
+    public Entity getLatest()
+    {
+        return (latest == -1 ? null : entities[indices[latest]]);
+    }
+
+    /**
+     * Returns the entity which last changed before the given entity last
+     * changed. This should not be called while entities are being marked on
+     * other threads.
+     * 
+     * @param e
+     *        A changed entity.
+     * @return The entity which changed before the given entity, or null if
+     *         the given entity changed before all others.
+     */
+    public Entity getEarlier( Entity e )
+    {
+        final int id = earlier[e.id];
+
+        return (id == -1 ? null : entities[indices[id]]);
+    }
+
+    /**
+     * @return The component tracked by this set.
+     */
+    public Component<?> getComponent()
+    {
+        return component;
+    }
+
+    private void link( int id )
+    {
+        earlier[id] = latest;
+        later[id] = -1;
+
+        if (latest == -1)
+        {
+            earliest = id;
+        }
+        else
+        {
+            later[latest] = id;
+        }
+
+        latest = id;
+    }
+
+    private void unlink( int id )
+    {
+        final int before = earlier[id];
+        final int after = later[id];
+
+        if (before == -1)
+        {
+            earliest = after;
+        }
+        else
+        {
+            later[before] = after;
+        }
+
+        if (after == -1)
+        {
+            latest = before;
+        }
+        else
+        {
+            earlier[after] = before;
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+/**
+ * A column holds the values of a single component for every row in a
+ * {@link TemplateStorage}. Values are stored in chunks of {@link #CHUNK_SIZE}
+ * rows so the storage can grow without
+ * copying existing values, and so a controller can walk the values of a
+ * component linearly instead of jumping from Entity to Entity.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public abstract class Column
+{
+
+    /**
+     * The number of bits in a row index which point to a row in a chunk.
+     */
+    public static final int CHUNK_BITS = 9;
+
+    /**
+     * The number of rows in a chunk.
+     */
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /**
+     * The mask of a row index which gives the row in a chunk.
+     */
+    public static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * The component whose values are stored in this column.
+     */
+    public final Component<?> component;
+
+    /**
+     * Instantiates a new Column.
+     * 
+     * @param component
+     *        The component whose values are stored in this column.
+     */
+    protected Column( Component<?> component )
+    {
+        this.component = component;
+    }
+
+    /**
+     * Allocates the chunk at the given index. The chunks before the given
+     * chunk have already been allocated.
+     * 
+     * @param chunk
+     *        The index of the chunk to allocate.
+     */
+    protected abstract void allocate( int chunk );
+
+    /**
+     * Releases the chunk at the given index, no rows in the chunk are in use.
+     * 
+     * @param chunk
+     *        The index of the chunk to release.
+     */
+    protected abstract void release( int chunk );
+
+    /**
+     * Sets the value at the given row to the default value of the component.
+     * 
+     * @param row
+     *        The row to initialize.
+     */
+    protected abstract void init( int row );
+
+    /**
+     * Clears the value at the given row, the row is no longer in use.
+     * 
+     * @param row
+     *        The row to clear.
+     */
+    protected abstract void clear( int row );
+
+    /**
+     * Moves the value at one row to another row in this column. The value at
+     * the source row does not need to be cleared.
+     * 
+     * @param from
+     *        The row to move the value from.
+     * @param to
+     *        The row to move the value to.
+     */
+    protected abstract void move( int from, int to );
+
+    /**
+     * Copies a value from a column of the same component into a row of this
+     * column.
+     * 
+     * @param source
+     *        The column to copy the value from.
+     * @param sourceRow
+     *        The row in the source column to copy.
+     * @param row
+     *        The row in this column to copy the value to.
+     * @param deep
+     *        True if the value should be cloned, false if the value (or it's
+     *        reference) can be copied directly.
+     */
+    protected abstract void copy( Column source, int sourceRow, int row, boolean deep );
+
+}
@@ -0,0 +1,521 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+
+/**
+ * A {@link Column} which stores it's values in direct (off-heap) memory as
+ * described by a {@link DirectLayout}. Each chunk is a direct
+ * {@link ByteBuffer} in native byte order, and the value of a row starts at
+ * {@link #getOffset(int)} in the buffer returned by {@link #getBuffer(int)}.
+ * The fields of a value can be read and written in place with the primitive
+ * accessors, which avoids creating a value object entirely. <br/>
+ * <br/>
+ * A row can also be held as a value object with {@link #hold(int)}, the held
+ * value stays bound to the row and changes made to it are stored in the row
+ * before the row is next read or written through this column. The buffers
+ * don't see changes made to held values until {@link #flush()} is called. <br/>
+ * <br/>
+ * A row is zeroed when it's cleared, and a chunk is dropped when it's
+ * released so the memory can be reclaimed once the buffer is collected.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The component value type.
+ */
+@SuppressWarnings ("unchecked" )
+public class ColumnDirect<T> extends Column
+{
+
+    /**
+     * The layout of the values in this column.
+     */
+    protected final DirectLayout<T> layout;
+
+    /**
+     * The number of bytes between rows.
+     */
+    protected final int stride;
+
+    /**
+     * The value written to a row when it's initialized.
+     */
+    protected final T defaultValue;
+
+    /**
+     * The chunks of values.
+     */
+    protected ByteBuffer[] chunks = {};
+
+    /**
+     * The held values of each chunk, a chunk's array is created when a row in
+     * it is first held.
+     */
+    protected Object[][] held = {};
+
+    /**
+     * Instantiates a new ColumnDirect.
+     * 
+     * @param component
+     *        The component whose values are stored in this column.
+     * @param layout
+     *        The layout of the values in this column.
+     */
+    protected ColumnDirect( Component<T> component, DirectLayout<T> layout )
+    {
+        super( component );
+
+        this.layout = layout;
+        this.stride = layout.getStride();
+        this.defaultValue = layout.create();
+    }
+
+    /**
+     * Returns the value of the given row as an object which stays bound to the
+     * row, so it can be modified in place. The same object is returned until
+     * the row is cleared, and changes made to it are stored in the row before
+     * the row is next read or written through this column.
+     * 
+     * @param row
+     *        The row of the value.
+     * @return The value held for the row.
+     */
+    public T hold( int row )
+    {
+        final int chunk = row >> CHUNK_BITS;
+        final int index = row & CHUNK_MASK;
+        Object[] values = held[chunk];
+
+        if (values == null)
+        {
+            values = allocateHeld( chunk );
+        }
+
+        T value = (T)values[index];
+
+        if (value == null)
+        {
+            value = layout.read( chunks[chunk], index * stride, layout.create() );
+            values[index] = value;
+        }
+
+        return value;
+    }
+
+    /**
+     * Stores the changes made to the held values of every row, this must be
+     * done before the buffers are read directly.
+     */
+    public void flush()
+    {
+        for (int chunk = 0; chunk < held.length; chunk++)
+        {
+            final Object[] values = held[chunk];
+
+            if (values != null)
+            {
+                for (int i = 0; i < values.length; i++)
+                {
+                    if (values[i] != null)
+                    {
+                        store( (chunk << CHUNK_BITS) | i );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the buffer which contains the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @return The buffer which contains the row.
+     */
+    public ByteBuffer getBuffer( int row )
+    {
+        return chunks[row >> CHUNK_BITS];
+    }
+
+    /**
+     * Returns the offset of the given row in it's buffer.
+     * 
+     * @param row
+     *        The row of the value.
+     * @return The offset of the row in it's buffer.
+     */
+    public int getOffset( int row )
+    {
+        return (row & CHUNK_MASK) * stride;
+    }
+
+    /**
+     * Returns the chunk at the given index.
+     * 
+     * @param chunk
+     *        The index of the chunk.
+     * @return The reference to the chunk.
+     */
+    public ByteBuffer getChunk( int chunk )
+    {
+        return chunks[chunk];
+    }
+
+    /**
+     * @return The number of bytes between rows.
+     */
+    public int getStride()
+    {
+        return stride;
+    }
+
+    /**
+     * Reads the value at the given row into target, target is not bound to the
+     * row (see {@link #hold(int)}).
+     * 
+     * @param row
+     *        The row of the value.
+     * @param target
+     *        The value to read into.
+     * @return The reference to target.
+     */
+    public T get( int row, T target )
+    {
+        store( row );
+
+        return layout.read( chunks[row >> CHUNK_BITS], (row & CHUNK_MASK) * stride, target );
+    }
+
+    /**
+     * Writes the given value to the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @param value
+     *        The value to write.
+     */
+    public void set( int row, T value )
+    {
+        layout.write( chunks[row >> CHUNK_BITS], (row & CHUNK_MASK) * stride, value );
+
+        if (getHeld( row ) != value)
+        {
+            reload( row );
+        }
+    }
+
+    /**
+     * Returns the float field of the value at the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @param field
+     *        The offset of the field in the layout.
+     * @return The value of the field.
+     */
+    public float getFloat( int row, int field )
+    {
+        store( row );
+
+        return chunks[row >> CHUNK_BITS].getFloat( (row & CHUNK_MASK) * stride + field );
+    }
+
+    /**
+     * Sets the float field of the value at the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @param field
+     *        The offset of the field in the layout.
+     * @param value
+     *        The new value of the field.
+     */
+    public void setFloat( int row, int field, float value )
+    {
+        store( row );
+
+        chunks[row >> CHUNK_BITS].putFloat( (row & CHUNK_MASK) * stride + field, value );
+
+        reload( row );
+    }
+
+    /**
+     * Returns the double field of the value at the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @param field
+     *        The offset of the field in the layout.
+     * @return The value of the field.
+     */
+    public double getDouble( int row, int field )
+    {
+        store( row );
+
+        return chunks[row >> CHUNK_BITS].getDouble( (row & CHUNK_MASK) * stride + field );
+    }
+
+    /**
+     * Sets the double field of the value at the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @param field
+     *        The offset of the field in the layout.
+     * @param value
+     *        The new value of the field.
+     */
+    public void setDouble( int row, int field, double value )
+    {
+        store( row );
+
+        chunks[row >> CHUNK_BITS].putDouble( (row & CHUNK_MASK) * stride + field, value );
+
+        reload( row );
+    }
+
+    /**
+     * Returns the int field of the value at the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @param field
+     *        The offset of the field in the layout.
+     * @return The value of the field.
+     */
+    public int getInt( int row, int field )
+    {
+        store( row );
+
+        return chunks[row >> CHUNK_BITS].getInt( (row & CHUNK_MASK) * stride + field );
+    }
+
+    /**
+     * Sets the int field of the value at the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @param field
+     *        The offset of the field in the layout.
+     * @param value
+     *        The new value of the field.
+     */
+    public void setInt( int row, int field, int value )
+    {
+        store( row );
+
+        chunks[row >> CHUNK_BITS].putInt( (row & CHUNK_MASK) * stride + field, value );
+
+        reload( row );
+    }
+
+    /**
+     * Returns the long field of the value at the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @param field
+     *        The offset of the field in the layout.
+     * @return The value of the field.
+     */
+    public long getLong( int row, int field )
+    {
+        store( row );
+
+        return chunks[row >> CHUNK_BITS].getLong( (row & CHUNK_MASK) * stride + field );
+    }
+
+    /**
+     * Sets the long field of the value at the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @param field
+     *        The offset of the field in the layout.
+     * @param value
+     *        The new value of the field.
+     */
+    public void setLong( int row, int field, long value )
+    {
+        store( row );
+
+        chunks[row >> CHUNK_BITS].putLong( (row & CHUNK_MASK) * stride + field, value );
+
+        reload( row );
+    }
+
+    @Override
+    protected void allocate( int chunk )
+    {
+        if (chunk >= chunks.length)
+        {
+            chunks = Arrays.copyOf( chunks, chunk + 1 );
+        }
+
+        chunks[chunk] = ByteBuffer.allocateDirect( CHUNK_SIZE * stride ).order( ByteOrder.nativeOrder() );
+
+        if (chunk >= held.length)
+        {
+            held = Arrays.copyOf( held, chunks.length );
+        }
+    }
+
+    @Override
+    protected void release( int chunk )
+    {
+        chunks[chunk] = null;
+        held[chunk] = null;
+    }
+
+    @Override
+    protected void init( int row )
+    {
+        set( row, defaultValue );
+    }
+
+    @Override
+    protected void clear( int row )
+    {
+        final ByteBuffer buffer = chunks[row >> CHUNK_BITS];
+        final int offset = (row & CHUNK_MASK) * stride;
+
+        for (int i = 0; i < stride; i += 8)
+        {
+            buffer.putLong( offset + i, 0L );
+        }
+
+        setHeld( row, null );
+    }
+
+    @Override
+    protected void move( int from, int to )
+    {
+        copyBytes( chunks[from >> CHUNK_BITS], (from & CHUNK_MASK) * stride, chunks[to >> CHUNK_BITS], (to & CHUNK_MASK) * stride );
+
+        setHeld( to, getHeld( from ) );
+        setHeld( from, null );
+    }
+
+    /**
+     * Copies the bytes of the value, a value held for the source row is held
+     * for the row as well unless the value is cloned.
+     */
+    @Override
+    protected void copy( Column source, int sourceRow, int row, boolean deep )
+    {
+        final ColumnDirect<?> from = (ColumnDirect<?>)source;
+        final Object value = from.getHeld( sourceRow );
+
+        from.store( sourceRow );
+
+        copyBytes( from.chunks[sourceRow >> CHUNK_BITS], (sourceRow & CHUNK_MASK) * stride, chunks[row >> CHUNK_BITS], (row & CHUNK_MASK) * stride );
+
+        if (!deep && value != null)
+        {
+            setHeld( row, value );
+        }
+        else
+        {
+            reload( row );
+        }
+    }
+
+    /**
+     * Writes the value held for the given row (if any) to the row.
+     */
+    private void store( int row )
+    {
+        final Object value = getHeld( row );
+
+        if (value != null)
+        {
+            layout.write( chunks[row >> CHUNK_BITS], (row & CHUNK_MASK) * stride, (T)value );
+        }
+    }
+
+    /**
+     * Reads the given row into the value held for it (if any).
+     */
+    private void reload( int row )
+    {
+        final Object value = getHeld( row );
+
+        if (value != null)
+        {
+            layout.read( chunks[row >> CHUNK_BITS], (row & CHUNK_MASK) * stride, (T)value );
+        }
+    }
+
+    private Object getHeld( int row )
+    {
+        final Object[] values = held[row >> CHUNK_BITS];
+
+        return (values == null ? null : values[row & CHUNK_MASK]);
+    }
+
+    private void setHeld( int row, Object value )
+    {
+        final int chunk = row >> CHUNK_BITS;
+        Object[] values = held[chunk];
+
+        if (values == null)
+        {
+            if (value == null)
+            {
+                return;
+            }
+
+            values = allocateHeld( chunk );
+        }
+
+        values[row & CHUNK_MASK] = value;
+    }
+
+    /**
+     * Creates the held values of the given chunk, entities of a template may
+     * be updated in parallel so two threads could hold their first rows in
+     * the chunk at the same time.
+     */
+    private synchronized Object[] allocateHeld( int chunk )
+    {
+        if (held[chunk] == null)
+        {
+            held[chunk] = new Object[CHUNK_SIZE];
+        }
+
+        return held[chunk];
+    }
+
+    /**
+     * Copies a value from one buffer to another, the stride is always a
+     * multiple of 8 so the value is copied a long at a time.
+     */
+    private void copyBytes( ByteBuffer from, int fromOffset, ByteBuffer to, int toOffset )
+    {
+        for (int i = 0; i < stride; i += 8)
+        {
+            to.putLong( toOffset + i, from.getLong( fromOffset + i ) );
+        }
+    }
+
+}
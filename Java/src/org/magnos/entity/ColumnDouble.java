@@ -0,0 +1,138 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+
+
+/**
+ * A {@link Column} of primitive double values. The values are stored directly in
+ * double arrays so no objects are created per entity and walking a column reads
+ * contiguous memory.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class ColumnDouble extends Column
+{
+
+    /**
+     * The value given to a row when it's initialized.
+     */
+    protected final double defaultValue;
+
+    /**
+     * The chunks of values.
+     */
+    protected double[][] chunks = {};
+
+    /**
+     * Instantiates a new ColumnDouble.
+     * 
+     * @param component
+     *        The component whose values are stored in this column.
+     * @param defaultValue
+     *        The value given to a row when it's initialized.
+     */
+    protected ColumnDouble( Component<?> component, double defaultValue )
+    {
+        super( component );
+
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * Returns the value at the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @return The value at the given row.
+     */
+    public double get( int row )
+    {
+        return chunks[row >> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    /**
+     * Sets the value at the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @param value
+     *        The new value.
+     */
+    public void set( int row, double value )
+    {
+        chunks[row >> CHUNK_BITS][row & CHUNK_MASK] = value;
+    }
+
+    /**
+     * Returns the chunk at the given index. The value for row R is at
+     * <code>getChunk( R &gt;&gt; CHUNK_BITS )[R &amp; CHUNK_MASK]</code>.
+     * 
+     * @param chunk
+     *        The index of the chunk.
+     * @return The reference to the chunk.
+     */
+    public double[] getChunk( int chunk )
+    {
+        return chunks[chunk];
+    }
+
+    @Override
+    protected void allocate( int chunk )
+    {
+        if (chunk >= chunks.length)
+        {
+            chunks = Arrays.copyOf( chunks, chunk + 1 );
+        }
+
+        chunks[chunk] = new double[CHUNK_SIZE];
+    }
+
+    @Override
+    protected void release( int chunk )
+    {
+        chunks[chunk] = null;
+    }
+
+    @Override
+    protected void init( int row )
+    {
+        chunks[row >> CHUNK_BITS][row & CHUNK_MASK] = defaultValue;
+    }
+
+    @Override
+    protected void clear( int row )
+    {
+
+    }
+
+    @Override
+    protected void move( int from, int to )
+    {
+        chunks[to >> CHUNK_BITS][to & CHUNK_MASK] = chunks[from >> CHUNK_BITS][from & CHUNK_MASK];
+    }
+
+    @Override
+    protected void copy( Column source, int sourceRow, int row, boolean deep )
+    {
+        chunks[row >> CHUNK_BITS][row & CHUNK_MASK] = ((ColumnDouble)source).get( sourceRow );
+    }
+
+}
@@ -0,0 +1,159 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+
+
+/**
+ * A {@link Column} of object values. Default values are created and cloned
+ * with the {@link ComponentValueFactory} of the component. <br/>
+ * <br/>
+ * To walk the column linearly iterate over the chunks of the storage:
+ * 
+ * <pre>
+ * TemplateStorage storage = template.getStorage();
+ * ColumnObject&lt;Vector&gt; position = storage.getObjectColumn( POSITION );
+ * 
+ * for (int c = 0; c &lt; storage.getChunkCount(); c++)
+ * {
+ *     Object[] chunk = position.getChunk( c );
+ * 
+ *     for (int i = 0, n = storage.getChunkLength( c ); i &lt; n; i++)
+ *     {
+ *         Vector p = (Vector)chunk[i];
+ *     }
+ * }
+ * </pre>
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The component value type.
+ */
+@SuppressWarnings ("unchecked" )
+public class ColumnObject<T> extends Column
+{
+
+    /**
+     * The factory which creates default values and clones values.
+     */
+    protected final ComponentValueFactory<T> factory;
+
+    /**
+     * The chunks of values.
+     */
+    protected Object[][] chunks = {};
+
+    /**
+     * Instantiates a new ColumnObject.
+     * 
+     * @param component
+     *        The component whose values are stored in this column.
+     * @param factory
+     *        The factory which creates default values and clones values.
+     */
+    protected ColumnObject( Component<T> component, ComponentValueFactory<T> factory )
+    {
+        super( component );
+
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the value at the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @return The value at the given row.
+     */
+    public T get( int row )
+    {
+        return (T)chunks[row >> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    /**
+     * Sets the value at the given row.
+     * 
+     * @param row
+     *        The row of the value.
+     * @param value
+     *        The new value.
+     */
+    public void set( int row, T value )
+    {
+        chunks[row >> CHUNK_BITS][row & CHUNK_MASK] = value;
+    }
+
+    /**
+     * Returns the chunk at the given index. The value for row R is at
+     * <code>getChunk( R &gt;&gt; CHUNK_BITS )[R &amp; CHUNK_MASK]</code>.
+     * 
+     * @param chunk
+     *        The index of the chunk.
+     * @return The reference to the chunk, this should not be modified directly.
+     */
+    public Object[] getChunk( int chunk )
+    {
+        return chunks[chunk];
+    }
+
+    @Override
+    protected void allocate( int chunk )
+    {
+        if (chunk >= chunks.length)
+        {
+            chunks = Arrays.copyOf( chunks, chunk + 1 );
+        }
+
+        chunks[chunk] = new Object[CHUNK_SIZE];
+    }
+
+    @Override
+    protected void release( int chunk )
+    {
+        chunks[chunk] = null;
+    }
+
+    @Override
+    protected void init( int row )
+    {
+        chunks[row >> CHUNK_BITS][row & CHUNK_MASK] = factory.create();
+    }
+
+    @Override
+    protected void clear( int row )
+    {
+        chunks[row >> CHUNK_BITS][row & CHUNK_MASK] = null;
+    }
+
+    @Override
+    protected void move( int from, int to )
+    {
+        chunks[to >> CHUNK_BITS][to & CHUNK_MASK] = chunks[from >> CHUNK_BITS][from & CHUNK_MASK];
+    }
+
+    @Override
+    protected void copy( Column source, int sourceRow, int row, boolean deep )
+    {
+        T value = ((ColumnObject<T>)source).get( sourceRow );
+
+        chunks[row >> CHUNK_BITS][row & CHUNK_MASK] = (deep ? factory.clone( value ) : value);
+    }
+
+}
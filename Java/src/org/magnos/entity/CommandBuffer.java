@@ -0,0 +1,559 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.magnos.entity.util.BitSet;
+
+
+/**
+ * Records structural changes (spawning, deleting, and expiring entities,
+ * adding and removing components, and moving entities between lists) so they
+ * can be made later at a sync point with {@link #playback()}. Making a
+ * structural change while an {@link EntityIterator} is iterating or while
+ * entities are updated in parallel is unsafe, recording it is not. <br/>
+ * <br/>
+ * Each thread records into it's own buffer, so recording never contends with
+ * other threads. Playback must happen on a single thread while no thread is
+ * recording, and it makes the changes in phases:
+ * <ol>
+ * <li>Entities are spawned, grouped by template and then by the list they're
+ * added to.</li>
+ * <li>Components are added and removed, grouped by the template of the entity
+ * so entities making the same change take the same template transition one
+ * after another. Changes to an entity which is deleted in the same playback
+ * are skipped.</li>
+ * <li>Entities are moved between lists in the order they were recorded.</li>
+ * <li>Entities are expired and deleted.</li>
+ * </ol>
+ * Within a phase the commands recorded by a single thread for the same entity
+ * are made in the order they were recorded. Commands can't be recorded while
+ * the buffer is played back (by a spawn initializer for example).
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class CommandBuffer
+{
+
+    /**
+     * The types of commands, in the order of the phases they're played back
+     * in.
+     */
+    protected static final int SPAWN = 0;
+    protected static final int ADD = 1;
+    protected static final int REMOVE = 2;
+    protected static final int REPARENT = 3;
+    protected static final int EXPIRE = 4;
+    protected static final int DELETE = 5;
+
+    /**
+     * The buffer of each thread which has recorded a command.
+     */
+    protected final ThreadLocal<Commands> local = new ThreadLocal<Commands>() {
+
+        @Override
+        protected Commands initialValue()
+        {
+            return register( new Commands() );
+        }
+    };
+
+    /**
+     * Every buffer created by a thread for this CommandBuffer.
+     */
+    protected Commands[] buffers = {};
+    protected int bufferCount;
+
+    /**
+     * The commands of all buffers gathered during playback, and the ids of the
+     * entities deleted by the playback.
+     */
+    protected Command[] merged = {};
+    protected BitSet deleting = new BitSet();
+
+    /**
+     * Instantiates a new empty CommandBuffer.
+     */
+    public CommandBuffer()
+    {
+    }
+
+    /**
+     * Records the creation of an entity with the given template.
+     * 
+     * @param template
+     *        The template of the entity.
+     * @param parent
+     *        The list to add the entity to, or null.
+     */
+    public void spawn( Template template, EntityList parent )
+    {
+        spawn( template, parent, null, null );
+    }
+
+    /**
+     * Records the creation of an entity with the given template, the
+     * initializer is invoked with the entity once it's created so it can set
+     * the values of the entity.
+     * 
+     * @param template
+     *        The template of the entity.
+     * @param parent
+     *        The list to add the entity to, or null.
+     * @param initializer
+     *        The control invoked with the new entity, or null.
+     * @param state
+     *        The state passed to the initializer.
+     */
+    public void spawn( Template template, EntityList parent, Control initializer, Object state )
+    {
+        final Command c = local.get().next( SPAWN, null );
+
+        c.template = template;
+        c.parent = parent;
+        c.initializer = initializer;
+        c.value = state;
+    }
+
+    /**
+     * Records the deletion of an entity, the entity should not be in a list.
+     * 
+     * @param e
+     *        The entity to delete.
+     * @see Entity#delete()
+     */
+    public void delete( Entity e )
+    {
+        local.get().next( DELETE, e );
+    }
+
+    /**
+     * Records the expiration of an entity, the lists the entity is in delete it
+     * when they're next updated or cleaned.
+     * 
+     * @param e
+     *        The entity to expire.
+     * @see Entity#expire()
+     */
+    public void expire( Entity e )
+    {
+        local.get().next( EXPIRE, e );
+    }
+
+    /**
+     * Records adding a component to an entity.
+     * 
+     * @param e
+     *        The entity to add the component to.
+     * @param component
+     *        The component to add.
+     * @see Entity#add(Component)
+     */
+    public <T> void add( Entity e, Component<T> component )
+    {
+        local.get().next( ADD, e ).component = component;
+    }
+
+    /**
+     * Records adding a component to an entity and setting it's value.
+     * 
+     * @param e
+     *        The entity to add the component to.
+     * @param component
+     *        The component to add.
+     * @param value
+     *        The value of the component.
+     * @see Entity#put(Component, Object)
+     */
+    public <T> void add( Entity e, Component<T> component, T value )
+    {
+        final Command c = local.get().next( ADD, e );
+
+        c.component = component;
+        c.value = value;
+        c.hasValue = true;
+    }
+
+    /**
+     * Records removing a component from an entity.
+     * 
+     * @param e
+     *        The entity to remove the component from.
+     * @param component
+     *        The component to remove.
+     * @see Entity#remove(Component)
+     */
+    public <T> void remove( Entity e, Component<T> component )
+    {
+        local.get().next( REMOVE, e ).component = component;
+    }
+
+    /**
+     * Records moving an entity from one list to another.
+     * 
+     * @param e
+     *        The entity to move.
+     * @param from
+     *        The list the entity is in, or null.
+     * @param to
+     *        The list to add the entity to, or null.
+     */
+    public void reparent( Entity e, EntityList from, EntityList to )
+    {
+        final Command c = local.get().next( REPARENT, e );
+
+        c.from = from;
+        c.parent = to;
+    }
+
+    /**
+     * @return The number of commands recorded by all threads which haven't been
+     *         played back.
+     */
+    public synchronized int size()
+    {
+        int size = 0;
+
+        for (int i = 0; i < bufferCount; i++)
+        {
+            size += buffers[i].count;
+        }
+
+        return size;
+    }
+
+    /**
+     * Makes all recorded changes and clears the buffers of every thread. This
+     * must be invoked on a single thread while no thread is recording.
+     * 
+     * @return The number of commands played back.
+     */
+    public synchronized int playback()
+    {
+        final int total = size();
+
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        if (merged.length < total)
+        {
+            merged = new Command[total];
+        }
+
+        int count = 0;
+
+        for (int i = 0; i < bufferCount; i++)
+        {
+            final Commands b = buffers[i];
+
+            for (int k = 0; k < b.count; k++)
+            {
+                final Command c = b.commands[k];
+
+                c.order = count;
+                c.key = (c.type == SPAWN ? System.identityHashCode( c.template ) : (c.entity.template == null ? 0 : System.identityHashCode( c.entity.template )));
+                merged[count++] = c;
+
+                if (c.type == DELETE && c.entity.template != null)
+                {
+                    deleting.set( c.entity.id );
+                }
+            }
+        }
+
+        Arrays.sort( merged, 0, count, PLAYBACK_ORDER );
+
+        int i = 0;
+
+        while (i < count)
+        {
+            final int phase = PHASES[merged[i].type];
+            int end = i;
+
+            while (end < count && PHASES[merged[end].type] == phase)
+            {
+                end++;
+            }
+
+            switch (phase)
+            {
+            case 0:
+                playSpawns( i, end );
+                break;
+            case 1:
+            case 2:
+                playChanges( i, end );
+                break;
+            case 3:
+                playRemovals( i, end );
+                break;
+            }
+
+            i = end;
+        }
+
+        Arrays.fill( merged, 0, count, null );
+        deleting.clear();
+
+        for (int k = 0; k < bufferCount; k++)
+        {
+            buffers[k].clear();
+        }
+
+        return count;
+    }
+
+    /**
+     * Removes all recorded commands without playing them back.
+     */
+    public synchronized void clear()
+    {
+        for (int i = 0; i < bufferCount; i++)
+        {
+            buffers[i].clear();
+        }
+    }
+
+    private void playSpawns( int start, int end )
+    {
+        int i = start;
+
+        while (i < end)
+        {
+            final Command first = merged[i];
+            int groupEnd = i + 1;
+
+            while (groupEnd < end && merged[groupEnd].template == first.template && merged[groupEnd].parent == first.parent)
+            {
+                groupEnd++;
+            }
+
+            if (first.parent != null)
+            {
+                first.parent.pad( groupEnd - i );
+            }
+
+            for (; i < groupEnd; i++)
+            {
+                final Command c = merged[i];
+                final Entity e = new Entity( c.template );
+
+                if (c.initializer != null)
+                {
+                    c.initializer.update( e, c.value );
+                }
+
+                if (c.parent != null)
+                {
+                    c.parent.add( e );
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings ("unchecked" )
+    private void playChanges( int start, int end )
+    {
+        for (int i = start; i < end; i++)
+        {
+            final Command c = merged[i];
+            final Entity e = c.entity;
+
+            if (e.template == null || deleting.get( e.id ))
+            {
+                continue;
+            }
+
+            switch (c.type)
+            {
+            case ADD:
+                if (c.hasValue)
+                {
+                    e.put( (Component<Object>)c.component, c.value );
+                }
+                else
+                {
+                    e.add( c.component );
+                }
+                break;
+            case REMOVE:
+                e.remove( c.component );
+                break;
+            case REPARENT:
+                if (c.from != null)
+                {
+                    c.from.remove( e );
+                }
+                if (c.parent != null)
+                {
+                    c.parent.add( e );
+                }
+                break;
+            }
+        }
+    }
+
+    private void playRemovals( int start, int end )
+    {
+        for (int i = start; i < end; i++)
+        {
+            final Command c = merged[i];
+
+            if (c.type == EXPIRE)
+            {
+                c.entity.expire();
+            }
+            else
+            {
+                c.entity.delete();
+            }
+        }
+    }
+
+    private synchronized Commands register( Commands commands )
+    {
+        if (bufferCount == buffers.length)
+        {
+            buffers = Arrays.copyOf( buffers, bufferCount + 4 );
+        }
+
+        buffers[bufferCount++] = commands;
+
+        return commands;
+    }
+
+    /**
+     * The phase each type of command is played back in.
+     */
+    protected static final int[] PHASES = { 0, 1, 1, 2, 3, 3 };
+
+    /**
+     * The order commands are played back in: by phase, then by the template of
+     * the entity (or the template spawned) and the list spawned into, and
+     * then by the order they were recorded.
+     */
+    protected static final Comparator<Command> PLAYBACK_ORDER = new Comparator<Command>() {
+
+        @Override
+        public int compare( Command a, Command b )
+        {
+            final int pa = PHASES[a.type];
+            final int pb = PHASES[b.type];
+
+            if (pa != pb)
+            {
+                return pa < pb ? -1 : 1;
+            }
+
+            if (a.type != REPARENT && a.key != b.key)
+            {
+                return a.key < b.key ? -1 : 1;
+            }
+
+            if (a.type == SPAWN && a.parent != b.parent)
+            {
+                final int ha = System.identityHashCode( a.parent );
+                final int hb = System.identityHashCode( b.parent );
+
+                if (ha != hb)
+                {
+                    return ha < hb ? -1 : 1;
+                }
+            }
+
+            return a.order < b.order ? -1 : (a.order > b.order ? 1 : 0);
+        }
+    };
+
+    /**
+     * A recorded command, commands are reused once they're played back.
+     */
+    protected static class Command
+    {
+        protected int type;
+        protected Entity entity;
+        protected Template template;
+        protected Component<?> component;
+        protected Object value;
+        protected boolean hasValue;
+        protected Control initializer;
+        protected EntityList from;
+        protected EntityList parent;
+        protected int order;
+        protected int key;
+
+        protected void clear()
+        {
+            entity = null;
+            template = null;
+            component = null;
+            value = null;
+            hasValue = false;
+            initializer = null;
+            from = null;
+            parent = null;
+        }
+    }
+
+    /**
+     * The commands recorded by a single thread.
+     */
+    protected static class Commands
+    {
+        protected Command[] commands = {};
+        protected int count;
+
+        protected Command next( int type, Entity e )
+        {
+            if (count == commands.length)
+            {
+                commands = Arrays.copyOf( commands, count + (count >> 1) + 16 );
+            }
+
+            Command c = commands[count];
+
+            if (c == null)
+            {
+                commands[count] = c = new Command();
+            }
+
+            count++;
+
+            c.type = type;
+            c.entity = e;
+
+            return c;
+        }
+
+        protected void clear()
+        {
+            for (int i = 0; i < count; i++)
+            {
+                commands[i].clear();
+            }
+
+            count = 0;
+        }
+    }
+
+}
@@ -33,6 +33,14 @@ package org.magnos.entity;
 public abstract class Component<T> extends Id
 {
 
+    /**
+     * The entities which changed the value of this component, or null if
+     * changes to this component are not tracked.
+     * 
+     * @see Ents#track(Component)
+     */
+    protected ChangeSet changes;
+
     /**
      * Instantiates a Component with the given id and name.
      * 
@@ -72,4 +80,69 @@ public abstract class Component<T> extends Id
      */
     protected abstract void postCustomAdd( Entity e, Template template, TemplateComponent<?> templateComponent );
 
+    /**
+     * Moves the value of this component for an entity from the values it has
+     * in one template to the values it will have in another template, where
+     * both templates have this exact component. Components which don't store
+     * values in the entity's values array don't need to do anything.
+     * 
+     * @param from
+     *        The template the entity is leaving.
+     * @param fromValues
+     *        The values of the entity in the template it's leaving.
+     * @param to
+     *        The template the entity is joining.
+     * @param toValues
+     *        The values of the entity in the template it's joining.
+     */
+    protected void moveValue( Template from, Object[] fromValues, Template to, Object[] toValues )
+    {
+
+    }
+
+    /**
+     * Returns whether an entity can move between the two templates (which both
+     * have this exact component) without the value of this component visibly
+     * changing. Templates which are not interchangeable for all of their
+     * components are never merged together.
+     * 
+     * @param a
+     *        The first template.
+     * @param b
+     *        The second template.
+     * @return True if the value of this component is the same in both.
+     */
+    protected boolean isInterchangeable( Template a, Template b )
+    {
+        return true;
+    }
+
+    /**
+     * Returns whether the value of this component is kept on the template, so
+     * all entities of a template share the value. Entities which are
+     * customized the same way never move to the same custom template when it
+     * has a component like this, otherwise they would see the values set by
+     * each other (see {@link Template#isShareable()}).
+     * 
+     * @return True if the value of this component is stored per template.
+     */
+    protected boolean hasTemplateValue()
+    {
+        return false;
+    }
+
+    /**
+     * Returns whether each entity has it's own value for this component, so
+     * setting or modifying the value of one entity never affects the value of
+     * another entity. Entities whose controllers only write to components with
+     * distinct values can be updated in parallel (see
+     * {@link EntityList#setParallel(java.util.concurrent.ExecutorService)}).
+     * 
+     * @return True if every entity has a distinct value for this component.
+     */
+    public boolean hasDistinctValues()
+    {
+        return false;
+    }
+
 }
@@ -0,0 +1,147 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+/**
+ * A component that stores it's values in a {@link ColumnObject} in the
+ * {@link TemplateStorage} of the Template. Every entity with the Template is
+ * given a row in the storage and it's value is at that row in the column, so
+ * the values of all entities with the same Template can be walked linearly.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The component value type.
+ */
+class ComponentColumn<T> extends Component<T>
+{
+
+    /**
+     * The factory that creates the default value on the entity and also handles
+     * cloning values from Entity to cloned Entity.
+     */
+    private final ComponentValueFactory<T> factory;
+
+    /**
+     * Instantiates a ComponentColumn.
+     * 
+     * @param id
+     *        The id of the component.
+     * @param name
+     *        The name of the component.
+     * @param factory
+     *        The factory used to create and clone values.
+     */
+    protected ComponentColumn( int id, String name, ComponentValueFactory<T> factory )
+    {
+        super( id, name );
+
+        this.factory = factory;
+    }
+
+    @Override
+    protected void postCustomAdd( Entity e, Template template, TemplateComponent<?> templateComponent )
+    {
+        addStorageRow( e, template );
+    }
+
+    @Override
+    public boolean hasDistinctValues()
+    {
+        return true;
+    }
+
+    @Override
+    protected TemplateComponent<T> add( Template template )
+    {
+        ColumnObject<T> column = new ColumnObject<T>( this, factory );
+
+        template.getStorage( true ).addColumn( column );
+
+        return new ComponentColumnHandler( column );
+    }
+
+    /**
+     * When a column component is added to the template of an entity that
+     * already exists and the template did not have storage before, the entity
+     * is given a row. If the entity is moving to the template the row is given
+     * once it's template changes.
+     * 
+     * @param e
+     *        The entity the component was added to.
+     * @param template
+     *        The template the component was added to.
+     */
+    protected static void addStorageRow( Entity e, Template template )
+    {
+        TemplateStorage storage = template.storage;
+
+        if (e.template == template && !storage.contains( e ))
+        {
+            TemplateStorage.move( e, null, storage );
+        }
+    }
+
+    private class ComponentColumnHandler implements TemplateComponent<T>
+    {
+
+        private final ColumnObject<T> column;
+
+        private ComponentColumnHandler( ColumnObject<T> column )
+        {
+            this.column = column;
+        }
+
+        @Override
+        public void set( Entity e, T value )
+        {
+            column.set( e.row, value );
+        }
+
+        @Override
+        public T get( Entity e )
+        {
+            return column.get( e.row );
+        }
+
+        @Override
+        public T take( Entity e, T target )
+        {
+            return factory.copy( column.get( e.row ), target );
+        }
+
+        @Override
+        public void remove( Template template )
+        {
+            template.storage.removeColumn( column );
+        }
+
+        @Override
+        public void postAdd( Entity e )
+        {
+
+        }
+
+        @Override
+        public void preRemove( Entity e )
+        {
+
+        }
+    }
+
+}
@@ -0,0 +1,302 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+/**
+ * A component that stores it's values in direct (off-heap) memory in a
+ * {@link ColumnDirect} in the {@link TemplateStorage} of the Template. The
+ * {@link DirectLayout} describes the fields of a value and how to convert
+ * between the bytes and the value type, so {@link Entity#get(Component)},
+ * {@link Entity#take(Component, Object)} and
+ * {@link Entity#set(Component, Object)} work as they do for any other
+ * component. <br/>
+ * <br/>
+ * The value returned by {@link Entity#get(Component)} is held for the entity
+ * (see {@link ColumnDirect#hold(int)}), so it can be modified in place and the
+ * changes are stored in direct memory before the value is next read or
+ * written through this component. A held value lives on the heap until the
+ * entity is deleted, so the primitive accessors are preferred for large
+ * numbers of entities, and {@link ColumnDirect#flush()} must be called before
+ * the buffers of a column are read directly. <br/>
+ * <br/>
+ * The fields of a value can also be read and written in place with the
+ * primitive accessors (like {@link #getFloat(Entity, int)}), where the field is
+ * the offset returned when the field was added to the layout. The primitive
+ * accessors may only be used on entities that have this exact component, an
+ * alternative will result in a {@link ClassCastException}. <br/>
+ * <br/>
+ * The memory of an entity is zeroed when it's deleted, and the memory held by
+ * a template can be released with {@link TemplateStorage#trim()}.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The component value type.
+ */
+@SuppressWarnings ("unchecked" )
+public class ComponentDirect<T> extends Component<T>
+{
+
+    /**
+     * The layout of the values of this component.
+     */
+    protected final DirectLayout<T> layout;
+
+    /**
+     * Instantiates a ComponentDirect.
+     * 
+     * @param id
+     *        The id of the component.
+     * @param name
+     *        The name of the component.
+     * @param layout
+     *        The layout of the values of this component.
+     */
+    protected ComponentDirect( int id, String name, DirectLayout<T> layout )
+    {
+        super( id, name );
+
+        this.layout = layout;
+    }
+
+    /**
+     * @return The layout of the values of this component.
+     */
+    public DirectLayout<T> getLayout()
+    {
+        return layout;
+    }
+
+    /**
+     * Returns the column which stores the value of the given entity.
+     * 
+     * @param e
+     *        The entity with this component.
+     * @return The column of this component in the entity's template.
+     */
+    public ColumnDirect<T> getColumn( Entity e )
+    {
+        return ((ComponentDirectHandler)e.template.handlers[id]).column;
+    }
+
+    /**
+     * Returns the float field of the value on the given entity.
+     * 
+     * @param e
+     *        The entity to get the value of.
+     * @param field
+     *        The offset of the field in the layout.
+     * @return The value of the field.
+     */
+    public float getFloat( Entity e, int field )
+    {
+        return getColumn( e ).getFloat( e.row, field );
+    }
+
+    /**
+     * Sets the float field of the value on the given entity.
+     * 
+     * @param e
+     *        The entity to set the value of.
+     * @param field
+     *        The offset of the field in the layout.
+     * @param value
+     *        The new value of the field.
+     */
+    public void setFloat( Entity e, int field, float value )
+    {
+        getColumn( e ).setFloat( e.row, field, value );
+
+        if (changes != null)
+        {
+            changes.mark( e );
+        }
+    }
+
+    /**
+     * Returns the double field of the value on the given entity.
+     * 
+     * @param e
+     *        The entity to get the value of.
+     * @param field
+     *        The offset of the field in the layout.
+     * @return The value of the field.
+     */
+    public double getDouble( Entity e, int field )
+    {
+        return getColumn( e ).getDouble( e.row, field );
+    }
+
+    /**
+     * Sets the double field of the value on the given entity.
+     * 
+     * @param e
+     *        The entity to set the value of.
+     * @param field
+     *        The offset of the field in the layout.
+     * @param value
+     *        The new value of the field.
+     */
+    public void setDouble( Entity e, int field, double value )
+    {
+        getColumn( e ).setDouble( e.row, field, value );
+
+        if (changes != null)
+        {
+            changes.mark( e );
+        }
+    }
+
+    /**
+     * Returns the int field of the value on the given entity.
+     * 
+     * @param e
+     *        The entity to get the value of.
+     * @param field
+     *        The offset of the field in the layout.
+     * @return The value of the field.
+     */
+    public int getInt( Entity e, int field )
+    {
+        return getColumn( e ).getInt( e.row, field );
+    }
+
+    /**
+     * Sets the int field of the value on the given entity.
+     * 
+     * @param e
+     *        The entity to set the value of.
+     * @param field
+     *        The offset of the field in the layout.
+     * @param value
+     *        The new value of the field.
+     */
+    public void setInt( Entity e, int field, int value )
+    {
+        getColumn( e ).setInt( e.row, field, value );
+
+        if (changes != null)
+        {
+            changes.mark( e );
+        }
+    }
+
+    /**
+     * Returns the long field of the value on the given entity.
+     * 
+     * @param e
+     *        The entity to get the value of.
+     * @param field
+     *        The offset of the field in the layout.
+     * @return The value of the field.
+     */
+    public long getLong( Entity e, int field )
+    {
+        return getColumn( e ).getLong( e.row, field );
+    }
+
+    /**
+     * Sets the long field of the value on the given entity.
+     * 
+     * @param e
+     *        The entity to set the value of.
+     * @param field
+     *        The offset of the field in the layout.
+     * @param value
+     *        The new value of the field.
+     */
+    public void setLong( Entity e, int field, long value )
+    {
+        getColumn( e ).setLong( e.row, field, value );
+
+        if (changes != null)
+        {
+            changes.mark( e );
+        }
+    }
+
+    @Override
+    protected void postCustomAdd( Entity e, Template template, TemplateComponent<?> templateComponent )
+    {
+        ComponentColumn.addStorageRow( e, template );
+    }
+
+    @Override
+    public boolean hasDistinctValues()
+    {
+        return true;
+    }
+
+    @Override
+    protected TemplateComponent<T> add( Template template )
+    {
+        ColumnDirect<T> column = new ColumnDirect<T>( this, layout );
+
+        template.getStorage( true ).addColumn( column );
+
+        return new ComponentDirectHandler( column );
+    }
+
+    private class ComponentDirectHandler implements TemplateComponent<T>
+    {
+
+        private final ColumnDirect<T> column;
+
+        private ComponentDirectHandler( ColumnDirect<T> column )
+        {
+            this.column = column;
+        }
+
+        @Override
+        public void set( Entity e, T value )
+        {
+            column.set( e.row, value );
+        }
+
+        @Override
+        public T get( Entity e )
+        {
+            return column.hold( e.row );
+        }
+
+        @Override
+        public T take( Entity e, T target )
+        {
+            return column.get( e.row, target );
+        }
+
+        @Override
+        public void remove( Template template )
+        {
+            template.storage.removeColumn( column );
+        }
+
+        @Override
+        public void postAdd( Entity e )
+        {
+
+        }
+
+        @Override
+        public void preRemove( Entity e )
+        {
+
+        }
+    }
+
+}
@@ -72,6 +72,21 @@ class ComponentDistinct<T> extends Component<T>
         e.values[handler.componentIndex] = factory.create();
     }
 
+    @Override
+    protected void moveValue( Template from, Object[] fromValues, Template to, Object[] toValues )
+    {
+        final ComponentValuedHandler source = (ComponentValuedHandler)from.handlers[id];
+        final ComponentValuedHandler target = (ComponentValuedHandler)to.handlers[id];
+
+        toValues[target.componentIndex] = fromValues[source.componentIndex];
+    }
+
+    @Override
+    public boolean hasDistinctValues()
+    {
+        return true;
+    }
+
     @Override
     protected TemplateComponent<T> add( Template template )
     {
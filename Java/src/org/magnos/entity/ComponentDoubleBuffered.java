@@ -0,0 +1,288 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+
+
+/**
+ * A component where every entity has two distinct values, the read value which
+ * is the state of the previous tick and the write value which is the state of
+ * the next tick. Controllers read the stable read value and write the write
+ * value, so controllers which run in parallel or in any order see the same
+ * state. At the end of a tick {@link #flip()} swaps which value is read and
+ * which is written for every entity at once, and then copies each new read
+ * value into the write value, so an entity which isn't written in a tick keeps
+ * it's value and a controller can write only part of a value. <br/>
+ * <br/>
+ * Unlike other components, {@link Entity#get(Component)} returns the read
+ * value and {@link Entity#set(Component, Object)} sets the write value, so a
+ * value set on an entity is not seen through get until the next flip. The
+ * values are initialized with {@link #reset(Entity, Object)}, which copies the
+ * given value into both values with
+ * {@link ComponentValueFactory#copy(Object, Object)}.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The component value type.
+ */
+@SuppressWarnings ("unchecked" )
+public class ComponentDoubleBuffered<T> extends Component<T>
+{
+
+    /**
+     * The factory that creates the values on the entity and also handles
+     * cloning and copying values.
+     */
+    private final ComponentValueFactory<T> factory;
+
+    /**
+     * Which of the two values of an entity is read, the other is written.
+     */
+    protected int parity;
+
+    /**
+     * Instantiates a ComponentDoubleBuffered.
+     * 
+     * @param id
+     *        The id of the component.
+     * @param name
+     *        The name of the component.
+     * @param factory
+     *        The factory used to create, clone, and copy values.
+     */
+    protected ComponentDoubleBuffered( int id, String name, ComponentValueFactory<T> factory )
+    {
+        super( id, name );
+
+        this.factory = factory;
+    }
+
+    /**
+     * Swaps the read and write values of every entity, the values written
+     * become the values read. The new read value of every live entity with
+     * this component is then copied into it's write value.
+     */
+    public void flip()
+    {
+        parity ^= 1;
+
+        final int read = parity;
+        final int write = parity ^ 1;
+
+        for (int i = 0; i < Ents.liveCount; i++)
+        {
+            final Template template = Ents.live[i];
+
+            if (template.hasExact( this ))
+            {
+                final int index = ((DoubleBufferedHandler)template.handlers[id]).componentIndex;
+                final Entity[] instances = template.instanceArray;
+
+                for (int j = 0; j < template.instances; j++)
+                {
+                    final Object[] values = instances[j].values;
+
+                    values[index + write] = factory.copy( (T)values[index + read], (T)values[index + write] );
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Which of the two values of an entity is currently read, 0 or 1.
+     */
+    public int getParity()
+    {
+        return parity;
+    }
+
+    /**
+     * Returns the read value of the given entity, which is the state of the
+     * previous tick. This value should not be modified.
+     * 
+     * @param e
+     *        The entity to get the value of.
+     * @return The read value of the entity.
+     */
+    public T getRead( Entity e )
+    {
+        return (T)e.values[getHandler( e ).componentIndex + parity];
+    }
+
+    /**
+     * Returns the write value of the given entity, which is the state of the
+     * next tick.
+     * 
+     * @param e
+     *        The entity to get the value of.
+     * @return The write value of the entity.
+     */
+    public T getWrite( Entity e )
+    {
+        return (T)e.values[getHandler( e ).componentIndex + (parity ^ 1)];
+    }
+
+    /**
+     * Sets the write value of the given entity.
+     * 
+     * @param e
+     *        The entity to set the value of.
+     * @param value
+     *        The state of the next tick.
+     */
+    public void setWrite( Entity e, T value )
+    {
+        e.values[getHandler( e ).componentIndex + (parity ^ 1)] = value;
+    }
+
+    /**
+     * Copies the given value into both the read and write value of the given
+     * entity.
+     * 
+     * @param e
+     *        The entity to reset.
+     * @param value
+     *        The value to copy.
+     */
+    public void reset( Entity e, T value )
+    {
+        final Object[] values = e.values;
+        final int index = getHandler( e ).componentIndex;
+
+        values[index] = factory.copy( value, (T)values[index] );
+        values[index + 1] = factory.copy( value, (T)values[index + 1] );
+    }
+
+    /**
+     * Copies the read value of the given entity to it's write value, which
+     * discards what was written to the entity since the last flip.
+     * 
+     * @param e
+     *        The entity to copy the read value of.
+     */
+    public void carry( Entity e )
+    {
+        final Object[] values = e.values;
+        final int index = getHandler( e ).componentIndex;
+
+        values[index + (parity ^ 1)] = factory.copy( (T)values[index + parity], (T)values[index + (parity ^ 1)] );
+    }
+
+    @Override
+    protected void postCustomAdd( Entity e, Template template, TemplateComponent<?> templateComponent )
+    {
+        final DoubleBufferedHandler handler = (DoubleBufferedHandler)templateComponent;
+        final int index = handler.componentIndex;
+
+        if (index + 1 >= e.values.length)
+        {
+            e.values = Arrays.copyOf( e.values, index + 2 );
+        }
+
+        e.values[index] = factory.create();
+        e.values[index + 1] = factory.copy( (T)e.values[index], factory.create() );
+    }
+
+    @Override
+    protected void moveValue( Template from, Object[] fromValues, Template to, Object[] toValues )
+    {
+        final DoubleBufferedHandler source = (DoubleBufferedHandler)from.handlers[id];
+        final DoubleBufferedHandler target = (DoubleBufferedHandler)to.handlers[id];
+
+        toValues[target.componentIndex] = fromValues[source.componentIndex];
+        toValues[target.componentIndex + 1] = fromValues[source.componentIndex + 1];
+    }
+
+    @Override
+    public boolean hasDistinctValues()
+    {
+        return true;
+    }
+
+    /**
+     * Adds two adjacent factories to the template, one for each value of an
+     * entity.
+     */
+    @Override
+    protected TemplateComponent<T> add( Template template )
+    {
+        final int index = template.factories.length;
+
+        template.factories = Arrays.copyOf( template.factories, index + 2 );
+        template.factories[index] = factory;
+        template.factories[index + 1] = factory;
+
+        return new DoubleBufferedHandler( index );
+    }
+
+    private DoubleBufferedHandler getHandler( Entity e )
+    {
+        return (DoubleBufferedHandler)e.template.handlers[id];
+    }
+
+    private class DoubleBufferedHandler implements TemplateComponent<T>
+    {
+
+        private final int componentIndex;
+
+        private DoubleBufferedHandler( int componentIndex )
+        {
+            this.componentIndex = componentIndex;
+        }
+
+        @Override
+        public void set( Entity e, T value )
+        {
+            e.values[componentIndex + (parity ^ 1)] = value;
+        }
+
+        @Override
+        public T get( Entity e )
+        {
+            return (T)e.values[componentIndex + parity];
+        }
+
+        @Override
+        public T take( Entity e, T target )
+        {
+            return factory.copy( (T)e.values[componentIndex + parity], target );
+        }
+
+        @Override
+        public void remove( Template template )
+        {
+            template.factories[componentIndex] = null;
+            template.factories[componentIndex + 1] = null;
+        }
+
+        @Override
+        public void postAdd( Entity e )
+        {
+
+        }
+
+        @Override
+        public void preRemove( Entity e )
+        {
+
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+/**
+ * A component that stores a primitive int value for each entity in a
+ * {@link ColumnInt} in the {@link TemplateStorage} of the Template. The value
+ * can be accessed without allocation through {@link #getInt(Entity)} and
+ * {@link #setInt(Entity, int)}, {@link Entity#get(Component)} and
+ * {@link Entity#set(Component, Object)} still work but box the value. <br/>
+ * <br/>
+ * The primitive accessors may only be used on entities that have this exact
+ * component, an alternative will result in a {@link ClassCastException}.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class ComponentInt extends Component<Integer>
+{
+
+    /**
+     * The value given to an entity when it's created.
+     */
+    protected final int defaultValue;
+
+    /**
+     * Instantiates a ComponentInt.
+     * 
+     * @param id
+     *        The id of the component.
+     * @param name
+     *        The name of the component.
+     * @param defaultValue
+     *        The value given to an entity when it's created.
+     */
+    protected ComponentInt( int id, String name, int defaultValue )
+    {
+        super( id, name );
+
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * Returns the value of this component on the given entity.
+     * 
+     * @param e
+     *        The entity to get the value of.
+     * @return The value of this component on the entity.
+     */
+    public int getInt( Entity e )
+    {
+        return ((ComponentIntHandler)e.template.handlers[id]).column.get( e.row );
+    }
+
+    /**
+     * Sets the value of this component on the given entity.
+     * 
+     * @param e
+     *        The entity to set the value of.
+     * @param value
+     *        The new value of this component on the entity.
+     */
+    public void setInt( Entity e, int value )
+    {
+        ((ComponentIntHandler)e.template.handlers[id]).column.set( e.row, value );
+
+        if (changes != null)
+        {
+            changes.mark( e );
+        }
+    }
+
+    /**
+     * @return The value given to an entity when it's created.
+     */
+    public int getDefault()
+    {
+        return defaultValue;
+    }
+
+    @Override
+    protected void postCustomAdd( Entity e, Template template, TemplateComponent<?> templateComponent )
+    {
+        ComponentColumn.addStorageRow( e, template );
+    }
+
+    @Override
+    public boolean hasDistinctValues()
+    {
+        return true;
+    }
+
+    @Override
+    protected TemplateComponent<Integer> add( Template template )
+    {
+        ColumnInt column = new ColumnInt( this, defaultValue );
+
+        template.getStorage( true ).addColumn( column );
+
+        return new ComponentIntHandler( column );
+    }
+
+    private class ComponentIntHandler implements TemplateComponent<Integer>
+    {
+
+        private final ColumnInt column;
+
+        private ComponentIntHandler( ColumnInt column )
+        {
+            this.column = column;
+        }
+
+        @Override
+        public void set( Entity e, Integer value )
+        {
+            column.set( e.row, value );
+        }
+
+        @Override
+        public Integer get( Entity e )
+        {
+            return column.get( e.row );
+        }
+
+        @Override
+        public Integer take( Entity e, Integer target )
+        {
+            return column.get( e.row );
+        }
+
+        @Override
+        public void remove( Template template )
+        {
+            template.storage.removeColumn( column );
+        }
+
+        @Override
+        public void postAdd( Entity e )
+        {
+
+        }
+
+        @Override
+        public void preRemove( Entity e )
+        {
+
+        }
+    }
+
+}
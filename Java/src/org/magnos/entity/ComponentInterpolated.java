@@ -0,0 +1,278 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+
+
+/**
+ * A component which remembers the value each entity had at the start of the
+ * current step, so an entity can be drawn between the previous and current
+ * step without the controllers keeping a copy of the value. <br/>
+ * <br/>
+ * {@link Entity#get(Component)} and {@link Entity#set(Component, Object)}
+ * access the current value like any other component. The current value of
+ * every entity is copied to it's previous value by {@link #store()}, which
+ * {@link FixedTimestep} does at the start of every step. An entity is not
+ * interpolated until the first store after it's created, so the values it's
+ * given when it's spawned are not interpolated from the default value. When
+ * an entity jumps to a value (like a teleport) and shouldn't be interpolated,
+ * {@link #settle(Entity)} replaces the previous value with the current one.
+ * 
+ * @author Philip Diffenderfer
+ * @see FixedTimestep
+ * 
+ * @param <T>
+ *        The component value type.
+ */
+@SuppressWarnings ("unchecked" )
+public class ComponentInterpolated<T> extends Component<T>
+{
+
+    /**
+     * The factory that creates the values on the entity and also handles
+     * cloning and copying values.
+     */
+    private final ComponentValueFactory<T> factory;
+
+    /**
+     * The interpolator between the previous and current values.
+     */
+    private final ComponentValueInterpolator<T> interpolator;
+
+    /**
+     * Instantiates a ComponentInterpolated.
+     * 
+     * @param id
+     *        The id of the component.
+     * @param name
+     *        The name of the component.
+     * @param factory
+     *        The factory used to create, clone, and copy values.
+     * @param interpolator
+     *        The interpolator between the previous and current values.
+     */
+    protected ComponentInterpolated( int id, String name, ComponentValueFactory<T> factory, ComponentValueInterpolator<T> interpolator )
+    {
+        super( id, name );
+
+        this.factory = factory;
+        this.interpolator = interpolator;
+    }
+
+    /**
+     * Copies the current value of every live entity with this component to
+     * it's previous value.
+     * 
+     * @see Ents#storeInterpolated()
+     */
+    public void store()
+    {
+        for (int i = 0; i < Ents.liveCount; i++)
+        {
+            final Template template = Ents.live[i];
+
+            if (template.hasExact( this ))
+            {
+                final int index = ((InterpolatedHandler)template.handlers[id]).componentIndex;
+                final Entity[] instances = template.instanceArray;
+
+                for (int j = 0; j < template.instances; j++)
+                {
+                    final Object[] values = instances[j].values;
+                    final T current = (T)values[index];
+                    final T previous = (T)values[index + 1];
+
+                    values[index + 1] = (previous == current ? factory.clone( current ) : factory.copy( current, previous ));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the value the given entity had at the start of the current step,
+     * which is the current value if the entity hasn't been stored since it was
+     * created. This value should not be modified.
+     * 
+     * @param e
+     *        The entity to get the value of.
+     * @return The previous value of the entity.
+     */
+    public T getPrevious( Entity e )
+    {
+        return (T)e.values[getHandler( e ).componentIndex + 1];
+    }
+
+    /**
+     * Sets target to the value of the given entity between the previous and
+     * current value.
+     * 
+     * @param e
+     *        The entity to interpolate the value of.
+     * @param alpha
+     *        The delta between the previous value (0) and the current value
+     *        (1), see {@link FixedTimestep#getAlpha()}.
+     * @param target
+     *        The value to set.
+     * @return The reference to target.
+     */
+    public T interpolate( Entity e, float alpha, T target )
+    {
+        final Object[] values = e.values;
+        final int index = getHandler( e ).componentIndex;
+
+        return interpolator.interpolate( (T)values[index + 1], (T)values[index], alpha, target );
+    }
+
+    /**
+     * Replaces the previous value of the given entity with it's current value,
+     * so the entity is not interpolated until the next step.
+     * 
+     * @param e
+     *        The entity to settle.
+     */
+    public void settle( Entity e )
+    {
+        final Object[] values = e.values;
+        final int index = getHandler( e ).componentIndex;
+
+        if (values[index + 1] != values[index])
+        {
+            values[index + 1] = factory.copy( (T)values[index], (T)values[index + 1] );
+        }
+    }
+
+    /**
+     * @return The interpolator between the previous and current values.
+     */
+    public ComponentValueInterpolator<T> getInterpolator()
+    {
+        return interpolator;
+    }
+
+    @Override
+    protected void postCustomAdd( Entity e, Template template, TemplateComponent<?> templateComponent )
+    {
+        final InterpolatedHandler handler = (InterpolatedHandler)templateComponent;
+        final int index = handler.componentIndex;
+
+        if (index + 1 >= e.values.length)
+        {
+            e.values = Arrays.copyOf( e.values, index + 2 );
+        }
+
+        e.values[index] = factory.create();
+        e.values[index + 1] = factory.create();
+    }
+
+    @Override
+    protected void moveValue( Template from, Object[] fromValues, Template to, Object[] toValues )
+    {
+        final InterpolatedHandler source = (InterpolatedHandler)from.handlers[id];
+        final InterpolatedHandler target = (InterpolatedHandler)to.handlers[id];
+
+        toValues[target.componentIndex] = fromValues[source.componentIndex];
+        toValues[target.componentIndex + 1] = fromValues[source.componentIndex + 1];
+    }
+
+    @Override
+    public boolean hasDistinctValues()
+    {
+        return true;
+    }
+
+    /**
+     * Adds two adjacent factories to the template, one for the current value
+     * and one for the previous value of an entity.
+     */
+    @Override
+    protected TemplateComponent<T> add( Template template )
+    {
+        final int index = template.factories.length;
+
+        template.factories = Arrays.copyOf( template.factories, index + 2 );
+        template.factories[index] = factory;
+        template.factories[index + 1] = factory;
+
+        return new InterpolatedHandler( index );
+    }
+
+    private InterpolatedHandler getHandler( Entity e )
+    {
+        return (InterpolatedHandler)e.template.handlers[id];
+    }
+
+    private class InterpolatedHandler implements TemplateComponent<T>
+    {
+
+        private final int componentIndex;
+
+        private InterpolatedHandler( int componentIndex )
+        {
+            this.componentIndex = componentIndex;
+        }
+
+        @Override
+        public void set( Entity e, T value )
+        {
+            final Object[] values = e.values;
+
+            // The previous value of an entity which hasn't been stored follows the current value.
+            if (values[componentIndex + 1] == values[componentIndex])
+            {
+                values[componentIndex + 1] = value;
+            }
+
+            values[componentIndex] = value;
+        }
+
+        @Override
+        public T get( Entity e )
+        {
+            return (T)e.values[componentIndex];
+        }
+
+        @Override
+        public T take( Entity e, T target )
+        {
+            return factory.copy( (T)e.values[componentIndex], target );
+        }
+
+        @Override
+        public void remove( Template template )
+        {
+            template.factories[componentIndex] = null;
+            template.factories[componentIndex + 1] = null;
+        }
+
+        @Override
+        public void postAdd( Entity e )
+        {
+            final Object[] values = e.values;
+
+            // Until the entity is stored the previous value is the current value.
+            values[componentIndex + 1] = values[componentIndex];
+        }
+
+        @Override
+        public void preRemove( Entity e )
+        {
+
+        }
+    }
+
+}
@@ -111,6 +111,21 @@ public class ComponentPooled<T> extends Component<T>
         e.values[handler.componentIndex] = pool.pop();
     }
 
+    @Override
+    protected void moveValue( Template from, Object[] fromValues, Template to, Object[] toValues )
+    {
+        final ComponentPooledHandler source = (ComponentPooledHandler)from.handlers[id];
+        final ComponentPooledHandler target = (ComponentPooledHandler)to.handlers[id];
+
+        toValues[target.componentIndex] = fromValues[source.componentIndex];
+    }
+
+    @Override
+    public boolean hasDistinctValues()
+    {
+        return true;
+    }
+
     /**
      * @return The pool that handles creating and reusing values.
      */
@@ -159,14 +174,18 @@ public class ComponentPooled<T> extends Component<T>
         {
             T existing = (T)e.values[componentIndex];
 
-            // If the existing value is non-null, not equal to the new value, and has not been recycled yet...
-            if (existing != null && existing != value && !recycled.get( e.id ))
+            // The pool and recycled flags are shared by entities updated in parallel.
+            synchronized (ComponentPooled.this)
             {
-                // Give it back to the component for future use.
-                pool.push( existing );
-
-                // Mark the value as recycled.
-                recycled.set( e.id, true );
+                // If the existing value is non-null, not equal to the new value, and has not been recycled yet...
+                if (existing != null && existing != value && !recycled.get( e.id ))
+                {
+                    // Give it back to the component for future use.
+                    pool.push( existing );
+
+                    // Mark the value as recycled.
+                    recycled.set( e.id, true );
+                }
             }
 
             e.values[componentIndex] = value;
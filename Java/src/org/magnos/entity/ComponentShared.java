@@ -65,6 +65,18 @@ class ComponentShared<T> extends Component<T>
         return new ComponentSharedHandler( factory.create() );
     }
 
+    @Override
+    protected boolean isInterchangeable( Template a, Template b )
+    {
+        return ((ComponentShared<?>.ComponentSharedHandler)a.handlers[id]).value == ((ComponentShared<?>.ComponentSharedHandler)b.handlers[id]).value;
+    }
+
+    @Override
+    protected boolean hasTemplateValue()
+    {
+        return true;
+    }
+
     private class ComponentSharedHandler implements TemplateComponent<T>
     {
 
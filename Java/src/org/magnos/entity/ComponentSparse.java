@@ -0,0 +1,378 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+
+
+/**
+ * A component whose values are stored in a sparse set in the component itself
+ * keyed by entity id, instead of in the entity or the entity's
+ * {@link Template}. Adding this component to an entity with
+ * {@link Entity#add(Component)} or removing it with
+ * {@link Entity#remove(Component)} is O(1) and doesn't change the template of
+ * the entity, which makes this component ideal for state which comes and goes
+ * often (stunned, on fire, selected, etc). {@link Entity#has(Component)},
+ * {@link Entity#get(Component)}, and {@link Entity#set(Component, Object)} work
+ * the same as they do for any other component. <br/>
+ * <br/>
+ * The entities which have this component are packed densely, so they can be
+ * iterated with {@link #size()}, {@link #getEntity(int)}, and
+ * {@link #getValue(int)} without visiting the entities that don't. Since the
+ * component is not in the template of entities which were given it
+ * dynamically, entities are filtered by it with
+ * {@link org.magnos.entity.filters.Filters#sparse(ComponentSparse...)}, and
+ * {@link EntitySet}s are refreshed when it's attached or detached. <br/>
+ * <br/>
+ * If this component is part of a template every entity created with the
+ * template is given it, but it can't be removed from those entities.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The component value type.
+ */
+@SuppressWarnings ("unchecked" )
+public class ComponentSparse<T> extends Component<T>
+{
+
+    /**
+     * The factory that creates the value of an entity when it's given this
+     * component.
+     */
+    private final ComponentValueFactory<T> factory;
+
+    /**
+     * The handler of this component, for all templates and entities.
+     */
+    protected final ComponentSparseHandler handler;
+
+    /**
+     * The index into the dense arrays of each entity id. An index is only
+     * valid when it's less than size and the entity at the index has the id.
+     */
+    protected int[] sparse = {};
+
+    /**
+     * The entities that have this component and their values.
+     */
+    protected Entity[] entities = {};
+    protected Object[] values = {};
+    protected int size;
+
+    /**
+     * Instantiates a ComponentSparse.
+     * 
+     * @param id
+     *        The id of the component.
+     * @param name
+     *        The name of the component.
+     * @param factory
+     *        The factory used to create and clone values.
+     */
+    protected ComponentSparse( int id, String name, ComponentValueFactory<T> factory )
+    {
+        super( id, name );
+
+        this.factory = factory;
+        this.handler = new ComponentSparseHandler();
+    }
+
+    @Override
+    protected TemplateComponent<T> add( Template template )
+    {
+        return handler;
+    }
+
+    @Override
+    protected void postCustomAdd( Entity e, Template template, TemplateComponent<?> templateComponent )
+    {
+
+    }
+
+    @Override
+    public boolean hasDistinctValues()
+    {
+        return true;
+    }
+
+    /**
+     * Determines whether the given entity has this component.
+     * 
+     * @param e
+     *        The entity to test.
+     * @return True if the entity has this component, otherwise false.
+     */
+    public boolean has( Entity e )
+    {
+        return indexOf( e ) != -1;
+    }
+
+    /**
+     * Returns the value of this component on the given entity.
+     * 
+     * @param e
+     *        The entity to get the value of.
+     * @return The value of the entity, or null if it doesn't have this
+     *         component.
+     */
+    public T get( Entity e )
+    {
+        final int i = indexOf( e );
+
+        return (i == -1 ? null : (T)values[i]);
+    }
+
+    /**
+     * Sets the value of this component on the given entity, the entity is
+     * given this component if it doesn't have it already.
+     * 
+     * @param e
+     *        The entity to set the value of.
+     * @param value
+     *        The new value of this component on the entity.
+     */
+    public void set( Entity e, T value )
+    {
+        int i = indexOf( e );
+
+        if (i == -1)
+        {
+            i = insert( e );
+            values[i] = value;
+
+            Ents.refreshSets( e );
+        }
+        else
+        {
+            values[i] = value;
+        }
+    }
+
+    /**
+     * Gives this component to the given entity with a default value, if the
+     * entity doesn't have it already.
+     * 
+     * @param e
+     *        The entity to give this component to.
+     * @return True if the entity was given this component, false if it
+     *         already had it.
+     */
+    public boolean attach( Entity e )
+    {
+        if (indexOf( e ) != -1)
+        {
+            return false;
+        }
+
+        final int i = insert( e );
+
+        values[i] = factory.create();
+
+        Ents.refreshSets( e );
+
+        return true;
+    }
+
+    /**
+     * Removes this component from the given entity, the last entity with this
+     * component takes it's place.
+     * 
+     * @param e
+     *        The entity to remove this component from.
+     * @return True if the entity had this component, otherwise false.
+     */
+    public boolean detach( Entity e )
+    {
+        final int i = indexOf( e );
+
+        if (i == -1)
+        {
+            return false;
+        }
+
+        final Entity last = entities[--size];
+
+        entities[i] = last;
+        values[i] = values[size];
+        sparse[last.id] = i;
+
+        entities[size] = null;
+        values[size] = null;
+
+        Ents.refreshSets( e );
+
+        return true;
+    }
+
+    /**
+     * Removes this component from all entities.
+     */
+    public void clear()
+    {
+        Arrays.fill( entities, 0, size, null );
+        Arrays.fill( values, 0, size, null );
+
+        size = 0;
+    }
+
+    /**
+     * @return The number of entities that have this component.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the entity at the given index, the order of entities changes as
+     * they're removed from this component.
+     * 
+     * @param index
+     *        The index of the entity, between 0 and {@link #size()}.
+     * @return The reference to the entity.
+     */
+    public Entity getEntity( int index )
+    {
+        return entities[index];
+    }
+
+    /**
+     * Returns the value of the entity at the given index.
+     * 
+     * @param index
+     *        The index of the entity, between 0 and {@link #size()}.
+     * @return The value of the entity at the index.
+     */
+    public T getValue( int index )
+    {
+        return (T)values[index];
+    }
+
+    /**
+     * Copies the value of this component on one entity to another entity,
+     * optionally cloning the value.
+     * 
+     * @param from
+     *        The entity to copy the value from.
+     * @param to
+     *        The entity to copy the value to.
+     * @param deep
+     *        True if the value should be cloned, false if the reference should
+     *        be copied.
+     * @return True if the entity to copy from had this component.
+     */
+    protected boolean copy( Entity from, Entity to, boolean deep )
+    {
+        final int i = indexOf( from );
+
+        if (i != -1)
+        {
+            final T value = (T)values[i];
+
+            set( to, deep ? factory.clone( value ) : value );
+        }
+
+        return (i != -1);
+    }
+
+    /**
+     * Returns the index of the given entity into the dense arrays.
+     * 
+     * @param e
+     *        The entity to find.
+     * @return The index of the entity, or -1 if it doesn't have this
+     *         component.
+     */
+    protected int indexOf( Entity e )
+    {
+        final int id = e.id;
+
+        if (id < sparse.length)
+        {
+            final int i = sparse[id];
+
+            if (i < size && entities[i] == e)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private int insert( Entity e )
+    {
+        if (e.id >= sparse.length)
+        {
+            sparse = Arrays.copyOf( sparse, Math.max( e.id + 1, sparse.length + (sparse.length >> 1) + 16 ) );
+        }
+
+        if (size == entities.length)
+        {
+            entities = Arrays.copyOf( entities, size + (size >> 1) + 16 );
+            values = Arrays.copyOf( values, entities.length );
+        }
+
+        sparse[e.id] = size;
+        entities[size] = e;
+
+        return size++;
+    }
+
+    protected class ComponentSparseHandler implements TemplateComponent<T>
+    {
+
+        @Override
+        public void set( Entity e, T value )
+        {
+            ComponentSparse.this.set( e, value );
+        }
+
+        @Override
+        public T get( Entity e )
+        {
+            return ComponentSparse.this.get( e );
+        }
+
+        @Override
+        public T take( Entity e, T target )
+        {
+            return factory.copy( ComponentSparse.this.get( e ), target );
+        }
+
+        @Override
+        public void remove( Template template )
+        {
+
+        }
+
+        @Override
+        public void postAdd( Entity e )
+        {
+            attach( e );
+        }
+
+        @Override
+        public void preRemove( Entity e )
+        {
+            detach( e );
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity;
+
+/**
+ * Interpolates between two values of a component, typically the value of the
+ * previous step and the value of the current step.
+ * 
+ * @author Philip Diffenderfer
+ * @see ComponentInterpolated
+ * 
+ * @param <T>
+ *        The component value type.
+ */
+public interface ComponentValueInterpolator<T>
+{
+
+    /**
+     * Sets target to the value between start and end at the given delta and
+     * returns the reference to target.
+     * 
+     * @param start
+     *        The value at a delta of 0.
+     * @param end
+     *        The value at a delta of 1.
+     * @param delta
+     *        The delta between start and end, typically between 0 and 1.
+     * @param target
+     *        The value to set.
+     * @return The reference to target.
+     */
+    public T interpolate( T start, T end, float delta, T target );
+
+}
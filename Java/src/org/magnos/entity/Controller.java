@@ -16,6 +16,9 @@
 
 package org.magnos.entity;
 
+import org.magnos.entity.util.BitSet;
+
+
 /**
  * A controller is something that updates the state of an {@link Entity} every
  * time {@link Entity#update(Object)} is called. An Entity can have many
@@ -31,6 +34,17 @@ package org.magnos.entity;
  * <li>Emit Particles</li>
  * <li>Record / Replay Entity</li>
  * </ul>
+ * A controller can declare which components it reads and writes with
+ * {@link #reads(Component...)} and {@link #writes(Component...)}, this is
+ * used to determine which entities can be updated in parallel. A controller
+ * can also declare which controllers it runs before and after with
+ * {@link #before(Controller...)} and {@link #after(Controller...)}, this is
+ * used by the {@link ControllerScheduler}. <br/>
+ * <br/>
+ * A controller which declares trigger components with
+ * {@link #triggers(Component...)} is reactive, it only runs for an entity when
+ * the value of a trigger has changed on the entity since the controller last
+ * ran for it (see {@link ReactiveControl}).
  * 
  * @author Philip Diffenderfer
  * 
@@ -39,10 +53,49 @@ public class Controller extends Id
 {
 
     /**
-     * The Control implementation to invoke for this Controller.
+     * The Control implementation to invoke for this Controller. Templates
+     * cache the Control of each of their controllers in their plans, so this
+     * should be changed with {@link #setControl(Control)} while the controller
+     * is in use.
      */
     public Control control;
 
+    /**
+     * The ids of the components read by this controller, or null if the
+     * controller hasn't declared what it reads.
+     */
+    protected BitSet reads;
+
+    /**
+     * The ids of the components written by this controller, or null if the
+     * controller hasn't declared what it writes.
+     */
+    protected BitSet writes;
+
+    /**
+     * The ids of the controllers this controller must run before, or null if
+     * none were declared.
+     */
+    protected BitSet before;
+
+    /**
+     * The ids of the controllers this controller must run after, or null if
+     * none were declared.
+     */
+    protected BitSet after;
+
+    /**
+     * The ids of the components which trigger this controller, or null if this
+     * controller runs every update.
+     */
+    protected BitSet triggers;
+
+    /**
+     * The control invoked in place of {@link #control} when this controller
+     * is reactive, otherwise null.
+     */
+    protected ReactiveControl reactive;
+
     /**
      * Instantiates a new Controller.
      * 
@@ -60,4 +113,247 @@ public class Controller extends Id
         this.control = control;
     }
 
+    /**
+     * Sets the {@link Control} implementation to invoke for this Controller,
+     * the plans of templates with this controller are rebuilt before they're
+     * next used (see {@link Template#getPlan()}).
+     * 
+     * @param control
+     *        The new control of this controller.
+     * @return The reference to this Controller.
+     */
+    public Controller setControl( Control control )
+    {
+        this.control = control;
+
+        Ents.controlModifications++;
+
+        return this;
+    }
+
+    /**
+     * Declares the components this controller reads. Any component read by the
+     * controller which is not declared could be read while another thread is
+     * writing to it.
+     * 
+     * @param components
+     *        The components read by this controller.
+     * @return The reference to this Controller.
+     */
+    public Controller reads( Component<?>... components )
+    {
+        reads = declare( reads, components );
+
+        return this;
+    }
+
+    /**
+     * Declares the components this controller writes (sets or modifies). Once
+     * declared, an entity whose controllers only write to components that
+     * have distinct values (see {@link Component#hasDistinctValues()}) can
+     * be updated in parallel with other entities.
+     * 
+     * @param components
+     *        The components written by this controller.
+     * @return The reference to this Controller.
+     */
+    public Controller writes( Component<?>... components )
+    {
+        writes = declare( writes, components );
+
+        return this;
+    }
+
+    /**
+     * Declares the controllers this controller must run before when scheduled
+     * by a {@link ControllerScheduler}.
+     * 
+     * @param controllers
+     *        The controllers that run after this controller.
+     * @return The reference to this Controller.
+     */
+    public Controller before( Controller... controllers )
+    {
+        before = declare( before, controllers );
+
+        return this;
+    }
+
+    /**
+     * Declares the controllers this controller must run after when scheduled
+     * by a {@link ControllerScheduler}.
+     * 
+     * @param controllers
+     *        The controllers that run before this controller.
+     * @return The reference to this Controller.
+     */
+    public Controller after( Controller... controllers )
+    {
+        after = declare( after, controllers );
+
+        return this;
+    }
+
+    /**
+     * Declares the components which trigger this controller, which makes this
+     * controller reactive. The changes to the components are tracked (see
+     * {@link Ents#track(Component)}) and this controller only runs for an
+     * entity when one of the components has changed on the entity since this
+     * controller last ran for it.
+     * 
+     * @param components
+     *        The components which trigger this controller.
+     * @return The reference to this Controller.
+     */
+    public Controller triggers( Component<?>... components )
+    {
+        triggers = declare( triggers, components );
+
+        if (reactive == null)
+        {
+            reactive = Ents.addReactiveControl( new ReactiveControl( this ) );
+        }
+
+        for (Component<?> c : components)
+        {
+            reactive.addTrigger( Ents.track( c ) );
+        }
+
+        return this;
+    }
+
+    /**
+     * @return True if this controller only runs for entities when one of it's
+     *         triggers has changed.
+     */
+    public boolean isReactive()
+    {
+        return reactive != null;
+    }
+
+    /**
+     * @return The control which runs this controller only for entities whose
+     *         triggers have changed, or null if this controller isn't
+     *         reactive.
+     */
+    public ReactiveControl getReactiveControl()
+    {
+        return reactive;
+    }
+
+    /**
+     * @return The {@link Control} templates invoke for this controller, which
+     *         is the reactive control if this controller is reactive.
+     */
+    protected Control getPlannedControl()
+    {
+        return (reactive != null ? reactive : control);
+    }
+
+    private BitSet declare( BitSet declared, Id[] ids )
+    {
+        if (declared == null)
+        {
+            declared = new BitSet();
+        }
+
+        for (int i = 0; i < ids.length; i++)
+        {
+            declared.set( ids[i].id );
+        }
+
+        Ents.controlModifications++;
+
+        return declared;
+    }
+
+    /**
+     * Returns whether this controller must run before the given controller,
+     * either because this controller declared it runs before the given
+     * controller or the given controller declared it runs after this one.
+     * 
+     * @param other
+     *        The controller to test against.
+     * @return True if this controller must run before the given controller.
+     */
+    public boolean isBefore( Controller other )
+    {
+        return (before != null && before.get( other.id )) ||
+            (other.after != null && other.after.get( id ));
+    }
+
+    /**
+     * @return True if this controller has declared the components it writes
+     *         to, even if it declared that it writes to none.
+     */
+    public boolean isAccessDeclared()
+    {
+        return writes != null;
+    }
+
+    /**
+     * @return The ids of the components read by this controller, or null if
+     *         they haven't been declared. This should not be modified.
+     */
+    public BitSet getReads()
+    {
+        return reads;
+    }
+
+    /**
+     * @return The ids of the components written by this controller, or null if
+     *         they haven't been declared. This should not be modified.
+     */
+    public BitSet getWrites()
+    {
+        return writes;
+    }
+
+    /**
+     * Returns whether this controller and the given controller could interfere
+     * with each other if they were ran at the same time. Two controllers
+     * conflict if either writes to a component the other reads or writes, or
+     * if either has not declared the components it writes to.
+     * 
+     * @param other
+     *        The controller to test against.
+     * @return True if the controllers conflict.
+     */
+    public boolean conflicts( Controller other )
+    {
+        if (writes == null || other.writes == null)
+        {
+            return true;
+        }
+
+        return writes.intersects( other.writes ) ||
+            (other.reads != null && writes.intersects( other.reads )) ||
+            (reads != null && reads.intersects( other.writes ));
+    }
+
+    /**
+     * Returns whether this controller and the given controller could race if
+     * they were ran on different entities at the same time. They race if
+     * either reads a component the other writes to (a reader could see a value
+     * another thread is in the middle of writing), or if either has not
+     * declared the components it writes to. Unlike
+     * {@link #conflicts(Controller)}, controllers which write to the same
+     * components don't race since each entity they're ran on has a distinct
+     * value.
+     * 
+     * @param other
+     *        The controller to test against.
+     * @return True if the controllers race.
+     */
+    public boolean races( Controller other )
+    {
+        if (writes == null || other.writes == null)
+        {
+            return true;
+        }
+
+        return (other.reads != null && writes.intersects( other.reads )) ||
+            (reads != null && reads.intersects( other.writes ));
+    }
+
 }
@@ -0,0 +1,667 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+import org.magnos.entity.util.BitSet;
+
+
+/**
+ * Updates a world of entities one controller at a time instead of one entity
+ * at a time. Every tick the entities under the root are gathered into a pass
+ * for each of their enabled controllers, and the passes are ordered in a
+ * dependency graph:
+ * <ol>
+ * <li>A controller declared {@link Controller#before(Controller...)} another
+ * (or the other {@link Controller#after(Controller...)} it) always runs
+ * first.</li>
+ * <li>Controllers that conflict (see {@link Controller#conflicts(Controller)})
+ * never run at the same time, the one that comes first in the order of the
+ * declared constraints (and then controller id) runs first.</li>
+ * </ol>
+ * Passes which don't depend on each other are ran at the same time when an
+ * {@link ExecutorService} is given, otherwise every pass runs on the calling
+ * thread in order. The time each pass takes is measured and the longest chain
+ * of dependent passes (the critical path) is available after each tick. <br/>
+ * <br/>
+ * This replaces {@link Entity#update(Object)} for the entities under the root,
+ * so entity subclasses which override update and
+ * {@link EntityList#onEntityUpdated(Entity, int, Object)} are not invoked. The
+ * expired entities of every {@link EntityList} under the root are removed once
+ * every pass has finished. Controllers must not make structural changes while
+ * being ran by a scheduler with an executor.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class ControllerScheduler
+{
+
+    /**
+     * The executor which runs the passes, or null if the passes are ran on the
+     * calling thread.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The pass of every controller id encountered.
+     */
+    private Pass[] passes = {};
+
+    /**
+     * The passes of the current graph in the order of their constraints.
+     */
+    private Pass[] order = {};
+    private int orderCount;
+
+    /**
+     * The ids of the controllers in the current graph, whether the graph needs
+     * to be rebuilt, and the value of {@link Ents#controlModifications} when
+     * the graph was built.
+     */
+    private final BitSet graphIds = new BitSet();
+    private boolean graphDirty = true;
+    private int graphModifications;
+
+    /**
+     * The lists found under the root which are cleaned after every pass.
+     */
+    private EntityList[] lists = {};
+    private int listCount;
+
+    /**
+     * The critical path of the last tick and it's length in nanoseconds.
+     */
+    private Controller[] criticalPath = {};
+    private long criticalPathNanos;
+
+    /**
+     * Instantiates a ControllerScheduler which runs every pass on the calling
+     * thread.
+     */
+    public ControllerScheduler()
+    {
+        this( null );
+    }
+
+    /**
+     * Instantiates a ControllerScheduler.
+     * 
+     * @param executor
+     *        The executor which runs independent passes at the same time, or
+     *        null if every pass should run on the calling thread.
+     */
+    public ControllerScheduler( ExecutorService executor )
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Updates the given entity and every entity under it.
+     * 
+     * @param root
+     *        The root of the world to update.
+     * @param updateState
+     *        The update state to pass to the controls.
+     */
+    public void update( Entity root, Object updateState )
+    {
+        gather( root );
+
+        if (graphDirty || graphModifications != Ents.controlModifications || !hasGraphIds())
+        {
+            build();
+        }
+
+        try
+        {
+            if (executor == null || orderCount <= 1)
+            {
+                for (int i = 0; i < orderCount; i++)
+                {
+                    order[i].run( updateState );
+                }
+            }
+            else
+            {
+                runConcurrently( updateState );
+            }
+
+            measure();
+        }
+        finally
+        {
+            for (int i = 0; i < orderCount; i++)
+            {
+                order[i].clear();
+            }
+
+            for (int i = 0; i < listCount; i++)
+            {
+                lists[i].clean();
+                lists[i] = null;
+            }
+
+            listCount = 0;
+        }
+    }
+
+    /**
+     * Returns the controllers on the longest chain of dependent passes in the
+     * last tick, in the order they ran.
+     * 
+     * @return The critical path of the last tick.
+     */
+    public Controller[] getCriticalPath()
+    {
+        return criticalPath;
+    }
+
+    /**
+     * @return The time the critical path of the last tick took in
+     *         nanoseconds.
+     */
+    public long getCriticalPathNanos()
+    {
+        return criticalPathNanos;
+    }
+
+    /**
+     * Returns the time the pass of the given controller took in the last tick.
+     * 
+     * @param controller
+     *        The controller to get the time of.
+     * @return The time of the controller's pass in nanoseconds, or 0 if the
+     *         controller didn't run.
+     */
+    public long getNanos( Controller controller )
+    {
+        final int id = controller.id;
+
+        return (id < passes.length && passes[id] != null && graphIds.get( id ) ? passes[id].nanos : 0);
+    }
+
+    /**
+     * Returns the controllers of the last tick in the order of their
+     * constraints, which is the order they run in when there's no executor.
+     * 
+     * @return A new array of the controllers in the last tick.
+     */
+    public Controller[] getOrder()
+    {
+        final Controller[] controllers = new Controller[orderCount];
+
+        for (int i = 0; i < orderCount; i++)
+        {
+            controllers[i] = order[i].controllers[0];
+        }
+
+        return controllers;
+    }
+
+    /**
+     * Adds the given entity and every entity under it to the passes of their
+     * enabled controllers.
+     */
+    private void gather( Entity e )
+    {
+        if (e.isExpired())
+        {
+            return;
+        }
+
+        final int size = e.getEntitySize();
+
+        for (int i = 0; i < size; i++)
+        {
+            final Entity child = e.getEntity( i );
+
+            if (child == e)
+            {
+                gatherControllers( e );
+            }
+            else if (child != null)
+            {
+                gather( child );
+            }
+        }
+
+        if (e instanceof EntityList)
+        {
+            if (listCount == lists.length)
+            {
+                lists = Arrays.copyOf( lists, listCount + 8 );
+            }
+
+            lists[listCount++] = (EntityList)e;
+        }
+    }
+
+    private void gatherControllers( Entity e )
+    {
+        if (!e.enabled)
+        {
+            return;
+        }
+
+        final Template template = e.template;
+        final Control[] plan = template.getPlan();
+        final Controller[] controllers = template.controllers;
+
+        for (int i = 0; i < plan.length; i++)
+        {
+            if (e.controllerEnabled.get( i ))
+            {
+                getPass( controllers[i] ).add( e, plan[i] );
+            }
+        }
+    }
+
+    private Pass getPass( Controller controller )
+    {
+        final int id = controller.id;
+
+        if (id >= passes.length)
+        {
+            passes = Arrays.copyOf( passes, id + 1 );
+        }
+
+        Pass p = passes[id];
+
+        if (p == null)
+        {
+            p = passes[id] = new Pass();
+        }
+
+        if (p.count == 0)
+        {
+            graphDirty |= !graphIds.get( id );
+        }
+
+        graphDirty |= p.addController( controller );
+
+        return p;
+    }
+
+    /**
+     * Returns true if every pass in the current graph has entities, otherwise
+     * the graph must be rebuilt without the passes that don't.
+     */
+    private boolean hasGraphIds()
+    {
+        for (int i = 0; i < orderCount; i++)
+        {
+            if (order[i].count == 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Orders the passes which have entities by their declared constraints and
+     * adds an edge between every pair of passes that must run in order.
+     */
+    private void build()
+    {
+        graphIds.clear();
+
+        int n = 0;
+        final Pass[] active = new Pass[passes.length];
+
+        for (int i = 0; i < passes.length; i++)
+        {
+            final Pass p = passes[i];
+
+            if (p != null && p.count > 0)
+            {
+                active[n++] = p;
+                graphIds.set( i );
+            }
+        }
+
+        if (order.length < n)
+        {
+            order = new Pass[n];
+        }
+
+        Arrays.fill( order, null );
+        orderCount = 0;
+
+        // Order by the declared constraints, the lowest id breaks ties.
+        final boolean[] placed = new boolean[n];
+
+        while (orderCount < n)
+        {
+            int next = -1;
+
+            for (int i = 0; i < n && next == -1; i++)
+            {
+                if (placed[i])
+                {
+                    continue;
+                }
+
+                boolean ready = true;
+
+                for (int k = 0; k < n && ready; k++)
+                {
+                    ready = (placed[k] || !active[k].isBefore( active[i] ));
+                }
+
+                if (ready)
+                {
+                    next = i;
+                }
+            }
+
+            if (next == -1)
+            {
+                throw new RuntimeException( "The before and after constraints of the controllers form a cycle" );
+            }
+
+            placed[next] = true;
+            order[orderCount++] = active[next];
+        }
+
+        for (int i = 0; i < n; i++)
+        {
+            final Pass p = order[i];
+
+            p.successorCount = 0;
+            p.dependencies = 0;
+        }
+
+        for (int i = 0; i < n; i++)
+        {
+            final Pass p = order[i];
+
+            for (int k = i + 1; k < n; k++)
+            {
+                final Pass q = order[k];
+
+                if (p.isBefore( q ) || p.conflicts( q ))
+                {
+                    p.addSuccessor( q );
+                    q.dependencies++;
+                }
+            }
+        }
+
+        graphDirty = false;
+        graphModifications = Ents.controlModifications;
+    }
+
+    /**
+     * Runs the passes on the executor, a pass is submitted once every pass it
+     * depends on has finished.
+     */
+    private void runConcurrently( Object updateState )
+    {
+        final CompletionService<Pass> service = new ExecutorCompletionService<Pass>( executor );
+
+        int submitted = 0;
+        int completed = 0;
+        RuntimeException failure = null;
+
+        for (int i = 0; i < orderCount; i++)
+        {
+            final Pass p = order[i];
+
+            p.remaining = p.dependencies;
+            p.updateState = updateState;
+
+            if (p.remaining == 0)
+            {
+                service.submit( p );
+                submitted++;
+            }
+        }
+
+        while (completed < submitted)
+        {
+            Pass p = null;
+
+            try
+            {
+                p = service.take().get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+
+                throw new RuntimeException( "The scheduled update was interrupted", e );
+            }
+            catch (ExecutionException e)
+            {
+                final Throwable cause = e.getCause();
+
+                if (failure == null)
+                {
+                    failure = (cause instanceof RuntimeException ? (RuntimeException)cause : new RuntimeException( cause ));
+                }
+            }
+
+            completed++;
+
+            if (p != null && failure == null)
+            {
+                for (int i = 0; i < p.successorCount; i++)
+                {
+                    final Pass s = p.successors[i];
+
+                    if (--s.remaining == 0)
+                    {
+                        service.submit( s );
+                        submitted++;
+                    }
+                }
+            }
+        }
+
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * Finds the critical path of the passes that just ran.
+     */
+    private void measure()
+    {
+        Pass last = null;
+
+        for (int i = 0; i < orderCount; i++)
+        {
+            final Pass p = order[i];
+
+            p.critical = 0;
+            p.criticalPrevious = null;
+        }
+
+        for (int i = 0; i < orderCount; i++)
+        {
+            final Pass p = order[i];
+            final long finish = p.critical + p.nanos;
+
+            for (int k = 0; k < p.successorCount; k++)
+            {
+                final Pass s = p.successors[k];
+
+                if (finish > s.critical)
+                {
+                    s.critical = finish;
+                    s.criticalPrevious = p;
+                }
+            }
+
+            if (last == null || finish > last.critical + last.nanos)
+            {
+                last = p;
+            }
+        }
+
+        int length = 0;
+
+        for (Pass p = last; p != null; p = p.criticalPrevious)
+        {
+            length++;
+        }
+
+        if (criticalPath.length != length)
+        {
+            criticalPath = new Controller[length];
+        }
+
+        criticalPathNanos = (last == null ? 0 : last.critical + last.nanos);
+
+        for (Pass p = last; p != null; p = p.criticalPrevious)
+        {
+            criticalPath[--length] = p.controllers[0];
+        }
+    }
+
+    private static class Pass implements Callable<Pass>
+    {
+
+        // The distinct instances of the controller (alternatives share an id)
+        private Controller[] controllers = {};
+
+        private Entity[] entities = new Entity[16];
+        private Control[] controls = new Control[16];
+        private int count;
+
+        private Pass[] successors = {};
+        private int successorCount;
+        private int dependencies;
+        private int remaining;
+
+        private Object updateState;
+        private long nanos;
+        private long critical;
+        private Pass criticalPrevious;
+
+        private boolean addController( Controller controller )
+        {
+            for (int i = 0; i < controllers.length; i++)
+            {
+                if (controllers[i] == controller)
+                {
+                    return false;
+                }
+            }
+
+            controllers = Arrays.copyOf( controllers, controllers.length + 1 );
+            controllers[controllers.length - 1] = controller;
+
+            return true;
+        }
+
+        private void add( Entity e, Control control )
+        {
+            if (count == entities.length)
+            {
+                entities = Arrays.copyOf( entities, count + (count >> 1) );
+                controls = Arrays.copyOf( controls, entities.length );
+            }
+
+            entities[count] = e;
+            controls[count] = control;
+            count++;
+        }
+
+        private void addSuccessor( Pass p )
+        {
+            if (successorCount == successors.length)
+            {
+                successors = Arrays.copyOf( successors, successorCount + 4 );
+            }
+
+            successors[successorCount++] = p;
+        }
+
+        private boolean isBefore( Pass p )
+        {
+            for (int i = 0; i < controllers.length; i++)
+            {
+                for (int k = 0; k < p.controllers.length; k++)
+                {
+                    if (controllers[i].isBefore( p.controllers[k] ))
+                    {
+                        return true;
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        private boolean conflicts( Pass p )
+        {
+            for (int i = 0; i < controllers.length; i++)
+            {
+                for (int k = 0; k < p.controllers.length; k++)
+                {
+                    if (controllers[i].conflicts( p.controllers[k] ))
+                    {
+                        return true;
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        private void run( Object updateState )
+        {
+            final long start = System.nanoTime();
+
+            for (int i = 0; i < count; i++)
+            {
+                controls[i].update( entities[i], updateState );
+            }
+
+            nanos = System.nanoTime() - start;
+        }
+
+        @Override
+        public Pass call()
+        {
+            run( updateState );
+
+            return this;
+        }
+
+        private void clear()
+        {
+            Arrays.fill( entities, 0, count, null );
+            Arrays.fill( controls, 0, count, null );
+            count = 0;
+            updateState = null;
+        }
+    }
+
+}
@@ -0,0 +1,280 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Describes how a component value is laid out in direct (off-heap) memory for
+ * a component created with
+ * {@link Ents#newComponentDirect(String, DirectLayout)}. A layout is a list of
+ * primitive fields, each field is given an offset which is aligned to the size
+ * of the field. The layout also converts between the bytes and the component
+ * value type so {@link Entity#get(Component)} and
+ * {@link Entity#set(Component, Object)} keep working. <br/>
+ * <br/>
+ * Fields are declared by the implementation as it's constructed:
+ * 
+ * <pre>
+ * class VectorLayout extends DirectLayout&lt;Vector&gt;
+ * {
+ *     final int X = addFloat( &quot;x&quot; );
+ *     final int Y = addFloat( &quot;y&quot; );
+ * 
+ *     public Vector create() {
+ *         return new Vector();
+ *     }
+ *     public Vector read( ByteBuffer buffer, int offset, Vector target ) {
+ *         target.set( buffer.getFloat( offset + X ), buffer.getFloat( offset + Y ) );
+ *         return target;
+ *     }
+ *     public void write( ByteBuffer buffer, int offset, Vector value ) {
+ *         buffer.putFloat( offset + X, value.x );
+ *         buffer.putFloat( offset + Y, value.y );
+ *     }
+ * }
+ * </pre>
+ * 
+ * @author Philip Diffenderfer
+ * 
+ * @param <T>
+ *        The component value type.
+ */
+public abstract class DirectLayout<T>
+{
+
+    /**
+     * The size of the largest field, the stride of a layout is always a
+     * multiple of this so every field of every row is aligned.
+     */
+    public static final int ALIGNMENT = 8;
+
+    private String[] names = {};
+    private int[] offsets = {};
+    private int[] sizes = {};
+    private int size;
+
+    /**
+     * Returns a new value of the component type.
+     * 
+     * @return The newly created value.
+     */
+    public abstract T create();
+
+    /**
+     * Reads a value from the buffer into the given target.
+     * 
+     * @param buffer
+     *        The buffer to read from.
+     * @param offset
+     *        The offset of the value in the buffer.
+     * @param target
+     *        The value to read into.
+     * @return The reference to target.
+     */
+    public abstract T read( ByteBuffer buffer, int offset, T target );
+
+    /**
+     * Writes the given value to the buffer.
+     * 
+     * @param buffer
+     *        The buffer to write to.
+     * @param offset
+     *        The offset of the value in the buffer.
+     * @param value
+     *        The value to write.
+     */
+    public abstract void write( ByteBuffer buffer, int offset, T value );
+
+    /**
+     * Adds a byte field to this layout.
+     * 
+     * @param name
+     *        The name of the field.
+     * @return The offset of the field.
+     */
+    protected final int addByte( String name )
+    {
+        return addField( name, 1 );
+    }
+
+    /**
+     * Adds a short field to this layout.
+     * 
+     * @param name
+     *        The name of the field.
+     * @return The offset of the field.
+     */
+    protected final int addShort( String name )
+    {
+        return addField( name, 2 );
+    }
+
+    /**
+     * Adds an int field to this layout.
+     * 
+     * @param name
+     *        The name of the field.
+     * @return The offset of the field.
+     */
+    protected final int addInt( String name )
+    {
+        return addField( name, 4 );
+    }
+
+    /**
+     * Adds a float field to this layout.
+     * 
+     * @param name
+     *        The name of the field.
+     * @return The offset of the field.
+     */
+    protected final int addFloat( String name )
+    {
+        return addField( name, 4 );
+    }
+
+    /**
+     * Adds a long field to this layout.
+     * 
+     * @param name
+     *        The name of the field.
+     * @return The offset of the field.
+     */
+    protected final int addLong( String name )
+    {
+        return addField( name, 8 );
+    }
+
+    /**
+     * Adds a double field to this layout.
+     * 
+     * @param name
+     *        The name of the field.
+     * @return The offset of the field.
+     */
+    protected final int addDouble( String name )
+    {
+        return addField( name, 8 );
+    }
+
+    /**
+     * Adds a field with the given size to this layout, aligning the offset of
+     * the field to it's size.
+     * 
+     * @param name
+     *        The name of the field.
+     * @param fieldSize
+     *        The number of bytes in the field.
+     * @return The offset of the field.
+     */
+    private int addField( String name, int fieldSize )
+    {
+        if (getOffset( name ) != -1)
+        {
+            throw new RuntimeException( "The field " + name + " already exists in the layout" );
+        }
+
+        final int offset = (size + fieldSize - 1) & -fieldSize;
+        final int n = names.length;
+
+        names = Arrays.copyOf( names, n + 1 );
+        offsets = Arrays.copyOf( offsets, n + 1 );
+        sizes = Arrays.copyOf( sizes, n + 1 );
+
+        names[n] = name;
+        offsets[n] = offset;
+        sizes[n] = fieldSize;
+        size = offset + fieldSize;
+
+        return offset;
+    }
+
+    /**
+     * Returns the offset of the field with the given name.
+     * 
+     * @param name
+     *        The name of the field.
+     * @return The offset of the field, or -1 if it doesn't exist.
+     */
+    public int getOffset( String name )
+    {
+        for (int i = 0; i < names.length; i++)
+        {
+            if (names[i].equals( name ))
+            {
+                return offsets[i];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return The number of fields in this layout.
+     */
+    public int getFieldCount()
+    {
+        return names.length;
+    }
+
+    /**
+     * Returns the name of the field at the given index.
+     * 
+     * @param index
+     *        The index of the field.
+     * @return The name of the field.
+     */
+    public String getFieldName( int index )
+    {
+        return names[index];
+    }
+
+    /**
+     * Returns the size of the field at the given index in bytes.
+     * 
+     * @param index
+     *        The index of the field.
+     * @return The size of the field.
+     */
+    public int getFieldSize( int index )
+    {
+        return sizes[index];
+    }
+
+    /**
+     * @return The number of bytes used by the fields in this layout.
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return The number of bytes between values when they are stored one
+     *         after another, this is always a non-zero multiple of
+     *         {@link #ALIGNMENT}.
+     */
+    public int getStride()
+    {
+        return Math.max( ALIGNMENT, (size + ALIGNMENT - 1) & -ALIGNMENT );
+    }
+
+}
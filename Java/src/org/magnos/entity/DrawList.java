@@ -0,0 +1,312 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+
+
+/**
+ * A reusable list of what's drawn in a frame, packed into primitive arrays.
+ * Every item has the renderer which draws it, the id of the entity it was
+ * extracted from, a color, and a 2d affine transform. A DrawList is filled by
+ * {@link Entity#extract(DrawList)} at the end of an update and drawn by
+ * {@link #draw(Object)}, which only reads the list and never the entities, so
+ * it can be drawn on another thread while the next update runs (see
+ * {@link RenderPipeline}). <br/>
+ * <br/>
+ * The transform of an item is stored in {@link #getTransforms()} starting at
+ * {@link #getTransformOffset(int)} in the order m00, m10, m01, m11, m02, m12,
+ * which is the order expected by java.awt.geom.AffineTransform.
+ * 
+ * @author Philip Diffenderfer
+ * @see RendererExtracted
+ */
+public class DrawList
+{
+
+    /**
+     * The number of floats in the transform of an item.
+     */
+    public static final int TRANSFORM_SIZE = 6;
+
+    /**
+     * The renderers which draw the items, the items refer to them by index.
+     */
+    protected RendererExtracted[] renderers = {};
+    protected int rendererCount;
+
+    /**
+     * The items of the list.
+     */
+    protected int[] itemRenderers;
+    protected int[] itemEntities;
+    protected int[] itemColors;
+    protected float[] itemTransforms;
+    protected int size;
+
+    /**
+     * The frame the list was extracted for.
+     */
+    protected int frame;
+
+    /**
+     * Instantiates a new DrawList with room for 64 items.
+     */
+    public DrawList()
+    {
+        this( 64 );
+    }
+
+    /**
+     * Instantiates a new DrawList.
+     * 
+     * @param initialCapacity
+     *        The initial number of items the list can hold before it grows.
+     */
+    public DrawList( int initialCapacity )
+    {
+        itemRenderers = new int[initialCapacity];
+        itemEntities = new int[initialCapacity];
+        itemColors = new int[initialCapacity];
+        itemTransforms = new float[initialCapacity * TRANSFORM_SIZE];
+    }
+
+    /**
+     * Adds an item to the list with a transform which translates, rotates,
+     * then scales.
+     * 
+     * @param renderer
+     *        The renderer which draws the item.
+     * @param e
+     *        The entity the item is for.
+     * @param color
+     *        The color of the item, typically ARGB.
+     * @param x
+     *        The x translation.
+     * @param y
+     *        The y translation.
+     * @param angle
+     *        The rotation in radians.
+     * @param scale
+     *        The scale in both dimensions.
+     * @return The index of the item added.
+     */
+    public int add( RendererExtracted renderer, Entity e, int color, float x, float y, float angle, float scale )
+    {
+        final float cos = (float)Math.cos( angle ) * scale;
+        final float sin = (float)Math.sin( angle ) * scale;
+
+        return add( renderer, e, color, cos, sin, -sin, cos, x, y );
+    }
+
+    /**
+     * Adds an item to the list.
+     * 
+     * @param renderer
+     *        The renderer which draws the item.
+     * @param e
+     *        The entity the item is for.
+     * @param color
+     *        The color of the item, typically ARGB.
+     * @param m00
+     *        The x scaling element of the transform.
+     * @param m10
+     *        The y shearing element of the transform.
+     * @param m01
+     *        The x shearing element of the transform.
+     * @param m11
+     *        The y scaling element of the transform.
+     * @param m02
+     *        The x translation element of the transform.
+     * @param m12
+     *        The y translation element of the transform.
+     * @return The index of the item added.
+     */
+    public int add( RendererExtracted renderer, Entity e, int color, float m00, float m10, float m01, float m11, float m02, float m12 )
+    {
+        if (size == itemRenderers.length)
+        {
+            final int capacity = size + (size >> 1) + 16;
+
+            itemRenderers = Arrays.copyOf( itemRenderers, capacity );
+            itemEntities = Arrays.copyOf( itemEntities, capacity );
+            itemColors = Arrays.copyOf( itemColors, capacity );
+            itemTransforms = Arrays.copyOf( itemTransforms, capacity * TRANSFORM_SIZE );
+        }
+
+        final int index = size++;
+        final int offset = index * TRANSFORM_SIZE;
+
+        itemRenderers[index] = indexOf( renderer );
+        itemEntities[index] = e.id;
+        itemColors[index] = color;
+        itemTransforms[offset] = m00;
+        itemTransforms[offset + 1] = m10;
+        itemTransforms[offset + 2] = m01;
+        itemTransforms[offset + 3] = m11;
+        itemTransforms[offset + 4] = m02;
+        itemTransforms[offset + 5] = m12;
+
+        return index;
+    }
+
+    /**
+     * Draws every item in the list, in the order they were added, by passing
+     * them to their renderer.
+     * 
+     * @param drawState
+     *        An object to pass to the renderers which enables the items to be
+     *        drawn on the chosen medium.
+     */
+    public void draw( Object drawState )
+    {
+        for (int i = 0; i < size; i++)
+        {
+            renderers[itemRenderers[i]].draw( this, i, drawState );
+        }
+    }
+
+    /**
+     * Removes all items from the list, the memory used by the list is kept for
+     * the next frame.
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * @return The number of items in the list.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The frame the list was extracted for.
+     */
+    public int getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * Sets the frame the list was extracted for.
+     * 
+     * @param frame
+     *        The frame number.
+     */
+    public void setFrame( int frame )
+    {
+        this.frame = frame;
+    }
+
+    /**
+     * @param index
+     *        The index of the item.
+     * @return The renderer which draws the item at the given index.
+     */
+    public RendererExtracted getRenderer( int index )
+    {
+        return renderers[itemRenderers[index]];
+    }
+
+    /**
+     * @param index
+     *        The index of the item.
+     * @return The id of the entity the item at the given index was extracted
+     *         from.
+     */
+    public int getEntity( int index )
+    {
+        return itemEntities[index];
+    }
+
+    /**
+     * @param index
+     *        The index of the item.
+     * @return The color of the item at the given index.
+     */
+    public int getColor( int index )
+    {
+        return itemColors[index];
+    }
+
+    /**
+     * @param index
+     *        The index of the item.
+     * @return The x translation of the item at the given index.
+     */
+    public float getX( int index )
+    {
+        return itemTransforms[index * TRANSFORM_SIZE + 4];
+    }
+
+    /**
+     * @param index
+     *        The index of the item.
+     * @return The y translation of the item at the given index.
+     */
+    public float getY( int index )
+    {
+        return itemTransforms[index * TRANSFORM_SIZE + 5];
+    }
+
+    /**
+     * Returns the transforms of every item, where the transform of an item
+     * starts at {@link #getTransformOffset(int)}.
+     * 
+     * @return The reference to the transforms of the list.
+     */
+    public float[] getTransforms()
+    {
+        return itemTransforms;
+    }
+
+    /**
+     * @param index
+     *        The index of the item.
+     * @return The offset in {@link #getTransforms()} where the transform of
+     *         the item at the given index starts.
+     */
+    public int getTransformOffset( int index )
+    {
+        return index * TRANSFORM_SIZE;
+    }
+
+    private int indexOf( RendererExtracted renderer )
+    {
+        for (int i = 0; i < rendererCount; i++)
+        {
+            if (renderers[i] == renderer)
+            {
+                return i;
+            }
+        }
+
+        if (rendererCount == renderers.length)
+        {
+            renderers = Arrays.copyOf( renderers, rendererCount + 8 );
+        }
+
+        renderers[rendererCount] = renderer;
+
+        return rendererCount++;
+    }
+
+}
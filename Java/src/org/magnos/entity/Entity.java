@@ -53,6 +53,13 @@ public class Entity
      */
     public final int id;
 
+    /**
+     * The handle of this entity, which is never given to another entity.
+     * 
+     * @see Ents#resolve(long)
+     */
+    protected final long handle;
+
     /**
      * The template of the Entity.
      */
@@ -63,6 +70,17 @@ public class Entity
      */
     protected Object[] values;
 
+    /**
+     * The row of this entity in the {@link TemplateStorage} of it's template,
+     * or -1 if the template doesn't have storage.
+     */
+    protected int row = -1;
+
+    /**
+     * The index of this entity in the live instances of it's template.
+     */
+    protected int instance = -1;
+
     /**
      * Which controllers are enabled.
      */
@@ -173,35 +191,51 @@ public class Entity
         this.values = values;
         this.controllerEnabled = new BitSet( template.controllers.length, true );
         this.id = Ents.register( this );
+        this.handle = Ents.newHandle( id );
         this.template.addToComponents( this );
         this.setRenderer( renderer );
+
+        Ents.refreshSets( this );
     }
 
     /**
      * Internally sets the Template of the entity notifying the existing
      * Template (if any) that it has one last Entity instance as well as
      * notifying the new Template that it has a new Entity instance. The given
-     * template will always be either the same as the current template or an
-     * extension of it. It should never be a template with fewer components or
-     * controllers.
+     * template will always be either the same as the current template, an
+     * extension of it, or a template equivalent to it (see
+     * {@link Ents#compactTemplates()}). It should never be a template with
+     * fewer components or controllers. Any values the entity has in the storage of the existing
+     * Template are moved to the storage of the new Template. Once the entity
+     * has a template, every call re-evaluates the membership of the entity in
+     * the {@link EntitySet}s since the template may have been modified in
+     * place.
      * 
      * @param newTemplate
      *        The new template of the Entity.
      * @return True if the template given is different than the existing
      *         template.
      */
-    private boolean setTemplate( Template newTemplate )
+    protected boolean setTemplate( Template newTemplate )
     {
-        boolean changed = (template != newTemplate);
+        final Template previous = template;
+        final boolean changed = (previous != newTemplate);
 
         if (changed)
         {
-            if (template != null)
+            if (previous != null)
             {
-                template.removeInstance( this );
+                previous.removeInstance( this );
             }
 
             (template = newTemplate).newInstance( this );
+
+            TemplateStorage.move( this, previous == null ? null : previous.storage, newTemplate.storage );
+        }
+
+        if (previous != null)
+        {
+            Ents.refreshSets( this );
         }
 
         return changed;
@@ -222,7 +256,12 @@ public class Entity
      */
     public void expire()
     {
-        expired = true;
+        if (!expired)
+        {
+            expired = true;
+
+            Ents.refreshSets( this );
+        }
     }
 
     /**
@@ -246,6 +285,9 @@ public class Entity
                 renderer.destroy( this );
             }
 
+            Ents.removeFromSparse( this );
+            Ents.removeFromSets( this );
+            Ents.removeFromChanges( this );
             Ents.unregister( this );
 
             template.removeFromComponents( this );
@@ -259,6 +301,20 @@ public class Entity
         return deletable;
     }
 
+    /**
+     * Returns the handle of this Entity, which can be stored in place of a
+     * reference to the entity and resolved back to it while it's live. Unlike
+     * the {@link #id}, a handle is never given to another entity once this
+     * entity is deleted.
+     * 
+     * @return The handle of this Entity.
+     * @see Ents#resolve(long)
+     */
+    public long getHandle()
+    {
+        return handle;
+    }
+
     /**
      * Determines whether this Entity has been deleted.
      * 
@@ -325,6 +381,22 @@ public class Entity
         }
     }
 
+    /**
+     * Extracts what's needed to draw the Entity into the given list if it's
+     * visible and has a {@link RendererExtracted}. The list can then be drawn
+     * without reading the Entity, see {@link RenderPipeline}.
+     * 
+     * @param list
+     *        The list to add the draw items to.
+     */
+    public void extract( DrawList list )
+    {
+        if (visible && renderer instanceof RendererExtracted)
+        {
+            ((RendererExtracted)renderer).extract( this, list );
+        }
+    }
+
     /**
      * Determines whether this Entity has the given view (or an alternative).
      * This returns whether the view passed in has the same ID as the current
@@ -442,7 +514,8 @@ public class Entity
     /**
      * Updates the Entity if it's enabled. To update an entity, all enabled
      * controllers on the Entity are invoked passing the Entity reference and
-     * the given updateState.
+     * the given updateState. The controls invoked come from the plan cached
+     * in the Template (see {@link Template#getPlan()}).
      * 
      * @param updateState
      *        An object to pass to the controller's control method.
@@ -451,15 +524,13 @@ public class Entity
     {
         if (enabled)
         {
-            final Controller[] controllers = template.controllers;
+            final Control[] plan = template.getPlan();
 
-            for (int i = 0; i < controllers.length; i++)
+            for (int i = 0; i < plan.length; i++)
             {
-                final Controller c = controllers[i];
-
-                if (controllerEnabled.get( template.indexOf( c ) ))
+                if (controllerEnabled.get( i ))
                 {
-                    c.control.update( this, updateState );
+                    plan[i].update( this, updateState );
                 }
             }
         }
@@ -592,7 +663,7 @@ public class Entity
      */
     public boolean has( Component<?> component )
     {
-        return template.has( component );
+        return template.has( component ) || (component instanceof ComponentSparse && ((ComponentSparse<?>)component).has( this ));
     }
 
     /**
@@ -606,7 +677,15 @@ public class Entity
      */
     public boolean has( Component<?>... components )
     {
-        return template.has( components );
+        for (Component<?> c : components)
+        {
+            if (!has( c ))
+            {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     /**
@@ -637,7 +716,8 @@ public class Entity
      * is shared between all Entities that have the component, it may be shared
      * between all Entities that have the same Template, it may be a dynamically
      * created value, or it may be an aliased value (existing under a different
-     * component in reality).
+     * component in reality). A {@link ComponentDoubleBuffered} returns the value
+     * read in the current tick.
      * 
      * @param component
      *        The component to get the value of.
@@ -647,7 +727,7 @@ public class Entity
      */
     public <T> T get( Component<T> component )
     {
-        TemplateComponent<T> ch = (TemplateComponent<T>)template.handlers[component.id];
+        TemplateComponent<T> ch = getHandler( component );
         return ch.get( this );
     }
 
@@ -677,7 +757,7 @@ public class Entity
      */
     public <T> T gets( Component<T> component )
     {
-        return template.has( component ) ? get( component ) : null;
+        return has( component ) ? get( component ) : null;
     }
 
     /**
@@ -708,7 +788,7 @@ public class Entity
      */
     public <T> T gets( Component<T> component, T missingValue )
     {
-        return template.has( component ) ? get( component ) : missingValue;
+        return has( component ) ? get( component ) : missingValue;
     }
 
     /**
@@ -724,7 +804,8 @@ public class Entity
      * shared between all Entities that have the component, it may be shared
      * between all Entities that have the same Template, it may be a dynamically
      * set value, or it may be an aliased value (existing under a different
-     * component in reality).
+     * component in reality). A {@link ComponentDoubleBuffered} sets the value
+     * written in the current tick, which is read after it's flipped.
      * 
      * @param component
      *        The component to set the value of.
@@ -735,8 +816,37 @@ public class Entity
      */
     public <T> void set( Component<T> component, T value )
     {
-        TemplateComponent<T> ch = (TemplateComponent<T>)template.handlers[component.id];
+        TemplateComponent<T> ch = getHandler( component );
         ch.set( this, value );
+
+        if (component.changes != null)
+        {
+            component.changes.mark( this );
+        }
+    }
+
+    /**
+     * Marks the given component as changed on this Entity if changes to the
+     * component are tracked (see {@link Ents#track(Component)}). This should be
+     * invoked after the value of a component is modified in place, like when
+     * the fields of a mutable value are changed, since
+     * {@link #set(Component, Object)} is never invoked.
+     * 
+     * @param component
+     *        The component whose value changed.
+     * @return True if the change was recorded, false if changes to the
+     *         component are not tracked.
+     */
+    public boolean touch( Component<?> component )
+    {
+        final ChangeSet changes = component.changes;
+
+        if (changes != null)
+        {
+            changes.mark( this );
+        }
+
+        return (changes != null);
     }
 
     /**
@@ -764,7 +874,7 @@ public class Entity
      */
     public <T> boolean sets( Component<T> component, T value )
     {
-        boolean has = template.has( component );
+        boolean has = has( component );
 
         if (has)
         {
@@ -801,10 +911,34 @@ public class Entity
      */
     public <T> T take( Component<T> component, T target )
     {
-        TemplateComponent<T> ch = (TemplateComponent<T>)template.handlers[component.id];
+        TemplateComponent<T> ch = getHandler( component );
         return ch.take( this, target );
     }
 
+    /**
+     * Returns the {@link TemplateComponent} which handles the given component
+     * for this Entity. This is the handler in the template of this Entity, or
+     * the handler of a {@link ComponentSparse} given to this Entity outside of
+     * it's template.
+     * 
+     * @param component
+     *        The component to get the handler of.
+     * @return The handler of the component, or null if this Entity doesn't
+     *         have the component.
+     */
+    protected <T> TemplateComponent<T> getHandler( Component<T> component )
+    {
+        final TemplateComponent<?>[] handlers = template.handlers;
+        final int id = component.id;
+
+        if (id < handlers.length && handlers[id] != null)
+        {
+            return (TemplateComponent<T>)handlers[id];
+        }
+
+        return (component instanceof ComponentSparse ? ((ComponentSparse<T>)component).handler : null);
+    }
+
     /**
      * Sets target to the value of the given component on this Entity and
      * returns target. This is the safe alternative to
@@ -853,13 +987,36 @@ public class Entity
      * has it's own template which takes up more memory than it needs to. An
      * ideal system defines all templates and uses them exclusively. <br/>
      * <br/>
+     * A {@link ComponentSparse} is given to this Entity without changing it's
+     * template.
      * 
      * @param component
      *        The component to add or to replace the alternative with.
      */
     public <T> void add( Component<T> component )
     {
-        setTemplate( template.addCustomComponent( component, this ) );
+        if (component instanceof ComponentSparse && !template.has( component ))
+        {
+            ((ComponentSparse<T>)component).attach( this );
+        }
+        else
+        {
+            setTemplate( template.addCustomComponent( component, this ) );
+        }
+    }
+
+    /**
+     * Dynamically removes the given component from this Entity. Only a
+     * {@link ComponentSparse} given to this Entity outside of it's template can
+     * be removed, the components in the template of an entity are permanent.
+     * 
+     * @param component
+     *        The component to remove.
+     * @return True if the component was removed, otherwise false.
+     */
+    public <T> boolean remove( Component<T> component )
+    {
+        return component instanceof ComponentSparse && !template.has( component ) && ((ComponentSparse<T>)component).detach( this );
     }
 
     /**
@@ -907,7 +1064,7 @@ public class Entity
      */
     public <T> boolean put( Component<T> component, T value )
     {
-        boolean missing = !template.has( component );
+        boolean missing = !has( component );
 
         if (missing)
         {
@@ -938,7 +1095,7 @@ public class Entity
      */
     public <T> T grab( Component<T> component )
     {
-        boolean missing = !template.has( component );
+        boolean missing = !has( component );
 
         if (missing)
         {
@@ -968,7 +1125,7 @@ public class Entity
      */
     public void add( Controller controller )
     {
-        setTemplate( template.addCustomController( controller ) );
+        setTemplate( template.addCustomController( controller, this ) );
 
         controllerEnabled.set( template.indexOf( controller ) );
     }
@@ -993,7 +1150,7 @@ public class Entity
      */
     public void setView( View view )
     {
-        if (setTemplate( template.setCustomView( view ) ))
+        if (setTemplate( template.setCustomView( view, this ) ))
         {
             setRenderer( template.createRenderer() );
         }
@@ -1017,7 +1174,7 @@ public class Entity
      */
     public <T> void alias( Component<T> subject, Component<T> alias )
     {
-        setTemplate( template.setCustomAlias( subject, alias ) );
+        setTemplate( template.setCustomAlias( subject, alias, this ) );
     }
 
     /**
@@ -1060,7 +1217,7 @@ public class Entity
      */
     public Entity clone( boolean deep )
     {
-        return cloneState( new Entity( template, template.createClonedValues( values, deep ), renderer ) );
+        return cloneState( new Entity( template, template.createClonedValues( values, deep ), renderer ), deep );
     }
 
     /**
@@ -1068,10 +1225,20 @@ public class Entity
      * 
      * @param e
      *        The entity to clone this Entity's state to.
+     * @param deep
+     *        True if the values in the template's storage should be cloned,
+     *        false if their references should be copied.
      * @return The given entity e.
      */
-    protected <E extends Entity> E cloneState( E e )
+    protected <E extends Entity> E cloneState( E e, boolean deep )
     {
+        if (template.storage != null)
+        {
+            template.storage.copy( this, e, deep );
+        }
+
+        Ents.copySparse( this, e, deep );
+
         e.controllerEnabled.clear();
         e.controllerEnabled.or( controllerEnabled );
         e.enabled = enabled;
@@ -0,0 +1,301 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+
+/**
+ * Updates the children of an {@link EntityList} in groups of entities that
+ * share the same {@link Template}. For each group the controls in the plan of
+ * the template are invoked in order, a {@link BatchControl} is invoked once for
+ * the whole group and any other {@link Control} is invoked for each entity in
+ * the group. <br/>
+ * <br/>
+ * Only plain entities that are enabled and have all of their controllers
+ * enabled are grouped, all other children (containers, entity subclasses, and
+ * entities with disabled controllers) are updated on their own with
+ * {@link Entity#update(Object)}. The groups collected before such a child are
+ * updated before it, so a child that isn't grouped is updated after every
+ * entity before it in the list and before every entity after it. Since each
+ * control is invoked for the whole group before the next control is, an
+ * entity that expires another entity of the same group during an update
+ * doesn't prevent the other entity from being updated. <br/>
+ * <br/>
+ * An entity whose template is changed by a control leaves it's group, the
+ * remaining controls of the group are not invoked on it in this update. An
+ * entity whose template changes before it's group is updated is updated on
+ * it's own.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class EntityBatcher
+{
+
+    /**
+     * The number of groups of templates not seen in an update that are kept
+     * before they are forgotten, this avoids holding onto custom templates that
+     * no longer have entities.
+     */
+    public static int MAX_UNUSED_GROUPS = 32;
+
+    /**
+     * The groups collected and not yet updated, in the order their templates
+     * were first encountered.
+     */
+    private Group[] groups = {};
+
+    /**
+     * The number of groups in use.
+     */
+    private int groupCount;
+
+    /**
+     * The group of each template encountered, the groups are reused between
+     * updates.
+     */
+    private final IdentityHashMap<Template, Group> groupMap = new IdentityHashMap<Template, Group>();
+
+    /**
+     * Updates the entities of the given list.
+     * 
+     * @param list
+     *        The list of entities to update.
+     * @param updateState
+     *        The update state to pass to the controls.
+     */
+    public void update( EntityList list, Object updateState )
+    {
+        final Entity[] entities = list.entities;
+        final int entityCount = list.entityCount;
+        int used = 0;
+
+        for (int i = 0; i < entityCount; i++)
+        {
+            final Entity e = entities[i];
+
+            if (e.isExpired())
+            {
+                continue;
+            }
+
+            if (isGroupable( e ))
+            {
+                getGroup( e.template ).add( e, i );
+            }
+            else
+            {
+                used += flush( list, updateState );
+
+                e.update( updateState );
+
+                list.onEntityUpdated( e, i, updateState );
+            }
+        }
+
+        used += flush( list, updateState );
+
+        if (groupMap.size() > (used << 1) + MAX_UNUSED_GROUPS)
+        {
+            groupMap.clear();
+        }
+    }
+
+    /**
+     * Updates the groups collected so far and returns how many there were.
+     */
+    private int flush( EntityList list, Object updateState )
+    {
+        final int flushed = groupCount;
+
+        for (int i = 0; i < flushed; i++)
+        {
+            final Group g = groups[i];
+
+            g.update( updateState );
+            g.notify( list, updateState );
+            g.clear();
+        }
+
+        groupCount = 0;
+
+        return flushed;
+    }
+
+    /**
+     * Forgets all templates encountered, releasing memory held by the groups.
+     */
+    public void clear()
+    {
+        groupMap.clear();
+        groups = new Group[0];
+        groupCount = 0;
+    }
+
+    /**
+     * Returns whether the given entity can be updated as part of a group. The
+     * entity must be exactly an {@link Entity} (subclasses may override
+     * {@link Entity#update(Object)}), be enabled, and have all controllers
+     * enabled.
+     * 
+     * @param e
+     *        The entity to test.
+     * @return True if the entity can be grouped.
+     */
+    protected boolean isGroupable( Entity e )
+    {
+        return e.getClass() == Entity.class &&
+            e.enabled &&
+            e.controllerEnabled.nextClearBit( 0 ) >= e.template.controllers.length;
+    }
+
+    /**
+     * Returns the group for the given template, adding it to the groups in use
+     * if it's the first entity for the template in this update.
+     */
+    private Group getGroup( Template template )
+    {
+        Group g = groupMap.get( template );
+
+        if (g == null)
+        {
+            g = new Group( template );
+            groupMap.put( template, g );
+        }
+
+        if (g.count == 0)
+        {
+            if (groupCount == groups.length)
+            {
+                groups = Arrays.copyOf( groups, groupCount + 8 );
+            }
+
+            groups[groupCount++] = g;
+        }
+
+        return g;
+    }
+
+    private static class Group
+    {
+
+        private final Template template;
+        private Entity[] entities = new Entity[16];
+        private int[] indices = new int[16];
+        private int count;
+        private int live;
+
+        private Group( Template template )
+        {
+            this.template = template;
+        }
+
+        private void add( Entity e, int index )
+        {
+            if (count == entities.length)
+            {
+                entities = Arrays.copyOf( entities, count + (count >> 1) );
+                indices = Arrays.copyOf( indices, entities.length );
+            }
+
+            entities[count] = e;
+            indices[count] = index;
+            count++;
+        }
+
+        private void update( Object updateState )
+        {
+            final Control[] plan = template.getPlan();
+
+            live = count;
+            retain();
+
+            for (int k = live; k < count; k++)
+            {
+                entities[k].update( updateState );
+            }
+
+            for (int i = 0; i < plan.length; i++)
+            {
+                final Control c = plan[i];
+
+                if (i > 0)
+                {
+                    retain();
+                }
+
+                if (c instanceof BatchControl)
+                {
+                    ((BatchControl)c).update( template, entities, 0, live, updateState );
+                }
+                else
+                {
+                    for (int k = 0; k < live; k++)
+                    {
+                        c.update( entities[k], updateState );
+                    }
+                }
+            }
+        }
+
+        /**
+         * Moves the entities whose template is no longer the template of this
+         * group after the live entities of the group.
+         */
+        private void retain()
+        {
+            int kept = 0;
+
+            for (int k = 0; k < live; k++)
+            {
+                final Entity e = entities[k];
+
+                if (e.template == template)
+                {
+                    final int index = indices[k];
+
+                    entities[k] = entities[kept];
+                    indices[k] = indices[kept];
+                    entities[kept] = e;
+                    indices[kept] = index;
+                    kept++;
+                }
+            }
+
+            live = kept;
+        }
+
+        private void notify( EntityList list, Object updateState )
+        {
+            for (int k = 0; k < count; k++)
+            {
+                list.onEntityUpdated( entities[k], indices[k], updateState );
+            }
+        }
+
+        private void clear()
+        {
+            Arrays.fill( entities, 0, count, null );
+            count = 0;
+            live = 0;
+        }
+    }
+
+}
@@ -200,6 +200,25 @@ public class EntityChain extends Entity
         }
     }
 
+    @Override
+    public void extract( DrawList list )
+    {
+        if (visible || !inheritVisible)
+        {
+            if (validateFirst())
+            {
+                first.extract( list );
+            }
+
+            super.extract( list );
+
+            if (validateLast())
+            {
+                last.extract( list );
+            }
+        }
+    }
+
     @Override
     public void update( Object updateState )
     {
@@ -257,7 +276,7 @@ public class EntityChain extends Entity
     @Override
     public EntityChain clone( boolean deep )
     {
-        EntityChain clone = cloneState( new EntityChain( template, template.createClonedValues( values, deep ), renderer ) );
+        EntityChain clone = cloneState( new EntityChain( template, template.createClonedValues( values, deep ), renderer ), deep );
 
         clone.inheritEnabled = inheritEnabled;
         clone.inheritVisible = inheritVisible;
@@ -16,6 +16,9 @@
 
 package org.magnos.entity;
 
+import java.util.concurrent.ExecutorService;
+
+
 /**
  * An Entity which contains layers of {@link EntityList}s. The layers are used
  * to control the order of updating and drawing entities when
@@ -229,6 +232,38 @@ public class EntityLayers extends Entity
         swap( i.ordinal(), j.ordinal() );
     }
 
+    /**
+     * Sets whether the entities in every layer are updated in groups that
+     * share the same template.
+     * 
+     * @param batched
+     *        True if the entities in every layer should be updated in groups.
+     * @see EntityList#setBatched(boolean)
+     */
+    public void setBatched( boolean batched )
+    {
+        for (int i = 0; i < layers.length; i++)
+        {
+            layers[i].setBatched( batched );
+        }
+    }
+
+    /**
+     * Sets the executor used to update the entities of every layer in parallel,
+     * or null to update them on the calling thread.
+     * 
+     * @param executor
+     *        The executor to run the updates on, or null.
+     * @see EntityList#setParallel(ExecutorService)
+     */
+    public void setParallel( ExecutorService executor )
+    {
+        for (int i = 0; i < layers.length; i++)
+        {
+            layers[i].setParallel( executor );
+        }
+    }
+
     @Override
     public void draw( Object drawState )
     {
@@ -255,6 +290,22 @@ public class EntityLayers extends Entity
         }
     }
 
+    @Override
+    public void extract( DrawList list )
+    {
+        super.extract( list );
+
+        for (int i = 0; i < layers.length; i++)
+        {
+            final EntityList layer = layers[i];
+
+            if (!layer.isExpired())
+            {
+                layer.extract( list );
+            }
+        }
+    }
+
     @Override
     public void update( Object updateState )
     {
@@ -290,7 +341,7 @@ public class EntityLayers extends Entity
     @Override
     public EntityLayers clone( boolean deep )
     {
-        EntityLayers clone = cloneState( new EntityLayers( template, template.createClonedValues( layers, deep ), renderer, layers.length ) );
+        EntityLayers clone = cloneState( new EntityLayers( template, template.createClonedValues( layers, deep ), renderer, layers.length ), deep );
 
         if (deep)
         {
@@ -19,6 +19,7 @@ package org.magnos.entity;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 
 
 /**
@@ -63,6 +64,16 @@ public class EntityList extends Entity
      */
     protected boolean inheritEnabled;
 
+    /**
+     * @see #setBatched(boolean)
+     */
+    protected EntityBatcher batcher;
+
+    /**
+     * @see #setParallel(ExecutorService)
+     */
+    protected EntityParallelUpdater parallel;
+
     /**
      * Instantiates a custom EntityList that by default does not have
      * components, controllers, or a view. The child entities of this
@@ -354,6 +365,32 @@ public class EntityList extends Entity
         addAll( iterable.iterator() );
     }
 
+    /**
+     * Removes the given entity from this EntityList without deleting it, the
+     * entities after it are shifted down to keep their order.
+     * 
+     * @param entity
+     *        The entity to remove.
+     * @return True if the entity was in this EntityList, otherwise false.
+     */
+    public boolean remove( Entity entity )
+    {
+        for (int i = 0; i < entityCount; i++)
+        {
+            if (entities[i] == entity)
+            {
+                onEntityRemove( entity, i );
+
+                System.arraycopy( entities, i + 1, entities, i, entityCount - i - 1 );
+                entities[--entityCount] = null;
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Removes all expired entities from this EntityList and calls
      * {@link Entity#delete()} on them.
@@ -469,6 +506,25 @@ public class EntityList extends Entity
         }
     }
 
+    @Override
+    public void extract( DrawList list )
+    {
+        if (visible || !inheritVisible)
+        {
+            super.extract( list );
+
+            for (int i = 0; i < entityCount; i++)
+            {
+                final Entity e = entities[i];
+
+                if (!e.isExpired())
+                {
+                    e.extract( list );
+                }
+            }
+        }
+    }
+
     @Override
     public void update( Object updateState )
     {
@@ -481,15 +537,26 @@ public class EntityList extends Entity
                 return;
             }
 
-            for (int i = 0; i < entityCount; i++)
+            if (parallel != null)
             {
-                final Entity e = entities[i];
-
-                if (!e.isExpired())
+                parallel.update( this, updateState );
+            }
+            else if (batcher != null)
+            {
+                batcher.update( this, updateState );
+            }
+            else
+            {
+                for (int i = 0; i < entityCount; i++)
                 {
-                    e.update( updateState );
+                    final Entity e = entities[i];
+
+                    if (!e.isExpired())
+                    {
+                        e.update( updateState );
 
-                    onEntityUpdated( e, i, updateState );
+                        onEntityUpdated( e, i, updateState );
+                    }
                 }
             }
 
@@ -576,13 +643,68 @@ public class EntityList extends Entity
         this.inheritEnabled = inheritEnabled;
     }
 
+    /**
+     * @return True if the child entities are updated in groups that share the
+     *         same template.
+     * @see #setBatched(boolean)
+     */
+    public boolean isBatched()
+    {
+        return batcher != null;
+    }
+
+    /**
+     * Sets whether the child entities are updated in groups that share the
+     * same template (see {@link EntityBatcher}). When batched a
+     * {@link BatchControl} is invoked once for each group instead of once for
+     * each entity. By default an EntityList is not batched and each child is
+     * updated in order.
+     * 
+     * @param batched
+     *        True if the child entities should be updated in groups.
+     */
+    public void setBatched( boolean batched )
+    {
+        if (batched != (batcher != null))
+        {
+            batcher = (batched ? new EntityBatcher() : null);
+        }
+    }
+
+    /**
+     * @return True if the child entities are updated in parallel.
+     * @see #setParallel(ExecutorService)
+     */
+    public boolean isParallel()
+    {
+        return parallel != null;
+    }
+
+    /**
+     * Sets the executor used to update the child entities in parallel (see
+     * {@link EntityParallelUpdater}), or null to update them in order on the
+     * calling thread. By default an EntityList is not parallel. Only the
+     * children whose controllers have declared the components they write to
+     * are updated in parallel, and all children have been updated before
+     * expired entities are removed. A parallel EntityList is not batched.
+     * 
+     * @param executor
+     *        The executor to run the updates on, or null.
+     */
+    public void setParallel( ExecutorService executor )
+    {
+        parallel = (executor == null ? null : new EntityParallelUpdater( executor ));
+    }
+
     @Override
     public EntityList clone( boolean deep )
     {
-        EntityList clone = cloneState( new EntityList( template, template.createClonedValues( values, deep ), renderer ) );
+        EntityList clone = cloneState( new EntityList( template, template.createClonedValues( values, deep ), renderer ), deep );
 
         clone.inheritEnabled = inheritEnabled;
         clone.inheritVisible = inheritVisible;
+        clone.setBatched( isBatched() );
+        clone.parallel = (parallel == null ? null : new EntityParallelUpdater( parallel.getExecutor(), parallel.getParallelism() ));
         clone.pad( entityCount );
 
         for (int i = 0; i < entityCount; i++)
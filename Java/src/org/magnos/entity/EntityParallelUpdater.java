@@ -0,0 +1,366 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+
+/**
+ * Updates the children of an {@link EntityList} across the threads of an
+ * {@link ExecutorService}. Plain entities whose template is parallel safe
+ * (see {@link Template#isParallelSafe()}) are split into tasks which are
+ * updated at the same time, and once every task has finished the remaining
+ * children (containers, entity subclasses, and entities with controllers that
+ * write to shared state) are updated in order on the calling thread.
+ * {@link EntityList#onEntityUpdated(Entity, int, Object)} is always invoked on
+ * the calling thread in the order of the children. Entities of a template whose
+ * controllers read a component written by the controllers of another template
+ * in the same update are updated on the calling thread (see
+ * {@link Template#races(Template)}). <br/>
+ * <br/>
+ * A controller ran in parallel must not make structural changes (create or
+ * delete entities, add components, change templates, or add to lists), it
+ * can only modify the components it has declared it writes to and expire
+ * entities. The {@link EntitySet}s of entities expired in parallel are
+ * refreshed once every task has finished. Structural changes can be recorded
+ * in a {@link CommandBuffer} and played back once the update has finished.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class EntityParallelUpdater
+{
+
+    /**
+     * The minimum number of entities updated by a single task. When there
+     * aren't enough parallel safe entities to create at least two tasks every
+     * entity is updated on the calling thread.
+     */
+    public static int MINIMUM_TASK_SIZE = 256;
+
+    /**
+     * The executor which runs the tasks.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The maximum number of tasks an update is split into.
+     */
+    private final int parallelism;
+
+    /**
+     * The parallel safe entities of the current update and their indices in
+     * the list being updated.
+     */
+    private Entity[] entities = {};
+    private int[] indices = {};
+    private int count;
+
+    /**
+     * The templates of the current update whose entities are updated in
+     * parallel, and those which race with them.
+     */
+    private Template[] accepted = {};
+    private int acceptedCount;
+    private Template[] rejected = {};
+    private int rejectedCount;
+
+    /**
+     * The tasks, reused between updates.
+     */
+    private final List<Task> tasks = new ArrayList<Task>();
+
+    /**
+     * Instantiates an EntityParallelUpdater which splits updates into as many
+     * tasks as there are available processors.
+     * 
+     * @param executor
+     *        The executor which runs the tasks.
+     */
+    public EntityParallelUpdater( ExecutorService executor )
+    {
+        this( executor, Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * Instantiates an EntityParallelUpdater.
+     * 
+     * @param executor
+     *        The executor which runs the tasks.
+     * @param parallelism
+     *        The maximum number of tasks an update is split into.
+     */
+    public EntityParallelUpdater( ExecutorService executor, int parallelism )
+    {
+        this.executor = executor;
+        this.parallelism = Math.max( 1, parallelism );
+    }
+
+    /**
+     * @return The executor which runs the tasks.
+     */
+    public ExecutorService getExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * @return The maximum number of tasks an update is split into.
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Updates the entities of the given list.
+     * 
+     * @param list
+     *        The list of entities to update.
+     * @param updateState
+     *        The update state to pass to the controls.
+     */
+    public void update( EntityList list, Object updateState )
+    {
+        final int entityCount = list.entityCount;
+
+        if (entities.length < entityCount)
+        {
+            entities = new Entity[entityCount];
+            indices = new int[entityCount];
+        }
+
+        try
+        {
+            for (int i = 0; i < entityCount; i++)
+            {
+                final Entity e = list.entities[i];
+
+                if (!e.isExpired() && isParallelSafe( e ) && isBatchSafe( e.template ))
+                {
+                    entities[count] = e;
+                    indices[count] = i;
+                    count++;
+                }
+            }
+
+            final int taskCount = Math.min( parallelism, count / Math.max( 1, MINIMUM_TASK_SIZE ) );
+            final boolean parallel = (taskCount > 1);
+
+            if (parallel)
+            {
+                Ents.deferSets();
+
+                try
+                {
+                    invoke( taskCount, updateState );
+                }
+                finally
+                {
+                    Ents.flushSets();
+                }
+            }
+
+            int next = 0;
+
+            for (int i = 0; i < list.entityCount; i++)
+            {
+                final Entity e = list.entities[i];
+
+                if (next < count && indices[next] == i)
+                {
+                    next++;
+
+                    if (parallel)
+                    {
+                        list.onEntityUpdated( e, i, updateState );
+
+                        continue;
+                    }
+                }
+
+                if (!e.isExpired())
+                {
+                    e.update( updateState );
+
+                    list.onEntityUpdated( e, i, updateState );
+                }
+            }
+        }
+        finally
+        {
+            Arrays.fill( entities, 0, count, null );
+            count = 0;
+
+            Arrays.fill( accepted, 0, acceptedCount, null );
+            acceptedCount = 0;
+            Arrays.fill( rejected, 0, rejectedCount, null );
+            rejectedCount = 0;
+        }
+    }
+
+    /**
+     * Returns whether the given entity can be updated in parallel with other
+     * entities. The entity must be exactly an {@link Entity} (subclasses may
+     * override {@link Entity#update(Object)}) and it's template must be
+     * parallel safe.
+     * 
+     * @param e
+     *        The entity to test.
+     * @return True if the entity can be updated in parallel.
+     */
+    protected boolean isParallelSafe( Entity e )
+    {
+        return e.getClass() == Entity.class && e.template.isParallelSafe();
+    }
+
+    /**
+     * Returns whether entities of the given template can be updated in the
+     * same parallel update as the templates already accepted. The first
+     * template seen is accepted, and a template whose controllers race with
+     * the controllers of an accepted template is rejected.
+     */
+    private boolean isBatchSafe( Template template )
+    {
+        for (int i = 0; i < acceptedCount; i++)
+        {
+            if (accepted[i] == template)
+            {
+                return true;
+            }
+        }
+
+        for (int i = 0; i < rejectedCount; i++)
+        {
+            if (rejected[i] == template)
+            {
+                return false;
+            }
+        }
+
+        boolean safe = true;
+
+        for (int i = 0; i < acceptedCount && safe; i++)
+        {
+            safe = !template.races( accepted[i] );
+        }
+
+        if (safe)
+        {
+            if (acceptedCount == accepted.length)
+            {
+                accepted = Arrays.copyOf( accepted, acceptedCount + 8 );
+            }
+
+            accepted[acceptedCount++] = template;
+        }
+        else
+        {
+            if (rejectedCount == rejected.length)
+            {
+                rejected = Arrays.copyOf( rejected, rejectedCount + 8 );
+            }
+
+            rejected[rejectedCount++] = template;
+        }
+
+        return safe;
+    }
+
+    /**
+     * Splits the parallel safe entities into the given number of tasks, runs
+     * them, and waits for them all to finish.
+     */
+    private void invoke( int taskCount, Object updateState )
+    {
+        while (tasks.size() < taskCount)
+        {
+            tasks.add( new Task() );
+        }
+
+        final List<Task> invoked = tasks.subList( 0, taskCount );
+
+        for (int i = 0; i < taskCount; i++)
+        {
+            final Task t = invoked.get( i );
+
+            t.start = (int)((long)count * i / taskCount);
+            t.end = (int)((long)count * (i + 1) / taskCount);
+            t.updateState = updateState;
+        }
+
+        try
+        {
+            final List<Future<Object>> futures = executor.invokeAll( invoked );
+
+            for (int i = 0; i < futures.size(); i++)
+            {
+                futures.get( i ).get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException( "The parallel update was interrupted", e );
+        }
+        catch (ExecutionException e)
+        {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+
+            throw new RuntimeException( cause );
+        }
+        finally
+        {
+            for (int i = 0; i < taskCount; i++)
+            {
+                invoked.get( i ).updateState = null;
+            }
+        }
+    }
+
+    private class Task implements Callable<Object>
+    {
+
+        private int start;
+        private int end;
+        private Object updateState;
+
+        @Override
+        public Object call()
+        {
+            for (int i = start; i < end; i++)
+            {
+                entities[i].update( updateState );
+            }
+
+            return null;
+        }
+    }
+
+}
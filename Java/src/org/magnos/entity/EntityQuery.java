@@ -0,0 +1,209 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity;
+
+import java.util.Iterator;
+
+
+/**
+ * An EntityQuery is an {@link Iterable} object that iterates over every live
+ * entity (an entity which has not been deleted) that is valid for a filter.
+ * Instead of walking a tree of entities, a query walks the live templates of
+ * {@link Ents} and the instances of each template. When the filter is a
+ * {@link TemplateFilter} the templates that don't match are skipped entirely,
+ * so the cost of the query depends on the number of matching entities and not
+ * the total number of entities. <br/>
+ * <br/>
+ * The templates and their instances are visited from last to first, so the
+ * current entity can be deleted or change templates during iteration without
+ * any entity being skipped. Entities created during iteration may or may not
+ * be visited.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class EntityQuery implements Iterator<Entity>, Iterable<Entity>
+{
+
+    private EntityFilter filter;
+    private TemplateFilter templateFilter;
+    private Template template;
+    private int templateIndex;
+    private int instanceIndex;
+    private Entity curr;
+    private Entity prev;
+
+    /**
+     * Instantiates a new EntityQuery without a filter.
+     */
+    public EntityQuery()
+    {
+    }
+
+    /**
+     * Instantiates a new EntityQuery with the given filter. The EntityQuery is
+     * now ready to be iterated.
+     * 
+     * @param filter
+     *        The filter of the query.
+     * @see #query(EntityFilter)
+     */
+    public EntityQuery( EntityFilter filter )
+    {
+        query( filter );
+    }
+
+    /**
+     * Resets this query with the given filter.
+     * 
+     * @param filter
+     *        The new filter for this query.
+     * @return The reference to this query.
+     */
+    public EntityQuery query( EntityFilter filter )
+    {
+        this.filter = filter;
+        this.templateFilter = (filter instanceof TemplateFilter ? (TemplateFilter)filter : null);
+        this.reset();
+
+        return this;
+    }
+
+    /**
+     * Resets this query to the beginning. If this EntityQuery does not have a
+     * filter, a {@link NullPointerException} is thrown.
+     * 
+     * @return The reference to this query.
+     */
+    public EntityQuery reset()
+    {
+        if (filter == null)
+        {
+            throw new NullPointerException( "A filter is required to query." );
+        }
+
+        template = null;
+        templateIndex = Ents.liveCount;
+        instanceIndex = 0;
+
+        prev = null;
+        curr = findNext();
+
+        return this;
+    }
+
+    /**
+     * Counts the number of entities left in this query. This finishes the
+     * query and there will be no entities left to iterate.
+     * 
+     * @return The number of entities left to iterate.
+     */
+    public int count()
+    {
+        int total = 0;
+
+        while (hasNext())
+        {
+            next();
+            total++;
+        }
+
+        return total;
+    }
+
+    /**
+     * Returns the reference to this query, used when in for-each loops.
+     */
+    public Iterator<Entity> iterator()
+    {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return (curr != null);
+    }
+
+    @Override
+    public Entity next()
+    {
+        prev = curr;
+        curr = findNext();
+        return prev;
+    }
+
+    /**
+     * Removes the last entity from the query by expiring it.
+     */
+    @Override
+    public void remove()
+    {
+        prev.expire();
+    }
+
+    /**
+     * Finds the next valid entity, returns null if there are no valid entities.
+     * 
+     * @return The reference to the next valid entity, otherwise null.
+     */
+    private Entity findNext()
+    {
+        for (;;)
+        {
+            while (template == null || instanceIndex == 0)
+            {
+                if (templateIndex == 0)
+                {
+                    return null;
+                }
+
+                templateIndex = Math.min( templateIndex, Ents.liveCount ) - 1;
+
+                if (templateIndex < 0)
+                {
+                    return null;
+                }
+
+                template = Ents.live[templateIndex];
+                instanceIndex = template.instances;
+
+                if (templateFilter != null && !templateFilter.isValid( template ))
+                {
+                    instanceIndex = 0;
+                }
+            }
+
+            instanceIndex = Math.min( instanceIndex, template.instances ) - 1;
+
+            if (instanceIndex < 0)
+            {
+                instanceIndex = 0;
+
+                continue;
+            }
+
+            final Entity e = template.instanceArray[instanceIndex];
+
+            if (templateFilter != null || filter.isValid( e ))
+            {
+                return e;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,370 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * A persistent set of the entities valid for a filter, which is kept up to date
+ * as entities change instead of being filtered every time it's needed. An
+ * EntitySet is created with {@link Ents#newEntitySet(EntityFilter)} and the
+ * membership of an entity is evaluated when:
+ * <ul>
+ * <li>The entity is created.</li>
+ * <li>The template of the entity changes (components, controllers, or a view
+ * are added to it).</li>
+ * <li>A sparse component is attached to or detached from the entity.</li>
+ * <li>The entity is expired.</li>
+ * <li>The entity is deleted, which always removes it from the set.</li>
+ * </ul>
+ * A filter that depends on anything else (like a component value, visibility,
+ * or enabled) requires {@link #refresh(Entity)} to be invoked when that state
+ * changes. <br/>
+ * <br/>
+ * The entities are kept in a dense array, when an entity is removed the last
+ * entity takes it's place. A journaled set also records the entities added
+ * and removed since the last {@link #clearChanges()} so a system can react to
+ * changes in membership alone, the changes must be cleared regularly since
+ * they hold on to deleted entities.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class EntitySet implements Iterable<Entity>
+{
+
+    /**
+     * The filter which determines membership.
+     */
+    protected final EntityFilter filter;
+
+    /**
+     * The entities in the set and the number of entities.
+     */
+    protected Entity[] entities = {};
+    protected int size;
+
+    /**
+     * The index of each entity in the set by the entity id, or -1 if the entity
+     * with the id is not in the set.
+     */
+    protected int[] indices = {};
+
+    /**
+     * Whether the entities added and removed are recorded.
+     */
+    protected final boolean journaled;
+
+    /**
+     * The entities added and removed since the last {@link #clearChanges()}.
+     */
+    protected Entity[] added = {};
+    protected int addedCount;
+    protected Entity[] removed = {};
+    protected int removedCount;
+
+    /**
+     * The index of this set in the sets of {@link Ents}, or -1 if it's not
+     * kept up to date.
+     */
+    protected int registered = -1;
+
+    /**
+     * Instantiates an EntitySet. The set is empty and is not kept up to date
+     * until it's passed to {@link Ents#addEntitySet(EntitySet)}.
+     * 
+     * @param filter
+     *        The filter which determines membership.
+     */
+    public EntitySet( EntityFilter filter )
+    {
+        this( filter, false );
+    }
+
+    /**
+     * Instantiates an EntitySet. The set is empty and is not kept up to date
+     * until it's passed to {@link Ents#addEntitySet(EntitySet)}.
+     * 
+     * @param filter
+     *        The filter which determines membership.
+     * @param journaled
+     *        True if the entities added and removed should be recorded.
+     */
+    public EntitySet( EntityFilter filter, boolean journaled )
+    {
+        this.filter = filter;
+        this.journaled = journaled;
+    }
+
+    /**
+     * Re-evaluates the membership of the given entity, adding or removing it
+     * from this set if it's membership has changed.
+     * 
+     * @param e
+     *        The entity to re-evaluate.
+     */
+    public void refresh( Entity e )
+    {
+        if (e.template != null && filter.isValid( e ))
+        {
+            add( e );
+        }
+        else
+        {
+            remove( e );
+        }
+    }
+
+    /**
+     * Adds the entity to this set if it's not already in it.
+     */
+    protected synchronized void add( Entity e )
+    {
+        final int id = e.id;
+
+        if (id < indices.length && indices[id] != -1)
+        {
+            return;
+        }
+
+        if (id >= indices.length)
+        {
+            final int previousLength = indices.length;
+
+            indices = Arrays.copyOf( indices, Math.max( id + 1, previousLength + (previousLength >> 1) + 16 ) );
+            Arrays.fill( indices, previousLength, indices.length, -1 );
+        }
+
+        if (size == entities.length)
+        {
+            entities = Arrays.copyOf( entities, size + (size >> 1) + 16 );
+        }
+
+        indices[id] = size;
+        entities[size++] = e;
+
+        if (journaled)
+        {
+            added = append( added, addedCount++, e );
+        }
+    }
+
+    /**
+     * Removes the entity from this set if it's in it, the last entity in the
+     * set takes it's place.
+     */
+    protected synchronized void remove( Entity e )
+    {
+        final int id = e.id;
+
+        if (id >= indices.length || indices[id] == -1)
+        {
+            return;
+        }
+
+        final int index = indices[id];
+        final Entity last = entities[--size];
+
+        entities[index] = last;
+        entities[size] = null;
+        indices[last.id] = index;
+        indices[id] = -1;
+
+        if (journaled)
+        {
+            removed = append( removed, removedCount++, e );
+        }
+    }
+
+    private static Entity[] append( Entity[] array, int index, Entity e )
+    {
+        if (index == array.length)
+        {
+            array = Arrays.copyOf( array, index + (index >> 1) + 16 );
+        }
+
+        array[index] = e;
+
+        return array;
+    }
+
+    /**
+     * @return The filter which determines membership.
+     */
+    public EntityFilter getFilter()
+    {
+        return filter;
+    }
+
+    /**
+     * @return The number of entities in this set.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the entity at the given index. A check is not done here to ensure
+     * index is positive and less than {@link #size()}.
+     * 
+     * @param index
+     *        The index of the entity.
+     * @return The reference to the entity at the given index.
+     */
+    public Entity at( int index )
+    {
+        return entities[index];
+    }
+
+    /**
+     * Returns the dense array of entities in this set, the first
+     * {@link #size()} entities are in the set. The array returned is replaced
+     * when the set grows and should not be modified.
+     * 
+     * @return The array of entities in this set.
+     */
+    public Entity[] getEntities()
+    {
+        return entities;
+    }
+
+    /**
+     * @param e
+     *        The entity to look for.
+     * @return True if the given entity is in this set.
+     */
+    public boolean contains( Entity e )
+    {
+        return e.id < indices.length && indices[e.id] != -1 && entities[indices[e.id]] == e;
+    }
+
+    /**
+     * @return True if the entities added and removed are recorded.
+     */
+    public boolean isJournaled()
+    {
+        return journaled;
+    }
+
+    /**
+     * @return The number of entities added since the last
+     *         {@link #clearChanges()}, which is always zero if this set isn't
+     *         journaled.
+     */
+    public int getAddedCount()
+    {
+        return addedCount;
+    }
+
+    /**
+     * @param index
+     *        The index of the addition, between 0 and
+     *        {@link #getAddedCount()}.
+     * @return The entity added.
+     */
+    public Entity getAdded( int index )
+    {
+        return added[index];
+    }
+
+    /**
+     * @return The number of entities removed since the last
+     *         {@link #clearChanges()}, which is always zero if this set isn't
+     *         journaled.
+     */
+    public int getRemovedCount()
+    {
+        return removedCount;
+    }
+
+    /**
+     * @param index
+     *        The index of the removal, between 0 and
+     *        {@link #getRemovedCount()}.
+     * @return The entity removed, which may have been deleted.
+     */
+    public Entity getRemoved( int index )
+    {
+        return removed[index];
+    }
+
+    /**
+     * Forgets the entities added and removed.
+     */
+    public void clearChanges()
+    {
+        Arrays.fill( added, 0, addedCount, null );
+        Arrays.fill( removed, 0, removedCount, null );
+        addedCount = 0;
+        removedCount = 0;
+    }
+
+    /**
+     * @return True if this set is kept up to date by {@link Ents}.
+     */
+    public boolean isRegistered()
+    {
+        return registered != -1;
+    }
+
+    /**
+     * Returns an iterator over the entities in this set, from last to first.
+     * Since the last entity takes the place of a removed one, the current
+     * entity can be removed from this set during iteration without any
+     * entity being skipped. Entities added during iteration are not visited.
+     * An entity leaves this set when it's no longer valid for the filter, so
+     * the iterator does not support {@link Iterator#remove()}.
+     */
+    @Override
+    public Iterator<Entity> iterator()
+    {
+        return new Iterator<Entity>() {
+
+            private int index = size;
+
+            @Override
+            public boolean hasNext()
+            {
+                index = Math.min( index, size );
+
+                return index > 0;
+            }
+
+            @Override
+            public Entity next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return entities[--index];
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException( "an entity is removed from a set when it's no longer valid for the filter" );
+            }
+        };
+    }
+
+}
@@ -16,6 +16,8 @@
 
 package org.magnos.entity;
 
+import java.util.Arrays;
+
 import org.magnos.entity.util.ComponentSet;
 import org.magnos.entity.util.ControllerSet;
 import org.magnos.entity.util.IndexPool;
@@ -47,8 +49,87 @@ public class Ents
 
     protected static IndexPool indices = new IndexPool();
 
+    /**
+     * Handle returned for entities which have no handle. No entity ever has a
+     * handle of zero since generations start at one.
+     */
+    public static final long HANDLE_NONE = 0L;
+
+    /**
+     * The live entity and the current generation of each entity ID. The
+     * generation of an ID is incremented each time it's given to an entity.
+     */
+    protected static Entity[] entities = {};
+    protected static int[] generations = {};
+
     protected static EntityListener listener;
 
+    /**
+     * The number of times the {@link Control} of a controller has been changed
+     * through this class, used to know when the plans cached in templates are
+     * out of date.
+     */
+    protected static int controlModifications;
+
+    /**
+     * The templates which currently have instances.
+     */
+    protected static Template[] live = {};
+    protected static int liveCount;
+
+    /**
+     * The canonical custom templates, and the index of the next live template
+     * examined by {@link #compactTemplates(int)}.
+     */
+    protected static TemplateRegistry customTemplates = new TemplateRegistry();
+    protected static int compactIndex;
+
+    /**
+     * The entity sets kept up to date as entities change.
+     */
+    protected static EntitySet[] sets = {};
+    protected static int setCount;
+
+    /**
+     * Whether set refreshes are deferred, and the entities whose sets are
+     * refreshed once they no longer are (see {@link #deferSets()}).
+     */
+    protected static boolean deferring;
+    protected static Entity[] deferred = {};
+    protected static int deferredCount;
+
+    /**
+     * The sparse components, entities are removed from them when deleted.
+     */
+    protected static ComponentSparse<?>[] sparse = {};
+    protected static int sparseCount;
+
+    /**
+     * The double buffered components, flipped by {@link #flipBuffers()}.
+     */
+    protected static ComponentDoubleBuffered<?>[] doubleBuffered = {};
+    protected static int doubleBufferedCount;
+
+    /**
+     * The current tick, and the change sets of all tracked components.
+     */
+    protected static int tick = 1;
+    protected static ChangeSet[] changeSets = {};
+    protected static int changeSetCount;
+
+    /**
+     * The controls of reactive controllers, which keep state for each entity
+     * id.
+     */
+    protected static ReactiveControl[] reactiveControls = {};
+    protected static int reactiveControlCount;
+
+    /**
+     * The interpolated components, stored by {@link #storeInterpolated()}.
+     */
+    protected static ComponentInterpolated<?>[] interpolated = {};
+    protected static int interpolatedCount;
+
     /**
      * Hidden constructor from non-implementing classes.
      */
@@ -70,6 +151,22 @@ public class Ents
     {
         int id = indices.pop();
 
+        if (id >= entities.length)
+        {
+            final int capacity = Math.max( id + 1, entities.length + (entities.length >> 1) + DEFAULT_INITIAL_CAPACITY );
+
+            entities = Arrays.copyOf( entities, capacity );
+            generations = Arrays.copyOf( generations, capacity );
+
+            for (int i = 0; i < reactiveControlCount; i++)
+            {
+                reactiveControls[i].ensureCapacity( capacity );
+            }
+        }
+
+        entities[id] = e;
+        generations[id]++;
+
         if (listener != null)
         {
             listener.onEntityAdd( e, id );
@@ -86,13 +183,642 @@ public class Ents
      * @param e
      *        The entity to unregister.
      */
-    protected static void unregister( Entity e )
+    protected static void unregister( Entity e )
+    {
+        entities[e.id] = null;
+        indices.push( e.id );
+
+        if (listener != null)
+        {
+            listener.onEntityRemove( e );
+        }
+    }
+
+    /**
+     * Returns the current handle of the given entity ID, which combines the ID
+     * with the number of times the ID has been given to an entity.
+     * 
+     * @param id
+     *        The ID of a live entity.
+     * @return The handle of the entity with the given ID.
+     */
+    protected static long newHandle( int id )
+    {
+        return ((long)generations[id] << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the live entity with the given handle. A handle of an entity
+     * which has been deleted is never resolved, even if another entity has
+     * since been given the same ID.
+     * 
+     * @param handle
+     *        The handle of the entity, see {@link Entity#getHandle()}.
+     * @return The entity with the given handle, or null if it's been deleted
+     *         or the handle is invalid.
+     */
+    public static Entity resolve( long handle )
+    {
+        final int id = getHandleId( handle );
+
+        if (id >= 0 && id < entities.length && generations[id] == getHandleGeneration( handle ))
+        {
+            return entities[id];
+        }
+
+        return null;
+    }
+
+    /**
+     * Determines whether the entity with the given handle is live.
+     * 
+     * @param handle
+     *        The handle of the entity, see {@link Entity#getHandle()}.
+     * @return True if the entity hasn't been deleted, otherwise false.
+     */
+    public static boolean isLive( long handle )
+    {
+        return resolve( handle ) != null;
+    }
+
+    /**
+     * @param handle
+     *        The handle of an entity.
+     * @return The ID of the entity the handle was given to.
+     */
+    public static int getHandleId( long handle )
+    {
+        return (int)handle;
+    }
+
+    /**
+     * @param handle
+     *        The handle of an entity.
+     * @return The generation of the ID of the entity the handle was given to.
+     */
+    public static int getHandleGeneration( long handle )
+    {
+        return (int)(handle >>> 32);
+    }
+
+    /**
+     * Adds the template to the live templates, this occurs when the template
+     * gets it's first instance.
+     * 
+     * @param template
+     *        The template which has become live.
+     */
+    protected static void addLive( Template template )
+    {
+        if (liveCount == live.length)
+        {
+            live = Arrays.copyOf( live, liveCount + (liveCount >> 1) + 16 );
+        }
+
+        template.live = liveCount;
+        live[liveCount++] = template;
+    }
+
+    /**
+     * Removes the template from the live templates, this occurs when the last
+     * instance of the template is removed.
+     * 
+     * @param template
+     *        The template which no longer has instances.
+     */
+    protected static void removeLive( Template template )
+    {
+        final int i = template.live;
+
+        if (i >= 0 && i < liveCount && live[i] == template)
+        {
+            final Template last = live[--liveCount];
+
+            live[i] = last;
+            live[liveCount] = null;
+            last.live = i;
+        }
+
+        template.live = -1;
+    }
+
+    /**
+     * @return The number of templates (including custom templates) which
+     *         currently have instances.
+     */
+    public static int getLiveTemplateCount()
+    {
+        return liveCount;
+    }
+
+    /**
+     * Returns a template which currently has instances. The order of the live
+     * templates changes as templates lose all of their instances.
+     * 
+     * @param index
+     *        The index of the template, between 0 and
+     *        {@link #getLiveTemplateCount()}.
+     * @return The reference to the template.
+     */
+    public static Template getLiveTemplate( int index )
+    {
+        return live[index];
+    }
+
+    /**
+     * Returns the canonical custom template equivalent to the given template.
+     * If there isn't one the given template becomes the canonical template and
+     * from then on is shared, so it's no longer modified for a single entity.
+     * Entities which make the same change to different templates and end up
+     * with equivalent custom templates share a canonical one.
+     * 
+     * @param template
+     *        The template to intern.
+     * @return The canonical template, or the given template if it's not
+     *         custom.
+     * @see Template#isEquivalent(Template)
+     */
+    public static Template intern( Template template )
+    {
+        return customTemplates.intern( template );
+    }
+
+    /**
+     * @return The registry of canonical custom templates.
+     */
+    public static TemplateRegistry getCustomTemplates()
+    {
+        return customTemplates;
+    }
+
+    /**
+     * Merges all live custom templates which are equivalent to a canonical
+     * template into the canonical template, moving their entities over.
+     * 
+     * @return The number of templates merged.
+     * @see #compactTemplates(int)
+     */
+    public static int compactTemplates()
+    {
+        int merged = 0;
+
+        compactIndex = 0;
+
+        while (compactIndex < liveCount)
+        {
+            if (compactNext())
+            {
+                merged++;
+            }
+        }
+
+        compactIndex = 0;
+
+        return merged;
+    }
+
+    /**
+     * Examines at most the given number of live templates and merges each
+     * custom template which is equivalent to a canonical template into the
+     * canonical template (moving their entities over). A custom template
+     * without an equivalent becomes canonical. Successive calls continue where
+     * the last one ended, so this can be invoked with a small budget every
+     * frame to compact templates in the background.
+     * 
+     * @param budget
+     *        The maximum number of live templates to examine.
+     * @return The number of templates merged.
+     */
+    public static int compactTemplates( int budget )
+    {
+        int merged = 0;
+
+        for (int i = 0; i < budget && liveCount > 0; i++)
+        {
+            if (compactIndex >= liveCount)
+            {
+                compactIndex = 0;
+            }
+
+            if (compactNext())
+            {
+                merged++;
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * Examines the live template at {@link #compactIndex}, if it's merged into
+     * a canonical template it's no longer live and the index is left as-is
+     * since another live template takes it's place.
+     */
+    private static boolean compactNext()
+    {
+        final Template t = live[compactIndex];
+
+        if (t.isCustom() && !t.shared && t.isShareable())
+        {
+            final Template canonical = customTemplates.intern( t );
+
+            if (canonical != t)
+            {
+                while (t.instances > 0)
+                {
+                    final Entity e = t.instanceArray[t.instances - 1];
+
+                    canonical.joinForEntity( e, t );
+                    e.setTemplate( canonical );
+                }
+
+                return true;
+            }
+        }
+
+        compactIndex++;
+
+        return false;
+    }
+
+    /**
+     * Returns a query of all live entities which are valid for the given
+     * filter. When the filter is a {@link TemplateFilter} only the instances
+     * of the matching templates are visited.
+     * 
+     * @param filter
+     *        The filter of the query.
+     * @return A new query ready to be iterated.
+     * @see EntityQuery
+     */
+    public static EntityQuery query( EntityFilter filter )
+    {
+        return new EntityQuery( filter );
+    }
+
+    /**
+     * Creates an {@link EntitySet} of the entities valid for the given filter
+     * which is kept up to date as entities change. The set initially contains
+     * every live entity valid for the filter.
+     * 
+     * @param filter
+     *        The filter which determines membership.
+     * @return The reference to the newly created set.
+     */
+    public static EntitySet newEntitySet( EntityFilter filter )
+    {
+        return addEntitySet( new EntitySet( filter ) );
+    }
+
+    /**
+     * Creates an {@link EntitySet} of the entities valid for the given filter
+     * which is kept up to date as entities change. The set initially contains
+     * every live entity valid for the filter.
+     * 
+     * @param filter
+     *        The filter which determines membership.
+     * @param journaled
+     *        True if the entities added and removed should be recorded until
+     *        {@link EntitySet#clearChanges()} is called.
+     * @return The reference to the newly created set.
+     */
+    public static EntitySet newEntitySet( EntityFilter filter, boolean journaled )
+    {
+        return addEntitySet( new EntitySet( filter, journaled ) );
+    }
+
+    /**
+     * Adds the given set to the sets kept up to date as entities change, every
+     * live entity is evaluated for membership.
+     * 
+     * @param set
+     *        The set to keep up to date.
+     * @return The reference to the set given.
+     */
+    public static EntitySet addEntitySet( EntitySet set )
+    {
+        if (set.registered == -1)
+        {
+            if (setCount == sets.length)
+            {
+                sets = Arrays.copyOf( sets, setCount + 8 );
+            }
+
+            set.registered = setCount;
+            sets[setCount++] = set;
+
+            for (int i = 0; i < liveCount; i++)
+            {
+                final Template t = live[i];
+
+                for (int k = 0; k < t.instances; k++)
+                {
+                    set.refresh( t.instanceArray[k] );
+                }
+            }
+        }
+
+        return set;
+    }
+
+    /**
+     * Stops keeping the given set up to date, the set keeps the entities it
+     * has.
+     * 
+     * @param set
+     *        The set to stop keeping up to date.
+     */
+    public static void removeEntitySet( EntitySet set )
+    {
+        final int i = set.registered;
+
+        if (i >= 0 && i < setCount && sets[i] == set)
+        {
+            final EntitySet last = sets[--setCount];
+
+            sets[i] = last;
+            sets[setCount] = null;
+            last.registered = i;
+        }
+
+        set.registered = -1;
+    }
+
+    /**
+     * Re-evaluates the membership of the entity in all sets, this occurs when
+     * the entity is created, expired, or it's template changes.
+     * 
+     * @param e
+     *        The entity which has changed.
+     */
+    protected static void refreshSets( Entity e )
+    {
+        if (deferring)
+        {
+            defer( e );
+
+            return;
+        }
+
+        for (int i = 0; i < setCount; i++)
+        {
+            sets[i].refresh( e );
+        }
+    }
+
+    /**
+     * Defers refreshing the sets of entities until {@link #flushSets()} is
+     * called. This is done while entities are updated across threads, since
+     * refreshing a set (and the template filter caches it uses) is not thread
+     * safe. Entities may be refreshed by any thread while deferring.
+     */
+    protected static void deferSets()
+    {
+        deferring = true;
+    }
+
+    /**
+     * Stops deferring set refreshes and refreshes the sets of all entities
+     * which changed while they were deferred.
+     */
+    protected static void flushSets()
+    {
+        deferring = false;
+
+        for (int i = 0; i < deferredCount; i++)
+        {
+            refreshSets( deferred[i] );
+            deferred[i] = null;
+        }
+
+        deferredCount = 0;
+    }
+
+    private static synchronized void defer( Entity e )
+    {
+        if (deferredCount == deferred.length)
+        {
+            deferred = Arrays.copyOf( deferred, deferredCount + 16 );
+        }
+
+        deferred[deferredCount++] = e;
+    }
+
+    /**
+     * Removes the entity from all sets, this occurs when the entity is
+     * deleted.
+     * 
+     * @param e
+     *        The entity being deleted.
+     */
+    protected static void removeFromSets( Entity e )
+    {
+        for (int i = 0; i < setCount; i++)
+        {
+            sets[i].remove( e );
+        }
+    }
+
+    /**
+     * Removes the entity from all sparse components, this occurs when the
+     * entity is deleted.
+     * 
+     * @param e
+     *        The entity being deleted.
+     */
+    protected static void removeFromSparse( Entity e )
+    {
+        for (int i = 0; i < sparseCount; i++)
+        {
+            sparse[i].detach( e );
+        }
+    }
+
+    /**
+     * Adds the control of a reactive controller, which is grown along with the
+     * entity ids so it never needs to grow during an update.
+     * 
+     * @param control
+     *        The control to add.
+     * @return The reference to the control.
+     */
+    protected static ReactiveControl addReactiveControl( ReactiveControl control )
+    {
+        if (reactiveControlCount == reactiveControls.length)
+        {
+            reactiveControls = Arrays.copyOf( reactiveControls, reactiveControlCount + 8 );
+        }
+
+        reactiveControls[reactiveControlCount++] = control;
+
+        return control;
+    }
+
+    /**
+     * Removes the entity from the change sets of all tracked components, this
+     * occurs when the entity is deleted.
+     * 
+     * @param e
+     *        The entity being deleted.
+     */
+    protected static void removeFromChanges( Entity e )
+    {
+        for (int i = 0; i < changeSetCount; i++)
+        {
+            changeSets[i].remove( e );
+        }
+    }
+
+    /**
+     * Starts tracking the entities which change the value of the given
+     * component (and all of it's alternatives). If the component is already
+     * tracked the existing change set is returned.
+     * 
+     * @param component
+     *        The component to track.
+     * @return The set of entities which change the value of the component.
+     * @see ChangeSet
+     */
+    public static ChangeSet track( Component<?> component )
+    {
+        ChangeSet changes = component.changes;
+
+        if (changes == null)
+        {
+            changes = new ChangeSet( components.getDefinition( component.id ) );
+
+            for (Component<?> c : components.getInstances( component.id ))
+            {
+                c.changes = changes;
+            }
+
+            if (changeSetCount == changeSets.length)
+            {
+                changeSets = Arrays.copyOf( changeSets, changeSetCount + 8 );
+            }
+
+            changes.registered = changeSetCount;
+            changeSets[changeSetCount++] = changes;
+        }
+
+        return changes;
+    }
+
+    /**
+     * Stops tracking the entities which change the value of the given
+     * component.
+     * 
+     * @param component
+     *        The component to stop tracking.
+     * @return True if the component was tracked, otherwise false.
+     */
+    public static boolean untrack( Component<?> component )
+    {
+        final ChangeSet changes = component.changes;
+
+        if (changes == null)
+        {
+            return false;
+        }
+
+        for (Component<?> c : components.getInstances( component.id ))
+        {
+            c.changes = null;
+        }
+
+        final ChangeSet last = changeSets[--changeSetCount];
+
+        changeSets[changes.registered] = last;
+        changeSets[changeSetCount] = null;
+        last.registered = changes.registered;
+        changes.registered = -1;
+
+        return true;
+    }
+
+    /**
+     * Returns the set of entities which changed the value of the given
+     * component.
+     * 
+     * @param component
+     *        The component.
+     * @return The change set of the component, or null if it's not tracked.
+     */
+    public static ChangeSet getChanges( Component<?> component )
+    {
+        return component.changes;
+    }
+
+    /**
+     * Flips every double buffered component, so the values written in the
+     * tick that's ending are read in the next tick. This is typically done
+     * once at the end of every update.
+     * 
+     * @see ComponentDoubleBuffered#flip()
+     */
+    public static void flipBuffers()
+    {
+        for (int i = 0; i < doubleBufferedCount; i++)
+        {
+            doubleBuffered[i].flip();
+        }
+    }
+
+    /**
+     * Copies the current value of every interpolated component to it's
+     * previous value for every entity, {@link FixedTimestep} does this at the
+     * start of every step.
+     * 
+     * @see ComponentInterpolated#store()
+     */
+    public static void storeInterpolated()
+    {
+        for (int i = 0; i < interpolatedCount; i++)
+        {
+            interpolated[i].store();
+        }
+    }
+
+    /**
+     * Returns the current tick. Changes to tracked components are recorded with
+     * the current tick.
+     * 
+     * @return The current tick.
+     * @see #advanceTick()
+     */
+    public static int getTick()
+    {
+        return tick;
+    }
+
+    /**
+     * Advances the current tick, this is typically done once per update so a
+     * system can tell which entities changed since it last ran.
+     * 
+     * @return The new tick.
+     */
+    public static int advanceTick()
+    {
+        return ++tick;
+    }
+
+    /**
+     * Copies the values of the sparse components one entity has to another
+     * entity, this occurs when an entity is cloned.
+     * 
+     * @param from
+     *        The entity being cloned.
+     * @param to
+     *        The clone of the entity.
+     * @param deep
+     *        True if the values should be cloned, false if their references
+     *        should be copied.
+     */
+    protected static void copySparse( Entity from, Entity to, boolean deep )
     {
-        indices.push( e.id );
-
-        if (listener != null)
+        for (int i = 0; i < sparseCount; i++)
         {
-            listener.onEntityRemove( e );
+            sparse[i].copy( from, to, deep );
         }
     }
 
@@ -227,7 +953,7 @@ public class Ents
      */
     public static void setControllerDefault( Controller controller, Control defaultControl )
     {
-        controllers.getDefinition( controller ).control = defaultControl;
+        controllers.getDefinition( controller ).setControl( defaultControl );
     }
 
     /**
@@ -442,6 +1168,398 @@ public class Ents
         return registerComponent( false, components.addInstance( new ComponentPooled<T>( component.id, component.name, factory ) ) );
     }
 
+    /**
+     * Adds a new double buffered {@link Component} definition. <br/>
+     * <br/>
+     * A double buffered component gives every entity a value that's read (the
+     * state of the previous tick) and a value that's written (the state of the
+     * next tick), which are swapped for all entities at once by
+     * {@link #flipBuffers()}.
+     * 
+     * @param name
+     *        The name of the component.
+     * @param factory
+     *        The factory for creating default values, aid in cloning, and
+     *        copying one value to another.
+     * @return The reference to the newly created component.
+     * @see ComponentDoubleBuffered
+     */
+    public static <T> ComponentDoubleBuffered<T> newComponentDoubleBuffered( String name, ComponentValueFactory<T> factory )
+    {
+        final ComponentDoubleBuffered<T> component = components.addDefinition( new ComponentDoubleBuffered<T>( components.nextId(), name, factory ) );
+
+        if (doubleBufferedCount == doubleBuffered.length)
+        {
+            doubleBuffered = Arrays.copyOf( doubleBuffered, doubleBufferedCount + 8 );
+        }
+
+        doubleBuffered[doubleBufferedCount++] = component;
+
+        return registerComponent( true, component );
+    }
+
+    /**
+     * Adds a new interpolated {@link Component} definition. <br/>
+     * <br/>
+     * An interpolated component remembers the value of every entity at the
+     * start of the current step (see {@link #storeInterpolated()}), so the
+     * entity can be drawn between the previous and current value.
+     * 
+     * @param name
+     *        The name of the component.
+     * @param factory
+     *        The factory for creating default values, aid in cloning, and
+     *        copying one value to another.
+     * @param interpolator
+     *        The interpolator between the previous and current values.
+     * @return The reference to the newly created component.
+     * @see ComponentInterpolated
+     * @see FixedTimestep
+     */
+    public static <T> ComponentInterpolated<T> newComponentInterpolated( String name, ComponentValueFactory<T> factory, ComponentValueInterpolator<T> interpolator )
+    {
+        final ComponentInterpolated<T> component = components.addDefinition( new ComponentInterpolated<T>( components.nextId(), name, factory, interpolator ) );
+
+        if (interpolatedCount == interpolated.length)
+        {
+            interpolated = Arrays.copyOf( interpolated, interpolatedCount + 8 );
+        }
+
+        interpolated[interpolatedCount++] = component;
+
+        return registerComponent( true, component );
+    }
+
+    /**
+     * Adds a new interpolated {@link Component} definition with a default
+     * value that is also the interpolator, like
+     * {@link org.magnos.entity.vals.FloatVal}.
+     * 
+     * @param name
+     *        The name of the component.
+     * @param defaultValue
+     *        The factory and interpolator of the values.
+     * @return The reference to the newly created component.
+     * @see #newComponentInterpolated(String, ComponentValueFactory,
+     *      ComponentValueInterpolator)
+     */
+    public static <T extends ComponentValueFactory<T> & ComponentValueInterpolator<T>> ComponentInterpolated<T> newComponentInterpolated( String name, T defaultValue )
+    {
+        return newComponentInterpolated( name, defaultValue, defaultValue );
+    }
+
+    /**
+     * Adds a new sparse {@link Component} definition. <br/>
+     * <br/>
+     * A sparse component stores the values of the entities that have it in a
+     * sparse set in the component. It can be added to and removed from an
+     * entity in constant time without changing the template of the entity,
+     * which is ideal for components which come and go often.
+     * 
+     * @param name
+     *        The name of the component.
+     * @param factory
+     *        The factory for creating default values, aid in cloning, and
+     *        copying one value to another.
+     * @return The reference to the newly created component.
+     * @see ComponentSparse
+     */
+    public static <T> ComponentSparse<T> newComponentSparse( String name, ComponentValueFactory<T> factory )
+    {
+        final ComponentSparse<T> component = components.addDefinition( new ComponentSparse<T>( components.nextId(), name, factory ) );
+
+        if (sparseCount == sparse.length)
+        {
+            sparse = Arrays.copyOf( sparse, sparseCount + 8 );
+        }
+
+        sparse[sparseCount++] = component;
+
+        return registerComponent( true, component );
+    }
+
+    /**
+     * Adds a new column {@link Component} definition. <br/>
+     * <br/>
+     * A column component stores the values of all entities with the same
+     * {@link Template} together in the {@link TemplateStorage} of the Template
+     * instead of on each Entity. This is most useful for components that are
+     * processed for every entity each update (like position and velocity),
+     * since a controller can walk the column of values linearly.
+     * 
+     * @param name
+     *        The name of the component.
+     * @param factory
+     *        The factory for creating default values, aid in cloning, and
+     *        copying one value to another.
+     * @return The reference to the newly created component.
+     * @see ComponentColumn
+     */
+    public static <T> Component<T> newComponentColumn( String name, ComponentValueFactory<T> factory )
+    {
+        return registerComponent( true, components.addDefinition( new ComponentColumn<T>( components.nextId(), name, factory ) ) );
+    }
+
+    /**
+     * Adds a new column {@link Component} alternative. <br/>
+     * <br/>
+     * A column component stores the values of all entities with the same
+     * {@link Template} together in the {@link TemplateStorage} of the Template
+     * instead of on each Entity. This is most useful for components that are
+     * processed for every entity each update (like position and velocity),
+     * since a controller can walk the column of values linearly. <br/>
+     * <br/>
+     * An alternative component appears to be the same as the given component
+     * but could be a different implementation. This enables entities to have
+     * the same component but the underlying value could be stored or handled
+     * differently (distinctly, shared, dynamically created, etc).
+     * 
+     * @param component
+     *        The component to create an alternative for (could be the
+     *        definition or another alternative).
+     * @param factory
+     *        The factory for creating default values, aid in cloning, and
+     *        copying one value to another.
+     * @return The reference to the newly created component.
+     * @see ComponentColumn
+     */
+    public static <T> Component<T> newComponentColumnAlternative( Component<T> component, ComponentValueFactory<T> factory )
+    {
+        return registerComponent( false, components.addInstance( new ComponentColumn<T>( component.id, component.name, factory ) ) );
+    }
+
+    /**
+     * Adds a new float {@link Component} definition. <br/>
+     * <br/>
+     * A float component stores a primitive value for each entity in the
+     * {@link TemplateStorage} of the entity's {@link Template}. The value can
+     * be accessed without allocation through {@link ComponentFloat#getFloat(Entity)}
+     * and {@link ComponentFloat#setFloat(Entity, float)}.
+     * 
+     * @param name
+     *        The name of the component.
+     * @param defaultValue
+     *        The value given to an entity when it's created.
+     * @return The reference to the newly created component.
+     * @see ComponentFloat
+     */
+    public static ComponentFloat newComponentFloat( String name, float defaultValue )
+    {
+        return registerComponent( true, components.addDefinition( new ComponentFloat( components.nextId(), name, defaultValue ) ) );
+    }
+
+    /**
+     * Adds a new float {@link Component} alternative. <br/>
+     * <br/>
+     * A float component stores a primitive value for each entity in the
+     * {@link TemplateStorage} of the entity's {@link Template}. The value can
+     * be accessed without allocation through {@link ComponentFloat#getFloat(Entity)}
+     * and {@link ComponentFloat#setFloat(Entity, float)}. <br/>
+     * <br/>
+     * An alternative component appears to be the same as the given component
+     * but could be a different implementation. This enables entities to have
+     * the same component but the underlying value could be stored or handled
+     * differently (distinctly, shared, dynamically created, etc).
+     * 
+     * @param component
+     *        The component to create an alternative for (could be the
+     *        definition or another alternative).
+     * @param defaultValue
+     *        The value given to an entity when it's created.
+     * @return The reference to the newly created component.
+     * @see ComponentFloat
+     */
+    public static ComponentFloat newComponentFloatAlternative( Component<Float> component, float defaultValue )
+    {
+        return registerComponent( false, components.addInstance( new ComponentFloat( component.id, component.name, defaultValue ) ) );
+    }
+
+    /**
+     * Adds a new int {@link Component} definition. <br/>
+     * <br/>
+     * A int component stores a primitive value for each entity in the
+     * {@link TemplateStorage} of the entity's {@link Template}. The value can
+     * be accessed without allocation through {@link ComponentInt#getInt(Entity)}
+     * and {@link ComponentInt#setInt(Entity, int)}.
+     * 
+     * @param name
+     *        The name of the component.
+     * @param defaultValue
+     *        The value given to an entity when it's created.
+     * @return The reference to the newly created component.
+     * @see ComponentInt
+     */
+    public static ComponentInt newComponentInt( String name, int defaultValue )
+    {
+        return registerComponent( true, components.addDefinition( new ComponentInt( components.nextId(), name, defaultValue ) ) );
+    }
+
+    /**
+     * Adds a new int {@link Component} alternative. <br/>
+     * <br/>
+     * A int component stores a primitive value for each entity in the
+     * {@link TemplateStorage} of the entity's {@link Template}. The value can
+     * be accessed without allocation through {@link ComponentInt#getInt(Entity)}
+     * and {@link ComponentInt#setInt(Entity, int)}. <br/>
+     * <br/>
+     * An alternative component appears to be the same as the given component
+     * but could be a different implementation. This enables entities to have
+     * the same component but the underlying value could be stored or handled
+     * differently (distinctly, shared, dynamically created, etc).
+     * 
+     * @param component
+     *        The component to create an alternative for (could be the
+     *        definition or another alternative).
+     * @param defaultValue
+     *        The value given to an entity when it's created.
+     * @return The reference to the newly created component.
+     * @see ComponentInt
+     */
+    public static ComponentInt newComponentIntAlternative( Component<Integer> component, int defaultValue )
+    {
+        return registerComponent( false, components.addInstance( new ComponentInt( component.id, component.name, defaultValue ) ) );
+    }
+
+    /**
+     * Adds a new long {@link Component} definition. <br/>
+     * <br/>
+     * A long component stores a primitive value for each entity in the
+     * {@link TemplateStorage} of the entity's {@link Template}. The value can
+     * be accessed without allocation through {@link ComponentLong#getLong(Entity)}
+     * and {@link ComponentLong#setLong(Entity, long)}.
+     * 
+     * @param name
+     *        The name of the component.
+     * @param defaultValue
+     *        The value given to an entity when it's created.
+     * @return The reference to the newly created component.
+     * @see ComponentLong
+     */
+    public static ComponentLong newComponentLong( String name, long defaultValue )
+    {
+        return registerComponent( true, components.addDefinition( new ComponentLong( components.nextId(), name, defaultValue ) ) );
+    }
+
+    /**
+     * Adds a new long {@link Component} alternative. <br/>
+     * <br/>
+     * A long component stores a primitive value for each entity in the
+     * {@link TemplateStorage} of the entity's {@link Template}. The value can
+     * be accessed without allocation through {@link ComponentLong#getLong(Entity)}
+     * and {@link ComponentLong#setLong(Entity, long)}. <br/>
+     * <br/>
+     * An alternative component appears to be the same as the given component
+     * but could be a different implementation. This enables entities to have
+     * the same component but the underlying value could be stored or handled
+     * differently (distinctly, shared, dynamically created, etc).
+     * 
+     * @param component
+     *        The component to create an alternative for (could be the
+     *        definition or another alternative).
+     * @param defaultValue
+     *        The value given to an entity when it's created.
+     * @return The reference to the newly created component.
+     * @see ComponentLong
+     */
+    public static ComponentLong newComponentLongAlternative( Component<Long> component, long defaultValue )
+    {
+        return registerComponent( false, components.addInstance( new ComponentLong( component.id, component.name, defaultValue ) ) );
+    }
+
+    /**
+     * Adds a new double {@link Component} definition. <br/>
+     * <br/>
+     * A double component stores a primitive value for each entity in the
+     * {@link TemplateStorage} of the entity's {@link Template}. The value can
+     * be accessed without allocation through {@link ComponentDouble#getDouble(Entity)}
+     * and {@link ComponentDouble#setDouble(Entity, double)}.
+     * 
+     * @param name
+     *        The name of the component.
+     * @param defaultValue
+     *        The value given to an entity when it's created.
+     * @return The reference to the newly created component.
+     * @see ComponentDouble
+     */
+    public static ComponentDouble newComponentDouble( String name, double defaultValue )
+    {
+        return registerComponent( true, components.addDefinition( new ComponentDouble( components.nextId(), name, defaultValue ) ) );
+    }
+
+    /**
+     * Adds a new double {@link Component} alternative. <br/>
+     * <br/>
+     * A double component stores a primitive value for each entity in the
+     * {@link TemplateStorage} of the entity's {@link Template}. The value can
+     * be accessed without allocation through {@link ComponentDouble#getDouble(Entity)}
+     * and {@link ComponentDouble#setDouble(Entity, double)}. <br/>
+     * <br/>
+     * An alternative component appears to be the same as the given component
+     * but could be a different implementation. This enables entities to have
+     * the same component but the underlying value could be stored or handled
+     * differently (distinctly, shared, dynamically created, etc).
+     * 
+     * @param component
+     *        The component to create an alternative for (could be the
+     *        definition or another alternative).
+     * @param defaultValue
+     *        The value given to an entity when it's created.
+     * @return The reference to the newly created component.
+     * @see ComponentDouble
+     */
+    public static ComponentDouble newComponentDoubleAlternative( Component<Double> component, double defaultValue )
+    {
+        return registerComponent( false, components.addInstance( new ComponentDouble( component.id, component.name, defaultValue ) ) );
+    }
+
+    /**
+     * Adds a new direct {@link Component} definition. <br/>
+     * <br/>
+     * A direct component stores the values of all entities with the same
+     * {@link Template} in direct (off-heap) memory in the
+     * {@link TemplateStorage} of the Template. This keeps large amounts of
+     * numeric data out of the Java heap, the given layout describes the fields
+     * of a value and how a value is read and written.
+     * 
+     * @param name
+     *        The name of the component.
+     * @param layout
+     *        The layout of the component values in memory.
+     * @return The reference to the newly created component.
+     * @see ComponentDirect
+     */
+    public static <T> ComponentDirect<T> newComponentDirect( String name, DirectLayout<T> layout )
+    {
+        return registerComponent( true, components.addDefinition( new ComponentDirect<T>( components.nextId(), name, layout ) ) );
+    }
+
+    /**
+     * Adds a new direct {@link Component} alternative. <br/>
+     * <br/>
+     * A direct component stores the values of all entities with the same
+     * {@link Template} in direct (off-heap) memory in the
+     * {@link TemplateStorage} of the Template. This keeps large amounts of
+     * numeric data out of the Java heap, the given layout describes the fields
+     * of a value and how a value is read and written. <br/>
+     * <br/>
+     * An alternative component appears to be the same as the given component
+     * but could be a different implementation. This enables entities to have
+     * the same component but the underlying value could be stored or handled
+     * differently (distinctly, shared, dynamically created, etc).
+     * 
+     * @param component
+     *        The component to create an alternative for (could be the
+     *        definition or another alternative).
+     * @param layout
+     *        The layout of the component values in memory.
+     * @return The reference to the newly created component.
+     * @see ComponentDirect
+     */
+    public static <T> ComponentDirect<T> newComponentDirectAlternative( Component<T> component, DirectLayout<T> layout )
+    {
+        return registerComponent( false, components.addInstance( new ComponentDirect<T>( component.id, component.name, layout ) ) );
+    }
+
     /**
      * Adds a new dynamic {@link Component} definition. <br/>
      * <br/>
@@ -660,8 +1778,13 @@ public class Ents
      *        The component added.
      * @return The component added.
      */
-    private static <T> Component<T> registerComponent( boolean definition, Component<T> component )
+    private static <C extends Component<?>> C registerComponent( boolean definition, C component )
     {
+        if (!definition)
+        {
+            component.changes = components.getDefinition( component.id ).changes;
+        }
+
         if (listener != null)
         {
             listener.onComponentAdd( component, definition );
@@ -921,11 +2044,59 @@ public class Ents
             listener = null;
         }
 
+        while (changeSetCount > 0)
+        {
+            untrack( changeSets[changeSetCount - 1].component );
+        }
+
+        while (reactiveControlCount > 0)
+        {
+            reactiveControls[--reactiveControlCount] = null;
+        }
+
+        while (interpolatedCount > 0)
+        {
+            interpolated[--interpolatedCount] = null;
+        }
+
         views.clear();
         controllers.clear();
         components.clear();
         templates.clear();
         indices.clear();
+        controlModifications++;
+        customTemplates.clear();
+        compactIndex = 0;
+
+        // Generations are kept so handles from before the clear are never resolved.
+        Arrays.fill( entities, null );
+
+        while (liveCount > 0)
+        {
+            live[--liveCount].live = -1;
+            live[liveCount] = null;
+        }
+
+        while (setCount > 0)
+        {
+            sets[--setCount].registered = -1;
+            sets[setCount] = null;
+        }
+
+        Arrays.fill( deferred, 0, deferredCount, null );
+        deferredCount = 0;
+        deferring = false;
+
+        while (sparseCount > 0)
+        {
+            sparse[--sparseCount].clear();
+            sparse[sparseCount] = null;
+        }
+
+        while (doubleBufferedCount > 0)
+        {
+            doubleBuffered[--doubleBufferedCount] = null;
+        }
     }
 
     /**
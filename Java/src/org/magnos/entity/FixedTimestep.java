@@ -0,0 +1,228 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity;
+
+/**
+ * Drives the update of an entity at a fixed step size regardless of how often
+ * it's called. The time elapsed between calls to
+ * {@link #update(Entity, float, Object)} is added to an accumulator, and the
+ * entity is updated once for every whole step in the accumulator. The time
+ * left over is used to draw the entity between the last two steps
+ * (see {@link #getAlpha()} and {@link ComponentInterpolated}). <br/>
+ * <br/>
+ * To keep a long frame from causing more steps which cause longer frames, at
+ * most {@link #getMaxSteps()} steps are taken per call and any more whole
+ * steps in the accumulator are dropped. <br/>
+ * <br/>
+ * Every step advances the tick (see {@link Ents#advanceTick()}) and stores the
+ * previous values of interpolated components (see
+ * {@link Ents#storeInterpolated()}) before updating the entity, the updateState
+ * passed to the entity should describe a step of {@link #getStepSize()}
+ * seconds.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class FixedTimestep
+{
+
+    /**
+     * The default maximum number of steps taken per update.
+     */
+    public static int DEFAULT_MAX_STEPS = 5;
+
+    /**
+     * The number of seconds in a step.
+     */
+    protected float stepSize;
+
+    /**
+     * The maximum number of steps taken per update.
+     */
+    protected int maxSteps;
+
+    /**
+     * The number of seconds elapsed that haven't been stepped.
+     */
+    protected float accumulator;
+
+    /**
+     * The total number of steps taken and dropped.
+     */
+    protected long steps;
+    protected long dropped;
+
+    /**
+     * Instantiates a new FixedTimestep.
+     * 
+     * @param stepsPerSecond
+     *        The number of steps in a second, for example 60.
+     */
+    public FixedTimestep( float stepsPerSecond )
+    {
+        this( stepsPerSecond, DEFAULT_MAX_STEPS );
+    }
+
+    /**
+     * Instantiates a new FixedTimestep.
+     * 
+     * @param stepsPerSecond
+     *        The number of steps in a second, for example 60.
+     * @param maxSteps
+     *        The maximum number of steps taken per update.
+     */
+    public FixedTimestep( float stepsPerSecond, int maxSteps )
+    {
+        this.stepSize = 1.0f / stepsPerSecond;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Adds the elapsed time to the accumulator and steps the given entity once
+     * for every whole step in the accumulator, up to the maximum number of
+     * steps.
+     * 
+     * @param root
+     *        The entity to update.
+     * @param elapsed
+     *        The number of seconds since the last update.
+     * @param updateState
+     *        The updateState to pass to the entity.
+     * @return The number of steps taken.
+     */
+    public int update( Entity root, float elapsed, Object updateState )
+    {
+        accumulator += elapsed;
+
+        int taken = 0;
+
+        while (accumulator >= stepSize && taken < maxSteps)
+        {
+            step( root, updateState );
+
+            accumulator -= stepSize;
+            taken++;
+        }
+
+        if (accumulator >= stepSize)
+        {
+            final int excess = (int)(accumulator / stepSize);
+
+            accumulator -= excess * stepSize;
+            dropped += excess;
+        }
+
+        steps += taken;
+
+        return taken;
+    }
+
+    /**
+     * Takes a single step, which advances the tick, stores the previous values
+     * of interpolated components, and updates the given entity. A headless simulation that runs as fast as possible can call
+     * this directly instead of {@link #update(Entity, float, Object)}.
+     * 
+     * @param root
+     *        The entity to update.
+     * @param updateState
+     *        The updateState to pass to the entity.
+     */
+    public void step( Entity root, Object updateState )
+    {
+        Ents.advanceTick();
+        Ents.storeInterpolated();
+
+        root.update( updateState );
+    }
+
+    /**
+     * Returns how far between the last step and the next step the current time
+     * is, where 0 is the last step and 1 is the next step. This is the alpha to
+     * interpolate between the previous and current values of entities with.
+     * 
+     * @return The delta between the last and next step.
+     * @see ComponentInterpolated#interpolate(Entity, float, Object)
+     */
+    public float getAlpha()
+    {
+        return accumulator / stepSize;
+    }
+
+    /**
+     * @return The number of seconds elapsed that haven't been stepped.
+     */
+    public float getAccumulator()
+    {
+        return accumulator;
+    }
+
+    /**
+     * @return The number of seconds in a step.
+     */
+    public float getStepSize()
+    {
+        return stepSize;
+    }
+
+    /**
+     * Sets the number of seconds in a step.
+     * 
+     * @param stepSize
+     *        The number of seconds in a step.
+     */
+    public void setStepSize( float stepSize )
+    {
+        this.stepSize = stepSize;
+    }
+
+    /**
+     * @return The maximum number of steps taken per update.
+     */
+    public int getMaxSteps()
+    {
+        return maxSteps;
+    }
+
+    /**
+     * Sets the maximum number of steps taken per update.
+     * 
+     * @param maxSteps
+     *        The maximum number of steps taken per update.
+     */
+    public void setMaxSteps( int maxSteps )
+    {
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * @return The total number of steps taken.
+     */
+    public long getSteps()
+    {
+        return steps;
+    }
+
+    /**
+     * @return The total number of steps dropped because an update would've
+     *         taken more than the maximum number of steps.
+     */
+    public long getDropped()
+    {
+        return dropped;
+    }
+
+}
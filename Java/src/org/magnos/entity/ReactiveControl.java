@@ -0,0 +1,244 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+
+
+/**
+ * The {@link Control} of a reactive {@link Controller}, which invokes the
+ * control of the controller for an entity only when one of the controller's
+ * triggers (see {@link Controller#triggers(Component...)}) has changed on the
+ * entity since the controller last ran for it. Templates use this control in
+ * place of the controller's control, so {@link Entity#update(Object)} skips
+ * the controller for quiescent entities. <br/>
+ * <br/>
+ * The changed entities can also be processed directly with
+ * {@link #react(Object)}, which only visits the entities in the
+ * {@link ChangeSet}s of the triggers that changed since the last react. Either
+ * way an entity is processed once per change, since the latest version before
+ * the controller ran for an entity is remembered for each entity. A change
+ * made to a trigger while the controller runs for the entity (by the control
+ * itself or by another thread) triggers the controller again. An entity which
+ * has never changed a trigger is not processed.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class ReactiveControl implements Control
+{
+
+    /**
+     * The reactive controller.
+     */
+    protected final Controller controller;
+
+    /**
+     * The change sets of the trigger components.
+     */
+    protected ChangeSet[] triggers = {};
+
+    /**
+     * The latest version before the controller last ran for each entity by the
+     * entity id. This is sized as entities are registered (see
+     * {@link #ensureCapacity(int)}) so it's never replaced during an update.
+     */
+    protected int[] processed;
+
+    /**
+     * The latest version when {@link #react(Object)} was last invoked, and the
+     * entities found by it.
+     */
+    protected int reacted;
+    protected Entity[] pending = {};
+
+    /**
+     * Instantiates a new ReactiveControl, this is done by
+     * {@link Controller#triggers(Component...)}.
+     * 
+     * @param controller
+     *        The reactive controller.
+     */
+    protected ReactiveControl( Controller controller )
+    {
+        this.controller = controller;
+        this.processed = new int[Ents.entities.length];
+    }
+
+    /**
+     * Grows the versions processed so an entity with an id less than the given
+     * capacity can be processed, this is done by {@link Ents} when an entity
+     * is registered.
+     * 
+     * @param capacity
+     *        The number of entity ids.
+     */
+    protected synchronized void ensureCapacity( int capacity )
+    {
+        if (capacity > processed.length)
+        {
+            processed = Arrays.copyOf( processed, capacity );
+        }
+    }
+
+    /**
+     * Adds the change set of a trigger component.
+     * 
+     * @param changes
+     *        The change set of the trigger.
+     */
+    protected void addTrigger( ChangeSet changes )
+    {
+        for (ChangeSet c : triggers)
+        {
+            if (c == changes)
+            {
+                return;
+            }
+        }
+
+        triggers = Arrays.copyOf( triggers, triggers.length + 1 );
+        triggers[triggers.length - 1] = changes;
+    }
+
+    @Override
+    public void update( Entity e, Object updateState )
+    {
+        if (isTriggered( e ))
+        {
+            run( e, updateState );
+        }
+    }
+
+    /**
+     * Invokes the control of the controller for every entity which has the
+     * controller enabled and a trigger that changed since the last react and
+     * since the controller last ran for it. Only the entities which changed
+     * since the last react are visited. This should not be invoked while
+     * entities are being updated on other threads.
+     * 
+     * @param updateState
+     *        The update state passed to the control.
+     * @return The number of entities the control was invoked for.
+     */
+    public int react( Object updateState )
+    {
+        final int since = reacted;
+        final int until = ChangeSet.getLatestVersion();
+        int found = 0;
+
+        for (ChangeSet changes : triggers)
+        {
+            for (Entity e = changes.getLatest(); e != null; e = changes.getEarlier( e ))
+            {
+                final int version = changes.getVersion( e );
+
+                if (version <= since)
+                {
+                    break;
+                }
+
+                if (version <= until)
+                {
+                    if (found == pending.length)
+                    {
+                        pending = Arrays.copyOf( pending, found + (found >> 1) + 16 );
+                    }
+
+                    pending[found++] = e;
+                }
+            }
+        }
+
+        reacted = until;
+
+        int count = 0;
+
+        for (int i = 0; i < found; i++)
+        {
+            final Entity e = pending[i];
+
+            pending[i] = null;
+
+            if (e.enabled && isControllerEnabled( e ) && isTriggered( e ))
+            {
+                run( e, updateState );
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Determines whether a trigger of the controller has changed on the given
+     * entity since the controller last ran for it.
+     * 
+     * @param e
+     *        The entity to test.
+     * @return True if the controller should run for the entity.
+     */
+    public boolean isTriggered( Entity e )
+    {
+        final int id = e.id;
+        final int last = (id < processed.length ? processed[id] : 0);
+
+        for (ChangeSet changes : triggers)
+        {
+            if (changes.getVersion( e ) > last)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The reactive controller.
+     */
+    public Controller getController()
+    {
+        return controller;
+    }
+
+    private void run( Entity e, Object updateState )
+    {
+        // Changes made while the control runs are after this version, so they trigger it again.
+        final int version = ChangeSet.getLatestVersion();
+
+        controller.control.update( e, updateState );
+
+        // Only when the control outlived Ents.clear(), otherwise it's grown as entities are registered.
+        if (e.id >= processed.length)
+        {
+            ensureCapacity( Ents.entities.length );
+        }
+
+        processed[e.id] = version;
+    }
+
+    private boolean isControllerEnabled( Entity e )
+    {
+        final Template t = e.template;
+        final int i = (t == null ? -1 : t.indexOf( controller ));
+
+        return (i != -1 && t.controllers[i] == controller && e.controllerEnabled.get( i ));
+    }
+
+}
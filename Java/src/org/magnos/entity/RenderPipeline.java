@@ -0,0 +1,141 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity;
+
+/**
+ * Decouples drawing from updating with three {@link DrawList}s. At the end of
+ * an update the simulation thread calls {@link #extract(Entity)} which fills a
+ * list and publishes it, and the render thread calls {@link #draw(Object)}
+ * which draws the most recently published list. The render thread can draw
+ * frame N while the simulation updates and extracts frame N+1, and neither
+ * thread ever waits for the other: when the renderer is slower frames are
+ * skipped, and when the simulation is slower the same frame is drawn again.
+ * 
+ * @author Philip Diffenderfer
+ * @see RendererExtracted
+ */
+public class RenderPipeline
+{
+
+    /**
+     * The list being extracted by the simulation thread.
+     */
+    private DrawList extracting;
+
+    /**
+     * The most recently published list.
+     */
+    private DrawList ready;
+
+    /**
+     * The list being drawn by the render thread.
+     */
+    private DrawList drawing;
+
+    /**
+     * Whether the ready list was published since the render thread last
+     * acquired a list.
+     */
+    private boolean fresh;
+
+    /**
+     * The number of frames extracted.
+     */
+    private int frame;
+
+    /**
+     * Instantiates a new RenderPipeline.
+     */
+    public RenderPipeline()
+    {
+        this.extracting = new DrawList();
+        this.ready = new DrawList();
+        this.drawing = new DrawList();
+    }
+
+    /**
+     * Extracts the given Entity (and it's children) into a list and publishes
+     * the list to the render thread. This should be called by the simulation
+     * thread after the update.
+     * 
+     * @param root
+     *        The entity to extract.
+     */
+    public void extract( Entity root )
+    {
+        extracting.clear();
+        extracting.setFrame( ++frame );
+
+        root.extract( extracting );
+
+        synchronized (this)
+        {
+            final DrawList published = extracting;
+
+            extracting = ready;
+            ready = published;
+            fresh = true;
+        }
+    }
+
+    /**
+     * Returns the most recently published list, the list returned is owned by
+     * the render thread until the next call to this method. This should only
+     * be called by the render thread.
+     * 
+     * @return The list to draw.
+     */
+    public DrawList acquire()
+    {
+        synchronized (this)
+        {
+            if (fresh)
+            {
+                final DrawList published = ready;
+
+                ready = drawing;
+                drawing = published;
+                fresh = false;
+            }
+
+            return drawing;
+        }
+    }
+
+    /**
+     * Draws the most recently published list. This should only be called by
+     * the render thread.
+     * 
+     * @param drawState
+     *        An object to pass to the renderers which enables the items to be
+     *        drawn on the chosen medium.
+     */
+    public void draw( Object drawState )
+    {
+        acquire().draw( drawState );
+    }
+
+    /**
+     * @return The number of frames extracted, the frame of a list is returned
+     *         by {@link DrawList#getFrame()}.
+     */
+    public int getFrame()
+    {
+        return frame;
+    }
+
+}
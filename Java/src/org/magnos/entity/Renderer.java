@@ -34,6 +34,11 @@ package org.magnos.entity;
  * It's common for the {@link #create(Entity)} method to return the reference
  * to this Renderer. Renderer implementations that don't have Entity specific
  * rendering information don't need to create a new instance of a Renderer.
+ * <br/>
+ * <br/>
+ * A Renderer which implements {@link RendererExtracted} can also draw an
+ * Entity from a {@link DrawList}, so the entities can be drawn on another
+ * thread while they're being updated (see {@link RenderPipeline}).
  * 
  * @author Philip Diffenderfer
  * 
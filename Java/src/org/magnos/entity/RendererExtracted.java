@@ -0,0 +1,57 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity;
+
+/**
+ * A {@link Renderer} which can also draw an Entity from a {@link DrawList}.
+ * When an Entity is extracted with {@link Entity#extract(DrawList)} a
+ * RendererExtracted packs whatever it needs to draw the Entity into the list,
+ * and later draws the item from the list without reading the Entity. Since the
+ * items remember the renderer that added them, a RendererExtracted should be
+ * shared by the entities it draws (like {@link RendererSingle}) and not
+ * created for each Entity.
+ * 
+ * @author Philip Diffenderfer
+ * @see DrawList
+ * @see RenderPipeline
+ */
+public interface RendererExtracted extends Renderer
+{
+
+    /**
+     * Adds the items needed to draw the given Entity to the list.
+     * 
+     * @param e
+     *        The entity to extract.
+     * @param list
+     *        The list to add the items to.
+     */
+    public void extract( Entity e, DrawList list );
+
+    /**
+     * Draws an item of the list which was added by this renderer.
+     * 
+     * @param list
+     *        The list with the item.
+     * @param index
+     *        The index of the item to draw.
+     * @param drawState
+     *        The drawState passed to {@link DrawList#draw(Object)}.
+     */
+    public void draw( DrawList list, int index, Object drawState );
+
+}
@@ -17,6 +17,7 @@
 package org.magnos.entity;
 
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 
 import org.magnos.entity.util.BitSet;
 import org.magnos.entity.util.ComponentSet;
@@ -101,11 +102,85 @@ public class Template extends Id
      */
     protected View view;
 
+    /**
+     * The resolved {@link Control} of each controller in this Template in the
+     * order they're invoked, or null if the plan needs to be built.
+     */
+    protected Control[] plan;
+
+    /**
+     * The value of {@link Ents#controlModifications} when the plan was built.
+     */
+    protected int planModifications;
+
+    /**
+     * Whether entities of this template can be updated in parallel, this is
+     * determined when the plan is built.
+     */
+    protected boolean planParallel;
+
+    /**
+     * The number of times this template has been modified.
+     */
+    protected int version;
+
+    /**
+     * The results of the {@link TemplateFilterCache}s evaluated against this
+     * template, indexed by the slot of the cache.
+     */
+    protected int[] filterResults = {};
+
+    /**
+     * The columnar storage of this template, this is null until a component
+     * which stores it's values in columns is added.
+     */
+    protected TemplateStorage storage;
+
     /**
      * The number of entities that exist that use this template.
      */
     protected int instances;
 
+    /**
+     * The entities that exist that use this template, the first
+     * {@link #instances} are live.
+     */
+    protected Entity[] instanceArray = {};
+
+    /**
+     * The index of this template in the live templates of {@link Ents}, or -1
+     * if this template has no instances.
+     */
+    protected int live = -1;
+
+    /**
+     * The custom templates entities of this template move to when they add a
+     * component or controller, or set a view, keyed by what was added. These
+     * are cleared when this template is modified.
+     */
+    protected IdentityHashMap<Object, Template> edges;
+
+    /**
+     * The custom templates entities of this template move to when they alias a
+     * component, keyed by the alias and then the subject component.
+     */
+    protected IdentityHashMap<Component<?>, IdentityHashMap<Component<?>, Template>> aliasEdges;
+
+    /**
+     * Whether this template is the target of an edge of another template or is
+     * interned, a shared template is never modified for a single entity.
+     */
+    protected boolean shared;
+
+    /**
+     * Whether this template is canonical in the {@link TemplateRegistry} of
+     * {@link Ents}, the signature it was interned with, and the next template
+     * in the same bucket of the registry.
+     */
+    protected boolean interned;
+    protected int signature;
+    protected Template nextInterned;
+
     /**
      * Instantiates a custom template without components, controllers, or a
      * view.
@@ -297,27 +372,49 @@ public class Template extends Id
     }
 
     /**
-     * Increments the number of instances of Entities for this template.
+     * Adds the entity to the live instances of this template. When this is the
+     * first instance the template becomes live in {@link Ents}.
      * 
      * @param e
      *        The entity created with this template.
      */
     protected void newInstance( Entity e )
     {
-        instances++;
+        if (instances == instanceArray.length)
+        {
+            instanceArray = Arrays.copyOf( instanceArray, instances + (instances >> 1) + 8 );
+        }
+
+        e.instance = instances;
+        instanceArray[instances++] = e;
+
+        if (instances == 1)
+        {
+            Ents.addLive( this );
+        }
     }
 
     /**
-     * Decrements the number of instances of Entities for this template. If this
-     * is a custom template and the number of instances is zero, this Template
-     * is no longer useful.
+     * Removes the entity from the live instances of this template, the last
+     * instance takes it's place. If this is a custom template and the number
+     * of instances is zero, this Template is no longer useful.
      * 
      * @param e
      *        The entity removed from this template.
      */
     protected void removeInstance( Entity e )
     {
-        instances--;
+        final Entity last = instanceArray[--instances];
+
+        instanceArray[e.instance] = last;
+        instanceArray[instances] = null;
+        last.instance = e.instance;
+        e.instance = -1;
+
+        if (instances == 0)
+        {
+            Ents.removeLive( this );
+        }
     }
 
     /**
@@ -348,6 +445,41 @@ public class Template extends Id
         {
             handlers[components[i].id].preRemove( e );
         }
+
+        if (storage != null && storage.contains( e ))
+        {
+            storage.remove( e );
+        }
+    }
+
+    /**
+     * Returns the columnar storage of this Template. A template only has
+     * storage when a component that stores it's values in columns was added to
+     * it.
+     * 
+     * @return The reference to the storage of this Template, or null.
+     */
+    public TemplateStorage getStorage()
+    {
+        return storage;
+    }
+
+    /**
+     * Returns the columnar storage of this Template, optionally creating it if
+     * it doesn't exist yet.
+     * 
+     * @param create
+     *        True if the storage should be created if it doesn't exist.
+     * @return The reference to the storage of this Template, or null.
+     */
+    protected TemplateStorage getStorage( boolean create )
+    {
+        if (storage == null && create)
+        {
+            storage = new TemplateStorage();
+        }
+
+        return storage;
     }
 
     /**
@@ -358,6 +490,20 @@ public class Template extends Id
         return instances;
     }
 
+    /**
+     * Returns a live instance of this Template. The order of the instances
+     * changes as entities are removed from this template, the last instance
+     * takes the place of the one removed.
+     * 
+     * @param index
+     *        The index of the instance, between 0 and {@link #getInstances()}.
+     * @return The reference to the entity.
+     */
+    public Entity getInstance( int index )
+    {
+        return instanceArray[index];
+    }
+
     /**
      * Returns the {@link TemplateComponent} that exists on this template for
      * the given component. If the given component does not exist in this
@@ -483,6 +629,8 @@ public class Template extends Id
         handlers[component.id] = component.add( this );
         componentMap[component.id] = i;
 
+        invalidate();
+
         return this;
     }
 
@@ -539,6 +687,8 @@ public class Template extends Id
         componentMap[componentId] = i;
         component.postCustomAdd( e, this, handler );
         handler.postAdd( e );
+
+        invalidate();
     }
 
     /**
@@ -558,9 +708,164 @@ public class Template extends Id
         componentMap[alias.id] = componentMap[component.id];
         componentBitSet.set( alias.id );
 
+        invalidate();
+
         return this;
     }
 
+    /**
+     * Returns the update plan of this Template, which is the {@link Control} of
+     * each controller in the order they're invoked. The plan is built when it's
+     * first needed and is rebuilt after the components, controllers, or view of
+     * this Template change, after the access of a controller is declared, or
+     * after the control of a controller is changed (either through
+     * {@link Ents#setControllerDefault(Controller, Control)} or
+     * {@link Controller#setControl(Control)}). The i'th control
+     * in the plan is enabled on an entity when the i'th bit of the entity's
+     * controller flags is set.
+     * 
+     * @return The resolved controls of this Template, this should not be
+     *         modified.
+     */
+    public Control[] getPlan()
+    {
+        Control[] p = plan;
+
+        if (p == null || planModifications != Ents.controlModifications)
+        {
+            final int n = controllers.length;
+
+            p = new Control[n];
+
+            boolean parallel = true;
+
+            for (int i = 0; i < n; i++)
+            {
+                p[i] = controllers[i].getPlannedControl();
+
+                parallel = parallel && hasDistinctWrites( controllers[i] );
+            }
+
+            parallel = parallel && !races( this );
+
+            plan = p;
+            planModifications = Ents.controlModifications;
+            planParallel = parallel;
+        }
+
+        return p;
+    }
+
+    /**
+     * Returns whether entities of this Template can be updated in parallel with
+     * other entities. This is true when every controller in this template has
+     * declared the components it writes to (see
+     * {@link Controller#writes(Component...)}), each of those components has
+     * a distinct value per entity in this template, and no controller reads a
+     * component another controller in this template writes to (see
+     * {@link Controller#races(Controller)}).
+     * 
+     * @return True if entities of this template can be updated in parallel.
+     */
+    public boolean isParallelSafe()
+    {
+        getPlan();
+
+        return planParallel;
+    }
+
+    /**
+     * Returns whether the controllers of this Template and the given Template
+     * could race if entities of both were updated at the same time. A
+     * controller never races with itself, and a Template races with itself
+     * when two of it's controllers race.
+     * 
+     * @param other
+     *        The template to test against.
+     * @return True if a controller of this template races with a different
+     *         controller of the given template.
+     * @see Controller#races(Controller)
+     */
+    public boolean races( Template other )
+    {
+        for (Controller c : controllers)
+        {
+            for (Controller d : other.controllers)
+            {
+                if (c != d && c.races( d ))
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean hasDistinctWrites( Controller controller )
+    {
+        final BitSet writes = controller.writes;
+
+        if (writes == null)
+        {
+            return false;
+        }
+
+        for (int id = writes.nextSetBit( 0 ); id >= 0; id = writes.nextSetBit( id + 1 ))
+        {
+            if (id < componentMap.length && componentMap[id] != -1 && !components[componentMap[id]].hasDistinctValues())
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Invalidates the cached plan of this Template.
+     * 
+     * @see #invalidate()
+     */
+    public void invalidatePlan()
+    {
+        plan = null;
+    }
+
+    /**
+     * Invalidates everything cached about this Template (the plan and the
+     * results of any {@link TemplateFilterCache}) and increments the version
+     * of this Template, this is done automatically when the components,
+     * controllers, or view of this template change.
+     */
+    public void invalidate()
+    {
+        plan = null;
+        version++;
+        edges = null;
+        aliasEdges = null;
+
+        if (interned)
+        {
+            Ents.customTemplates.remove( this );
+        }
+
+        Arrays.fill( filterResults, 0 );
+    }
+
+    /**
+     * Returns the version of this Template, which changes every time the
+     * components, controllers, or view of this template change. A result
+     * computed from the structure of this template is still valid as long as
+     * the version hasn't changed.
+     * 
+     * @return The version of this Template.
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
     /**
      * Returns whether this Template has the given controller (or an
      * alternative).
@@ -657,6 +962,8 @@ public class Template extends Id
             controllers[indexOf( controller )] = controller;
         }
 
+        invalidate();
+
         return this;
     }
 
@@ -728,6 +1035,8 @@ public class Template extends Id
     {
         this.view = view;
 
+        invalidate();
+
         return this;
     }
 
@@ -817,7 +1126,9 @@ public class Template extends Id
     /**
      * Handles the request to add a component dynamically to the given Entity
      * and returns the new Template for the Entity (or this Template if it has
-     * its own).
+     * its own). Every entity of this template which adds the same component
+     * moves to the same template, unless that template keeps values for its
+     * entities (see {@link #isShareable()}).
      * 
      * @param component
      *        The component to add or overwrite an existing alternative with.
@@ -832,12 +1143,57 @@ public class Template extends Id
             return this;
         }
 
-        Template t = getCustomTarget();
-        t.addForEntity( component, e );
+        Template t = getEdge( component );
+
+        if (t == null)
+        {
+            if (isOwnedBy( e ))
+            {
+                addForEntity( component, e );
+
+                return this;
+            }
+
+            t = share( component, extend( CUSTOM, CUSTOM_NAME ).add( component ) );
+        }
+
+        t.joinForEntity( component, e, this );
 
         return t;
     }
 
+    /**
+     * Prepares the entity to move from the given template to this one, where
+     * this template is the target of the edge of the given template for the
+     * component. This does for the entity what
+     * {@link #addForEntity(Component, Entity)} does without modifying this
+     * template, the values of the components both templates have are moved
+     * over.
+     * 
+     * @param component
+     *        The component the entity is adding.
+     * @param e
+     *        The entity adding the component.
+     * @param from
+     *        The current template of the entity.
+     */
+    protected <T> void joinForEntity( Component<T> component, Entity e, Template from )
+    {
+        final TemplateComponent<?> previous = from.getTemplateComponentSafe( component );
+
+        if (previous != null)
+        {
+            previous.preRemove( e );
+        }
+
+        joinForEntity( e, from );
+
+        final TemplateComponent<?> handler = handlers[component.id];
+
+        component.postCustomAdd( e, this, handler );
+        handler.postAdd( e );
+    }
+
     /**
      * Handles the request to alias a component dynamic for the given Entity and
      * returns the new Template for the Entity (or this Template if it has its
@@ -847,9 +1203,11 @@ public class Template extends Id
      *        The aliased component.
      * @param alias
      *        The component to alias.
+     * @param e
+     *        The entity aliasing the component.
      * @return The reference to the new template for the Entity.
      */
-    protected <T> Template setCustomAlias( Component<T> component, Component<T> alias )
+    protected <T> Template setCustomAlias( Component<T> component, Component<T> alias, Entity e )
     {
         Template t = this;
 
@@ -857,8 +1215,42 @@ public class Template extends Id
         {
             if (handlers[alias.id] != handlers[component.id])
             {
-                t = getCustomTarget();
-                t.alias( component, alias );
+                IdentityHashMap<Component<?>, Template> subjects = (aliasEdges == null ? null : aliasEdges.get( alias ));
+
+                t = (subjects == null ? null : subjects.get( component ));
+
+                if (t == null)
+                {
+                    if (isOwnedBy( e ))
+                    {
+                        return alias( component, alias );
+                    }
+
+                    t = extend( CUSTOM, CUSTOM_NAME ).alias( component, alias );
+
+                    if (!t.isShareable())
+                    {
+                        t.joinForEntity( e, this );
+
+                        return t;
+                    }
+
+                    t = Ents.intern( t );
+
+                    if (aliasEdges == null)
+                    {
+                        aliasEdges = new IdentityHashMap<Component<?>, IdentityHashMap<Component<?>, Template>>();
+                    }
+
+                    if (subjects == null)
+                    {
+                        aliasEdges.put( alias, subjects = new IdentityHashMap<Component<?>, Template>() );
+                    }
+
+                    subjects.put( component, t );
+                }
+
+                t.joinForEntity( e, this );
             }
         }
 
@@ -868,7 +1260,9 @@ public class Template extends Id
     /**
      * Handles the request to add a controller dynamically to the given Entity
      * and returns the new Template for the Entity (or this Template if it has
-     * its own).
+     * its own). Every entity of this template which adds the same controller
+     * moves to the same template, unless that template keeps values for its
+     * entities (see {@link #isShareable()}).
      * 
      * @param controller
      *        The controller to add or overwrite an existing alternative with.
@@ -876,15 +1270,26 @@ public class Template extends Id
      *        The entity adding the controller.
      * @return The reference to the new template for the Entity.
      */
-    protected Template addCustomController( Controller controller )
+    protected Template addCustomController( Controller controller, Entity e )
     {
         if (hasExact( controller ))
         {
             return this;
         }
 
-        Template t = getCustomTarget();
-        t.add( controller );
+        Template t = getEdge( controller );
+
+        if (t == null)
+        {
+            if (isOwnedBy( e ))
+            {
+                return add( controller );
+            }
+
+            t = share( controller, extend( CUSTOM, CUSTOM_NAME ).add( controller ) );
+        }
+
+        t.joinForEntity( e, this );
 
         return t;
     }
@@ -892,34 +1297,253 @@ public class Template extends Id
     /**
      * Handles the request to set a view dynamically for the given Entity and
      * returns the new Template for the Entity (or this Template if it has its
-     * own).
+     * own). Every entity of this template which sets the same view moves to the
+     * same template, unless that template keeps values for its entities (see
+     * {@link #isShareable()}).
      * 
      * @param view
      *        The view to set or overwrite an existing alternative with.
+     * @param e
+     *        The entity setting the view.
      * @return The reference to the new template for the Entity.
      */
-    protected Template setCustomView( View view )
+    protected Template setCustomView( View view, Entity e )
     {
         if (hasExact( view ))
         {
             return this;
         }
 
-        Template t = getCustomTarget();
-        t.setView( view );
+        Template t = getEdge( view );
+
+        if (t == null)
+        {
+            if (isOwnedBy( e ))
+            {
+                return setView( view );
+            }
+
+            t = share( view, extend( CUSTOM, CUSTOM_NAME ).setView( view ) );
+        }
+
+        t.joinForEntity( e, this );
 
         return t;
     }
 
     /**
-     * Returns the Template to customize based on the current state of the
-     * template and the number of entity instances using it.
+     * Returns whether this template can be customized in place for the given
+     * entity, which is when it's a custom template used by at most that entity
+     * and is not shared. Otherwise the entity moves to the canonical custom
+     * template with the change (see {@link Ents#intern(Template)}).
+     * 
+     * @param e
+     *        The entity customizing this template.
+     * @return True if this template can be modified for the entity.
+     */
+    protected boolean isOwnedBy( Entity e )
+    {
+        return isCustom() && instances <= 1 && !shared && (instances == 0 || instanceArray[0] == e);
+    }
+
+    /**
+     * Returns whether entities which are customized the same way can share
+     * this template, which is when none of its components keep their value on
+     * the template (see {@link Component#hasTemplateValue()}). A custom
+     * template that isn't shareable is only ever used by the entity it was
+     * created for, like any custom template before it's interned.
+     * 
+     * @return True if entities can share this template.
+     */
+    public boolean isShareable()
+    {
+        for (Component<?> c : components)
+        {
+            if (c.hasTemplateValue())
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Moves the component values and controller flags of the given entity from
+     * the layout of the given template to the layout of this template. The
+     * values of components this template has that the given template doesn't
+     * have are left for the caller to initialize, and controllers this
+     * template has that the given template doesn't have are enabled. The
+     * entity still needs to change it's template to this one.
      * 
-     * @return A reference to a template to customize.
+     * @param e
+     *        The entity moving to this template.
+     * @param from
+     *        The current template of the entity.
      */
-    protected Template getCustomTarget()
+    protected void joinForEntity( Entity e, Template from )
     {
-        return isCustom() && instances <= 1 ? this : extend( CUSTOM, CUSTOM_NAME );
+        final Object[] values = new Object[factories.length];
+
+        for (Component<?> c : from.components)
+        {
+            if (hasExact( c ))
+            {
+                c.moveValue( from, e.values, this, values );
+            }
+        }
+
+        final BitSet enabled = new BitSet( controllers.length, true );
+
+        for (int i = 0; i < from.controllers.length; i++)
+        {
+            final int j = indexOf( from.controllers[i] );
+
+            if (j != -1 && !e.controllerEnabled.get( i ))
+            {
+                enabled.clear( j );
+            }
+        }
+
+        e.values = values;
+        e.controllerEnabled = enabled;
+    }
+
+    /**
+     * Returns the signature of this template which is the same for all
+     * templates that are equivalent.
+     * 
+     * @return The signature of this template.
+     * @see #isEquivalent(Template)
+     */
+    public int getSignature()
+    {
+        int hash = componentBitSet.hashCode();
+
+        hash = hash * 31 + controllerBitSet.hashCode();
+        hash = hash * 31 + extendedIds.hashCode();
+        hash = hash * 31 + (view == null ? -1 : view.id);
+
+        for (int i = 0; i < controllers.length; i++)
+        {
+            hash = hash * 31 + controllers[i].id;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Determines whether this template and the given template are
+     * interchangeable custom templates. They are when they have the exact same
+     * components (and aliases), controllers in the same order, view, and
+     * parents and the value of each of their components is the same for both
+     * (see
+     * {@link Component#isInterchangeable(Template, Template)}).
+     * 
+     * @param other
+     *        The template to compare to.
+     * @return True if entities can move between the templates without any
+     *         visible change.
+     */
+    public boolean isEquivalent( Template other )
+    {
+        if (other == this)
+        {
+            return true;
+        }
+
+        if (!isCustom() || !other.isCustom() || view != other.view ||
+            components.length != other.components.length ||
+            controllers.length != other.controllers.length ||
+            !componentBitSet.equals( other.componentBitSet ) ||
+            !controllerBitSet.equals( other.controllerBitSet ) ||
+            !extendedIds.equals( other.extendedIds ))
+        {
+            return false;
+        }
+
+        for (int id = componentBitSet.nextSetBit( 0 ); id >= 0; id = componentBitSet.nextSetBit( id + 1 ))
+        {
+            final Component<?> c = components[componentMap[id]];
+
+            if (c != other.components[other.componentMap[id]] || (c.id == id && !c.isInterchangeable( this, other )))
+            {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < controllers.length; i++)
+        {
+            if (controllers[i] != other.controllers[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return True if this template is the canonical custom template in the
+     *         registry of {@link Ents} for its components, controllers, and
+     *         view.
+     */
+    public boolean isInterned()
+    {
+        return interned;
+    }
+
+    /**
+     * Returns the number of templates entities of this template have moved to
+     * by adding a component, controller, view, or alias since this template
+     * was last modified.
+     * 
+     * @return The number of cached edges from this template.
+     */
+    public int getEdgeCount()
+    {
+        int count = (edges == null ? 0 : edges.size());
+
+        if (aliasEdges != null)
+        {
+            for (IdentityHashMap<Component<?>, Template> subjects : aliasEdges.values())
+            {
+                count += subjects.size();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return True if this template is shared by entities which made the same
+     *         change to another template or is interned.
+     */
+    public boolean isShared()
+    {
+        return shared;
+    }
+
+    private Template share( Object key, Template custom )
+    {
+        return (custom.isShareable() ? putEdge( key, Ents.intern( custom ) ) : custom);
+    }
+
+    private Template getEdge( Object key )
+    {
+        return (edges == null ? null : edges.get( key ));
+    }
+
+    private Template putEdge( Object key, Template target )
+    {
+        if (edges == null)
+        {
+            edges = new IdentityHashMap<Object, Template>();
+        }
+
+        edges.put( key, target );
+
+        return target;
     }
 
     /**
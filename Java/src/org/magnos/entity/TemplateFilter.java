@@ -0,0 +1,40 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity;
+
+/**
+ * An {@link EntityFilter} whose result depends only on the {@link Template} of
+ * the Entity. A query with a TemplateFilter (see {@link EntityQuery}) can
+ * select the matching templates first and only visit their instances.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public interface TemplateFilter extends EntityFilter
+{
+
+    /**
+     * Determines whether entities with the given Template are valid.
+     * 
+     * @param template
+     *        The template to validate.
+     * @return True if the entities of the template should be iterated over,
+     *         otherwise false.
+     */
+    public boolean isValid( Template template );
+
+}
@@ -0,0 +1,162 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+
+import org.magnos.entity.util.IndexPool;
+
+
+/**
+ * A {@link TemplateFilter} which remembers the result of another filter for
+ * each {@link Template}, so after the first entity of a template is evaluated
+ * the rest cost a single array lookup. The results are stored in the templates
+ * themselves and they are forgotten when a template is modified (see
+ * {@link Template#invalidate()}). <br/>
+ * <br/>
+ * The filter given must only depend on the template of an entity, which is
+ * the case for filters classified as template filters by
+ * {@link org.magnos.entity.filters.Filters#classify(EntityFilter)}. If the
+ * filter given is changed after it's been cached {@link #invalidate()} must be
+ * called. Each cache takes a slot in every template it evaluates, so caches
+ * should be long lived and {@link #release()}d when no longer needed.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class TemplateFilterCache implements TemplateFilter
+{
+
+    /**
+     * The slots given to caches.
+     */
+    private static final IndexPool slots = new IndexPool();
+
+    /**
+     * The last epoch given to a cache, an epoch is never reused so results
+     * left in a template from a released cache are never mistaken for the
+     * results of a cache that takes it's slot.
+     */
+    private static int epochs;
+
+    /**
+     * The filter whose results are cached.
+     */
+    protected final TemplateFilter filter;
+
+    /**
+     * The index into {@link Template#filterResults} of this cache, or -1 if
+     * it's been released.
+     */
+    protected int slot;
+
+    /**
+     * The epoch of the results of this cache, a result stored in a template is
+     * {@code (epoch << 1) | (valid ? 1 : 0)}.
+     */
+    protected int epoch;
+
+    /**
+     * Instantiates a new TemplateFilterCache.
+     * 
+     * @param filter
+     *        The filter whose results are cached.
+     */
+    public TemplateFilterCache( TemplateFilter filter )
+    {
+        this.filter = filter;
+
+        synchronized (slots)
+        {
+            this.slot = slots.pop();
+            this.epoch = ++epochs;
+        }
+    }
+
+    @Override
+    public boolean isValid( Entity e )
+    {
+        return isValid( e.template );
+    }
+
+    @Override
+    public boolean isValid( Template template )
+    {
+        final int[] results = template.filterResults;
+
+        if (slot >= 0 && slot < results.length)
+        {
+            final int result = results[slot];
+
+            if ((result >>> 1) == epoch)
+            {
+                return (result & 1) == 1;
+            }
+        }
+
+        final boolean valid = filter.isValid( template );
+
+        if (slot != -1)
+        {
+            if (slot >= results.length)
+            {
+                template.filterResults = Arrays.copyOf( results, slot + 1 );
+            }
+
+            template.filterResults[slot] = (epoch << 1) | (valid ? 1 : 0);
+        }
+
+        return valid;
+    }
+
+    /**
+     * @return The filter whose results are cached.
+     */
+    public TemplateFilter getFilter()
+    {
+        return filter;
+    }
+
+    /**
+     * Forgets all results of this cache, this must be called when the filter
+     * being cached has been changed.
+     */
+    public void invalidate()
+    {
+        synchronized (slots)
+        {
+            epoch = ++epochs;
+        }
+    }
+
+    /**
+     * Releases the slot of this cache so it can be used by another cache,
+     * after this the filter is evaluated every time.
+     */
+    public void release()
+    {
+        synchronized (slots)
+        {
+            if (slot != -1)
+            {
+                slots.push( slot );
+                slot = -1;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,237 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+
+
+/**
+ * A registry of canonical custom {@link Template}s. Custom templates with the
+ * same components, controllers, view, and parents (see
+ * {@link Template#isEquivalent(Template)}) are interchangeable, so when a new
+ * custom template is interned the equivalent template already in the registry
+ * is returned instead and the new one can be discarded. A template in the
+ * registry is shared, so it's never modified for a single entity. <br/>
+ * <br/>
+ * The registry is a hash table keyed by {@link Template#getSignature()} where
+ * each bucket is a chain of templates linked through the templates themselves.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class TemplateRegistry
+{
+
+    /**
+     * The initial number of buckets in a registry.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The first template in each bucket, the number of buckets is always a
+     * power of 2.
+     */
+    protected Template[] buckets;
+
+    /**
+     * The number of templates in this registry.
+     */
+    protected int size;
+
+    /**
+     * Instantiates a new empty TemplateRegistry.
+     */
+    public TemplateRegistry()
+    {
+        buckets = new Template[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Returns the canonical template equivalent to the given template. If the
+     * registry doesn't have an equivalent template the given template is added
+     * and becomes the canonical one. Templates which are not custom are
+     * returned as-is.
+     * 
+     * @param template
+     *        The template to intern.
+     * @return The canonical template equivalent to the given template.
+     */
+    public Template intern( Template template )
+    {
+        if (!template.isCustom())
+        {
+            return template;
+        }
+
+        final Template existing = find( template );
+
+        if (existing != null)
+        {
+            return existing;
+        }
+
+        if (size >= buckets.length - (buckets.length >> 2))
+        {
+            resize( buckets.length << 1 );
+        }
+
+        final int bucket = template.getSignature() & (buckets.length - 1);
+
+        template.signature = template.getSignature();
+        template.interned = true;
+        template.shared = true;
+        template.nextInterned = buckets[bucket];
+        buckets[bucket] = template;
+        size++;
+
+        return template;
+    }
+
+    /**
+     * Finds the template in this registry which is equivalent to the given
+     * template.
+     * 
+     * @param template
+     *        The template to find an equivalent template of.
+     * @return The equivalent template in this registry, or null if none exists.
+     */
+    public Template find( Template template )
+    {
+        if (template.interned)
+        {
+            return template;
+        }
+
+        final int signature = template.getSignature();
+
+        Template t = buckets[signature & (buckets.length - 1)];
+
+        while (t != null)
+        {
+            if (t.signature == signature && t.isEquivalent( template ))
+            {
+                return t;
+            }
+
+            t = t.nextInterned;
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes the given template from this registry, this is done when an
+     * interned template is modified.
+     * 
+     * @param template
+     *        The template to remove.
+     * @return True if the template was removed, false if it wasn't interned.
+     */
+    public boolean remove( Template template )
+    {
+        if (!template.interned)
+        {
+            return false;
+        }
+
+        final int bucket = template.signature & (buckets.length - 1);
+
+        Template prev = null;
+        Template t = buckets[bucket];
+
+        while (t != null && t != template)
+        {
+            prev = t;
+            t = t.nextInterned;
+        }
+
+        if (t == null)
+        {
+            return false;
+        }
+
+        if (prev == null)
+        {
+            buckets[bucket] = t.nextInterned;
+        }
+        else
+        {
+            prev.nextInterned = t.nextInterned;
+        }
+
+        t.nextInterned = null;
+        t.interned = false;
+        size--;
+
+        return true;
+    }
+
+    /**
+     * @return The number of canonical templates in this registry.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Removes all templates from this registry.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < buckets.length; i++)
+        {
+            Template t = buckets[i];
+
+            while (t != null)
+            {
+                final Template next = t.nextInterned;
+
+                t.nextInterned = null;
+                t.interned = false;
+                t = next;
+            }
+        }
+
+        Arrays.fill( buckets, null );
+        size = 0;
+    }
+
+    private void resize( int capacity )
+    {
+        final Template[] old = buckets;
+
+        buckets = new Template[capacity];
+
+        for (int i = 0; i < old.length; i++)
+        {
+            Template t = old[i];
+
+            while (t != null)
+            {
+                final Template next = t.nextInterned;
+                final int bucket = t.signature & (capacity - 1);
+
+                t.nextInterned = buckets[bucket];
+                buckets[bucket] = t;
+                t = next;
+            }
+        }
+    }
+
+}
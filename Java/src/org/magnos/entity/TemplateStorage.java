@@ -0,0 +1,457 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity;
+
+import java.util.Arrays;
+
+import org.magnos.entity.util.EntityUtility;
+
+
+/**
+ * The columnar storage of a {@link Template}. Every Entity with the template
+ * is given a row, and the values of the column components on the template are
+ * stored in a {@link Column} per component. The rows are kept dense, when an
+ * Entity leaves the storage the Entity in the last row is moved into it's
+ * place. <br/>
+ * <br/>
+ * A template only has storage when a component which stores it's values in
+ * columns has been added to it (see {@link Ents#newComponentColumn(String,
+ * ComponentValueFactory)}).
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class TemplateStorage
+{
+
+    /**
+     * The entity in each row.
+     */
+    protected Entity[] entities = {};
+
+    /**
+     * The number of rows in use.
+     */
+    protected int size;
+
+    /**
+     * The number of chunks allocated in each column.
+     */
+    protected int chunks;
+
+    /**
+     * The columns in this storage.
+     */
+    protected Column[] columns = {};
+
+    /**
+     * The columns in this storage indexed by component id.
+     */
+    protected Column[] columnMap = {};
+
+    /**
+     * Instantiates a new empty TemplateStorage.
+     */
+    protected TemplateStorage()
+    {
+    }
+
+    /**
+     * @return The number of rows (entities) in this storage.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the entity at the given row.
+     * 
+     * @param row
+     *        The row of the entity.
+     * @return The reference to the entity at the given row.
+     */
+    public Entity getEntity( int row )
+    {
+        return entities[row];
+    }
+
+    /**
+     * @return The number of chunks which contain rows in use.
+     */
+    public int getChunkCount()
+    {
+        return (size + Column.CHUNK_MASK) >> Column.CHUNK_BITS;
+    }
+
+    /**
+     * Returns the number of rows in use in the given chunk.
+     * 
+     * @param chunk
+     *        The index of the chunk.
+     * @return The number of rows in use in the chunk.
+     */
+    public int getChunkLength( int chunk )
+    {
+        return Math.min( Column.CHUNK_SIZE, size - (chunk << Column.CHUNK_BITS) );
+    }
+
+    /**
+     * @return The columns in this storage. The returned value should not be
+     *         modified.
+     */
+    public Column[] getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Returns the column for the given component (or an alternative).
+     * 
+     * @param component
+     *        The component of the column.
+     * @return The reference to the column, or null if none exists.
+     */
+    public Column getColumn( Component<?> component )
+    {
+        return (component.id >= columnMap.length ? null : columnMap[component.id]);
+    }
+
+    /**
+     * Returns the column of object values for the given component.
+     * 
+     * @param component
+     *        The component of the column.
+     * @return The reference to the column, or null if none exists.
+     * @throws ClassCastException
+     *         The column for the component does not store objects.
+     */
+    @SuppressWarnings ("unchecked" )
+    public <T> ColumnObject<T> getObjectColumn( Component<T> component )
+    {
+        return (ColumnObject<T>)getColumn( component );
+    }
+
+    /**
+     * Returns the column of float values for the given component.
+     * 
+     * @param component
+     *        The component of the column.
+     * @return The reference to the column, or null if none exists.
+     * @throws ClassCastException
+     *         The column for the component does not store float values.
+     */
+    public ColumnFloat getFloatColumn( Component<Float> component )
+    {
+        return (ColumnFloat)getColumn( component );
+    }
+
+    /**
+     * Returns the column of int values for the given component.
+     * 
+     * @param component
+     *        The component of the column.
+     * @return The reference to the column, or null if none exists.
+     * @throws ClassCastException
+     *         The column for the component does not store int values.
+     */
+    public ColumnInt getIntColumn( Component<Integer> component )
+    {
+        return (ColumnInt)getColumn( component );
+    }
+
+    /**
+     * Returns the column of long values for the given component.
+     * 
+     * @param component
+     *        The component of the column.
+     * @return The reference to the column, or null if none exists.
+     * @throws ClassCastException
+     *         The column for the component does not store long values.
+     */
+    public ColumnLong getLongColumn( Component<Long> component )
+    {
+        return (ColumnLong)getColumn( component );
+    }
+
+    /**
+     * Returns the column of double values for the given component.
+     * 
+     * @param component
+     *        The component of the column.
+     * @return The reference to the column, or null if none exists.
+     * @throws ClassCastException
+     *         The column for the component does not store double values.
+     */
+    public ColumnDouble getDoubleColumn( Component<Double> component )
+    {
+        return (ColumnDouble)getColumn( component );
+    }
+
+    /**
+     * Returns the column of direct (off-heap) values for the given component.
+     * 
+     * @param component
+     *        The component of the column.
+     * @return The reference to the column, or null if none exists.
+     * @throws ClassCastException
+     *         The column for the component does not store direct values.
+     */
+    @SuppressWarnings ("unchecked" )
+    public <T> ColumnDirect<T> getDirectColumn( Component<T> component )
+    {
+        return (ColumnDirect<T>)getColumn( component );
+    }
+
+    /**
+     * Determines whether the given entity has a row in this storage.
+     * 
+     * @param e
+     *        The entity to test for.
+     * @return True if the entity has a row, otherwise false.
+     */
+    public boolean contains( Entity e )
+    {
+        final int row = e.row;
+
+        return (row >= 0 && row < size && entities[row] == e);
+    }
+
+    /**
+     * Releases any chunks and memory not needed to hold the rows currently in
+     * use.
+     */
+    public void trim()
+    {
+        final int needed = getChunkCount();
+
+        while (chunks > needed)
+        {
+            chunks--;
+
+            for (int i = 0; i < columns.length; i++)
+            {
+                columns[i].release( chunks );
+            }
+        }
+
+        entities = Arrays.copyOf( entities, size );
+    }
+
+    /**
+     * Adds the given column to this storage, allocating chunks for it and
+     * initializing the rows already in use.
+     * 
+     * @param column
+     *        The column to add.
+     */
+    protected void addColumn( Column column )
+    {
+        final int id = column.component.id;
+
+        for (int i = 0; i < chunks; i++)
+        {
+            column.allocate( i );
+        }
+
+        for (int i = 0; i < size; i++)
+        {
+            column.init( i );
+        }
+
+        if (id >= columnMap.length)
+        {
+            columnMap = Arrays.copyOf( columnMap, id + 1 );
+        }
+
+        columns = EntityUtility.append( columns, column );
+        columnMap[id] = column;
+    }
+
+    /**
+     * Removes the given column from this storage.
+     * 
+     * @param column
+     *        The column to remove.
+     */
+    protected void removeColumn( Column column )
+    {
+        final int i = EntityUtility.indexOfSame( columns, column );
+
+        if (i != -1)
+        {
+            columns = EntityUtility.removeAt( columns, i );
+
+            if (columnMap[column.component.id] == column)
+            {
+                columnMap[column.component.id] = null;
+            }
+        }
+    }
+
+    /**
+     * Adds a row for the given entity. The values of the row are not
+     * initialized.
+     * 
+     * @param e
+     *        The entity to add a row for.
+     * @return The row of the entity.
+     */
+    protected int add( Entity e )
+    {
+        if (size == chunks << Column.CHUNK_BITS)
+        {
+            for (int i = 0; i < columns.length; i++)
+            {
+                columns[i].allocate( chunks );
+            }
+
+            chunks++;
+        }
+
+        if (size == entities.length)
+        {
+            entities = Arrays.copyOf( entities, size + (size >> 1) + 16 );
+        }
+
+        entities[size] = e;
+        e.row = size;
+
+        return size++;
+    }
+
+    /**
+     * Removes the row of the given entity.
+     * 
+     * @param e
+     *        The entity to remove.
+     */
+    protected void remove( Entity e )
+    {
+        removeRow( e.row );
+
+        e.row = -1;
+    }
+
+    /**
+     * Removes the given row by moving the last row in it's place.
+     * 
+     * @param row
+     *        The row to remove.
+     */
+    protected void removeRow( int row )
+    {
+        final int last = --size;
+
+        if (row != last)
+        {
+            final Entity moved = entities[last];
+
+            for (int i = 0; i < columns.length; i++)
+            {
+                columns[i].move( last, row );
+            }
+
+            entities[row] = moved;
+            moved.row = row;
+        }
+
+        for (int i = 0; i < columns.length; i++)
+        {
+            columns[i].clear( last );
+        }
+
+        entities[last] = null;
+    }
+
+    /**
+     * Copies the values of one entity to another where both entities have rows
+     * in this storage.
+     * 
+     * @param from
+     *        The entity to copy the values of.
+     * @param to
+     *        The entity to copy the values to.
+     * @param deep
+     *        True if the values should be cloned, otherwise false.
+     */
+    protected void copy( Entity from, Entity to, boolean deep )
+    {
+        for (int i = 0; i < columns.length; i++)
+        {
+            final Column c = columns[i];
+
+            c.copy( c, from.row, to.row, deep );
+        }
+    }
+
+    /**
+     * Moves the given entity from one storage to another. The values in the
+     * columns that exist in both storages are moved, and the values in the
+     * columns that only exist in the target storage are initialized. Either
+     * storage may be null.
+     * 
+     * @param e
+     *        The entity to move.
+     * @param from
+     *        The storage the entity is currently in, or null.
+     * @param to
+     *        The storage the entity is moving to, or null.
+     */
+    protected static void move( Entity e, TemplateStorage from, TemplateStorage to )
+    {
+        if (from == to)
+        {
+            return;
+        }
+
+        final boolean moving = (from != null && from.contains( e ));
+        final int fromRow = e.row;
+
+        if (to != null)
+        {
+            final int row = to.add( e );
+            final Column[] columns = to.columns;
+
+            for (int i = 0; i < columns.length; i++)
+            {
+                final Column c = columns[i];
+                final Column source = (moving ? from.getColumn( c.component ) : null);
+
+                if (source != null && source.component == c.component)
+                {
+                    c.copy( source, fromRow, row, false );
+                }
+                else
+                {
+                    c.init( row );
+                }
+            }
+        }
+        else
+        {
+            e.row = -1;
+        }
+
+        if (moving)
+        {
+            from.removeRow( fromRow );
+        }
+    }
+
+}
@@ -17,20 +17,27 @@
 package org.magnos.entity.filters;
 
 import org.magnos.entity.Component;
+import org.magnos.entity.ComponentSparse;
 import org.magnos.entity.Entity;
-import org.magnos.entity.EntityFilter;
 import org.magnos.entity.EntityIterator;
+import org.magnos.entity.Template;
+import org.magnos.entity.TemplateFilter;
 import org.magnos.entity.util.BitSet;
 
 
 /**
- * A filter that only returns entities that have given components.
+ * A filter that only returns entities that have given components. Only the
+ * template of an entity is checked, so a {@link ComponentSparse} (which is
+ * given to an entity outside of it's template) can't be given to this filter
+ * and an {@link IllegalArgumentException} is thrown if it is. Sparse
+ * components are filtered with {@link SparseFilter} instead, which can be
+ * combined with this filter (see {@link AndFilter}).
  * 
  * @author Philip Diffenderfer
  * @see EntityIterator
  * 
  */
-public class ComponentFilter implements EntityFilter
+public class ComponentFilter implements TemplateFilter
 {
 
     protected final BitSet components = new BitSet();
@@ -64,9 +71,19 @@ public class ComponentFilter implements EntityFilter
      *        The set of components each entity returned by the filter will
      *        have.
      * @return The reference to this filter.
+     * @throws IllegalArgumentException
+     *         A component is a {@link ComponentSparse}.
      */
     public ComponentFilter set( Component<?>... components )
     {
+        for (Component<?> c : components)
+        {
+            if (c instanceof ComponentSparse)
+            {
+                throw new IllegalArgumentException( "The sparse component " + c.name + " isn't part of a template, use Filters.sparse to filter by it" );
+            }
+        }
+
         this.components.clear();
         this.components.setFromIds( components );
 
@@ -79,4 +96,10 @@ public class ComponentFilter implements EntityFilter
         return e.hasComponents( components );
     }
 
+    @Override
+    public boolean isValid( Template template )
+    {
+        return template.hasComponents( components );
+    }
+
 }
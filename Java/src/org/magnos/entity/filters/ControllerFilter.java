@@ -18,8 +18,9 @@ package org.magnos.entity.filters;
 
 import org.magnos.entity.Controller;
 import org.magnos.entity.Entity;
-import org.magnos.entity.EntityFilter;
 import org.magnos.entity.EntityIterator;
+import org.magnos.entity.Template;
+import org.magnos.entity.TemplateFilter;
 import org.magnos.entity.util.BitSet;
 
 
@@ -30,7 +31,7 @@ import org.magnos.entity.util.BitSet;
  * @see EntityIterator
  * 
  */
-public class ControllerFilter implements EntityFilter
+public class ControllerFilter implements TemplateFilter
 {
 
     protected BitSet controllers;
@@ -79,4 +80,10 @@ public class ControllerFilter implements EntityFilter
         return e.hasControllers( controllers );
     }
 
+    @Override
+    public boolean isValid( Template template )
+    {
+        return template.hasControllers( controllers );
+    }
+
 }
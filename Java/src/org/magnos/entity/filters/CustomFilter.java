@@ -17,8 +17,9 @@
 package org.magnos.entity.filters;
 
 import org.magnos.entity.Entity;
-import org.magnos.entity.EntityFilter;
 import org.magnos.entity.EntityIterator;
+import org.magnos.entity.Template;
+import org.magnos.entity.TemplateFilter;
 
 
 /**
@@ -30,7 +31,7 @@ import org.magnos.entity.EntityIterator;
  * @see EntityIterator
  * 
  */
-public class CustomFilter implements EntityFilter
+public class CustomFilter implements TemplateFilter
 {
 
 	/**
@@ -56,4 +57,10 @@ public class CustomFilter implements EntityFilter
 		return e.isCustom() == custom;
 	}
 
+	@Override
+	public boolean isValid( Template template )
+	{
+		return template.isCustom() == custom;
+	}
+
 }
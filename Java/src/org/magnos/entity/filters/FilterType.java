@@ -0,0 +1,109 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity.filters;
+
+import org.magnos.entity.EntityFilter;
+import org.magnos.entity.TemplateFilter;
+
+
+/**
+ * The kind of state the result of an {@link EntityFilter} depends on, from the
+ * least to the most specific. A filter which depends only on the template of
+ * an entity can have it's results cached per template (see
+ * {@link Filters#cached(EntityFilter)}).
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public enum FilterType
+{
+
+    /**
+     * The result depends only on the template of the entity.
+     */
+    TEMPLATE,
+
+    /**
+     * The result depends on the state of the entity (enabled, visible, expired,
+     * it's class, or it's sparse components) but not on the values of it's
+     * components.
+     */
+    ENTITY,
+
+    /**
+     * The result depends on the values of the components of the entity, or
+     * the filter is unknown.
+     */
+    VALUE;
+
+    /**
+     * Classifies the given filter, the type of a filter which combines other
+     * filters is the most specific type of the filters it combines.
+     * 
+     * @param filter
+     *        The filter to classify.
+     * @return The type of the filter.
+     */
+    public static FilterType classify( EntityFilter filter )
+    {
+        final Class<?> type = filter.getClass();
+
+        if (filter instanceof TemplateFilter || type == DefaultFilter.class)
+        {
+            return TEMPLATE;
+        }
+
+        if (type == AndFilter.class)
+        {
+            final AndFilter and = (AndFilter)filter;
+
+            return max( classify( and.first ), classify( and.second ) );
+        }
+
+        if (type == OrFilter.class)
+        {
+            final OrFilter or = (OrFilter)filter;
+
+            return max( classify( or.first ), classify( or.second ) );
+        }
+
+        if (type == XorFilter.class)
+        {
+            final XorFilter xor = (XorFilter)filter;
+
+            return max( classify( xor.first ), classify( xor.second ) );
+        }
+
+        if (type == NotFilter.class)
+        {
+            return classify( ((NotFilter)filter).filter );
+        }
+
+        if (type == EnabledFilter.class || type == VisibleFilter.class || type == ExpiredFilter.class || type == ClassFilter.class || type == SparseFilter.class)
+        {
+            return ENTITY;
+        }
+
+        return VALUE;
+    }
+
+    private static FilterType max( FilterType a, FilterType b )
+    {
+        return (a.ordinal() > b.ordinal() ? a : b);
+    }
+
+}
@@ -17,10 +17,13 @@
 package org.magnos.entity.filters;
 
 import org.magnos.entity.Component;
+import org.magnos.entity.ComponentSparse;
 import org.magnos.entity.Controller;
 import org.magnos.entity.Entity;
 import org.magnos.entity.EntityFilter;
 import org.magnos.entity.Template;
+import org.magnos.entity.TemplateFilter;
+import org.magnos.entity.TemplateFilterCache;
 import org.magnos.entity.View;
 
 
@@ -51,6 +54,66 @@ public class Filters
         return new AndFilter( first, second );
     }
 
+    /**
+     * Returns a filter equivalent to the given filter where every part that
+     * only depends on the template of an entity (see {@link FilterType}) has
+     * it's result cached per template with a {@link TemplateFilterCache}. The
+     * parts of an and or or filter are reordered so the cached part is
+     * evaluated first. The given filter is not modified, and if it's changed
+     * afterwards the cached filter must be created again.
+     * 
+     * @param filter
+     *        The filter to cache.
+     * @return The cached filter.
+     */
+    public static EntityFilter cached( EntityFilter filter )
+    {
+        final Class<?> type = filter.getClass();
+
+        if (filter instanceof TemplateFilterCache)
+        {
+            return filter;
+        }
+
+        if (FilterType.classify( filter ) == FilterType.TEMPLATE)
+        {
+            return new TemplateFilterCache( filter instanceof TemplateFilter ? (TemplateFilter)filter : new TemplateTreeFilter( filter ) );
+        }
+
+        if (type == AndFilter.class)
+        {
+            final AndFilter and = (AndFilter)filter;
+
+            return cheapestFirst( and.first, and.second ) ? new AndFilter( cached( and.first ), cached( and.second ) ) : new AndFilter( cached( and.second ), cached( and.first ) );
+        }
+
+        if (type == OrFilter.class)
+        {
+            final OrFilter or = (OrFilter)filter;
+
+            return cheapestFirst( or.first, or.second ) ? new OrFilter( cached( or.first ), cached( or.second ) ) : new OrFilter( cached( or.second ), cached( or.first ) );
+        }
+
+        if (type == XorFilter.class)
+        {
+            final XorFilter xor = (XorFilter)filter;
+
+            return new XorFilter( cached( xor.first ), cached( xor.second ) );
+        }
+
+        if (type == NotFilter.class)
+        {
+            return new NotFilter( cached( ((NotFilter)filter).filter ) );
+        }
+
+        return filter;
+    }
+
+    private static boolean cheapestFirst( EntityFilter first, EntityFilter second )
+    {
+        return FilterType.classify( first ).ordinal() <= FilterType.classify( second ).ordinal();
+    }
+
     /**
      * @see ClassFilter
      * @see ClassFilter#ClassFilter(Class)
@@ -61,6 +124,9 @@ public class Filters
     }
 
     /**
+     * @throws IllegalArgumentException
+     *         A component is a {@link ComponentSparse}, use
+     *         {@link #sparse(ComponentSparse...)} instead.
      * @see ComponentFilter
      * @see ComponentFilter#ComponentFilter(Component...)
      */
@@ -69,6 +135,15 @@ public class Filters
         return new ComponentFilter( components );
     }
 
+    /**
+     * @see SparseFilter
+     * @see SparseFilter#SparseFilter(ComponentSparse...)
+     */
+    public static SparseFilter sparse( ComponentSparse<?>... components )
+    {
+        return new SparseFilter( components );
+    }
+
     /**
      * @see ControllerFilter
      * @see ControllerFilter#ControllerFilter(Controller...)
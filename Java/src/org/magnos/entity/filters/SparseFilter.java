@@ -0,0 +1,66 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity.filters;
+
+import org.magnos.entity.ComponentSparse;
+import org.magnos.entity.Entity;
+import org.magnos.entity.EntityFilter;
+import org.magnos.entity.EntityIterator;
+
+
+/**
+ * A filter that only returns entities that have the given sparse components.
+ * Sparse components aren't part of the template of an entity, so unlike
+ * {@link ComponentFilter} this filter depends on the state of each entity
+ * (see {@link FilterType#ENTITY}).
+ * 
+ * @author Philip Diffenderfer
+ * @see EntityIterator
+ * 
+ */
+public class SparseFilter implements EntityFilter
+{
+
+    protected final ComponentSparse<?>[] components;
+
+    /**
+     * Instantiates a SparseFilter.
+     * 
+     * @param components
+     *        The set of sparse components each entity returned by the filter
+     *        will have.
+     */
+    public SparseFilter( ComponentSparse<?>... components )
+    {
+        this.components = components.clone();
+    }
+
+    @Override
+    public boolean isValid( Entity e )
+    {
+        for (int i = 0; i < components.length; i++)
+        {
+            if (!components[i].has( e ))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -17,9 +17,9 @@
 package org.magnos.entity.filters;
 
 import org.magnos.entity.Entity;
-import org.magnos.entity.EntityFilter;
 import org.magnos.entity.EntityIterator;
 import org.magnos.entity.Template;
+import org.magnos.entity.TemplateFilter;
 
 
 /**
@@ -30,7 +30,7 @@ import org.magnos.entity.Template;
  * @see EntityIterator
  * 
  */
-public class TemplateContainsFilter implements EntityFilter
+public class TemplateContainsFilter implements TemplateFilter
 {
 
     protected Template template;
@@ -79,4 +79,10 @@ public class TemplateContainsFilter implements EntityFilter
         return e.getTemplate().contains( template );
     }
 
+    @Override
+    public boolean isValid( Template template )
+    {
+        return template.contains( this.template );
+    }
+
 }
@@ -17,9 +17,9 @@
 package org.magnos.entity.filters;
 
 import org.magnos.entity.Entity;
-import org.magnos.entity.EntityFilter;
 import org.magnos.entity.EntityIterator;
 import org.magnos.entity.Template;
+import org.magnos.entity.TemplateFilter;
 
 
 /**
@@ -31,7 +31,7 @@ import org.magnos.entity.Template;
  * @see EntityIterator
  * 
  */
-public class TemplateExactFilter implements EntityFilter
+public class TemplateExactFilter implements TemplateFilter
 {
 
     protected Template template;
@@ -77,4 +77,10 @@ public class TemplateExactFilter implements EntityFilter
         return e.getTemplate() == template;
     }
 
+    @Override
+    public boolean isValid( Template template )
+    {
+        return template == this.template;
+    }
+
 }
@@ -17,9 +17,9 @@
 package org.magnos.entity.filters;
 
 import org.magnos.entity.Entity;
-import org.magnos.entity.EntityFilter;
 import org.magnos.entity.EntityIterator;
 import org.magnos.entity.Template;
+import org.magnos.entity.TemplateFilter;
 
 
 /**
@@ -32,7 +32,7 @@ import org.magnos.entity.Template;
  * @see EntityIterator
  * 
  */
-public class TemplateRelativeFilter implements EntityFilter
+public class TemplateRelativeFilter implements TemplateFilter
 {
 
     protected Template template;
@@ -78,4 +78,10 @@ public class TemplateRelativeFilter implements EntityFilter
         return e.getTemplate().isRelative( template );
     }
 
+    @Override
+    public boolean isValid( Template template )
+    {
+        return template.isRelative( this.template );
+    }
+
 }
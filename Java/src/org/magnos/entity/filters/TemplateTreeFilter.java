@@ -0,0 +1,105 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity.filters;
+
+import org.magnos.entity.Entity;
+import org.magnos.entity.EntityFilter;
+import org.magnos.entity.Template;
+import org.magnos.entity.TemplateFilter;
+
+
+/**
+ * A {@link TemplateFilter} for a combination of filters that only depend on
+ * the template of an entity (classified as {@link FilterType#TEMPLATE}), this
+ * evaluates the combination against a template.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+class TemplateTreeFilter implements TemplateFilter
+{
+
+    protected final EntityFilter filter;
+
+    /**
+     * Instantiates a TemplateTreeFilter.
+     * 
+     * @param filter
+     *        The combination of filters, which must be classified as
+     *        {@link FilterType#TEMPLATE}.
+     */
+    public TemplateTreeFilter( EntityFilter filter )
+    {
+        this.filter = filter;
+    }
+
+    @Override
+    public boolean isValid( Entity e )
+    {
+        return filter.isValid( e );
+    }
+
+    @Override
+    public boolean isValid( Template template )
+    {
+        return isValid( filter, template );
+    }
+
+    private static boolean isValid( EntityFilter filter, Template template )
+    {
+        final Class<?> type = filter.getClass();
+
+        if (filter instanceof TemplateFilter)
+        {
+            return ((TemplateFilter)filter).isValid( template );
+        }
+
+        if (type == AndFilter.class)
+        {
+            final AndFilter and = (AndFilter)filter;
+
+            return isValid( and.first, template ) && isValid( and.second, template );
+        }
+
+        if (type == OrFilter.class)
+        {
+            final OrFilter or = (OrFilter)filter;
+
+            return isValid( or.first, template ) || isValid( or.second, template );
+        }
+
+        if (type == XorFilter.class)
+        {
+            final XorFilter xor = (XorFilter)filter;
+
+            return isValid( xor.first, template ) ^ isValid( xor.second, template );
+        }
+
+        if (type == NotFilter.class)
+        {
+            return !isValid( ((NotFilter)filter).filter, template );
+        }
+
+        if (type == DefaultFilter.class)
+        {
+            return true;
+        }
+
+        throw new RuntimeException( "The filter " + filter + " does not only depend on the template of an entity" );
+    }
+
+}
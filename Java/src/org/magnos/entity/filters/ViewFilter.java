@@ -17,8 +17,9 @@
 package org.magnos.entity.filters;
 
 import org.magnos.entity.Entity;
-import org.magnos.entity.EntityFilter;
 import org.magnos.entity.EntityIterator;
+import org.magnos.entity.Template;
+import org.magnos.entity.TemplateFilter;
 import org.magnos.entity.View;
 
 
@@ -29,7 +30,7 @@ import org.magnos.entity.View;
  * @see EntityIterator
  * 
  */
-public class ViewFilter implements EntityFilter
+public class ViewFilter implements TemplateFilter
 {
 
     protected View view;
@@ -76,4 +77,10 @@ public class ViewFilter implements EntityFilter
         return e.has( view );
     }
 
+    @Override
+    public boolean isValid( Template template )
+    {
+        return template.has( view );
+    }
+
 }
@@ -0,0 +1,966 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity.spatial;
+
+import java.util.Arrays;
+
+import org.magnos.entity.Entity;
+import org.magnos.entity.EntityFilter;
+import org.magnos.entity.EntitySet;
+import org.magnos.entity.Ents;
+
+
+/**
+ * A tree of axis aligned bounding boxes over the bounding circles given by a
+ * {@link SpatialAdapter}, used to find the nearest entities to a point, the
+ * entities within a distance of a point, and the first entity along a ray. An
+ * entity with a radius of zero is treated as a point. <br/>
+ * <br/>
+ * The tree is built by splitting the entities at the median of their widest
+ * axis and is stored in flat arrays, queries walk it with a reusable stack so
+ * they never allocate. Each {@link #update()} refits the boxes of the existing
+ * tree to the current positions, which is linear and keeps the tree valid. When
+ * entities have moved enough that the tree has degraded (the area of the root
+ * has grown past the rebuild threshold) or entities have been added or removed
+ * the tree is rebuilt. <br/>
+ * <br/>
+ * A BoundingVolumeHierarchy created with a filter keeps an {@link EntitySet}
+ * and adds and removes entities as they're created, change templates, expire,
+ * and are deleted when {@link #update()} is called. Otherwise entities are
+ * added and removed explicitly. Adding or removing entities marks the tree to
+ * be rebuilt on the next update or query.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class BoundingVolumeHierarchy
+{
+
+    /**
+     * Returned by {@link #indexOf(Entity)} when the entity isn't in the tree.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The maximum number of entities in a leaf.
+     */
+    public static final int LEAF_SIZE = 4;
+
+    /**
+     * The default ratio the area of the root can grow by from refitting before
+     * the tree is rebuilt.
+     */
+    public static final float DEFAULT_REBUILD_THRESHOLD = 2.0f;
+
+    protected final SpatialAdapter adapter;
+
+    /**
+     * The set that determines which entities are in the tree, or null if
+     * entities are added and removed explicitly.
+     */
+    protected EntitySet set;
+
+    /**
+     * The entities in the tree and their position and radius. All indexed by
+     * slot.
+     */
+    protected Entity[] entities = {};
+    protected float[] x = {};
+    protected float[] y = {};
+    protected float[] radius = {};
+    protected int size;
+
+    /**
+     * The slot of each entity indexed by the entity id, or NONE.
+     */
+    protected int[] slots = {};
+
+    /**
+     * The slots ordered so each leaf covers a contiguous range.
+     */
+    protected int[] items = {};
+
+    /**
+     * The nodes of the tree, a parent always comes before it's children so
+     * refitting in reverse order visits children first. A leaf has no left
+     * child and covers the items from start to start + count.
+     */
+    protected float[] minX = {};
+    protected float[] minY = {};
+    protected float[] maxX = {};
+    protected float[] maxY = {};
+    protected int[] left = {};
+    protected int[] right = {};
+    protected int[] start = {};
+    protected int[] count = {};
+    protected int nodeCount;
+
+    /**
+     * The stack of nodes to visit during a query, large enough for the depth of
+     * the tree.
+     */
+    protected int[] stack = new int[64];
+
+    /**
+     * The distances of the entities found by the last nearest query.
+     */
+    protected float[] distances = {};
+
+    protected float rayDistance;
+    protected float builtArea;
+    protected float rebuildThreshold = DEFAULT_REBUILD_THRESHOLD;
+    protected boolean dirty;
+
+    /**
+     * Instantiates a BoundingVolumeHierarchy where entities are added and
+     * removed explicitly.
+     * 
+     * @param adapter
+     *        The adapter which provides the position and radius of entities.
+     */
+    public BoundingVolumeHierarchy( SpatialAdapter adapter )
+    {
+        this.adapter = adapter;
+    }
+
+    /**
+     * Instantiates a BoundingVolumeHierarchy which contains every entity valid
+     * for the given filter.
+     * 
+     * @param filter
+     *        The filter which determines which entities are in the tree.
+     * @param adapter
+     *        The adapter which provides the position and radius of entities.
+     * @see Ents#newEntitySet(EntityFilter, boolean)
+     */
+    public BoundingVolumeHierarchy( EntityFilter filter, SpatialAdapter adapter )
+    {
+        this( adapter );
+
+        this.set = Ents.newEntitySet( filter, true );
+
+        for (int i = 0; i < set.size(); i++)
+        {
+            add( set.at( i ) );
+        }
+
+        set.clearChanges();
+        rebuild();
+    }
+
+    /**
+     * Sets the ratio the area of the root can grow by from refitting before
+     * the tree is rebuilt on {@link #update()}.
+     * 
+     * @param rebuildThreshold
+     *        The ratio of the area of the root to it's area when the tree was
+     *        last built, or {@link Float#POSITIVE_INFINITY} to only rebuild
+     *        when entities are added or removed.
+     */
+    public void setRebuildThreshold( float rebuildThreshold )
+    {
+        this.rebuildThreshold = rebuildThreshold;
+    }
+
+    /**
+     * @return The ratio the area of the root can grow by from refitting before
+     *         the tree is rebuilt.
+     */
+    public float getRebuildThreshold()
+    {
+        return rebuildThreshold;
+    }
+
+    /**
+     * Adds the entity to this tree if it's not already in it.
+     * 
+     * @param e
+     *        The entity to add.
+     */
+    public void add( Entity e )
+    {
+        if (indexOf( e ) != NONE)
+        {
+            return;
+        }
+
+        if (e.id >= slots.length)
+        {
+            final int previousLength = slots.length;
+
+            slots = Arrays.copyOf( slots, Math.max( e.id + 1, previousLength + (previousLength >> 1) + 16 ) );
+            Arrays.fill( slots, previousLength, slots.length, NONE );
+        }
+
+        if (size == entities.length)
+        {
+            final int capacity = size + (size >> 1) + 16;
+
+            entities = Arrays.copyOf( entities, capacity );
+            x = Arrays.copyOf( x, capacity );
+            y = Arrays.copyOf( y, capacity );
+            radius = Arrays.copyOf( radius, capacity );
+        }
+
+        final int s = size++;
+
+        entities[s] = e;
+        slots[e.id] = s;
+        dirty = true;
+    }
+
+    /**
+     * Removes the entity from this tree if it's in it.
+     * 
+     * @param e
+     *        The entity to remove.
+     */
+    public void remove( Entity e )
+    {
+        final int s = indexOf( e );
+
+        if (s == NONE)
+        {
+            return;
+        }
+
+        slots[e.id] = NONE;
+
+        final int last = --size;
+
+        if (s != last)
+        {
+            entities[s] = entities[last];
+            slots[entities[s].id] = s;
+        }
+
+        entities[last] = null;
+        dirty = true;
+    }
+
+    /**
+     * Adds and removes entities based on the changes to the set of this tree
+     * (if it has one), then refits the tree to the current positions or
+     * rebuilds it if entities were added or removed or the tree has degraded.
+     * This is typically called once per tick after entities have been updated.
+     */
+    public void update()
+    {
+        if (set != null)
+        {
+            for (int i = 0; i < set.getRemovedCount(); i++)
+            {
+                final Entity e = set.getRemoved( i );
+
+                if (!set.contains( e ))
+                {
+                    remove( e );
+                }
+            }
+
+            for (int i = 0; i < set.getAddedCount(); i++)
+            {
+                final Entity e = set.getAdded( i );
+
+                if (set.contains( e ))
+                {
+                    add( e );
+                }
+            }
+
+            set.clearChanges();
+        }
+
+        if (dirty)
+        {
+            rebuild();
+        }
+        else
+        {
+            refit();
+
+            if (nodeCount > 0 && area( 0 ) > builtArea * rebuildThreshold)
+            {
+                rebuild();
+            }
+        }
+    }
+
+    /**
+     * Reads the position and radius of every entity and resizes the boxes of
+     * the tree to contain them, without changing the structure of the tree.
+     */
+    public void refit()
+    {
+        if (dirty)
+        {
+            rebuild();
+
+            return;
+        }
+
+        for (int s = 0; s < size; s++)
+        {
+            place( s );
+        }
+
+        for (int n = nodeCount - 1; n >= 0; n--)
+        {
+            if (left[n] == NONE)
+            {
+                bound( n );
+            }
+            else
+            {
+                final int l = left[n];
+                final int r = right[n];
+
+                minX[n] = Math.min( minX[l], minX[r] );
+                minY[n] = Math.min( minY[l], minY[r] );
+                maxX[n] = Math.max( maxX[l], maxX[r] );
+                maxY[n] = Math.max( maxY[l], maxY[r] );
+            }
+        }
+    }
+
+    /**
+     * Reads the position and radius of every entity and builds the tree from
+     * scratch.
+     */
+    public void rebuild()
+    {
+        final int nodeCapacity = Math.max( 1, size * 2 );
+
+        if (items.length < size)
+        {
+            items = new int[entities.length];
+        }
+
+        if (left.length < nodeCapacity)
+        {
+            minX = new float[nodeCapacity];
+            minY = new float[nodeCapacity];
+            maxX = new float[nodeCapacity];
+            maxY = new float[nodeCapacity];
+            left = new int[nodeCapacity];
+            right = new int[nodeCapacity];
+            start = new int[nodeCapacity];
+            count = new int[nodeCapacity];
+        }
+
+        for (int s = 0; s < size; s++)
+        {
+            place( s );
+            items[s] = s;
+        }
+
+        nodeCount = 0;
+        dirty = false;
+
+        if (size > 0)
+        {
+            build( 0, size, 1 );
+        }
+
+        builtArea = (nodeCount > 0 ? area( 0 ) : 0.0f);
+    }
+
+    /**
+     * Stops this tree from following the entities of it's set and removes all
+     * entities. This should be called when a tree created with a filter is no
+     * longer used.
+     */
+    public void release()
+    {
+        if (set != null)
+        {
+            Ents.removeEntitySet( set );
+            set = null;
+        }
+
+        clear();
+    }
+
+    /**
+     * Removes all entities from this tree.
+     */
+    public void clear()
+    {
+        while (size > 0)
+        {
+            remove( entities[size - 1] );
+        }
+
+        nodeCount = 0;
+        dirty = false;
+    }
+
+    /**
+     * @return The number of entities in this tree.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param index
+     *        The slot of the entity, between 0 and {@link #size()}.
+     * @return The entity in the given slot.
+     */
+    public Entity at( int index )
+    {
+        return entities[index];
+    }
+
+    /**
+     * @param e
+     *        The entity to look for.
+     * @return The slot of the entity in this tree, or {@link #NONE}.
+     */
+    public int indexOf( Entity e )
+    {
+        final int id = e.id;
+
+        if (id < slots.length)
+        {
+            final int s = slots[id];
+
+            if (s != NONE && entities[s] == e)
+            {
+                return s;
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Visits every entity whose bounding circle overlaps the given circle.
+     * 
+     * @param qx
+     *        The x coordinate of the center of the circle.
+     * @param qy
+     *        The y coordinate of the center of the circle.
+     * @param qr
+     *        The radius of the circle.
+     * @param filter
+     *        The filter the entities must be valid for, or null.
+     * @param visitor
+     *        The visitor of the entities found.
+     * @return The number of entities visited.
+     */
+    public int query( float qx, float qy, float qr, EntityFilter filter, EntityVisitor visitor )
+    {
+        if (dirty)
+        {
+            rebuild();
+        }
+
+        if (nodeCount == 0)
+        {
+            return 0;
+        }
+
+        final float qr2 = qr * qr;
+
+        int visited = 0;
+        int top = 0;
+
+        stack[top++] = 0;
+
+        while (top > 0)
+        {
+            final int n = stack[--top];
+
+            if (boxDistanceSq( n, qx, qy ) > qr2)
+            {
+                continue;
+            }
+
+            if (left[n] != NONE)
+            {
+                stack[top++] = left[n];
+                stack[top++] = right[n];
+
+                continue;
+            }
+
+            for (int i = start[n], end = i + count[n]; i < end; i++)
+            {
+                final int s = items[i];
+                final float dx = x[s] - qx;
+                final float dy = y[s] - qy;
+                final float r = radius[s] + qr;
+
+                if (dx * dx + dy * dy <= r * r)
+                {
+                    final Entity e = entities[s];
+
+                    if (filter == null || filter.isValid( e ))
+                    {
+                        visitor.visit( e );
+                        visited++;
+                    }
+                }
+            }
+        }
+
+        return visited;
+    }
+
+    /**
+     * Finds the entities nearest to the given point, where the distance to an
+     * entity is the distance to the edge of it's bounding circle (or zero if
+     * the point is inside it). The number of entities found is at most the
+     * length of the given array.
+     * 
+     * @param qx
+     *        The x coordinate of the point.
+     * @param qy
+     *        The y coordinate of the point.
+     * @param filter
+     *        The filter the entities must be valid for, or null.
+     * @param out
+     *        The array to place the entities found in, nearest first.
+     * @return The number of entities placed in the array.
+     * @see #getDistance(int)
+     */
+    public int nearest( float qx, float qy, EntityFilter filter, Entity[] out )
+    {
+        if (dirty)
+        {
+            rebuild();
+        }
+
+        final int k = out.length;
+
+        if (distances.length < k)
+        {
+            distances = new float[k];
+        }
+
+        if (nodeCount == 0 || k == 0)
+        {
+            return 0;
+        }
+
+        int found = 0;
+        int top = 0;
+
+        stack[top++] = 0;
+
+        while (top > 0)
+        {
+            final int n = stack[--top];
+
+            if (found == k && boxDistanceSq( n, qx, qy ) > distances[k - 1] * distances[k - 1])
+            {
+                continue;
+            }
+
+            if (left[n] != NONE)
+            {
+                final int l = left[n];
+                final int r = right[n];
+
+                // Visit the nearer child first, it's pushed last.
+                if (boxDistanceSq( l, qx, qy ) < boxDistanceSq( r, qx, qy ))
+                {
+                    stack[top++] = r;
+                    stack[top++] = l;
+                }
+                else
+                {
+                    stack[top++] = l;
+                    stack[top++] = r;
+                }
+
+                continue;
+            }
+
+            for (int i = start[n], end = i + count[n]; i < end; i++)
+            {
+                final int s = items[i];
+                final float dx = x[s] - qx;
+                final float dy = y[s] - qy;
+                final float d = Math.max( 0.0f, (float)Math.sqrt( dx * dx + dy * dy ) - radius[s] );
+
+                if (found == k && d >= distances[k - 1])
+                {
+                    continue;
+                }
+
+                final Entity e = entities[s];
+
+                if (filter != null && !filter.isValid( e ))
+                {
+                    continue;
+                }
+
+                int j = (found < k ? found++ : k - 1);
+
+                while (j > 0 && distances[j - 1] > d)
+                {
+                    out[j] = out[j - 1];
+                    distances[j] = distances[j - 1];
+                    j--;
+                }
+
+                out[j] = e;
+                distances[j] = d;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * @param index
+     *        The index of an entity found by the last call to
+     *        {@link #nearest(float, float, EntityFilter, Entity[])}.
+     * @return The distance to the entity found.
+     */
+    public float getDistance( int index )
+    {
+        return distances[index];
+    }
+
+    /**
+     * Finds the first entity whose bounding circle is hit by the given ray. If
+     * the origin of the ray is inside an entity that entity is hit at a
+     * distance of zero.
+     * 
+     * @param ox
+     *        The x coordinate of the origin of the ray.
+     * @param oy
+     *        The y coordinate of the origin of the ray.
+     * @param dx
+     *        The x component of the direction of the ray.
+     * @param dy
+     *        The y component of the direction of the ray.
+     * @param maxDistance
+     *        The maximum distance along the ray to look.
+     * @param filter
+     *        The filter the entity must be valid for, or null.
+     * @return The first entity hit, or null if none was hit.
+     * @see #getRayDistance()
+     */
+    public Entity raycast( float ox, float oy, float dx, float dy, float maxDistance, EntityFilter filter )
+    {
+        if (dirty)
+        {
+            rebuild();
+        }
+
+        final float length = (float)Math.sqrt( dx * dx + dy * dy );
+
+        rayDistance = maxDistance;
+
+        if (nodeCount == 0 || length == 0.0f)
+        {
+            return null;
+        }
+
+        final float nx = dx / length;
+        final float ny = dy / length;
+
+        Entity hit = null;
+        int top = 0;
+
+        stack[top++] = 0;
+
+        while (top > 0)
+        {
+            final int n = stack[--top];
+
+            if (boxEntry( n, ox, oy, nx, ny ) > rayDistance)
+            {
+                continue;
+            }
+
+            if (left[n] != NONE)
+            {
+                final int l = left[n];
+                final int r = right[n];
+
+                // Visit the child the ray enters first, it's pushed last.
+                if (boxEntry( l, ox, oy, nx, ny ) < boxEntry( r, ox, oy, nx, ny ))
+                {
+                    stack[top++] = r;
+                    stack[top++] = l;
+                }
+                else
+                {
+                    stack[top++] = l;
+                    stack[top++] = r;
+                }
+
+                continue;
+            }
+
+            for (int i = start[n], end = i + count[n]; i < end; i++)
+            {
+                final int s = items[i];
+                final float fx = ox - x[s];
+                final float fy = oy - y[s];
+                final float b = fx * nx + fy * ny;
+                final float c = fx * fx + fy * fy - radius[s] * radius[s];
+
+                float t;
+
+                if (c <= 0.0f)
+                {
+                    t = 0.0f;
+                }
+                else
+                {
+                    final float discriminant = b * b - c;
+
+                    if (b > 0.0f || discriminant < 0.0f)
+                    {
+                        continue;
+                    }
+
+                    t = -b - (float)Math.sqrt( discriminant );
+                }
+
+                if (t <= rayDistance)
+                {
+                    final Entity e = entities[s];
+
+                    if (filter == null || filter.isValid( e ))
+                    {
+                        hit = e;
+                        rayDistance = t;
+                    }
+                }
+            }
+        }
+
+        return hit;
+    }
+
+    /**
+     * @return The distance along the ray to the entity hit by the last call to
+     *         {@link #raycast(float, float, float, float, float, EntityFilter)},
+     *         or the maximum distance if nothing was hit.
+     */
+    public float getRayDistance()
+    {
+        return rayDistance;
+    }
+
+    /**
+     * @return The depth of the tree, zero when it's empty.
+     */
+    public int getDepth()
+    {
+        return (nodeCount == 0 ? 0 : depth( 0 ));
+    }
+
+    private int depth( int n )
+    {
+        return (left[n] == NONE ? 1 : 1 + Math.max( depth( left[n] ), depth( right[n] ) ));
+    }
+
+    private int build( int from, int to, int depth )
+    {
+        final int n = nodeCount++;
+
+        // Two children are pushed for each level visited.
+        if (depth * 2 + 2 > stack.length)
+        {
+            stack = Arrays.copyOf( stack, depth * 2 + 2 );
+        }
+
+        start[n] = from;
+        count[n] = to - from;
+
+        if (to - from <= LEAF_SIZE)
+        {
+            left[n] = NONE;
+            right[n] = NONE;
+            bound( n );
+
+            return n;
+        }
+
+        float cx0 = Float.MAX_VALUE, cy0 = Float.MAX_VALUE;
+        float cx1 = -Float.MAX_VALUE, cy1 = -Float.MAX_VALUE;
+
+        for (int i = from; i < to; i++)
+        {
+            final int s = items[i];
+
+            cx0 = Math.min( cx0, x[s] );
+            cy0 = Math.min( cy0, y[s] );
+            cx1 = Math.max( cx1, x[s] );
+            cy1 = Math.max( cy1, y[s] );
+        }
+
+        final float[] axis = (cx1 - cx0 >= cy1 - cy0 ? x : y);
+        final int mid = (from + to) >>> 1;
+
+        select( axis, from, to - 1, mid );
+
+        final int l = build( from, mid, depth + 1 );
+        final int r = build( mid, to, depth + 1 );
+
+        left[n] = l;
+        right[n] = r;
+        minX[n] = Math.min( minX[l], minX[r] );
+        minY[n] = Math.min( minY[l], minY[r] );
+        maxX[n] = Math.max( maxX[l], maxX[r] );
+        maxY[n] = Math.max( maxY[l], maxY[r] );
+
+        return n;
+    }
+
+    /**
+     * Partially sorts the items between lo and hi (inclusive) by the given
+     * axis so the item at k is in it's sorted position, everything before it
+     * is less than or equal and everything after it is greater than or equal.
+     */
+    private void select( float[] axis, int lo, int hi, int k )
+    {
+        while (hi > lo)
+        {
+            final float pivot = axis[items[(lo + hi) >>> 1]];
+
+            int i = lo, j = hi;
+
+            while (i <= j)
+            {
+                while (axis[items[i]] < pivot) i++;
+                while (axis[items[j]] > pivot) j--;
+
+                if (i <= j)
+                {
+                    final int t = items[i];
+                    items[i] = items[j];
+                    items[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j)
+            {
+                hi = j;
+            }
+            else if (k >= i)
+            {
+                lo = i;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+
+    private void bound( int n )
+    {
+        float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE;
+        float x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+
+        for (int i = start[n], end = i + count[n]; i < end; i++)
+        {
+            final int s = items[i];
+            final float r = radius[s];
+
+            x0 = Math.min( x0, x[s] - r );
+            y0 = Math.min( y0, y[s] - r );
+            x1 = Math.max( x1, x[s] + r );
+            y1 = Math.max( y1, y[s] + r );
+        }
+
+        minX[n] = x0;
+        minY[n] = y0;
+        maxX[n] = x1;
+        maxY[n] = y1;
+    }
+
+    private void place( int s )
+    {
+        final Entity e = entities[s];
+
+        x[s] = adapter.getX( e );
+        y[s] = adapter.getY( e );
+        radius[s] = adapter.getRadius( e );
+    }
+
+    private float area( int n )
+    {
+        return Math.max( 1.0f, (maxX[n] - minX[n]) * (maxY[n] - minY[n]) );
+    }
+
+    private float boxDistanceSq( int n, float px, float py )
+    {
+        final float dx = Math.max( 0.0f, Math.max( minX[n] - px, px - maxX[n] ) );
+        final float dy = Math.max( 0.0f, Math.max( minY[n] - py, py - maxY[n] ) );
+
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Returns the distance along the ray where it enters the box of the given
+     * node, or infinity if it misses the box.
+     */
+    private float boxEntry( int n, float ox, float oy, float nx, float ny )
+    {
+        float near = 0.0f;
+        float far = Float.POSITIVE_INFINITY;
+
+        if (nx == 0.0f)
+        {
+            if (ox < minX[n] || ox > maxX[n])
+            {
+                return Float.POSITIVE_INFINITY;
+            }
+        }
+        else
+        {
+            final float t0 = (minX[n] - ox) / nx;
+            final float t1 = (maxX[n] - ox) / nx;
+
+            near = Math.max( near, Math.min( t0, t1 ) );
+            far = Math.min( far, Math.max( t0, t1 ) );
+        }
+
+        if (ny == 0.0f)
+        {
+            if (oy < minY[n] || oy > maxY[n])
+            {
+                return Float.POSITIVE_INFINITY;
+            }
+        }
+        else
+        {
+            final float t0 = (minY[n] - oy) / ny;
+            final float t1 = (maxY[n] - oy) / ny;
+
+            near = Math.max( near, Math.min( t0, t1 ) );
+            far = Math.min( far, Math.max( t0, t1 ) );
+        }
+
+        return (near <= far ? near : Float.POSITIVE_INFINITY);
+    }
+
+}
@@ -14,28 +14,26 @@
  * 				Open Software License (OSL 3.0)
  */
 
-package asteroids;
+package org.magnos.entity.spatial;
 
 import org.magnos.entity.Entity;
 
+
 /**
- * Handles the collision between two collidable entities. 
+ * Receives the entities found by a query on a spatial index.
  * 
  * @author Philip Diffenderfer
- *
+ * 
  */
-public interface CollisionHandler
+public interface EntityVisitor
 {
-	
-	/**
-	 * The subject Entity has collided with the object Entity based on their
-	 * position and radius.
-	 * 
-	 * @param subject
-	 * 		The entity that had the object entity collide with it.
-	 * @param object
-	 * 		The entity that collided with the subject Entity.
-	 */
-    public void handle(Entity subject, Entity object);
-    
+
+    /**
+     * Visits an entity found by a query.
+     * 
+     * @param e
+     *        The entity found.
+     */
+    public void visit( Entity e );
+
 }
@@ -0,0 +1,42 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity.spatial;
+
+import org.magnos.entity.Entity;
+
+
+/**
+ * Receives the pairs of entities found by a spatial index, each pair is
+ * visited once in no particular order.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public interface PairVisitor
+{
+
+    /**
+     * Visits a pair of entities whose bounding circles overlap.
+     * 
+     * @param a
+     *        The first entity of the pair.
+     * @param b
+     *        The second entity of the pair.
+     */
+    public void visit( Entity a, Entity b );
+
+}
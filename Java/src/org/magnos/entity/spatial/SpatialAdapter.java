@@ -0,0 +1,54 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity.spatial;
+
+import org.magnos.entity.Entity;
+
+
+/**
+ * Provides the position and radius of an {@link Entity} to a spatial index.
+ * The library doesn't define a position type, so an adapter reads them from
+ * whichever components an application uses.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public interface SpatialAdapter
+{
+
+    /**
+     * @param e
+     *        The entity.
+     * @return The x coordinate of the center of the entity.
+     */
+    public float getX( Entity e );
+
+    /**
+     * @param e
+     *        The entity.
+     * @return The y coordinate of the center of the entity.
+     */
+    public float getY( Entity e );
+
+    /**
+     * @param e
+     *        The entity.
+     * @return The radius of the bounding circle of the entity.
+     */
+    public float getRadius( Entity e );
+
+}
@@ -0,0 +1,673 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+package org.magnos.entity.spatial;
+
+import java.util.Arrays;
+
+import org.magnos.entity.Entity;
+import org.magnos.entity.EntityFilter;
+import org.magnos.entity.EntitySet;
+import org.magnos.entity.Ents;
+
+
+/**
+ * A uniform grid of cells which indexes entities by the position and radius
+ * given by a {@link SpatialAdapter}, used to find the entities near a point and
+ * the pairs of entities that overlap without comparing every entity to every
+ * other entity. An entity is placed in the cell that contains it's center and
+ * the cells are hashed into a table of buckets, so the grid is unbounded unless
+ * it wraps. <br/>
+ * <br/>
+ * When the grid wraps (see {@link #setWrap(float, float)}) the space is
+ * toroidal, an entity near one edge is near the entities on the opposite
+ * edge. <br/>
+ * <br/>
+ * A SpatialHash created with a filter keeps an {@link EntitySet} and adds and
+ * removes entities as they're created, change templates, expire, and are
+ * deleted when {@link #update()} is called. Otherwise entities are added,
+ * moved, and removed explicitly. The entities should not be added, moved, or
+ * removed while the hash is being queried.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class SpatialHash
+{
+
+    /**
+     * The minimum number of buckets in the table.
+     */
+    public static final int MIN_BUCKETS = 16;
+
+    /**
+     * Returned by {@link #indexOf(Entity)} when the entity isn't in the hash.
+     */
+    public static final int NONE = -1;
+
+    protected final SpatialAdapter adapter;
+    protected final float cellSize;
+    protected float cellWidth;
+    protected float cellHeight;
+
+    protected boolean wrap;
+    protected float width;
+    protected float height;
+    protected int columns;
+    protected int rows;
+
+    /**
+     * The set that determines which entities are in the hash, or null if
+     * entities are added and removed explicitly.
+     */
+    protected EntitySet set;
+
+    /**
+     * The entities in the hash and their position, radius, cell, and links to
+     * the previous and next entity in their bucket. All indexed by slot.
+     */
+    protected Entity[] entities = {};
+    protected float[] x = {};
+    protected float[] y = {};
+    protected float[] radius = {};
+    protected int[] cellX = {};
+    protected int[] cellY = {};
+    protected int[] prev = {};
+    protected int[] next = {};
+    protected int size;
+
+    /**
+     * The slot of each entity indexed by the entity id, or NONE.
+     */
+    protected int[] slots = {};
+
+    /**
+     * The first slot in each bucket, or NONE if the bucket is empty.
+     */
+    protected int[] buckets;
+    protected int mask;
+
+    /**
+     * The largest radius of any entity in the hash since the last update.
+     */
+    protected float maxRadius;
+
+    /**
+     * Instantiates a SpatialHash where entities are added and removed
+     * explicitly.
+     * 
+     * @param adapter
+     *        The adapter which provides the position and radius of entities.
+     * @param cellSize
+     *        The width and height of a cell, ideally close to the diameter of
+     *        the typical entity.
+     */
+    public SpatialHash( SpatialAdapter adapter, float cellSize )
+    {
+        this.adapter = adapter;
+        this.cellSize = cellSize;
+        this.cellWidth = cellSize;
+        this.cellHeight = cellSize;
+        this.buckets = new int[MIN_BUCKETS];
+        this.mask = MIN_BUCKETS - 1;
+
+        Arrays.fill( buckets, NONE );
+    }
+
+    /**
+     * Instantiates a SpatialHash which contains every entity valid for the
+     * given filter.
+     * 
+     * @param filter
+     *        The filter which determines which entities are in the hash.
+     * @param adapter
+     *        The adapter which provides the position and radius of entities.
+     * @param cellSize
+     *        The width and height of a cell, ideally close to the diameter of
+     *        the typical entity.
+     * @see Ents#newEntitySet(EntityFilter, boolean)
+     */
+    public SpatialHash( EntityFilter filter, SpatialAdapter adapter, float cellSize )
+    {
+        this( adapter, cellSize );
+
+        this.set = Ents.newEntitySet( filter, true );
+
+        for (int i = 0; i < set.size(); i++)
+        {
+            add( set.at( i ) );
+        }
+
+        set.clearChanges();
+    }
+
+    /**
+     * Makes the space of this hash toroidal with the given dimensions, the
+     * cells are resized so a whole number of cells fit in the space. All
+     * entities are placed in their new cells.
+     * 
+     * @param width
+     *        The width of the space.
+     * @param height
+     *        The height of the space.
+     */
+    public void setWrap( float width, float height )
+    {
+        this.wrap = true;
+        this.width = width;
+        this.height = height;
+        this.columns = Math.max( 1, (int)(width / cellSize) );
+        this.rows = Math.max( 1, (int)(height / cellSize) );
+        this.cellWidth = width / columns;
+        this.cellHeight = height / rows;
+
+        rehash( buckets.length );
+    }
+
+    /**
+     * Stops wrapping the space of this hash. All entities are placed in their
+     * new cells.
+     */
+    public void clearWrap()
+    {
+        this.wrap = false;
+        this.cellWidth = cellSize;
+        this.cellHeight = cellSize;
+
+        rehash( buckets.length );
+    }
+
+    /**
+     * @return True if the space of this hash is toroidal.
+     */
+    public boolean isWrap()
+    {
+        return wrap;
+    }
+
+    /**
+     * Adds the entity to this hash if it's not already in it.
+     * 
+     * @param e
+     *        The entity to add.
+     */
+    public void add( Entity e )
+    {
+        if (indexOf( e ) != NONE)
+        {
+            return;
+        }
+
+        if (e.id >= slots.length)
+        {
+            final int previousLength = slots.length;
+
+            slots = Arrays.copyOf( slots, Math.max( e.id + 1, previousLength + (previousLength >> 1) + 16 ) );
+            Arrays.fill( slots, previousLength, slots.length, NONE );
+        }
+
+        if (size == entities.length)
+        {
+            final int capacity = size + (size >> 1) + 16;
+
+            entities = Arrays.copyOf( entities, capacity );
+            x = Arrays.copyOf( x, capacity );
+            y = Arrays.copyOf( y, capacity );
+            radius = Arrays.copyOf( radius, capacity );
+            cellX = Arrays.copyOf( cellX, capacity );
+            cellY = Arrays.copyOf( cellY, capacity );
+            prev = Arrays.copyOf( prev, capacity );
+            next = Arrays.copyOf( next, capacity );
+        }
+
+        final int s = size++;
+
+        entities[s] = e;
+        slots[e.id] = s;
+
+        place( s );
+        link( s );
+
+        if (size > buckets.length)
+        {
+            rehash( buckets.length << 1 );
+        }
+    }
+
+    /**
+     * Removes the entity from this hash if it's in it.
+     * 
+     * @param e
+     *        The entity to remove.
+     */
+    public void remove( Entity e )
+    {
+        final int s = indexOf( e );
+
+        if (s == NONE)
+        {
+            return;
+        }
+
+        unlink( s );
+
+        slots[e.id] = NONE;
+
+        final int last = --size;
+
+        if (s != last)
+        {
+            unlink( last );
+
+            entities[s] = entities[last];
+            x[s] = x[last];
+            y[s] = y[last];
+            radius[s] = radius[last];
+            cellX[s] = cellX[last];
+            cellY[s] = cellY[last];
+            slots[entities[s].id] = s;
+
+            link( s );
+        }
+
+        entities[last] = null;
+    }
+
+    /**
+     * Updates the position and radius of the entity in this hash, moving it to
+     * a different cell if necessary.
+     * 
+     * @param e
+     *        The entity which has moved.
+     */
+    public void move( Entity e )
+    {
+        final int s = indexOf( e );
+
+        if (s != NONE)
+        {
+            move( s );
+        }
+    }
+
+    /**
+     * Adds and removes entities based on the changes to the set of this hash
+     * (if it has one), then moves every entity in the hash. This is typically
+     * called once per tick after entities have been updated.
+     */
+    public void update()
+    {
+        if (set != null)
+        {
+            for (int i = 0; i < set.getRemovedCount(); i++)
+            {
+                final Entity e = set.getRemoved( i );
+
+                if (!set.contains( e ))
+                {
+                    remove( e );
+                }
+            }
+
+            for (int i = 0; i < set.getAddedCount(); i++)
+            {
+                final Entity e = set.getAdded( i );
+
+                if (set.contains( e ))
+                {
+                    add( e );
+                }
+            }
+
+            set.clearChanges();
+        }
+
+        maxRadius = 0;
+
+        for (int s = 0; s < size; s++)
+        {
+            move( s );
+        }
+    }
+
+    /**
+     * Stops this hash from following the entities of it's set and removes all
+     * entities. This should be called when a hash created with a filter is no
+     * longer used.
+     */
+    public void release()
+    {
+        if (set != null)
+        {
+            Ents.removeEntitySet( set );
+            set = null;
+        }
+
+        clear();
+    }
+
+    /**
+     * Removes all entities from this hash.
+     */
+    public void clear()
+    {
+        while (size > 0)
+        {
+            remove( entities[size - 1] );
+        }
+
+        maxRadius = 0;
+    }
+
+    /**
+     * @return The number of entities in this hash.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param index
+     *        The slot of the entity, between 0 and {@link #size()}.
+     * @return The entity in the given slot.
+     */
+    public Entity at( int index )
+    {
+        return entities[index];
+    }
+
+    /**
+     * @param e
+     *        The entity to look for.
+     * @return The slot of the entity in this hash, or {@link #NONE}.
+     */
+    public int indexOf( Entity e )
+    {
+        final int id = e.id;
+
+        if (id < slots.length)
+        {
+            final int s = slots[id];
+
+            if (s != NONE && entities[s] == e)
+            {
+                return s;
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Visits every entity whose bounding circle overlaps the given circle.
+     * 
+     * @param qx
+     *        The x coordinate of the center of the circle.
+     * @param qy
+     *        The y coordinate of the center of the circle.
+     * @param qr
+     *        The radius of the circle.
+     * @param filter
+     *        The filter the entities must be valid for, or null.
+     * @param visitor
+     *        The visitor of the entities found.
+     * @return The number of entities visited.
+     */
+    public int query( float qx, float qy, float qr, EntityFilter filter, EntityVisitor visitor )
+    {
+        final float reach = qr + maxRadius;
+        final int cx0 = cellX( qx - reach ), cx1 = clampColumn( cx0, cellX( qx + reach ) );
+        final int cy0 = cellY( qy - reach ), cy1 = clampRow( cy0, cellY( qy + reach ) );
+
+        int visited = 0;
+
+        for (int cy = cy0; cy <= cy1; cy++)
+        {
+            final int wy = wrapRow( cy );
+
+            for (int cx = cx0; cx <= cx1; cx++)
+            {
+                final int wx = wrapColumn( cx );
+
+                for (int s = buckets[hash( wx, wy )]; s != NONE; s = next[s])
+                {
+                    if (cellX[s] == wx && cellY[s] == wy && overlaps( s, qx, qy, qr ))
+                    {
+                        final Entity e = entities[s];
+
+                        if (filter == null || filter.isValid( e ))
+                        {
+                            visitor.visit( e );
+                            visited++;
+                        }
+                    }
+                }
+            }
+        }
+
+        return visited;
+    }
+
+    /**
+     * Visits every pair of entities whose bounding circles overlap, each pair
+     * is visited once.
+     * 
+     * @param filter
+     *        The filter both entities must be valid for, or null.
+     * @param visitor
+     *        The visitor of the pairs found.
+     * @return The number of pairs visited.
+     */
+    public int pairs( EntityFilter filter, PairVisitor visitor )
+    {
+        int visited = 0;
+
+        for (int a = 0; a < size; a++)
+        {
+            final Entity ea = entities[a];
+
+            if (filter != null && !filter.isValid( ea ))
+            {
+                continue;
+            }
+
+            final float ax = x[a], ay = y[a], ar = radius[a];
+            final float reach = ar + maxRadius;
+            final int cx0 = cellX( ax - reach ), cx1 = clampColumn( cx0, cellX( ax + reach ) );
+            final int cy0 = cellY( ay - reach ), cy1 = clampRow( cy0, cellY( ay + reach ) );
+
+            for (int cy = cy0; cy <= cy1; cy++)
+            {
+                final int wy = wrapRow( cy );
+
+                for (int cx = cx0; cx <= cx1; cx++)
+                {
+                    final int wx = wrapColumn( cx );
+
+                    for (int b = buckets[hash( wx, wy )]; b != NONE; b = next[b])
+                    {
+                        if (b > a && cellX[b] == wx && cellY[b] == wy && overlaps( b, ax, ay, ar ))
+                        {
+                            final Entity eb = entities[b];
+
+                            if (filter == null || filter.isValid( eb ))
+                            {
+                                visitor.visit( ea, eb );
+                                visited++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return visited;
+    }
+
+    /**
+     * Returns whether the bounding circle of the entity in the given slot
+     * overlaps the given circle.
+     */
+    protected boolean overlaps( int s, float cx, float cy, float cr )
+    {
+        float dx = x[s] - cx;
+        float dy = y[s] - cy;
+
+        if (wrap)
+        {
+            dx = wrapDelta( dx, width );
+            dy = wrapDelta( dy, height );
+        }
+
+        final float r = radius[s] + cr;
+
+        return dx * dx + dy * dy <= r * r;
+    }
+
+    private void move( int s )
+    {
+        final int oldX = cellX[s];
+        final int oldY = cellY[s];
+
+        place( s );
+
+        if (oldX != cellX[s] || oldY != cellY[s])
+        {
+            final int newX = cellX[s];
+            final int newY = cellY[s];
+
+            cellX[s] = oldX;
+            cellY[s] = oldY;
+            unlink( s );
+
+            cellX[s] = newX;
+            cellY[s] = newY;
+            link( s );
+        }
+    }
+
+    private void place( int s )
+    {
+        final Entity e = entities[s];
+
+        x[s] = adapter.getX( e );
+        y[s] = adapter.getY( e );
+        radius[s] = adapter.getRadius( e );
+        cellX[s] = wrapColumn( cellX( x[s] ) );
+        cellY[s] = wrapRow( cellY( y[s] ) );
+
+        maxRadius = Math.max( maxRadius, radius[s] );
+    }
+
+    private void link( int s )
+    {
+        final int h = hash( cellX[s], cellY[s] );
+        final int head = buckets[h];
+
+        prev[s] = NONE;
+        next[s] = head;
+
+        if (head != NONE)
+        {
+            prev[head] = s;
+        }
+
+        buckets[h] = s;
+    }
+
+    private void unlink( int s )
+    {
+        final int p = prev[s];
+        final int n = next[s];
+
+        if (p != NONE)
+        {
+            next[p] = n;
+        }
+        else
+        {
+            buckets[hash( cellX[s], cellY[s] )] = n;
+        }
+
+        if (n != NONE)
+        {
+            prev[n] = p;
+        }
+    }
+
+    private void rehash( int bucketCount )
+    {
+        buckets = new int[bucketCount];
+        mask = bucketCount - 1;
+
+        Arrays.fill( buckets, NONE );
+
+        for (int s = 0; s < size; s++)
+        {
+            place( s );
+            link( s );
+        }
+    }
+
+    private int hash( int cx, int cy )
+    {
+        return ((cx * 0x8DA6B343) ^ (cy * 0xD8163841)) & mask;
+    }
+
+    private int cellX( float px )
+    {
+        return (int)Math.floor( px / cellWidth );
+    }
+
+    private int cellY( float py )
+    {
+        return (int)Math.floor( py / cellHeight );
+    }
+
+    private int clampColumn( int start, int end )
+    {
+        return (wrap ? Math.min( end, start + columns - 1 ) : end);
+    }
+
+    private int clampRow( int start, int end )
+    {
+        return (wrap ? Math.min( end, start + rows - 1 ) : end);
+    }
+
+    private int wrapColumn( int cx )
+    {
+        return (wrap ? mod( cx, columns ) : cx);
+    }
+
+    private int wrapRow( int cy )
+    {
+        return (wrap ? mod( cy, rows ) : cy);
+    }
+
+    private static int mod( int a, int n )
+    {
+        final int m = a % n;
+
+        return (m < 0 ? m + n : m);
+    }
+
+    private static float wrapDelta( float d, float size )
+    {
+        return d - size * (float)Math.floor( d / size + 0.5f );
+    }
+
+}
@@ -0,0 +1,576 @@
+/* 
+ * NOTICE OF LICENSE
+ * 
+ * This source file is subject to the Open Software License (OSL 3.0) that is 
+ * bundled with this package in the file LICENSE.txt. It is also available 
+ * through the world-wide-web at http://opensource.org/licenses/osl-3.0.php
+ * If you did not receive a copy of the license and are unable to obtain it 
+ * through the world-wide-web, please send an email to magnos.software@gmail.com 
+ * so we can send you a copy immediately. If you use any of this software please
+ * notify me via our website or email, your feedback is much appreciated. 
+ * 
+ * @copyright   Copyright (c) 2011 Magnos Software (http://www.magnos.org)
+ * @license     http://opensource.org/licenses/osl-3.0.php
+ * 				Open Software License (OSL 3.0)
+ */
+
+
+package org.magnos.entity.spatial;
+
+import java.util.Arrays;
+
+import org.magnos.entity.Entity;
+import org.magnos.entity.EntityFilter;
+import org.magnos.entity.EntitySet;
+import org.magnos.entity.Ents;
+import org.magnos.entity.Template;
+
+
+/**
+ * A broad phase which sorts entities along the x axis by the left edge of their
+ * bounding circle (given by a {@link SpatialAdapter}) and sweeps the sorted
+ * axis to find the pairs of entities that overlap. The order is kept between
+ * updates and restored with an insertion sort, which is close to linear when
+ * entities move a little each tick. <br/>
+ * <br/>
+ * Pairs are dispatched to handlers registered between two templates, and a pair
+ * of entities whose templates have no handler is pruned before their distance
+ * is ever measured. Entities with a custom template have no handlers. An entity
+ * which expires while pairs are dispatched (typically by a handler) is not
+ * visited in any later pairs. <br/>
+ * <br/>
+ * A SweepAndPrune created with a filter keeps an {@link EntitySet} and adds and
+ * removes entities as they're created, change templates, expire, and are
+ * deleted when {@link #update()} is called. Otherwise entities are added and
+ * removed explicitly. The entities should not be added or removed while pairs
+ * are dispatched.
+ * 
+ * @author Philip Diffenderfer
+ * 
+ */
+public class SweepAndPrune
+{
+
+    /**
+     * Returned by {@link #indexOf(Entity)} when the entity isn't in the sweep.
+     */
+    public static final int NONE = -1;
+
+    protected final SpatialAdapter adapter;
+
+    /**
+     * The set that determines which entities are in the sweep, or null if
+     * entities are added and removed explicitly.
+     */
+    protected EntitySet set;
+
+    /**
+     * The handlers indexed by the id of the subject and object templates, and
+     * whether a template has any handler at all indexed by template id.
+     */
+    protected PairVisitor[][] handlers = {};
+    protected boolean[] handled = {};
+
+    /**
+     * The entities in the sweep sorted by minX, their position, radius, the
+     * extent of their bounding circle on the x axis, and the index of their
+     * template in the handlers (or NONE if it has none). All indexed by slot,
+     * a removed entity leaves a null slot until the next update.
+     */
+    protected Entity[] entities = {};
+    protected float[] minX = {};
+    protected float[] maxX = {};
+    protected float[] x = {};
+    protected float[] y = {};
+    protected float[] radius = {};
+    protected int[] kind = {};
+    protected int size;
+    protected int removed;
+
+    /**
+     * The slot of each entity indexed by the entity id, or NONE.
+     */
+    protected int[] slots = {};
+
+    /**
+     * Instantiates a SweepAndPrune where entities are added and removed
+     * explicitly.
+     * 
+     * @param adapter
+     *        The adapter which provides the position and radius of entities.
+     */
+    public SweepAndPrune( SpatialAdapter adapter )
+    {
+        this.adapter = adapter;
+    }
+
+    /**
+     * Instantiates a SweepAndPrune which contains every entity valid for the
+     * given filter.
+     * 
+     * @param filter
+     *        The filter which determines which entities are in the sweep.
+     * @param adapter
+     *        The adapter which provides the position and radius of entities.
+     * @see Ents#newEntitySet(EntityFilter, boolean)
+     */
+    public SweepAndPrune( EntityFilter filter, SpatialAdapter adapter )
+    {
+        this( adapter );
+
+        this.set = Ents.newEntitySet( filter, true );
+
+        for (int i = 0; i < set.size(); i++)
+        {
+            add( set.at( i ) );
+        }
+
+        set.clearChanges();
+    }
+
+    /**
+     * Registers the handler for pairs between entities of the subject and
+     * object templates. The subject entity is always passed as the first
+     * entity to the handler, if the templates are the same the order is
+     * arbitrary.
+     * 
+     * @param subject
+     *        The subject template.
+     * @param object
+     *        The object template.
+     * @param handler
+     *        The handler of pairs between the templates, or null to remove the
+     *        existing handler.
+     */
+    public void register( Template subject, Template object, PairVisitor handler )
+    {
+        if (subject.isCustom() || object.isCustom())
+        {
+            throw new RuntimeException( "Handlers cannot be registered for custom templates" );
+        }
+
+        final int capacity = Math.max( subject.id, object.id ) + 1;
+
+        if (capacity > handlers.length)
+        {
+            handlers = Arrays.copyOf( handlers, capacity );
+            handled = Arrays.copyOf( handled, capacity );
+
+            for (int i = 0; i < capacity; i++)
+            {
+                handlers[i] = (handlers[i] == null ? new PairVisitor[capacity] : Arrays.copyOf( handlers[i], capacity ));
+            }
+        }
+
+        handlers[subject.id][object.id] = handler;
+        handlers[object.id][subject.id] = (handler == null || subject == object ? handler : new Reversed( handler ));
+
+        handled[subject.id] = hasHandlers( subject.id );
+        handled[object.id] = hasHandlers( object.id );
+
+        for (int s = 0; s < size; s++)
+        {
+            if (entities[s] != null)
+            {
+                kind[s] = kindOf( entities[s] );
+            }
+        }
+    }
+
+    /**
+     * Returns the handler of pairs between entities of the subject and object
+     * templates. If either template is custom, null is returned.
+     * 
+     * @param subject
+     *        The template of the first entity.
+     * @param object
+     *        The template of the second entity.
+     * @return The handler to use, or null if none was registered.
+     */
+    public PairVisitor getHandler( Template subject, Template object )
+    {
+        if (subject.id >= handlers.length || object.id >= handlers.length)
+        {
+            return null;
+        }
+
+        return handlers[subject.id][object.id];
+    }
+
+    /**
+     * Adds the entity to this sweep if it's not already in it.
+     * 
+     * @param e
+     *        The entity to add.
+     */
+    public void add( Entity e )
+    {
+        if (indexOf( e ) != NONE)
+        {
+            return;
+        }
+
+        compact();
+
+        if (e.id >= slots.length)
+        {
+            final int previousLength = slots.length;
+
+            slots = Arrays.copyOf( slots, Math.max( e.id + 1, previousLength + (previousLength >> 1) + 16 ) );
+            Arrays.fill( slots, previousLength, slots.length, NONE );
+        }
+
+        if (size == entities.length)
+        {
+            final int capacity = size + (size >> 1) + 16;
+
+            entities = Arrays.copyOf( entities, capacity );
+            minX = Arrays.copyOf( minX, capacity );
+            maxX = Arrays.copyOf( maxX, capacity );
+            x = Arrays.copyOf( x, capacity );
+            y = Arrays.copyOf( y, capacity );
+            radius = Arrays.copyOf( radius, capacity );
+            kind = Arrays.copyOf( kind, capacity );
+        }
+
+        final int s = size++;
+
+        entities[s] = e;
+        slots[e.id] = s;
+
+        place( s );
+        sink( s );
+    }
+
+    /**
+     * Removes the entity from this sweep if it's in it. The slot of the entity
+     * is reclaimed on the next {@link #update()}.
+     * 
+     * @param e
+     *        The entity to remove.
+     */
+    public void remove( Entity e )
+    {
+        final int s = indexOf( e );
+
+        if (s == NONE)
+        {
+            return;
+        }
+
+        slots[e.id] = NONE;
+        entities[s] = null;
+        kind[s] = NONE;
+        removed++;
+    }
+
+    /**
+     * Adds and removes entities based on the changes to the set of this sweep
+     * (if it has one), reads the position and radius of every entity, and
+     * sorts the axis again. This is typically called once per tick after
+     * entities have been updated.
+     */
+    public void update()
+    {
+        if (set != null)
+        {
+            for (int i = 0; i < set.getRemovedCount(); i++)
+            {
+                final Entity e = set.getRemoved( i );
+
+                if (!set.contains( e ))
+                {
+                    remove( e );
+                }
+            }
+
+            for (int i = 0; i < set.getAddedCount(); i++)
+            {
+                final Entity e = set.getAdded( i );
+
+                if (set.contains( e ))
+                {
+                    add( e );
+                }
+            }
+
+            set.clearChanges();
+        }
+
+        compact();
+
+        for (int s = 0; s < size; s++)
+        {
+            place( s );
+        }
+
+        for (int s = 1; s < size; s++)
+        {
+            sink( s );
+        }
+    }
+
+    /**
+     * Stops this sweep from following the entities of it's set and removes all
+     * entities. This should be called when a sweep created with a filter is no
+     * longer used.
+     */
+    public void release()
+    {
+        if (set != null)
+        {
+            Ents.removeEntitySet( set );
+            set = null;
+        }
+
+        clear();
+    }
+
+    /**
+     * Removes all entities from this sweep.
+     */
+    public void clear()
+    {
+        for (int s = 0; s < size; s++)
+        {
+            if (entities[s] != null)
+            {
+                slots[entities[s].id] = NONE;
+                entities[s] = null;
+            }
+        }
+
+        size = 0;
+        removed = 0;
+    }
+
+    /**
+     * @return The number of entities in this sweep.
+     */
+    public int size()
+    {
+        return size - removed;
+    }
+
+    /**
+     * @param index
+     *        The slot of the entity, between 0 and {@link #size()}.
+     * @return The entity in the given slot, slots are in order of the left
+     *         edge of their entity.
+     */
+    public Entity at( int index )
+    {
+        compact();
+
+        return entities[index];
+    }
+
+    /**
+     * @param e
+     *        The entity to look for.
+     * @return The slot of the entity in this sweep, or {@link #NONE}.
+     */
+    public int indexOf( Entity e )
+    {
+        final int id = e.id;
+
+        if (id < slots.length)
+        {
+            final int s = slots[id];
+
+            if (s != NONE && entities[s] == e)
+            {
+                return s;
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Sweeps the axis and passes every pair of entities whose bounding circles
+     * overlap and whose templates have a handler to that handler, each pair is
+     * visited once.
+     * 
+     * @return The number of pairs handled.
+     */
+    public int pairs()
+    {
+        int handledPairs = 0;
+
+        for (int a = 0; a < size; a++)
+        {
+            final int ka = kind[a];
+
+            if (ka == NONE || entities[a].isExpired())
+            {
+                continue;
+            }
+
+            final Entity ea = entities[a];
+            final PairVisitor[] row = handlers[ka];
+            final float right = maxX[a], ax = x[a], ay = y[a], ar = radius[a];
+
+            for (int b = a + 1; b < size && minX[b] <= right; b++)
+            {
+                final int kb = kind[b];
+
+                if (kb == NONE || row[kb] == null)
+                {
+                    continue;
+                }
+
+                final float dx = x[b] - ax;
+                final float dy = y[b] - ay;
+                final float r = radius[b] + ar;
+                final Entity eb = entities[b];
+
+                if (dx * dx + dy * dy <= r * r && !eb.isExpired())
+                {
+                    row[kb].visit( ea, eb );
+                    handledPairs++;
+
+                    if (ea.isExpired())
+                    {
+                        break;
+                    }
+                }
+            }
+        }
+
+        return handledPairs;
+    }
+
+    private void place( int s )
+    {
+        final Entity e = entities[s];
+
+        x[s] = adapter.getX( e );
+        y[s] = adapter.getY( e );
+        radius[s] = adapter.getRadius( e );
+        minX[s] = x[s] - radius[s];
+        maxX[s] = x[s] + radius[s];
+        kind[s] = kindOf( e );
+    }
+
+    private int kindOf( Entity e )
+    {
+        final int id = e.getTemplate().id;
+
+        return (id < handled.length && handled[id] ? id : NONE);
+    }
+
+    private boolean hasHandlers( int id )
+    {
+        for (int i = 0; i < handlers.length; i++)
+        {
+            if (handlers[id][i] != null)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Moves the entity in the given slot towards the start of the axis until
+     * the slot before it starts at or before it.
+     */
+    private void sink( int s )
+    {
+        final float key = minX[s];
+
+        if (s == 0 || minX[s - 1] <= key)
+        {
+            return;
+        }
+
+        final Entity e = entities[s];
+        final float kmax = maxX[s], kx = x[s], ky = y[s], kr = radius[s];
+        final int kk = kind[s];
+
+        int i = s;
+
+        while (i > 0 && minX[i - 1] > key)
+        {
+            entities[i] = entities[i - 1];
+            minX[i] = minX[i - 1];
+            maxX[i] = maxX[i - 1];
+            x[i] = x[i - 1];
+            y[i] = y[i - 1];
+            radius[i] = radius[i - 1];
+            kind[i] = kind[i - 1];
+            slots[entities[i].id] = i;
+            i--;
+        }
+
+        entities[i] = e;
+        minX[i] = key;
+        maxX[i] = kmax;
+        x[i] = kx;
+        y[i] = ky;
+        radius[i] = kr;
+        kind[i] = kk;
+        slots[e.id] = i;
+    }
+
+    /**
+     * Reclaims the slots of removed entities, keeping the order of the rest.
+     */
+    private void compact()
+    {
+        if (removed == 0)
+        {
+            return;
+        }
+
+        int alive = 0;
+
+        for (int s = 0; s < size; s++)
+        {
+            final Entity e = entities[s];
+
+            if (e != null)
+            {
+                if (s != alive)
+                {
+                    entities[alive] = e;
+                    minX[alive] = minX[s];
+                    maxX[alive] = maxX[s];
+                    x[alive] = x[s];
+                    y[alive] = y[s];
+                    radius[alive] = radius[s];
+                    kind[alive] = kind[s];
+                    slots[e.id] = alive;
+                }
+
+                alive++;
+            }
+        }
+
+        Arrays.fill( entities, alive, size, null );
+
+        size = alive;
+        removed = 0;
+    }
+
+    /**
+     * A handler which swaps the first and second entity.
+     */
+    private static class Reversed implements PairVisitor
+    {
+        private final PairVisitor handler;
+
+        public Reversed( PairVisitor handler )
+        {
+            this.handler = handler;
+        }
+
+        public void visit( Entity a, Entity b )
+        {
+            handler.visit( b, a );
+        }
+    }
+
+}
@@ -14,24 +14,43 @@
  * 				Open Software License (OSL 3.0)
  */
 
+
 package org.magnos.entity.util;
 
+import java.util.Arrays;
+
 import org.magnos.entity.Ents;
 import org.magnos.entity.Id;
 
 
 /**
- * An extension to {@link java.util.BitSet} adding new constructors for
- * {@link Ents} as well as a containment method that doesn't require needless
- * allocation.
+ * A set of bits with the same methods as {@link java.util.BitSet} that are
+ * used by {@link Ents}, as well as a containment method. The first 64 bits are
+ * stored inline in a single long and any bits beyond that are stored in an
+ * array which is only allocated when needed, so the component, controller,
+ * and template sets of almost every template fit in one word and checks like
+ * {@link #contains(BitSet)} and {@link #intersects(BitSet)} are a couple of
+ * bitwise operations.
  * 
  * @author Philip Diffenderfer
  * 
  */
-public class BitSet extends java.util.BitSet
+public class BitSet
 {
 
-    private static final long serialVersionUID = 1L;
+    private static final int SHIFT = 6;
+    private static final int MASK = 63;
+    private static final long[] NO_WORDS = {};
+
+    /**
+     * Bits 0 through 63.
+     */
+    private long word;
+
+    /**
+     * Bits 64 and beyond, where bit i is in words[(i >> 6) - 1].
+     */
+    private long[] words = NO_WORDS;
 
     /**
      * Instantiates an empty BitSet.
@@ -50,7 +69,7 @@ public class BitSet extends java.util.BitSet
      */
     public BitSet( int size, boolean enabled )
     {
-        super( size );
+        ensureBits( size );
 
         if (enabled)
         {
@@ -66,8 +85,6 @@ public class BitSet extends java.util.BitSet
      */
     public BitSet( int... indices )
     {
-        super( indices.length );
-
         setFromIndices( indices );
     }
 
@@ -80,8 +97,6 @@ public class BitSet extends java.util.BitSet
      */
     public BitSet( Id... ids )
     {
-        super( ids.length );
-
         setFromIds( ids );
     }
 
@@ -93,8 +108,6 @@ public class BitSet extends java.util.BitSet
      */
     public BitSet( BitSet bits )
     {
-        super( bits != null ? bits.size() : 0 );
-
         if (bits != null)
         {
             this.or( bits );
@@ -129,6 +142,194 @@ public class BitSet extends java.util.BitSet
         }
     }
 
+    /**
+     * @param index
+     *        The index of the bit.
+     * @return The value of the bit at the given index.
+     */
+    public boolean get( int index )
+    {
+        if (index < 64)
+        {
+            checkIndex( index );
+
+            return (word & (1L << index)) != 0;
+        }
+
+        final int w = (index >> SHIFT) - 1;
+
+        return w < words.length && (words[w] & (1L << (index & MASK))) != 0;
+    }
+
+    /**
+     * Sets the bit at the given index to true.
+     * 
+     * @param index
+     *        The index of the bit.
+     */
+    public void set( int index )
+    {
+        if (index < 64)
+        {
+            checkIndex( index );
+
+            word |= 1L << index;
+        }
+        else
+        {
+            ensureBits( index + 1 );
+
+            words[(index >> SHIFT) - 1] |= 1L << (index & MASK);
+        }
+    }
+
+    /**
+     * Sets the bit at the given index to the given value.
+     * 
+     * @param index
+     *        The index of the bit.
+     * @param value
+     *        The value of the bit.
+     */
+    public void set( int index, boolean value )
+    {
+        if (value)
+        {
+            set( index );
+        }
+        else
+        {
+            clear( index );
+        }
+    }
+
+    /**
+     * Sets the bits from the given index (inclusive) to the given index
+     * (exclusive) to the given value.
+     * 
+     * @param fromIndex
+     *        The index of the first bit.
+     * @param toIndex
+     *        The index after the last bit.
+     * @param value
+     *        The value of the bits.
+     */
+    public void set( int fromIndex, int toIndex, boolean value )
+    {
+        checkIndex( fromIndex );
+
+        if (toIndex <= fromIndex)
+        {
+            return;
+        }
+
+        if (value)
+        {
+            ensureBits( toIndex );
+        }
+
+        final int last = toIndex - 1;
+        final int end = Math.min( last >> SHIFT, words.length );
+
+        for (int w = fromIndex >> SHIFT; w <= end; w++)
+        {
+            final int from = (w == fromIndex >> SHIFT ? fromIndex & MASK : 0);
+            final int to = (w == last >> SHIFT ? last & MASK : MASK);
+            final long mask = (-1L << from) & (-1L >>> (MASK - to));
+
+            setWord( w, value ? getWord( w ) | mask : getWord( w ) & ~mask );
+        }
+    }
+
+    /**
+     * Sets the bit at the given index to false.
+     * 
+     * @param index
+     *        The index of the bit.
+     */
+    public void clear( int index )
+    {
+        if (index < 64)
+        {
+            checkIndex( index );
+
+            word &= ~(1L << index);
+        }
+        else
+        {
+            final int w = (index >> SHIFT) - 1;
+
+            if (w < words.length)
+            {
+                words[w] &= ~(1L << (index & MASK));
+            }
+        }
+    }
+
+    /**
+     * Sets all bits to false.
+     */
+    public void clear()
+    {
+        word = 0;
+        Arrays.fill( words, 0L );
+    }
+
+    /**
+     * Sets every bit which is set in the other BitSet.
+     * 
+     * @param other
+     *        The other BitSet.
+     */
+    public void or( BitSet other )
+    {
+        word |= other.word;
+
+        final long[] otherWords = other.words;
+
+        if (otherWords.length > 0)
+        {
+            ensureWords( otherWords.length );
+
+            for (int i = 0; i < otherWords.length; i++)
+            {
+                words[i] |= otherWords[i];
+            }
+        }
+    }
+
+    /**
+     * Clears every bit which is not set in the other BitSet.
+     * 
+     * @param other
+     *        The other BitSet.
+     */
+    public void and( BitSet other )
+    {
+        word &= other.word;
+
+        for (int i = 0; i < words.length; i++)
+        {
+            words[i] &= (i < other.words.length ? other.words[i] : 0L);
+        }
+    }
+
+    /**
+     * Clears every bit which is set in the other BitSet.
+     * 
+     * @param other
+     *        The other BitSet.
+     */
+    public void andNot( BitSet other )
+    {
+        word &= ~other.word;
+
+        for (int i = Math.min( words.length, other.words.length ) - 1; i >= 0; i--)
+        {
+            words[i] &= ~other.words[i];
+        }
+    }
+
     /**
      * Returns whether this BitSet has at least all on-bits that the other
      * BitSet has.
@@ -140,11 +341,200 @@ public class BitSet extends java.util.BitSet
      */
     public boolean contains( BitSet other )
     {
-        int i = -1;
+        if ((other.word & ~word) != 0)
+        {
+            return false;
+        }
+
+        final long[] otherWords = other.words;
+
+        for (int i = 0; i < otherWords.length; i++)
+        {
+            final long mine = (i < words.length ? words[i] : 0L);
+
+            if ((otherWords[i] & ~mine) != 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns whether this BitSet has any on-bit that the other BitSet has.
+     * 
+     * @param other
+     *        The other BitSet.
+     * @return True if at least one bit is set in both.
+     */
+    public boolean intersects( BitSet other )
+    {
+        if ((other.word & word) != 0)
+        {
+            return true;
+        }
+
+        for (int i = Math.min( words.length, other.words.length ) - 1; i >= 0; i--)
+        {
+            if ((words[i] & other.words[i]) != 0)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param fromIndex
+     *        The index to start looking at (inclusive).
+     * @return The index of the first bit set at or after the given index, or
+     *         -1 if there is none.
+     */
+    public int nextSetBit( int fromIndex )
+    {
+        checkIndex( fromIndex );
+
+        int w = fromIndex >> SHIFT;
+
+        if (w > words.length)
+        {
+            return -1;
+        }
+
+        long bits = getWord( w ) & (-1L << (fromIndex & MASK));
+
+        while (bits == 0)
+        {
+            if (++w > words.length)
+            {
+                return -1;
+            }
+
+            bits = getWord( w );
+        }
+
+        return (w << SHIFT) + Long.numberOfTrailingZeros( bits );
+    }
+
+    /**
+     * @param fromIndex
+     *        The index to start looking at (inclusive).
+     * @return The index of the first bit not set at or after the given index.
+     */
+    public int nextClearBit( int fromIndex )
+    {
+        checkIndex( fromIndex );
+
+        int w = fromIndex >> SHIFT;
+
+        if (w > words.length)
+        {
+            return fromIndex;
+        }
+
+        long bits = ~getWord( w ) & (-1L << (fromIndex & MASK));
+
+        while (bits == 0)
+        {
+            if (++w > words.length)
+            {
+                return w << SHIFT;
+            }
+
+            bits = ~getWord( w );
+        }
+
+        return (w << SHIFT) + Long.numberOfTrailingZeros( bits );
+    }
+
+    /**
+     * @return The number of bits set.
+     */
+    public int cardinality()
+    {
+        int count = Long.bitCount( word );
+
+        for (int i = 0; i < words.length; i++)
+        {
+            count += Long.bitCount( words[i] );
+        }
+
+        return count;
+    }
+
+    /**
+     * @return The index of the highest bit set plus one.
+     */
+    public int length()
+    {
+        for (int i = words.length - 1; i >= 0; i--)
+        {
+            if (words[i] != 0)
+            {
+                return ((i + 2) << SHIFT) - Long.numberOfLeadingZeros( words[i] );
+            }
+        }
+
+        return 64 - Long.numberOfLeadingZeros( word );
+    }
+
+    /**
+     * @return The number of bits this BitSet can hold without growing.
+     */
+    public int size()
+    {
+        return (words.length + 1) << SHIFT;
+    }
+
+    /**
+     * @return True if no bits are set.
+     */
+    public boolean isEmpty()
+    {
+        return length() == 0;
+    }
 
-        while ((i = other.nextSetBit( i + 1 )) >= 0)
+    @Override
+    public int hashCode()
+    {
+        long h = 1234;
+
+        for (int i = words.length; i >= 0; i--)
+        {
+            h ^= getWord( i ) * (i + 1);
+        }
+
+        return (int)((h >> 32) ^ h);
+    }
+
+    @Override
+    public boolean equals( Object obj )
+    {
+        if (this == obj)
         {
-            if (!get( i ))
+            return true;
+        }
+
+        if (!(obj instanceof BitSet))
+        {
+            return false;
+        }
+
+        final BitSet other = (BitSet)obj;
+
+        if (word != other.word)
+        {
+            return false;
+        }
+
+        for (int i = Math.max( words.length, other.words.length ) - 1; i >= 0; i--)
+        {
+            final long mine = (i < words.length ? words[i] : 0L);
+            final long theirs = (i < other.words.length ? other.words[i] : 0L);
+
+            if (mine != theirs)
             {
                 return false;
             }
@@ -153,4 +543,66 @@ public class BitSet extends java.util.BitSet
         return true;
     }
 
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder( "{" );
+
+        for (int i = nextSetBit( 0 ); i >= 0; i = nextSetBit( i + 1 ))
+        {
+            if (sb.length() > 1)
+            {
+                sb.append( ", " );
+            }
+
+            sb.append( i );
+        }
+
+        return sb.append( '}' ).toString();
+    }
+
+    /**
+     * Returns the word at the given index, where word 0 is the inline word.
+     */
+    private long getWord( int w )
+    {
+        return (w == 0 ? word : words[w - 1]);
+    }
+
+    private void setWord( int w, long value )
+    {
+        if (w == 0)
+        {
+            word = value;
+        }
+        else
+        {
+            words[w - 1] = value;
+        }
+    }
+
+    private void ensureBits( int bits )
+    {
+        if (bits > 64)
+        {
+            ensureWords( ((bits + MASK) >> SHIFT) - 1 );
+        }
+    }
+
+    private void ensureWords( int count )
+    {
+        if (count > words.length)
+        {
+            words = Arrays.copyOf( words, Math.max( count, words.length + (words.length >> 1) ) );
+        }
+    }
+
+    private static void checkIndex( int index )
+    {
+        if (index < 0)
+        {
+            throw new IndexOutOfBoundsException( "index < 0: " + index );
+        }
+    }
+
 }
@@ -14,6 +14,7 @@
  *              Open Software License (OSL 3.0)
  */
 
+
 package org.magnos.entity.util;
 
 import java.util.Arrays;
@@ -23,15 +24,21 @@ import java.util.Arrays;
  * A utility class that returns indices (consecutive number of integers
  * starting at zero) through a {@link #pop()} method. Once an index is done
  * being used it is passed to {@link #push(int)} so it can be recycled and
- * reused the next time {@link #pop()} is called. When the last index
- * {@link #pop()}'d is {@link #push(int)}'d it causes the pool to shrink by
- * removing all previous consecutive indices from the recycled index list and
- * updates the maximum index that can be returned (accessible via
- * {@link #maxIndex()}). This keeps the range of indices returnable as
- * small as possible. If an object with a large index holds onto to it for a
- * long time it will never be released and there could be a waste of space. It's
- * best to {@link #pop()} indices for long lived objects first and then short
- * lived objects last.
+ * reused the next time {@link #pop()} is called. The lowest recycled index is
+ * always returned first. When the last index {@link #pop()}'d is
+ * {@link #push(int)}'d it causes the pool to shrink by removing all previous
+ * consecutive indices from the recycled indices and updates the maximum index
+ * that can be returned (accessible via {@link #maxIndex()}). This keeps the
+ * range of indices returnable as small as possible. If an object with a large
+ * index holds onto to it for a long time it will never be released and there
+ * could be a waste of space. It's best to {@link #pop()} indices for long lived
+ * objects first and then short lived objects last. <br/>
+ * <br/>
+ * The recycled indices are stored in a hierarchy of bitmaps, where a set bit
+ * in the bottom level is a recycled index and a set bit in any level above
+ * means the word below it has at least one set bit. Finding the lowest
+ * recycled index, recycling an index, and reusing an index each visit one
+ * word per level, and shrinking visits one word per 64 indices removed.
  * 
  * @author Philip Diffenderfer
  * 
@@ -41,7 +48,14 @@ public class IndexPool
 
     public static final int MIN_CAPACITY = 32;
 
-    private int[] ints;
+    private static final int SHIFT = 6;
+    private static final int MASK = 63;
+
+    /**
+     * The bitmaps of recycled indices, level zero has a bit per index and the
+     * top level is a single word.
+     */
+    private long[][] levels;
     private int size;
     private int previousIndex;
 
@@ -57,24 +71,59 @@ public class IndexPool
      * Instantiates a new IndexPool with a given capacity.
      * 
      * @param initialCapacity
-     *        The initial number of indices to store for reuse before the array
-     *        used to store recycled indices needs to be resized.
+     *        The initial number of indices to store for reuse before the
+     *        bitmaps used to store recycled indices need to be resized.
      */
     public IndexPool( int initialCapacity )
     {
-        ints = new int[initialCapacity];
+        levels = new long[][] { new long[Math.max( 1, words( initialCapacity ) )] };
+        summarize();
         clear();
     }
 
     /**
      * Retrieves an index from the pool. If a reusable index is stored in the
-     * pool, it is used. Otherwise a new index is created.
+     * pool, the lowest one is used. Otherwise a new index is created.
      * 
      * @return A new index that is not currently in use.
      */
     public int pop()
     {
-        return (size == 0 ? ++previousIndex : ints[--size]);
+        if (size == 0)
+        {
+            return ++previousIndex;
+        }
+
+        int index = 0;
+
+        for (int level = levels.length - 1; level >= 0; level--)
+        {
+            index = (index << SHIFT) + Long.numberOfTrailingZeros( levels[level][index] );
+        }
+
+        clearBit( index );
+        size--;
+
+        return index;
+    }
+
+    /**
+     * Retrieves a contiguous range of new indices from the pool. The range is
+     * always taken after the maximum active index, recycled indices are not
+     * used.
+     * 
+     * @param count
+     *        The number of indices to retrieve.
+     * @return The first index of the range, the range ends at this index plus
+     *         count minus one.
+     */
+    public int popRange( int count )
+    {
+        final int first = previousIndex + 1;
+
+        previousIndex += count;
+
+        return first;
     }
 
     /**
@@ -96,17 +145,69 @@ public class IndexPool
         // Last index popped? Try shrinking the pool.
         if (shrank)
         {
+            previousIndex--;
             shrink();
         }
         else
         {
-            // Increase backing pool by 50% if it's full.
-            if (size == ints.length)
+            ensureCapacity( index + 1 );
+
+            if (setBit( index ))
             {
-                ints = Arrays.copyOf( ints, size + (size >> 1) );
+                size++;
             }
+        }
 
-            ints[size++] = index;
+        return shrank;
+    }
+
+    /**
+     * Adds a contiguous range of indices back to the pool, this is equivalent
+     * to calling {@link #push(int)} for each index in the range but sets the
+     * recycled indices 64 at a time.
+     * 
+     * @param first
+     *        The first index of the range.
+     * @param count
+     *        The number of indices in the range.
+     * @return True if the pool has shrunk, otherwise false.
+     */
+    public boolean pushRange( int first, int count )
+    {
+        if (count <= 0)
+        {
+            return false;
+        }
+
+        final int last = first + count - 1;
+        final boolean shrank = (last == previousIndex);
+
+        if (shrank)
+        {
+            previousIndex = first - 1;
+            shrink();
+        }
+        else
+        {
+            ensureCapacity( last + 1 );
+
+            final long[] bits = levels[0];
+
+            for (int w = first >> SHIFT, end = last >> SHIFT; w <= end; w++)
+            {
+                final int from = (w == first >> SHIFT ? first & MASK : 0);
+                final int to = (w == end ? last & MASK : MASK);
+                final long mask = (-1L << from) & (-1L >>> (MASK - to));
+                final long previous = bits[w];
+
+                bits[w] = previous | mask;
+                size += Long.bitCount( mask & ~previous );
+
+                if (previous == 0)
+                {
+                    propagateSet( w );
+                }
+            }
         }
 
         return shrank;
@@ -117,6 +218,11 @@ public class IndexPool
      */
     public void clear()
     {
+        for (int level = 0; level < levels.length; level++)
+        {
+            Arrays.fill( levels[level], 0L );
+        }
+
         size = 0;
         previousIndex = -1;
     }
@@ -134,13 +240,13 @@ public class IndexPool
 
     /**
      * The current capacity of the pool of recycled indices. The pool expands
-     * and shrinks as indices are {@link #pop()}'d and {@link #push(int)}'d.
+     * as indices are {@link #push(int)}'d.
      * 
      * @return The current capacity of the pool.
      */
     public int capacity()
     {
-        return ints.length;
+        return levels[0].length << SHIFT;
     }
 
     /**
@@ -157,72 +263,201 @@ public class IndexPool
     }
 
     /**
-     * Method invoked when {@link #push(int)} is called on the last
-     * {@link #pop()}'d index. This will traverse through the stack of indices
-     * and remove the largest descending consecutive sequence of indices
-     * starting with the last index. If it's shrunk such that 75% of the stack
-     * is empty, the capacity of the stack is decreased by 25%.
+     * Determines whether the given index has been {@link #pop()}'d and not yet
+     * {@link #push(int)}'d.
+     * 
+     * @param index
+     *        The index to check.
+     * @return True if the index is active, otherwise false.
+     */
+    public boolean isActive( int index )
+    {
+        return index >= 0 && index <= previousIndex && !isRecycled( index );
+    }
+
+    /**
+     * Method invoked when the last {@link #pop()}'d index is
+     * {@link #push(int)}'d. This removes the consecutive recycled indices
+     * ending at the maximum active index, a word of the bottom level at a time.
      */
     private void shrink()
     {
-        final int greatestIndex = previousIndex - 1;
-        int lastIndex = greatestIndex;
-        int removeAt = size;
+        final long[] bits = levels[0];
 
-        // Find the largest descending consecutive sequence of indices starting with lastIndex
-        // and remove them from the pool by setting their values to -1;
-        while (removeAt != -1)
+        while (previousIndex >= 0)
         {
-            // Find the index of lastIndex in the pool (or -1 if not found).
-            while (--removeAt >= 0 && ints[removeAt] != lastIndex)
-                ;
+            final int w = previousIndex >> SHIFT;
 
-            // If lastIndex was found in the pool...
-            if (removeAt != -1)
+            if (w >= bits.length)
             {
-                // Mark it for removal
-                ints[removeAt] = -1;
+                break;
+            }
 
-                // Find the previous index
-                lastIndex--;
-                removeAt = size;
+            final int top = previousIndex & MASK;
+            final long below = -1L >>> (MASK - top);
+            final long active = ~bits[w] & below;
 
-                // All indices have been popped off the stack.
-                if (lastIndex == -1)
-                {
-                    break;
-                }
+            // Bits above the highest active index (up to the maximum) are recycled.
+            final int highest = (active == 0 ? -1 : MASK - Long.numberOfLeadingZeros( active ));
+
+            if (highest == top)
+            {
+                break;
+            }
+
+            final long removed = (highest == -1 ? below : below & (-1L << (highest + 1)));
+
+            size -= Long.bitCount( removed );
+            bits[w] &= ~removed;
+
+            if (bits[w] == 0)
+            {
+                propagateClear( w );
+            }
+
+            previousIndex = (w << SHIFT) + highest;
+
+            if (highest != -1)
+            {
+                break;
             }
         }
+    }
+
+    private boolean isRecycled( int index )
+    {
+        final int w = index >> SHIFT;
+
+        return w < levels[0].length && (levels[0][w] & (1L << (index & MASK))) != 0;
+    }
+
+    /**
+     * Sets the bit of the index and returns true if it wasn't already set.
+     */
+    private boolean setBit( int index )
+    {
+        final int w = index >> SHIFT;
+        final long bit = 1L << (index & MASK);
+        final long previous = levels[0][w];
+
+        if ((previous & bit) != 0)
+        {
+            return false;
+        }
 
-        // If any additional indices have been popped off the stack...
-        if (lastIndex != greatestIndex)
+        levels[0][w] = previous | bit;
+
+        if (previous == 0)
         {
-            int alive = 0;
+            propagateSet( w );
+        }
+
+        return true;
+    }
 
-            // Overwrite all indices that are marked for removal (-1)
-            for (int i = 0; i < size; i++)
+    private void clearBit( int index )
+    {
+        final int w = index >> SHIFT;
+
+        levels[0][w] &= ~(1L << (index & MASK));
+
+        if (levels[0][w] == 0)
+        {
+            propagateClear( w );
+        }
+    }
+
+    /**
+     * The word at the given index of level zero has become non-zero.
+     */
+    private void propagateSet( int index )
+    {
+        for (int level = 1; level < levels.length; level++)
+        {
+            final int w = index >> SHIFT;
+            final long previous = levels[level][w];
+
+            levels[level][w] = previous | (1L << (index & MASK));
+
+            if (previous != 0)
             {
-                if (ints[i] != -1)
-                {
-                    ints[alive++] = ints[i];
-                }
+                break;
             }
 
-            // Reset size.
-            size = alive;
+            index = w;
+        }
+    }
 
-            // Shrink backing array by 25% if 75% is free.
-            int capacity25 = ints.length >> 2;
-            int desiredCapacity = ints.length - capacity25;
+    /**
+     * The word at the given index of level zero has become zero.
+     */
+    private void propagateClear( int index )
+    {
+        for (int level = 1; level < levels.length; level++)
+        {
+            final int w = index >> SHIFT;
+
+            levels[level][w] &= ~(1L << (index & MASK));
+
+            if (levels[level][w] != 0)
+            {
+                break;
+            }
+
+            index = w;
+        }
+    }
+
+    private void ensureCapacity( int indexCount )
+    {
+        final int required = words( indexCount );
+
+        if (required > levels[0].length)
+        {
+            final int length = levels[0].length;
+
+            levels[0] = Arrays.copyOf( levels[0], Math.max( required, length + (length >> 1) ) );
+            summarize();
+        }
+    }
+
+    /**
+     * Rebuilds every level above level zero.
+     */
+    private void summarize()
+    {
+        int count = 1;
+
+        for (int length = levels[0].length; length > 1; length = words( length ))
+        {
+            count++;
+        }
+
+        final long[] bottom = levels[0];
 
-            if (capacity25 >= size && desiredCapacity < MIN_CAPACITY)
+        levels = new long[count][];
+        levels[0] = bottom;
+
+        for (int level = 1; level < count; level++)
+        {
+            final long[] below = levels[level - 1];
+            final long[] words = new long[words( below.length )];
+
+            for (int i = 0; i < below.length; i++)
             {
-                ints = Arrays.copyOf( ints, desiredCapacity );
+                if (below[i] != 0)
+                {
+                    words[i >> SHIFT] |= 1L << (i & MASK);
+                }
             }
+
+            levels[level] = words;
         }
+    }
 
-        previousIndex = lastIndex;
+    private static int words( int bits )
+    {
+        return (bits + MASK) >> SHIFT;
     }
 
 }
@@ -17,6 +17,7 @@
 package org.magnos.entity.vals;
 
 import org.magnos.entity.ComponentValueFactory;
+import org.magnos.entity.ComponentValueInterpolator;
 
 
 /**
@@ -28,7 +29,7 @@ import org.magnos.entity.ComponentValueFactory;
  * @author Philip Diffenderfer
  * 
  */
-public class DoubleVal implements ComponentValueFactory<DoubleVal>
+public class DoubleVal implements ComponentValueFactory<DoubleVal>, ComponentValueInterpolator<DoubleVal>
 {
 
     public double v;
@@ -67,6 +68,14 @@ public class DoubleVal implements ComponentValueFactory<DoubleVal>
         return to;
     }
 
+    @Override
+    public DoubleVal interpolate( DoubleVal start, DoubleVal end, float delta, DoubleVal target )
+    {
+        target.v = (end.v - start.v) * delta + start.v;
+
+        return target;
+    }
+
     @Override
     public int hashCode()
     {
@@ -17,6 +17,7 @@
 package org.magnos.entity.vals;
 
 import org.magnos.entity.ComponentValueFactory;
+import org.magnos.entity.ComponentValueInterpolator;
 
 
 /**
@@ -28,7 +29,7 @@ import org.magnos.entity.ComponentValueFactory;
  * @author Philip Diffenderfer
  * 
  */
-public class FloatVal implements ComponentValueFactory<FloatVal>
+public class FloatVal implements ComponentValueFactory<FloatVal>, ComponentValueInterpolator<FloatVal>
 {
 
     public float v;
@@ -67,6 +68,14 @@ public class FloatVal implements ComponentValueFactory<FloatVal>
         return to;
     }
 
+    @Override
+    public FloatVal interpolate( FloatVal start, FloatVal end, float delta, FloatVal target )
+    {
+        target.v = (end.v - start.v) * delta + start.v;
+
+        return target;
+    }
+
     @Override
     public int hashCode()
     {
@@ -102,4 +102,54 @@ public class TestBitSet
       assertFalse( c.contains( a ) );
    }
 
+   @Test
+   public void testMultipleWords()
+   {
+      BitSet a = new BitSet( 3, 70, 200 );
+      BitSet b = new BitSet( 70 );
+      BitSet c = new BitSet( 3, 201 );
+
+      assertEquals( 256, a.size() );
+      assertEquals( 201, a.length() );
+      assertEquals( 3, a.cardinality() );
+      assertTrue( a.contains( b ) );
+      assertFalse( a.contains( c ) );
+      assertFalse( b.contains( a ) );
+      assertTrue( a.intersects( c ) );
+      assertFalse( b.intersects( c ) );
+
+      assertEquals( 3, a.nextSetBit( 0 ) );
+      assertEquals( 70, a.nextSetBit( 4 ) );
+      assertEquals( 200, a.nextSetBit( 71 ) );
+      assertEquals( -1, a.nextSetBit( 201 ) );
+      assertEquals( -1, a.nextSetBit( 1000 ) );
+
+      a.clear( 200 );
+      a.clear( 3 );
+
+      assertEquals( b, a );
+      assertEquals( b.hashCode(), a.hashCode() );
+      assertEquals( "{70}", a.toString() );
+   }
+
+   @Test
+   public void testRange()
+   {
+      BitSet a = new BitSet( 130, true );
+
+      assertEquals( 130, a.cardinality() );
+      assertEquals( 130, a.nextClearBit( 0 ) );
+
+      a.set( 60, 70, false );
+
+      assertEquals( 60, a.nextClearBit( 0 ) );
+      assertEquals( 70, a.nextSetBit( 60 ) );
+      assertEquals( 120, a.cardinality() );
+
+      a.clear();
+
+      assertTrue( a.isEmpty() );
+      assertEquals( 0, a.nextClearBit( 0 ) );
+   }
+
 }
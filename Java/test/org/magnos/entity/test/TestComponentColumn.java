@@ -0,0 +1,282 @@
+package org.magnos.entity.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.magnos.entity.ColumnObject;
+import org.magnos.entity.Component;
+import org.magnos.entity.ComponentDirect;
+import org.magnos.entity.ComponentFloat;
+import org.magnos.entity.ComponentInt;
+import org.magnos.entity.DirectLayout;
+import org.magnos.entity.Entity;
+import org.magnos.entity.Ents;
+import org.magnos.entity.Template;
+import org.magnos.entity.TemplateStorage;
+import org.magnos.entity.test.helper.Vector;
+
+
+public class TestComponentColumn
+{
+
+   public static final float EPSILON = 0.000001f;
+
+   @AfterClass
+   public static void afterTest()
+   {
+      Ents.clear();
+   }
+
+   static Component<Vector> POSITION = Ents.newComponentColumn( "position", new Vector() );
+   static Component<Vector> VELOCITY = Ents.newComponentColumn( "velocity", new Vector() );
+   static Component<Vector> ACCELERATION = Ents.newComponent( "acceleration", new Vector() );
+   static ComponentFloat RADIUS = Ents.newComponentFloat( "radius", 2.0f );
+   static ComponentInt LIVES = Ents.newComponentInt( "lives", 3 );
+   static Template PHYSICAL = Ents.newTemplate( "physical", POSITION, VELOCITY );
+   // @formatter:off
+   static class VectorLayout extends DirectLayout<Vector> {
+      final int X = addFloat( "x" );
+      final int Y = addFloat( "y" );
+      public Vector create() {
+         return new Vector();
+      }
+      public Vector read( ByteBuffer buffer, int offset, Vector target ) {
+         target.set( buffer.getFloat( offset + X ), buffer.getFloat( offset + Y ) );
+         return target;
+      }
+      public void write( ByteBuffer buffer, int offset, Vector value ) {
+         buffer.putFloat( offset + X, value.x );
+         buffer.putFloat( offset + Y, value.y );
+      }
+   }
+   // @formatter:on
+
+   static VectorLayout VECTOR_LAYOUT = new VectorLayout();
+   static ComponentDirect<Vector> TARGET = Ents.newComponentDirect( "target", VECTOR_LAYOUT );
+   static Template SEEKER = Ents.newTemplate( "seeker", TARGET, RADIUS );
+   static Template ROUND = Ents.newTemplate( "round", POSITION, RADIUS, LIVES );
+
+   @Test
+   public void testGetSet()
+   {
+      Entity e = new Entity( PHYSICAL );
+      Vector p = e.get( POSITION );
+
+      assertNotNull( p );
+      assertNotSame( p, e.get( VELOCITY ) );
+
+      Vector q = new Vector( 3.0f, 4.0f );
+      e.set( POSITION, q );
+
+      assertSame( q, e.get( POSITION ) );
+
+      e.delete();
+
+      assertEquals( 0, PHYSICAL.getStorage().size() );
+   }
+
+   @Test
+   public void testDense()
+   {
+      Entity e0 = new Entity( PHYSICAL );
+      Entity e1 = new Entity( PHYSICAL );
+      Entity e2 = new Entity( PHYSICAL );
+
+      e0.get( POSITION ).set( 0.0f, 0.0f );
+      e1.get( POSITION ).set( 1.0f, 1.0f );
+      e2.get( POSITION ).set( 2.0f, 2.0f );
+
+      TemplateStorage storage = PHYSICAL.getStorage();
+
+      assertEquals( 3, storage.size() );
+
+      e0.delete();
+
+      assertEquals( 2, storage.size() );
+      assertTrue( storage.contains( e1 ) );
+      assertTrue( storage.contains( e2 ) );
+      assertFalse( storage.contains( e0 ) );
+      assertEquals( 1.0f, e1.get( POSITION ).x, EPSILON );
+      assertEquals( 2.0f, e2.get( POSITION ).x, EPSILON );
+
+      e1.delete();
+      e2.delete();
+   }
+
+   @Test
+   public void testWalk()
+   {
+      Entity[] entities = new Entity[1500];
+
+      for (int i = 0; i < entities.length; i++)
+      {
+         entities[i] = new Entity( PHYSICAL );
+         entities[i].get( POSITION ).set( i, 0.0f );
+      }
+
+      TemplateStorage storage = PHYSICAL.getStorage();
+      ColumnObject<Vector> column = storage.getObjectColumn( POSITION );
+      float sum = 0.0f;
+      int count = 0;
+
+      for (int c = 0; c < storage.getChunkCount(); c++)
+      {
+         Object[] chunk = column.getChunk( c );
+
+         for (int i = 0, n = storage.getChunkLength( c ); i < n; i++)
+         {
+            sum += ((Vector)chunk[i]).x;
+            count++;
+         }
+      }
+
+      assertEquals( entities.length, count );
+      assertEquals( (entities.length - 1) * entities.length / 2, sum, EPSILON );
+
+      for (Entity e : entities)
+      {
+         e.delete();
+      }
+
+      storage.trim();
+
+      assertEquals( 0, storage.getChunkCount() );
+   }
+
+   @Test
+   public void testCustomAdd()
+   {
+      Entity e0 = new Entity( PHYSICAL );
+      Entity e1 = new Entity( PHYSICAL );
+      Vector p = e0.get( POSITION );
+
+      e0.add( ACCELERATION );
+
+      assertNotSame( PHYSICAL, e0.getTemplate() );
+      assertSame( p, e0.get( POSITION ) );
+      assertEquals( 1, PHYSICAL.getStorage().size() );
+      assertTrue( PHYSICAL.getStorage().contains( e1 ) );
+      assertTrue( e0.getTemplate().getStorage().contains( e0 ) );
+
+      e0.delete();
+      e1.delete();
+   }
+
+   @Test
+   public void testCustomAddColumn()
+   {
+      Entity e = new Entity( ACCELERATION );
+
+      assertEquals( null, e.getTemplate().getStorage() );
+
+      e.add( POSITION );
+
+      assertNotNull( e.get( POSITION ) );
+      assertTrue( e.getTemplate().getStorage().contains( e ) );
+
+      e.delete();
+   }
+
+   @Test
+   public void testClone()
+   {
+      Entity e = new Entity( PHYSICAL );
+      e.get( POSITION ).set( 5.0f, 6.0f );
+
+      Entity deep = e.clone( true );
+      Entity shallow = e.clone( false );
+
+      assertNotSame( e.get( POSITION ), deep.get( POSITION ) );
+      assertEquals( e.get( POSITION ), deep.get( POSITION ) );
+      assertSame( e.get( POSITION ), shallow.get( POSITION ) );
+
+      e.delete();
+      deep.delete();
+      shallow.delete();
+   }
+
+   @Test
+   public void testPrimitive()
+   {
+      Entity e0 = new Entity( ROUND );
+      Entity e1 = new Entity( ROUND );
+
+      assertEquals( 2.0f, RADIUS.getFloat( e0 ), EPSILON );
+      assertEquals( 3, LIVES.getInt( e1 ) );
+
+      RADIUS.setFloat( e0, 4.5f );
+      LIVES.setInt( e1, 1 );
+
+      assertEquals( 4.5f, e0.get( RADIUS ), EPSILON );
+      assertEquals( Integer.valueOf( 1 ), e1.get( LIVES ) );
+
+      e1.set( RADIUS, 6.0f );
+
+      assertEquals( 6.0f, ROUND.getStorage().getFloatColumn( RADIUS ).get( 1 ), EPSILON );
+
+      e0.delete();
+
+      assertEquals( 6.0f, RADIUS.getFloat( e1 ), EPSILON );
+      assertEquals( 1, LIVES.getInt( e1 ) );
+
+      e1.delete();
+   }
+
+   @Test
+   public void testDirect()
+   {
+      Entity e0 = new Entity( SEEKER );
+      Entity e1 = new Entity( SEEKER );
+
+      assertEquals( 8, VECTOR_LAYOUT.getStride() );
+      assertEquals( 4, VECTOR_LAYOUT.getOffset( "y" ) );
+
+      e0.set( TARGET, new Vector( 1.0f, 2.0f ) );
+      TARGET.setFloat( e1, VECTOR_LAYOUT.Y, 7.0f );
+
+      assertEquals( new Vector( 1.0f, 2.0f ), e0.get( TARGET ) );
+      assertEquals( 7.0f, e1.take( TARGET, new Vector() ).y, EPSILON );
+
+      // The value returned by get is bound to the entity and can be modified in place.
+      Vector held = e1.get( TARGET );
+      held.x += 3.0f;
+
+      assertSame( held, e1.get( TARGET ) );
+      assertEquals( 3.0f, TARGET.getFloat( e1, VECTOR_LAYOUT.X ), EPSILON );
+
+      TARGET.setFloat( e1, VECTOR_LAYOUT.X, 4.0f );
+
+      assertEquals( new Vector( 4.0f, 7.0f ), held );
+
+      e0.delete();
+      held.y += 1.0f;
+
+      assertSame( held, e1.get( TARGET ) );
+      assertEquals( 8.0f, TARGET.getFloat( e1, VECTOR_LAYOUT.Y ), EPSILON );
+      assertEquals( 0.0f, TARGET.getColumn( e1 ).getFloat( 1, VECTOR_LAYOUT.Y ), EPSILON );
+
+      e1.add( VELOCITY );
+      held.x += 1.0f;
+
+      assertNotSame( SEEKER, e1.getTemplate() );
+      assertSame( held, e1.get( TARGET ) );
+      assertEquals( new Vector( 5.0f, 8.0f ), e1.take( TARGET, new Vector() ) );
+
+      Entity copy = e1.clone( true );
+
+      assertNotSame( held, copy.get( TARGET ) );
+      assertEquals( held, copy.get( TARGET ) );
+
+      copy.delete();
+      e1.delete();
+   }
+
+}
@@ -0,0 +1,124 @@
+
+package org.magnos.entity.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.magnos.entity.Component;
+import org.magnos.entity.ComponentDoubleBuffered;
+import org.magnos.entity.Entity;
+import org.magnos.entity.Ents;
+import org.magnos.entity.Template;
+import org.magnos.entity.test.helper.Vector;
+
+
+public class TestComponentDoubleBuffered
+{
+
+   public static final float EPSILON = 0.000001f;
+
+   @AfterClass
+   public static void afterTest()
+   {
+      Ents.clear();
+   }
+
+   static ComponentDoubleBuffered<Vector> POSITION = Ents.newComponentDoubleBuffered( "position", new Vector() );
+   static Component<Vector> VELOCITY = Ents.newComponent( "velocity", new Vector() );
+   static Component<Vector> SPEED = Ents.newComponent( "speed", new Vector() );
+   static Template SPRITE = Ents.newTemplate( "sprite", POSITION, VELOCITY );
+
+   @Test
+   public void testReadWrite()
+   {
+      Entity e = new Entity( SPRITE );
+
+      POSITION.reset( e, new Vector( 1, 2 ) );
+
+      assertNotSame( POSITION.getRead( e ), POSITION.getWrite( e ) );
+      assertEquals( new Vector( 1, 2 ), POSITION.getRead( e ) );
+      assertEquals( new Vector( 1, 2 ), POSITION.getWrite( e ) );
+
+      POSITION.getWrite( e ).set( 3, 4 );
+
+      assertSame( POSITION.getRead( e ), e.get( POSITION ) );
+      assertEquals( new Vector( 1, 2 ), e.get( POSITION ) );
+
+      Ents.flipBuffers();
+
+      assertEquals( new Vector( 3, 4 ), e.get( POSITION ) );
+      assertEquals( new Vector( 3, 4 ), POSITION.getWrite( e ) );
+      assertNotSame( POSITION.getRead( e ), POSITION.getWrite( e ) );
+
+      POSITION.getWrite( e ).x = 7;
+      POSITION.carry( e );
+
+      assertEquals( new Vector( 3, 4 ), POSITION.getWrite( e ) );
+
+      e.set( POSITION, new Vector( 5, 6 ) );
+
+      assertEquals( new Vector( 3, 4 ), e.get( POSITION ) );
+
+      POSITION.flip();
+
+      assertEquals( new Vector( 5, 6 ), e.get( POSITION ) );
+   }
+
+   @Test
+   public void testUnwritten()
+   {
+      Entity written = new Entity( SPRITE );
+      Entity unwritten = new Entity( SPRITE );
+
+      POSITION.reset( written, new Vector( 1, 1 ) );
+      POSITION.reset( unwritten, new Vector( 1, 1 ) );
+
+      POSITION.getWrite( written ).set( 2, 2 );
+      POSITION.getWrite( unwritten ).set( 2, 2 );
+      Ents.flipBuffers();
+
+      // Only part of the value is written, and one entity isn't written at all.
+      POSITION.getWrite( written ).x = 3;
+      Ents.flipBuffers();
+      Ents.flipBuffers();
+
+      assertEquals( new Vector( 3, 2 ), written.get( POSITION ) );
+      assertEquals( new Vector( 2, 2 ), unwritten.get( POSITION ) );
+      assertEquals( new Vector( 2, 2 ), POSITION.getWrite( unwritten ) );
+
+      written.delete();
+      unwritten.delete();
+   }
+
+   @Test
+   public void testTemplateChange()
+   {
+      Entity e = new Entity( SPRITE );
+
+      POSITION.reset( e, new Vector( 1, 1 ) );
+      POSITION.getWrite( e ).set( 2, 2 );
+
+      Vector read = POSITION.getRead( e );
+      Vector write = POSITION.getWrite( e );
+
+      e.add( SPEED );
+
+      assertNotSame( SPRITE, e.getTemplate() );
+      assertTrue( e.getTemplate().isCustom() );
+      assertTrue( e.has( SPEED ) );
+      assertSame( read, POSITION.getRead( e ) );
+      assertSame( write, POSITION.getWrite( e ) );
+
+      POSITION.flip();
+
+      assertEquals( new Vector( 2, 2 ), e.get( POSITION ) );
+      assertEquals( new Vector( 2, 2 ), POSITION.getWrite( e ) );
+
+      e.delete();
+   }
+
+}
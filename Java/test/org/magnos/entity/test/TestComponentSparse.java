@@ -0,0 +1,181 @@
+
+package org.magnos.entity.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.magnos.entity.Component;
+import org.magnos.entity.ComponentSparse;
+import org.magnos.entity.Entity;
+import org.magnos.entity.EntitySet;
+import org.magnos.entity.Ents;
+import org.magnos.entity.Template;
+import org.magnos.entity.filters.FilterType;
+import org.magnos.entity.filters.Filters;
+import org.magnos.entity.test.helper.Vector;
+import org.magnos.entity.vals.FloatVal;
+
+
+public class TestComponentSparse
+{
+
+   public static final float EPSILON = 0.000001f;
+
+   @AfterClass
+   public static void afterTest()
+   {
+      Ents.clear();
+   }
+
+   static Component<Vector> POSITION = Ents.newComponent( "position", new Vector() );
+   static ComponentSparse<FloatVal> STUNNED = Ents.newComponentSparse( "stunned", new FloatVal() );
+   static Template SPRITE = Ents.newTemplate( "sprite", POSITION );
+   static Template STATUE = Ents.newTemplate( "statue", POSITION, STUNNED );
+
+   @Test
+   public void testAddRemove()
+   {
+      Entity e = new Entity( SPRITE );
+      Template t = e.getTemplate();
+
+      assertFalse( e.has( STUNNED ) );
+      assertNull( e.gets( STUNNED ) );
+
+      e.add( STUNNED );
+      e.get( STUNNED ).v = 2.0f;
+
+      assertTrue( e.has( STUNNED ) );
+      assertTrue( e.has( POSITION, STUNNED ) );
+      assertSame( t, e.getTemplate() );
+      assertEquals( 2.0f, e.get( STUNNED ).v, EPSILON );
+      assertEquals( 1, STUNNED.size() );
+      assertSame( e, STUNNED.getEntity( 0 ) );
+
+      assertTrue( e.remove( STUNNED ) );
+      assertFalse( e.remove( STUNNED ) );
+      assertFalse( e.has( STUNNED ) );
+      assertFalse( e.remove( POSITION ) );
+      assertSame( t, e.getTemplate() );
+      assertEquals( 0, STUNNED.size() );
+
+      assertTrue( e.put( STUNNED, new FloatVal( 3.0f ) ) );
+      assertEquals( 3.0f, e.get( STUNNED ).v, EPSILON );
+
+      e.delete();
+
+      assertEquals( 0, STUNNED.size() );
+   }
+
+   @Test
+   public void testDense()
+   {
+      Entity[] entities = new Entity[8];
+
+      for (int i = 0; i < entities.length; i++)
+      {
+         entities[i] = new Entity( SPRITE );
+
+         if ((i & 1) == 0)
+         {
+            entities[i].add( STUNNED, new FloatVal( i ) );
+         }
+      }
+
+      assertEquals( 4, STUNNED.size() );
+
+      entities[0].delete();
+      entities[3].delete();
+
+      assertEquals( 3, STUNNED.size() );
+
+      float sum = 0.0f;
+
+      for (int i = 0; i < STUNNED.size(); i++)
+      {
+         assertTrue( STUNNED.getEntity( i ).has( STUNNED ) );
+         sum += STUNNED.getValue( i ).v;
+      }
+
+      assertEquals( 2.0f + 4.0f + 6.0f, sum, EPSILON );
+
+      for (Entity e : entities)
+      {
+         e.delete();
+      }
+
+      assertEquals( 0, STUNNED.size() );
+   }
+
+   @Test
+   public void testTemplate()
+   {
+      Entity e = new Entity( STATUE );
+
+      assertTrue( e.has( STUNNED ) );
+      assertTrue( STUNNED.has( e ) );
+      assertFalse( e.remove( STUNNED ) );
+
+      e.get( STUNNED ).v = 5.0f;
+
+      Entity c = e.clone( true );
+
+      assertEquals( 5.0f, c.get( STUNNED ).v, EPSILON );
+      assertNotSame( e.get( STUNNED ), c.get( STUNNED ) );
+
+      e.delete();
+      c.delete();
+
+      assertEquals( 0, STUNNED.size() );
+   }
+
+   @Test
+   public void testFilter()
+   {
+      try
+      {
+         Filters.components( POSITION, STUNNED );
+         fail( "A sparse component can't be filtered by template" );
+      }
+      catch (IllegalArgumentException e)
+      {
+      }
+
+      assertEquals( FilterType.ENTITY, FilterType.classify( Filters.and( Filters.components( POSITION ), Filters.sparse( STUNNED ) ) ) );
+
+      EntitySet set = Ents.newEntitySet( Filters.and( Filters.components( POSITION ), Filters.sparse( STUNNED ) ) );
+
+      Entity a = new Entity( SPRITE );
+      Entity b = new Entity( STATUE );
+
+      assertFalse( set.contains( a ) );
+      assertTrue( set.contains( b ) );
+
+      a.add( STUNNED );
+
+      assertTrue( set.contains( a ) );
+
+      a.remove( STUNNED );
+
+      assertFalse( set.contains( a ) );
+
+      STUNNED.set( a, new FloatVal( 1.0f ) );
+
+      assertTrue( set.contains( a ) );
+      assertEquals( 2, set.size() );
+
+      a.delete();
+      b.delete();
+
+      assertEquals( 0, set.size() );
+
+      Ents.removeEntitySet( set );
+   }
+
+}
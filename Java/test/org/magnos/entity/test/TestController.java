@@ -16,14 +16,23 @@
 
 package org.magnos.entity.test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.AfterClass;
 import org.junit.Test;
 import org.magnos.entity.Component;
 import org.magnos.entity.Control;
 import org.magnos.entity.Controller;
+import org.magnos.entity.ControllerScheduler;
 import org.magnos.entity.Entity;
+import org.magnos.entity.EntityList;
 import org.magnos.entity.Ents;
 import org.magnos.entity.Template;
 import org.magnos.entity.test.helper.Vector;
@@ -98,4 +107,232 @@ public class TestController
       assertEquals( 0.5f, p.y, 0.0001f );
    }
 
+   @Test
+   public void testPlan()
+   {
+      final AtomicInteger first = new AtomicInteger();
+      final AtomicInteger second = new AtomicInteger();
+
+      Controller counter = Ents.newController( "counter", new Control() {
+
+         public void update( Entity e, Object updateState )
+         {
+            first.incrementAndGet();
+         }
+      } );
+
+      Template template = Ents.newTemplate( "counted", new ComponentSet( POSITION, VELOCITY ), new ControllerSet( counter ), null );
+
+      Entity e = new Entity( template );
+      e.update( 0.0f );
+
+      assertEquals( 1, first.get() );
+      assertEquals( 1, template.getPlan().length );
+
+      Ents.setControllerDefault( counter, new Control() {
+
+         public void update( Entity e, Object updateState )
+         {
+            second.incrementAndGet();
+         }
+      } );
+
+      e.update( 0.0f );
+
+      assertEquals( 1, first.get() );
+      assertEquals( 1, second.get() );
+
+      e.add( PHYSICS_SIMPLE );
+      e.update( 0.0f );
+
+      assertEquals( 2, e.getTemplate().getPlan().length );
+      assertEquals( 2, second.get() );
+
+      e.disable( counter );
+      e.update( 0.0f );
+
+      assertEquals( 2, second.get() );
+
+      // Setting the control is picked up by the next update.
+      e.enable( counter );
+      counter.setControl( new Control() {
+
+         public void update( Entity e, Object updateState )
+         {
+            first.incrementAndGet();
+         }
+      } );
+      e.update( 0.0f );
+
+      assertEquals( 2, first.get() );
+      assertEquals( 2, second.get() );
+
+      e.delete();
+   }
+
+   @Test
+   public void testParallelSafe()
+   {
+      Control none = new Control() {
+
+         public void update( Entity e, Object updateState )
+         {
+         }
+      };
+
+      Component<Vector> heading = Ents.newComponentPooled( "heading", new Vector() );
+      Controller move = Ents.newController( "safe-move", none ).reads( VELOCITY ).writes( POSITION );
+      Controller steer = Ents.newController( "safe-steer", none ).writes( heading );
+      Controller follow = Ents.newController( "safe-follow", none ).reads( POSITION ).writes( VELOCITY );
+
+      Template mover = Ents.newTemplate( "safe-mover", new ComponentSet( POSITION, VELOCITY, heading ), new ControllerSet( move, steer ), null );
+      Template follower = Ents.newTemplate( "safe-follower", new ComponentSet( POSITION, VELOCITY ), new ControllerSet( follow ), null );
+      Template racing = Ents.newTemplate( "racing", new ComponentSet( POSITION, VELOCITY ), new ControllerSet( move, follow ), null );
+
+      assertTrue( mover.isParallelSafe() );
+      assertTrue( follower.isParallelSafe() );
+      assertFalse( racing.isParallelSafe() );
+      assertFalse( mover.races( mover ) );
+      assertTrue( mover.races( follower ) );
+      assertTrue( follower.races( mover ) );
+   }
+
+   @Test
+   public void testScheduler()
+   {
+      final AtomicInteger counted = new AtomicInteger();
+
+      Controller integrate = Ents.newController( "integrate", new Control() {
+
+         public void update( Entity e, Object updateState )
+         {
+            e.get( POSITION ).addsi( e.get( VELOCITY ), (Float)updateState );
+         }
+      } );
+
+      Controller accelerate = Ents.newController( "accelerate", new Control() {
+
+         public void update( Entity e, Object updateState )
+         {
+            e.get( VELOCITY ).addsi( e.get( ACCELERATION ), (Float)updateState );
+         }
+      } );
+
+      Controller counter = Ents.newController( "scheduled-counter", new Control() {
+
+         public void update( Entity e, Object updateState )
+         {
+            counted.incrementAndGet();
+         }
+      } );
+
+      integrate.reads( VELOCITY ).writes( POSITION ).after( accelerate );
+      accelerate.reads( ACCELERATION ).writes( VELOCITY );
+      counter.writes();
+
+      Template template = Ents.newTemplate( "scheduled", new ComponentSet( POSITION, VELOCITY, ACCELERATION ), new ControllerSet( integrate, accelerate, counter ), null );
+
+      EntityList list = new EntityList();
+
+      for (int i = 0; i < 8; i++)
+      {
+         Entity e = new Entity( template );
+         e.get( ACCELERATION ).set( 1.0f, 0.0f );
+         list.add( e );
+      }
+
+      Entity first = list.at( 0 );
+      list.at( 1 ).expire();
+
+      ControllerScheduler serial = new ControllerScheduler();
+      serial.update( list, 1.0f );
+
+      assertEquals( 7, list.size() );
+      assertEquals( 7, counted.get() );
+      assertEquals( new Vector( 1.0f, 0.0f ), first.get( POSITION ) );
+      assertArrayEquals( new Controller[] { accelerate, integrate, counter }, serial.getOrder() );
+      assertTrue( serial.getCriticalPathNanos() >= serial.getNanos( accelerate ) + serial.getNanos( integrate ) );
+
+      ExecutorService executor = Executors.newFixedThreadPool( 2 );
+
+      try
+      {
+         ControllerScheduler concurrent = new ControllerScheduler( executor );
+         concurrent.update( list, 1.0f );
+         concurrent.update( list, 1.0f );
+
+         assertEquals( 21, counted.get() );
+         assertEquals( new Vector( 6.0f, 0.0f ), first.get( POSITION ) );
+         assertTrue( concurrent.getCriticalPath().length >= 1 );
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+
+      list.delete();
+   }
+
+   @Test
+   public void testReactive()
+   {
+      final AtomicInteger runs = new AtomicInteger();
+
+      Controller bounds = Ents.newController( "bounds", new Control() {
+
+         public void update( Entity e, Object updateState )
+         {
+            runs.incrementAndGet();
+         }
+      } ).triggers( VELOCITY );
+
+      Template reactive = Ents.newTemplate( "reactive", new ComponentSet( POSITION, VELOCITY ), new ControllerSet( bounds ), null );
+
+      Entity a = new Entity( reactive );
+      Entity b = new Entity( reactive );
+
+      assertTrue( bounds.isReactive() );
+
+      a.update( null );
+      b.update( null );
+
+      assertEquals( 0, runs.get() );
+
+      a.set( VELOCITY, new Vector( 1.0f, 0.0f ) );
+      a.update( null );
+      b.update( null );
+
+      assertEquals( 1, runs.get() );
+
+      a.update( null );
+
+      assertEquals( 1, runs.get() );
+
+      // Only the changed entities are visited when reacting directly.
+      b.get( VELOCITY ).x = 2.0f;
+      b.touch( VELOCITY );
+
+      assertEquals( 1, bounds.getReactiveControl().react( null ) );
+      assertEquals( 2, runs.get() );
+
+      b.update( null );
+
+      assertEquals( 2, runs.get() );
+
+      // Entities which changed before the last react aren't visited again.
+      assertEquals( 0, bounds.getReactiveControl().react( null ) );
+
+      a.get( VELOCITY ).x = 3.0f;
+      a.touch( VELOCITY );
+      b.get( VELOCITY ).x = 4.0f;
+      b.touch( VELOCITY );
+      a.touch( VELOCITY );
+
+      assertEquals( 2, bounds.getReactiveControl().react( null ) );
+      assertEquals( 4, runs.get() );
+
+      a.delete();
+      b.delete();
+   }
+
 }
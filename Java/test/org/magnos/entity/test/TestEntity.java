@@ -13,6 +13,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.AfterClass;
 import org.junit.Test;
+import org.magnos.entity.ChangeSet;
 import org.magnos.entity.Component;
 import org.magnos.entity.Control;
 import org.magnos.entity.Controller;
@@ -104,6 +105,20 @@ public class TestEntity
    static Component<IntVal>     UPDATE_COUNT    = Ents.newComponent( "update-count", new IntVal() );
    static Controller            UPDATES_CONTROL = Ents.newController( "updates-control", CONTROL_UPDATES );
    static Template              UPDATES         = Ents.newTemplate( "updates", new ComponentSet(UPDATE_COUNT), new ControllerSet(UPDATES_CONTROL) );
+
+   static Component<FloatVal>   SHARED          = Ents.newComponentShared( "shared", new FloatVal() );
+
+   static StringBuilder         ORDER           = new StringBuilder();
+   static Controller            ORDER_B         = Ents.newController( "order-b", new Control() {
+      public void update( Entity e, Object updateState ) {
+         ORDER.append( 'B' );
+      }
+   } );
+   static Controller            ORDER_C         = Ents.newController( "order-c", new Control() {
+      public void update( Entity e, Object updateState ) {
+         ORDER.append( 'C' );
+      }
+   } );
    
    // @formatter:on
 
@@ -604,4 +619,271 @@ public class TestEntity
       e0.delete();
    }
    
+
+   @Test
+   public void testHandle()
+   {
+      Entity a = new Entity( EXTENT );
+      long ha = a.getHandle();
+
+      assertTrue( ha != Ents.HANDLE_NONE );
+      assertEquals( a.id, Ents.getHandleId( ha ) );
+      assertSame( a, Ents.resolve( ha ) );
+      assertTrue( Ents.isLive( ha ) );
+
+      a.delete();
+
+      assertNull( Ents.resolve( ha ) );
+      assertFalse( Ents.isLive( ha ) );
+
+      // The id is reused but the stale handle still doesn't resolve.
+      Entity b = new Entity( EXTENT );
+      long hb = b.getHandle();
+
+      assertEquals( a.id, b.id );
+      assertTrue( ha != hb );
+      assertNull( Ents.resolve( ha ) );
+      assertSame( b, Ents.resolve( hb ) );
+      assertNull( Ents.resolve( Ents.HANDLE_NONE ) );
+      assertNull( Ents.resolve( -1L ) );
+
+      b.delete();
+   }
+
+   @Test
+   public void testTransitionEdges()
+   {
+      Entity[] entities = new Entity[10];
+
+      for (int i = 0; i < entities.length; i++)
+      {
+         entities[i] = new Entity( EXTENT );
+         entities[i].add( SPEED );
+         entities[i].get( SPEED ).v = i;
+      }
+
+      Template speedy = entities[0].getTemplate();
+
+      assertTrue( speedy.isCustom() );
+      assertTrue( speedy.isShared() );
+      assertTrue( EXTENT.getEdgeCount() >= 1 );
+      assertEquals( entities.length, speedy.getInstances() );
+
+      for (int i = 0; i < entities.length; i++)
+      {
+         assertSame( speedy, entities[i].getTemplate() );
+         assertEquals( i, entities[i].get( SPEED ).v, EPSILON );
+      }
+
+      // A shared template is not modified, the entity moves along another edge.
+      entities[0].add( NETWORKING );
+      entities[1].add( NETWORKING );
+
+      assertNotSame( speedy, entities[0].getTemplate() );
+      assertSame( entities[0].getTemplate(), entities[1].getTemplate() );
+      assertTrue( entities[0].isControllerEnabled( NETWORKING ) );
+      assertFalse( speedy.has( NETWORKING ) );
+      assertEquals( 0.0f, entities[0].get( SPEED ).v, EPSILON );
+
+      entities[2].setView( DRAWS_VIEW );
+      entities[3].setView( DRAWS_VIEW );
+
+      assertSame( entities[2].getTemplate(), entities[3].getTemplate() );
+      assertSame( DRAWS_VIEW, entities[3].getTemplate().getView() );
+      assertEquals( 2, speedy.getEdgeCount() );
+
+      for (Entity e : entities)
+      {
+         e.delete();
+      }
+   }
+
+   @Test
+   public void testInterning()
+   {
+      Entity a = new Entity( EXTENT );
+      a.add( SPEED );
+      a.add( NETWORKING );
+      a.get( SPEED ).v = 3.0f;
+      a.get( LEFT ).v = 1.0f;
+
+      // The same template is reached by making the changes in another order.
+      Entity b = new Entity( EXTENT );
+      b.add( NETWORKING );
+      b.add( SPEED );
+
+      assertSame( a.getTemplate(), b.getTemplate() );
+      assertTrue( a.getTemplate().isInterned() );
+      assertEquals( 3.0f, a.get( SPEED ).v, EPSILON );
+      assertEquals( 1.0f, a.get( LEFT ).v, EPSILON );
+      assertEquals( 0.0f, b.get( SPEED ).v, EPSILON );
+      assertEquals( 0.0f, b.get( LEFT ).v, EPSILON );
+      assertNotSame( a.get( SPEED ), b.get( SPEED ) );
+      assertTrue( b.isControllerEnabled( NETWORKING ) );
+
+      a.delete();
+      b.delete();
+   }
+
+   @Test
+   public void testInterningControllerOrder()
+   {
+      Entity a = new Entity( UPDATES );
+      a.add( ORDER_B );
+      a.add( ORDER_C );
+
+      // The same controllers added in another order run in another order.
+      Entity b = new Entity( UPDATES );
+      b.add( ORDER_C );
+      b.add( ORDER_B );
+
+      assertNotSame( a.getTemplate(), b.getTemplate() );
+      assertFalse( a.getTemplate().isEquivalent( b.getTemplate() ) );
+
+      ORDER.setLength( 0 );
+      a.update( null );
+      b.update( null );
+
+      assertEquals( "BCCB", ORDER.toString() );
+
+      Entity c = new Entity( UPDATES );
+      c.add( ORDER_C );
+      c.add( ORDER_B );
+
+      assertSame( b.getTemplate(), c.getTemplate() );
+
+      a.delete();
+      b.delete();
+      c.delete();
+   }
+
+   @Test
+   public void testTransitionShared()
+   {
+      Entity a = new Entity( EXTENT );
+      a.add( SHARED );
+
+      // The value of a shared component is kept on the template, so entities can't share the custom template.
+      Entity b = new Entity( EXTENT );
+      b.add( SHARED );
+
+      a.set( SHARED, new FloatVal( 5.0f ) );
+
+      assertNotSame( a.getTemplate(), b.getTemplate() );
+      assertFalse( a.getTemplate().isShareable() );
+      assertEquals( 5.0f, a.get( SHARED ).v, EPSILON );
+      assertEquals( 0.0f, b.get( SHARED ).v, EPSILON );
+
+      // The custom template is only used by the entity, so it's modified in place.
+      Template custom = b.getTemplate();
+      b.add( NETWORKING );
+
+      assertSame( custom, b.getTemplate() );
+      assertTrue( b.getTemplate().has( NETWORKING ) );
+      assertFalse( a.getTemplate().has( NETWORKING ) );
+
+      Ents.compactTemplates();
+
+      assertNotSame( a.getTemplate(), b.getTemplate() );
+      assertEquals( 5.0f, a.get( SHARED ).v, EPSILON );
+
+      a.delete();
+      b.delete();
+   }
+
+   @Test
+   public void testCompactTemplates()
+   {
+      Entity[] entities = new Entity[5];
+
+      for (int i = 0; i < entities.length; i++)
+      {
+         entities[i] = new Entity( LEFT, RIGHT );
+         entities[i].get( LEFT ).v = i;
+      }
+
+      assertNotSame( entities[0].getTemplate(), entities[1].getTemplate() );
+      assertEquals( entities.length - 1, Ents.compactTemplates() );
+
+      Template compact = entities[0].getTemplate();
+
+      assertTrue( compact.isInterned() );
+      assertEquals( entities.length, compact.getInstances() );
+
+      for (int i = 0; i < entities.length; i++)
+      {
+         assertSame( compact, entities[i].getTemplate() );
+         assertEquals( i, entities[i].get( LEFT ).v, EPSILON );
+      }
+
+      // A budgeted compaction eventually merges new templates as well.
+      Entity late = new Entity( LEFT, RIGHT );
+      late.get( RIGHT ).v = 2.0f;
+
+      for (int i = 0; i < Ents.getLiveTemplateCount() && late.getTemplate() != compact; i++)
+      {
+         Ents.compactTemplates( 1 );
+      }
+
+      assertSame( compact, late.getTemplate() );
+      assertEquals( 2.0f, late.get( RIGHT ).v, EPSILON );
+
+      for (Entity e : entities)
+      {
+         e.delete();
+      }
+
+      late.delete();
+   }
+
+   @Test
+   public void testChangeTracking()
+   {
+      Entity a = new Entity( EXTENT );
+      Entity b = new Entity( EXTENT );
+      Entity c = new Entity( EXTENT );
+
+      assertFalse( a.touch( LEFT ) );
+      assertNull( Ents.getChanges( LEFT ) );
+
+      ChangeSet changes = Ents.track( LEFT );
+      int since = Ents.getTick();
+
+      assertSame( changes, Ents.track( LEFT ) );
+
+      a.set( LEFT, new FloatVal( 1.0f ) );
+      b.get( LEFT ).v = 2.0f;
+      b.touch( LEFT );
+      c.set( RIGHT, new FloatVal( 3.0f ) );
+
+      assertEquals( 2, changes.size() );
+      assertTrue( changes.isChanged( a, since - 1 ) );
+      assertTrue( changes.isChanged( b, since - 1 ) );
+      assertFalse( changes.isChanged( c, since - 1 ) );
+      assertFalse( changes.isChanged( a, since ) );
+
+      // Only changes after the last tick a system saw are new to it.
+      since = Ents.getTick();
+      Ents.advanceTick();
+      a.set( LEFT, new FloatVal( 4.0f ) );
+
+      assertEquals( 2, changes.size() );
+      assertTrue( changes.isChanged( a, since ) );
+      assertFalse( changes.isChanged( b, since ) );
+      assertSame( a, changes.getLatest() );
+      assertSame( b, changes.getEarlier( a ) );
+      assertNull( changes.getEarlier( b ) );
+      assertEquals( 1, changes.removeBefore( Ents.getTick() ) );
+      assertSame( a, changes.getEntity( 0 ) );
+
+      a.delete();
+
+      assertEquals( 0, changes.size() );
+      assertTrue( Ents.untrack( LEFT ) );
+      assertFalse( b.touch( LEFT ) );
+
+      b.delete();
+      c.delete();
+   }
+
 }
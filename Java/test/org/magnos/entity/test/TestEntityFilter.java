@@ -2,10 +2,16 @@
 package org.magnos.entity.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import static org.magnos.entity.filters.Filters.*;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.AfterClass;
 import org.junit.Test;
 import org.magnos.entity.Component;
@@ -15,7 +21,9 @@ import org.magnos.entity.Ents;
 import org.magnos.entity.EntityFilter;
 import org.magnos.entity.EntityIterator;
 import org.magnos.entity.EntityList;
+import org.magnos.entity.EntitySet;
 import org.magnos.entity.Template;
+import org.magnos.entity.filters.FilterType;
 import org.magnos.entity.test.helper.Vector;
 import org.magnos.entity.vals.FloatVal;
 
@@ -129,6 +137,111 @@ public class TestEntityFilter
       testFilter( components( SCALE ), 3 );
    }
 
+   @Test
+   public void testCached()
+   {
+      assertEquals( FilterType.TEMPLATE, FilterType.classify( and( components( NAME ), not( custom() ) ) ) );
+      assertEquals( FilterType.ENTITY, FilterType.classify( and( components( NAME ), alive() ) ) );
+      assertEquals( FilterType.VALUE, FilterType.classify( or( visible(), value( POSITION, new Vector() ) ) ) );
+
+      testFilter( cached( components( NAME, POSITION ) ), 1, 2, 3, 4 );
+      testFilter( cached( and( custom(), visible() ) ), 0, 3 );
+      testFilter( cached( and( visible(), not( template( BASIC_OBJECT ) ) ) ), 0, 3 );
+      testFilter( cached( xor( enabled(), custom() ) ), 1, 2 );
+
+      EntityFilter scaled = cached( components( SCALE ) );
+
+      // A custom template with a single entity is modified in place.
+      Entity e = new Entity( NAME, POSITION );
+
+      Template custom = e.getTemplate();
+
+      assertFalse( scaled.isValid( e ) );
+
+      e.grab( SCALE );
+
+      assertSame( custom, e.getTemplate() );
+      assertTrue( scaled.isValid( e ) );
+
+      e.delete();
+   }
+
+   @Test
+   public void testEntitySet()
+   {
+      Entity e1 = new Entity( BASIC_OBJECT );
+      Entity e2 = new Entity( BASIC_OBJECT );
+      e2.grab( SCALE );
+
+      EntitySet set = Ents.newEntitySet( and( components( SCALE ), alive() ), true );
+
+      assertTrue( set.isRegistered() );
+      assertTrue( set.isJournaled() );
+      assertEquals( 1, set.size() );
+      assertSame( e2, set.at( 0 ) );
+      assertEquals( 1, set.getAddedCount() );
+
+      set.clearChanges();
+
+      e1.grab( SCALE );
+
+      assertEquals( 2, set.size() );
+      assertTrue( set.contains( e1 ) );
+      assertEquals( 1, set.getAddedCount() );
+      assertSame( e1, set.getAdded( 0 ) );
+
+      Entity e3 = new Entity( BASIC_OBJECT );
+      e3.grab( SCALE );
+      e2.expire();
+
+      assertEquals( 2, set.size() );
+      assertFalse( set.contains( e2 ) );
+      assertEquals( 1, set.getRemovedCount() );
+      assertSame( e2, set.getRemoved( 0 ) );
+
+      int iterated = 0;
+
+      for (Entity e : set)
+      {
+         assertTrue( e == e1 || e == e3 );
+         e.delete();
+         iterated++;
+      }
+
+      assertEquals( 2, iterated );
+      assertEquals( 0, set.size() );
+      assertEquals( 3, set.getRemovedCount() );
+
+      Ents.removeEntitySet( set );
+
+      assertFalse( set.isRegistered() );
+
+      // A set which isn't journaled doesn't hold on to the entities which left it.
+      EntitySet dense = Ents.newEntitySet( components( SCALE ) );
+      Entity e4 = new Entity( BASIC_OBJECT );
+      e4.grab( SCALE );
+
+      assertTrue( dense.contains( e4 ) );
+      assertEquals( 0, dense.getAddedCount() );
+
+      e4.delete();
+
+      assertEquals( 0, dense.getRemovedCount() );
+
+      try
+      {
+         dense.iterator().remove();
+         fail( "an entity was removed from a set through it's iterator" );
+      }
+      catch (UnsupportedOperationException e)
+      {
+      }
+
+      Ents.removeEntitySet( dense );
+
+      e2.delete();
+   }
+
    private void testFilter( EntityFilter filter, int... valid )
    {
       EntityList e0 = new EntityList();         // entirely custom
@@ -166,6 +279,24 @@ public class TestEntityFilter
       }
 
       assertEquals( count, valid.length );
+
+      // Query live entities
+      Set<Entity> expected = new HashSet<Entity>();
+      Set<Entity> queried = new HashSet<Entity>();
+
+      for (int i = 0; i < valid.length; i++)
+      {
+         expected.add( entities[valid[i]] );
+      }
+
+      for (Entity entity : Ents.query( filter ))
+      {
+         assertTrue( queried.add( entity ) );
+      }
+
+      assertEquals( expected, queried );
+
+      e0.delete();
    }
 
 }
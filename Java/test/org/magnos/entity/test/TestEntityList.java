@@ -1,7 +1,414 @@
 package org.magnos.entity.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.magnos.entity.BatchControl;
+import org.magnos.entity.CommandBuffer;
+import org.magnos.entity.Component;
+import org.magnos.entity.Control;
+import org.magnos.entity.Controller;
+import org.magnos.entity.Entity;
+import org.magnos.entity.EntityList;
+import org.magnos.entity.EntityParallelUpdater;
+import org.magnos.entity.EntitySet;
+import org.magnos.entity.Ents;
+import org.magnos.entity.Template;
+import org.magnos.entity.filters.Filters;
+import org.magnos.entity.test.helper.Vector;
+import org.magnos.entity.util.ComponentSet;
+import org.magnos.entity.util.ControllerSet;
+
 
 public class TestEntityList
 {
 
+   @AfterClass
+   public static void afterTest()
+   {
+      Ents.clear();
+   }
+
+   static int batches;
+   static int singles;
+
+   public static Component<Vector> POSITION = Ents.newComponent( "position", new Vector() );
+   public static Component<Vector> VELOCITY = Ents.newComponent( "velocity", new Vector() );
+
+   public static Controller PHYSICS = Ents.newController( "physics", new BatchControl() {
+
+      public void update( Entity e, Object updateState )
+      {
+         singles++;
+         e.get( POSITION ).addsi( e.get( VELOCITY ), (Float)updateState );
+      }
+
+      public void update( Template template, Entity[] entities, int offset, int count, Object updateState )
+      {
+         batches++;
+
+         for (int i = offset; i < offset + count; i++)
+         {
+            entities[i].get( POSITION ).addsi( entities[i].get( VELOCITY ), (Float)updateState );
+         }
+      }
+   } );
+
+   public static Controller MOVE = Ents.newController( "move", new Control() {
+
+      public void update( Entity e, Object updateState )
+      {
+         e.get( POSITION ).addsi( e.get( VELOCITY ), (Float)updateState );
+      }
+   } ).reads( VELOCITY ).writes( POSITION );
+
+   public static Template SPRITE = Ents.newTemplate( "sprite", new ComponentSet( POSITION, VELOCITY ), new ControllerSet( PHYSICS ), null );
+   public static Template BULLET = Ents.newTemplate( "bullet", new ComponentSet( POSITION, VELOCITY ), new ControllerSet( PHYSICS ), null );
+   public static Template PARTICLE = Ents.newTemplate( "particle", new ComponentSet( POSITION, VELOCITY ), new ControllerSet( MOVE ), null );
+
+   static boolean failing;
+
+   public static Controller FADE = Ents.newController( "fade", new Control() {
+
+      public void update( Entity e, Object updateState )
+      {
+         if (failing)
+         {
+            throw new RuntimeException( "failed" );
+         }
+
+         e.get( POSITION ).x += 1.0f;
+
+         if (e.get( VELOCITY ).x < 0.0f)
+         {
+            e.expire();
+         }
+      }
+   } ).reads( VELOCITY ).writes( POSITION );
+
+   public static Template FADING = Ents.newTemplate( "fading", new ComponentSet( POSITION, VELOCITY ), new ControllerSet( FADE ), null );
+
+   @Test
+   public void testBatched()
+   {
+      final int[] updated = {0};
+
+      EntityList list = new EntityList() {
+
+         protected void onEntityUpdated( Entity e, int index, Object updateState )
+         {
+            updated[0]++;
+         }
+      };
+
+      list.setBatched( true );
+
+      for (int i = 0; i < 10; i++)
+      {
+         Entity e = new Entity( i % 2 == 0 ? SPRITE : BULLET );
+         e.get( VELOCITY ).set( 1.0f, 2.0f );
+         list.add( e );
+      }
+
+      Entity first = list.at( 0 );
+      Entity disabled = list.at( 3 );
+      disabled.disable( PHYSICS );
+
+      Entity expired = list.at( 4 );
+      expired.expire();
+
+      batches = singles = 0;
+      list.update( 0.5f );
+
+      // the disabled entity splits the list, each side has a sprite and bullet batch
+      assertEquals( 4, batches );
+      assertEquals( 0, singles );
+      assertEquals( 9, updated[0] );
+      assertEquals( 9, list.size() );
+
+      assertEquals( new Vector( 0.5f, 1.0f ), first.get( POSITION ) );
+      assertEquals( new Vector( 0.0f, 0.0f ), disabled.get( POSITION ) );
+
+      list.setBatched( false );
+      batches = singles = 0;
+      list.update( 0.5f );
+
+      assertEquals( 0, batches );
+      assertEquals( 8, singles );
+
+      list.delete();
+   }
+
+   static List<Entity> recorded = new ArrayList<Entity>();
+
+   public static Component<Vector> SIZE = Ents.newComponent( "size", new Vector() );
+
+   public static Controller RECORD = Ents.newController( "record", new Control() {
+
+      public void update( Entity e, Object updateState )
+      {
+         recorded.add( e );
+      }
+   } );
+
+   public static Controller GROW = Ents.newController( "grow", new Control() {
+
+      public void update( Entity e, Object updateState )
+      {
+         if (e.get( VELOCITY ).x < 0.0f)
+         {
+            e.add( SIZE );
+         }
+      }
+   } );
+
+   public static Template RECORDED = Ents.newTemplate( "recorded", new ComponentSet( POSITION, VELOCITY ), new ControllerSet( RECORD, GROW ), null );
+   public static Template GROWING = Ents.newTemplate( "growing", new ComponentSet( POSITION, VELOCITY ), new ControllerSet( GROW, PHYSICS ), null );
+
+   @Test
+   public void testBatchedOrder()
+   {
+      EntityList list = new EntityList();
+      list.setBatched( true );
+
+      Entity a = new Entity( RECORDED );
+      list.add( a );
+      Entity b = new Entity( RECORDED );
+      list.add( b );
+      Entity c = new Entity( RECORDED );
+      list.add( c );
+
+      b.disable( GROW );
+
+      recorded.clear();
+      list.update( 0.5f );
+
+      assertEquals( Arrays.asList( a, b, c ), recorded );
+
+      list.delete();
+   }
+
+   @Test
+   public void testBatchedTemplateChange()
+   {
+      EntityList list = new EntityList();
+      list.setBatched( true );
+
+      Entity kept = new Entity( GROWING );
+      list.add( kept );
+      kept.get( VELOCITY ).set( 1.0f, 0.0f );
+
+      Entity grown = new Entity( GROWING );
+      list.add( grown );
+      grown.get( VELOCITY ).set( -1.0f, 0.0f );
+
+      batches = singles = 0;
+      list.update( 1.0f );
+
+      assertEquals( 1, batches );
+      assertEquals( new Vector( 1.0f, 0.0f ), kept.get( POSITION ) );
+      assertTrue( grown.has( SIZE ) );
+      assertEquals( new Vector( 0.0f, 0.0f ), grown.get( POSITION ) );
+
+      batches = singles = 0;
+      list.update( 1.0f );
+
+      assertEquals( 2, batches );
+      assertEquals( new Vector( -1.0f, 0.0f ), grown.get( POSITION ) );
+
+      list.delete();
+   }
+
+   @Test
+   public void testParallel()
+   {
+      assertTrue( PARTICLE.isParallelSafe() );
+      assertFalse( SPRITE.isParallelSafe() );
+
+      final int[] order = {-1, 0};
+
+      EntityList list = new EntityList() {
+
+         protected void onEntityUpdated( Entity e, int index, Object updateState )
+         {
+            if (index <= order[0])
+            {
+               fail( "entities were not notified in order" );
+            }
+
+            order[0] = index;
+            order[1]++;
+         }
+      };
+
+      ExecutorService executor = Executors.newFixedThreadPool( 4 );
+      int minimumTaskSize = EntityParallelUpdater.MINIMUM_TASK_SIZE;
+
+      try
+      {
+         EntityParallelUpdater.MINIMUM_TASK_SIZE = 16;
+
+         list.setParallel( executor );
+
+         assertTrue( list.isParallel() );
+
+         for (int i = 0; i < 200; i++)
+         {
+            Entity e = new Entity( i % 10 == 0 ? SPRITE : PARTICLE );
+            e.get( VELOCITY ).set( 1.0f, 2.0f );
+            list.add( e );
+         }
+
+         list.at( 5 ).expire();
+
+         list.update( 0.5f );
+
+         assertEquals( 199, order[1] );
+         assertEquals( 199, list.size() );
+
+         for (int i = 0; i < list.size(); i++)
+         {
+            assertEquals( new Vector( 0.5f, 1.0f ), list.at( i ).get( POSITION ) );
+         }
+
+         list.setParallel( null );
+
+         assertFalse( list.isParallel() );
+      }
+      finally
+      {
+         EntityParallelUpdater.MINIMUM_TASK_SIZE = minimumTaskSize;
+         executor.shutdown();
+      }
+
+      list.delete();
+   }
+
+   @Test
+   public void testParallelFailure()
+   {
+      ExecutorService executor = Executors.newFixedThreadPool( 4 );
+      int minimumTaskSize = EntityParallelUpdater.MINIMUM_TASK_SIZE;
+      EntitySet alive = Ents.newEntitySet( Filters.alive() );
+      EntityList list = new EntityList();
+
+      try
+      {
+         EntityParallelUpdater.MINIMUM_TASK_SIZE = 16;
+
+         EntityParallelUpdater updater = new EntityParallelUpdater( executor, 4 );
+
+         for (int i = 0; i < 100; i++)
+         {
+            Entity e = new Entity( FADING );
+            e.get( VELOCITY ).x = (i % 2 == 0 ? -1.0f : 1.0f);
+            list.add( e );
+         }
+
+         failing = true;
+
+         try
+         {
+            updater.update( list, null );
+
+            fail( "the failure of a controller was not thrown" );
+         }
+         catch (RuntimeException e)
+         {
+            assertEquals( "failed", e.getMessage() );
+         }
+
+         // The failed update leaves nothing behind for the next one.
+         failing = false;
+         updater.update( list, null );
+
+         for (int i = 0; i < list.size(); i++)
+         {
+            Entity e = list.at( i );
+
+            assertEquals( 1.0f, e.get( POSITION ).x, 0.0f );
+            assertEquals( i % 2 != 0, alive.contains( e ) );
+         }
+      }
+      finally
+      {
+         failing = false;
+         EntityParallelUpdater.MINIMUM_TASK_SIZE = minimumTaskSize;
+         executor.shutdown();
+         Ents.removeEntitySet( alive );
+      }
+
+      list.delete();
+   }
+
+   @Test
+   public void testCommandBuffer() throws InterruptedException
+   {
+      final CommandBuffer buffer = new CommandBuffer();
+      final EntityList a = new EntityList();
+      final EntityList b = new EntityList();
+      final Component<Vector> target = Ents.newComponent( "target", new Vector() );
+      final Control init = new Control() {
+
+         public void update( Entity e, Object updateState )
+         {
+            e.get( POSITION ).x = (Float)updateState;
+         }
+      };
+
+      Thread worker = new Thread( new Runnable() {
+
+         public void run()
+         {
+            for (int i = 0; i < 3; i++)
+            {
+               buffer.spawn( SPRITE, a, init, 5.0f );
+            }
+         }
+      } );
+
+      worker.start();
+      worker.join();
+
+      Entity moved = new Entity( SPRITE );
+      Entity doomed = new Entity( SPRITE );
+      a.add( moved );
+
+      buffer.spawn( SPRITE, b );
+      buffer.add( moved, target, new Vector( 1.0f, 2.0f ) );
+      buffer.reparent( moved, a, b );
+      buffer.add( doomed, target );
+      buffer.delete( doomed );
+
+      assertEquals( 1, a.size() );
+      assertEquals( 8, buffer.size() );
+      assertFalse( moved.has( target ) );
+
+      assertEquals( 8, buffer.playback() );
+      assertEquals( 0, buffer.size() );
+
+      assertEquals( 3, a.size() );
+      assertEquals( 2, b.size() );
+      assertEquals( 5.0f, a.at( 0 ).get( POSITION ).x, 0.0f );
+      assertTrue( moved.has( target ) );
+      assertEquals( 2.0f, moved.get( target ).y, 0.0f );
+      assertTrue( b.remove( moved ) );
+      assertFalse( b.remove( moved ) );
+      assertTrue( doomed.isDeleted() );
+
+      moved.delete();
+      a.clear( true );
+      b.clear( true );
+   }
+
 }
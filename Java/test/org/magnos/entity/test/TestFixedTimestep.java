@@ -0,0 +1,138 @@
+
+package org.magnos.entity.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.magnos.entity.ComponentInterpolated;
+import org.magnos.entity.Control;
+import org.magnos.entity.Controller;
+import org.magnos.entity.Entity;
+import org.magnos.entity.Ents;
+import org.magnos.entity.FixedTimestep;
+import org.magnos.entity.Template;
+import org.magnos.entity.util.ComponentSet;
+import org.magnos.entity.util.ControllerSet;
+import org.magnos.entity.vals.FloatVal;
+
+
+public class TestFixedTimestep
+{
+
+   public static final float EPSILON = 0.0001f;
+
+   @AfterClass
+   public static void afterTest()
+   {
+      Ents.clear();
+   }
+
+   static ComponentInterpolated<FloatVal> DISTANCE = Ents.newComponentInterpolated( "distance", new FloatVal() );
+   static Controller MOVE = Ents.newController( "move", new Control() {
+      public void update( Entity e, Object updateState )
+      {
+         e.get( DISTANCE ).v += 10.0f;
+      }
+   } );
+   static Template MOVER = Ents.newTemplate( "mover", new ComponentSet( DISTANCE ), new ControllerSet( MOVE ) );
+
+   @Test
+   public void testSteps()
+   {
+      Entity e = new Entity( MOVER );
+      FixedTimestep timestep = new FixedTimestep( 10.0f, 3 );
+
+      assertEquals( 0, timestep.update( e, 0.05f, null ) );
+      assertEquals( 0.5f, timestep.getAlpha(), EPSILON );
+
+      assertEquals( 1, timestep.update( e, 0.075f, null ) );
+      assertEquals( 0.25f, timestep.getAlpha(), EPSILON );
+      assertEquals( 10.0f, e.get( DISTANCE ).v, EPSILON );
+
+      assertEquals( 3, timestep.update( e, 1.0f, null ) );
+      assertEquals( 40.0f, e.get( DISTANCE ).v, EPSILON );
+      assertEquals( 7, timestep.getDropped() );
+      assertEquals( 4, timestep.getSteps() );
+      assertEquals( 0.25f, timestep.getAlpha(), EPSILON );
+   }
+
+   @Test
+   public void testInterpolate()
+   {
+      Entity e = new Entity( MOVER );
+      FixedTimestep timestep = new FixedTimestep( 10.0f );
+      FloatVal out = new FloatVal();
+
+      timestep.update( e, 0.1f, null );
+
+      assertEquals( 0.0f, DISTANCE.getPrevious( e ).v, EPSILON );
+      assertEquals( 10.0f, e.get( DISTANCE ).v, EPSILON );
+
+      timestep.update( e, 0.15f, null );
+
+      assertEquals( 10.0f, DISTANCE.getPrevious( e ).v, EPSILON );
+      assertEquals( 20.0f, e.get( DISTANCE ).v, EPSILON );
+      assertEquals( 15.0f, DISTANCE.interpolate( e, timestep.getAlpha(), out ).v, EPSILON );
+
+      e.get( DISTANCE ).v = 100.0f;
+      DISTANCE.settle( e );
+
+      assertEquals( 100.0f, DISTANCE.interpolate( e, timestep.getAlpha(), out ).v, EPSILON );
+
+      e.setControllerEnabled( MOVE, false );
+      timestep.update( e, 0.1f, null );
+
+      assertEquals( 100.0f, DISTANCE.getPrevious( e ).v, EPSILON );
+      assertEquals( 100.0f, e.get( DISTANCE ).v, EPSILON );
+   }
+
+   @Test
+   public void testUntouched()
+   {
+      Entity e = new Entity( MOVER );
+      FixedTimestep timestep = new FixedTimestep( 10.0f );
+      FloatVal out = new FloatVal();
+
+      timestep.step( e, null );
+
+      assertEquals( 0.0f, DISTANCE.getPrevious( e ).v, EPSILON );
+      assertEquals( 10.0f, DISTANCE.interpolate( e, 1.0f, out ).v, EPSILON );
+
+      // The previous value is stored every step, even when nothing reads or writes the entity.
+      e.setControllerEnabled( MOVE, false );
+      timestep.step( e, null );
+
+      assertEquals( 10.0f, DISTANCE.getPrevious( e ).v, EPSILON );
+      assertEquals( 10.0f, DISTANCE.interpolate( e, 0.5f, out ).v, EPSILON );
+   }
+
+   @Test
+   public void testSpawn()
+   {
+      Entity e = new Entity( MOVER );
+      FixedTimestep timestep = new FixedTimestep( 10.0f );
+      FloatVal out = new FloatVal();
+
+      timestep.update( e, 0.15f, null );
+
+      Entity spawned = new Entity( MOVER );
+      spawned.get( DISTANCE ).v = 100.0f;
+
+      assertEquals( 0.5f, timestep.getAlpha(), EPSILON );
+      assertEquals( 100.0f, DISTANCE.interpolate( spawned, timestep.getAlpha(), out ).v, EPSILON );
+
+      timestep.update( spawned, 0.1f, null );
+
+      assertEquals( 100.0f, DISTANCE.getPrevious( spawned ).v, EPSILON );
+      assertEquals( 105.0f, DISTANCE.interpolate( spawned, timestep.getAlpha(), out ).v, EPSILON );
+
+      spawned.delete();
+
+      Entity recycled = new Entity( MOVER );
+      recycled.get( DISTANCE ).v = 50.0f;
+
+      assertEquals( 50.0f, DISTANCE.interpolate( recycled, timestep.getAlpha(), out ).v, EPSILON );
+   }
+
+}
@@ -118,5 +118,81 @@ public class TestIndexPool
       assertEquals( i4, ip.pop() );
       assertEquals( i5, ip.pop() );
    }
+
+   @Test
+   public void testPopLowest()
+   {
+      IndexPool ip = new IndexPool( 16 );
+      
+      for (int i = 0; i < 200; i++)
+      {
+         ip.pop();
+      }
+      
+      ip.push( 150 );
+      ip.push( 3 );
+      ip.push( 70 );
+      
+      assertEquals( 3, ip.size() );
+      assertFalse( ip.isActive( 70 ) );
+      assertEquals( 3, ip.pop() );
+      assertEquals( 70, ip.pop() );
+      assertEquals( 150, ip.pop() );
+      assertEquals( 200, ip.pop() );
+      assertTrue( ip.isActive( 70 ) );
+   }
+   
+   @Test
+   public void testMassPush()
+   {
+      IndexPool ip = new IndexPool( 16 );
+      
+      for (int i = 0; i < 100000; i++)
+      {
+         ip.pop();
+      }
+      
+      for (int i = 0; i < 100000; i += 2)
+      {
+         ip.push( i );
+      }
+      
+      assertEquals( 50000, ip.size() );
+      assertEquals( 99999, ip.maxIndex() );
+      
+      for (int i = 99999; i > 0; i -= 2)
+      {
+         ip.push( i );
+      }
+      
+      assertEquals( 0, ip.size() );
+      assertEquals( -1, ip.maxIndex() );
+      assertEquals( 0, ip.pop() );
+   }
+   
+   @Test
+   public void testRanges()
+   {
+      IndexPool ip = new IndexPool( 16 );
+      
+      assertEquals( 0, ip.popRange( 100 ) );
+      assertEquals( 100, ip.popRange( 300 ) );
+      assertEquals( 399, ip.maxIndex() );
+      
+      assertFalse( ip.pushRange( 10, 130 ) );
+      assertEquals( 130, ip.size() );
+      assertEquals( 10, ip.pop() );
+      
+      // The recycled indices below the range are removed as well.
+      assertTrue( ip.pushRange( 140, 260 ) );
+      assertEquals( 10, ip.maxIndex() );
+      assertEquals( 0, ip.size() );
+      
+      assertFalse( ip.pushRange( 0, 10 ) );
+      assertEquals( 10, ip.size() );
+      assertTrue( ip.push( 10 ) );
+      assertEquals( -1, ip.maxIndex() );
+      assertEquals( 0, ip.size() );
+   }
    
 }
@@ -0,0 +1,596 @@
+package org.magnos.entity.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.magnos.entity.Component;
+import org.magnos.entity.EntityFilter;
+import org.magnos.entity.Entity;
+import org.magnos.entity.Ents;
+import org.magnos.entity.Template;
+import org.magnos.entity.filters.Filters;
+import org.magnos.entity.spatial.BoundingVolumeHierarchy;
+import org.magnos.entity.spatial.EntityVisitor;
+import org.magnos.entity.spatial.PairVisitor;
+import org.magnos.entity.spatial.SpatialAdapter;
+import org.magnos.entity.spatial.SpatialHash;
+import org.magnos.entity.spatial.SweepAndPrune;
+import org.magnos.entity.test.helper.Vector;
+import org.magnos.entity.vals.FloatVal;
+
+
+public class TestSpatial
+{
+
+   @AfterClass
+   public static void afterTest()
+   {
+      Ents.clear();
+   }
+
+   static Component<Vector> POSITION = Ents.newComponent( "position", new Vector() );
+   static Component<FloatVal> RADIUS = Ents.newComponent( "radius", new FloatVal() );
+
+   static Template BODY = Ents.newTemplate( "body", POSITION, RADIUS );
+   static Template ROCK = Ents.newTemplate( "rock", POSITION, RADIUS );
+
+   static SpatialAdapter ADAPTER = new SpatialAdapter() {
+
+      public float getX( Entity e )
+      {
+         return e.get( POSITION ).x;
+      }
+
+      public float getY( Entity e )
+      {
+         return e.get( POSITION ).y;
+      }
+
+      public float getRadius( Entity e )
+      {
+         return e.get( RADIUS ).v;
+      }
+   };
+
+   private static Entity newBody( float x, float y, float r )
+   {
+      Entity e = new Entity( BODY );
+      e.get( POSITION ).set( x, y );
+      e.get( RADIUS ).v = r;
+      return e;
+   }
+
+   private static Entity[] newBodies( int count, float size, float maxRadius, long seed )
+   {
+      Random rnd = new Random( seed );
+      Entity[] bodies = new Entity[count];
+
+      for (int i = 0; i < count; i++)
+      {
+         bodies[i] = newBody( rnd.nextFloat() * size, rnd.nextFloat() * size, rnd.nextFloat() * maxRadius );
+      }
+
+      return bodies;
+   }
+
+   private static void delete( Entity[] bodies )
+   {
+      for (Entity e : bodies)
+      {
+         e.delete();
+      }
+   }
+
+   private static boolean overlaps( Entity a, Entity b )
+   {
+      float r = a.get( RADIUS ).v + b.get( RADIUS ).v;
+      float dx = a.get( POSITION ).x - b.get( POSITION ).x;
+      float dy = a.get( POSITION ).y - b.get( POSITION ).y;
+      return dx * dx + dy * dy <= r * r;
+   }
+
+   private static Set<String> bruteForcePairs( Entity[] bodies )
+   {
+      Set<String> pairs = new HashSet<String>();
+
+      for (int i = 0; i < bodies.length; i++)
+      {
+         for (int k = i + 1; k < bodies.length; k++)
+         {
+            if (overlaps( bodies[i], bodies[k] ))
+            {
+               pairs.add( pairKey( bodies[i], bodies[k] ) );
+            }
+         }
+      }
+
+      return pairs;
+   }
+
+   private static String pairKey( Entity a, Entity b )
+   {
+      return Math.min( a.id, b.id ) + ":" + Math.max( a.id, b.id );
+   }
+
+   private static class PairCollector implements PairVisitor
+   {
+      Set<String> pairs = new HashSet<String>();
+
+      public void visit( Entity a, Entity b )
+      {
+         assertTrue( pairs.add( pairKey( a, b ) ) );
+      }
+   }
+
+   @Test
+   public void testHashQuery()
+   {
+      Entity[] bodies = newBodies( 300, 500.0f, 12.0f, 1 );
+
+      SpatialHash hash = new SpatialHash( ADAPTER, 20.0f );
+
+      for (Entity e : bodies)
+      {
+         hash.add( e );
+      }
+
+      final Set<Entity> found = new HashSet<Entity>();
+
+      hash.query( 250.0f, 250.0f, 60.0f, null, new EntityVisitor() {
+
+         public void visit( Entity e )
+         {
+            assertTrue( found.add( e ) );
+         }
+      } );
+
+      Entity probe = newBody( 250.0f, 250.0f, 60.0f );
+
+      for (Entity e : bodies)
+      {
+         assertEquals( overlaps( probe, e ), found.contains( e ) );
+      }
+
+      probe.delete();
+      delete( bodies );
+   }
+
+   @Test
+   public void testHashPairs()
+   {
+      Entity[] bodies = newBodies( 400, 400.0f, 10.0f, 2 );
+
+      SpatialHash hash = new SpatialHash( ADAPTER, 16.0f );
+
+      for (Entity e : bodies)
+      {
+         hash.add( e );
+      }
+
+      PairCollector collector = new PairCollector();
+      hash.pairs( null, collector );
+
+      assertEquals( bruteForcePairs( bodies ), collector.pairs );
+
+      // Move half of them and remove a few.
+      Random rnd = new Random( 3 );
+
+      for (int i = 0; i < bodies.length; i += 2)
+      {
+         bodies[i].get( POSITION ).set( rnd.nextFloat() * 400.0f, rnd.nextFloat() * 400.0f );
+      }
+
+      hash.update();
+
+      for (int i = 0; i < 50; i++)
+      {
+         hash.remove( bodies[i] );
+      }
+
+      Entity[] remaining = new Entity[bodies.length - 50];
+      System.arraycopy( bodies, 50, remaining, 0, remaining.length );
+
+      collector = new PairCollector();
+      hash.pairs( null, collector );
+
+      assertEquals( remaining.length, hash.size() );
+      assertEquals( bruteForcePairs( remaining ), collector.pairs );
+
+      delete( bodies );
+   }
+
+   @Test
+   public void testHashWrap()
+   {
+      Entity a = newBody( 1.0f, 50.0f, 2.0f );
+      Entity b = newBody( 99.0f, 50.0f, 2.0f );
+      Entity c = newBody( 50.0f, 50.0f, 2.0f );
+
+      SpatialHash hash = new SpatialHash( ADAPTER, 30.0f );
+      hash.add( a );
+      hash.add( b );
+      hash.add( c );
+
+      PairCollector collector = new PairCollector();
+      hash.pairs( null, collector );
+
+      assertEquals( 0, collector.pairs.size() );
+
+      hash.setWrap( 100.0f, 100.0f );
+
+      collector = new PairCollector();
+      hash.pairs( null, collector );
+
+      assertEquals( 1, collector.pairs.size() );
+      assertTrue( collector.pairs.contains( pairKey( a, b ) ) );
+
+      a.delete();
+      b.delete();
+      c.delete();
+   }
+
+   @Test
+   public void testHashLifecycle()
+   {
+      SpatialHash hash = new SpatialHash( Filters.and( Filters.components( POSITION, RADIUS ), Filters.alive() ), ADAPTER, 10.0f );
+
+      Entity a = newBody( 0.0f, 0.0f, 1.0f );
+      Entity b = newBody( 1.0f, 0.0f, 1.0f );
+      Entity c = newBody( 2.0f, 0.0f, 1.0f );
+
+      hash.update();
+
+      assertEquals( 3, hash.size() );
+
+      b.expire();
+      c.delete();
+      hash.update();
+
+      assertEquals( 1, hash.size() );
+      assertEquals( 0, hash.indexOf( a ) );
+
+      hash.release();
+
+      assertEquals( 0, hash.size() );
+
+      a.delete();
+      b.delete();
+   }
+
+   @Test
+   public void testSweepPairs()
+   {
+      Entity[] bodies = newBodies( 400, 400.0f, 10.0f, 4 );
+
+      SweepAndPrune sweep = new SweepAndPrune( ADAPTER );
+      PairCollector collector = new PairCollector();
+      sweep.register( BODY, BODY, collector );
+
+      for (Entity e : bodies)
+      {
+         sweep.add( e );
+      }
+
+      int handled = sweep.pairs();
+
+      assertEquals( handled, collector.pairs.size() );
+      assertEquals( bruteForcePairs( bodies ), collector.pairs );
+
+      // Nudge everything so the insertion sort has work to do, then remove a few.
+      Random rnd = new Random( 5 );
+
+      for (Entity e : bodies)
+      {
+         Vector p = e.get( POSITION );
+         p.set( p.x + rnd.nextFloat() * 20.0f - 10.0f, p.y + rnd.nextFloat() * 20.0f - 10.0f );
+      }
+
+      for (int i = 0; i < 50; i++)
+      {
+         sweep.remove( bodies[i] );
+      }
+
+      sweep.update();
+
+      for (int i = 1; i < sweep.size(); i++)
+      {
+         assertTrue( ADAPTER.getX( sweep.at( i - 1 ) ) - ADAPTER.getRadius( sweep.at( i - 1 ) ) <= ADAPTER.getX( sweep.at( i ) ) - ADAPTER.getRadius( sweep.at( i ) ) );
+      }
+
+      Entity[] remaining = new Entity[bodies.length - 50];
+      System.arraycopy( bodies, 50, remaining, 0, remaining.length );
+
+      collector.pairs.clear();
+      sweep.pairs();
+
+      assertEquals( remaining.length, sweep.size() );
+      assertEquals( bruteForcePairs( remaining ), collector.pairs );
+
+      delete( bodies );
+   }
+
+   @Test
+   public void testSweepDispatch()
+   {
+      Entity b0 = newBody( 0.0f, 0.0f, 2.0f );
+      Entity b1 = newBody( 1.0f, 0.0f, 2.0f );
+      Entity r0 = new Entity( ROCK );
+      r0.get( POSITION ).set( 2.0f, 0.0f );
+      r0.get( RADIUS ).v = 2.0f;
+      Entity custom = newBody( 0.5f, 0.0f, 2.0f );
+      custom.add( Ents.newComponent( "tag", new FloatVal() ) );
+
+      final Set<String> visited = new HashSet<String>();
+
+      SweepAndPrune sweep = new SweepAndPrune( ADAPTER );
+      sweep.register( ROCK, BODY, new PairVisitor() {
+
+         public void visit( Entity a, Entity b )
+         {
+            assertTrue( a.getTemplate() == ROCK );
+            assertTrue( b.getTemplate() == BODY );
+            visited.add( pairKey( a, b ) );
+         }
+      } );
+
+      sweep.add( b0 );
+      sweep.add( b1 );
+      sweep.add( r0 );
+      sweep.add( custom );
+
+      assertEquals( 2, sweep.pairs() );
+      assertTrue( visited.contains( pairKey( r0, b0 ) ) );
+      assertTrue( visited.contains( pairKey( r0, b1 ) ) );
+      assertTrue( sweep.getHandler( BODY, ROCK ) != null );
+      assertTrue( sweep.getHandler( BODY, BODY ) == null );
+      assertTrue( sweep.getHandler( custom.getTemplate(), ROCK ) == null );
+
+      sweep.register( ROCK, BODY, null );
+
+      assertEquals( 0, sweep.pairs() );
+
+      b0.delete();
+      b1.delete();
+      r0.delete();
+      custom.delete();
+   }
+
+   @Test
+   public void testSweepLifecycle()
+   {
+      SweepAndPrune sweep = new SweepAndPrune( Filters.and( Filters.template( ROCK ), Filters.alive() ), ADAPTER );
+
+      final int[] hits = {0};
+
+      sweep.register( ROCK, ROCK, new PairVisitor() {
+
+         public void visit( Entity a, Entity b )
+         {
+            hits[0]++;
+            b.expire();
+         }
+      } );
+
+      Entity[] rocks = new Entity[4];
+
+      for (int i = 0; i < rocks.length; i++)
+      {
+         rocks[i] = new Entity( ROCK );
+         rocks[i].get( POSITION ).set( i, 0.0f );
+         rocks[i].get( RADIUS ).v = 10.0f;
+      }
+
+      sweep.update();
+
+      assertEquals( 4, sweep.size() );
+
+      // Each handled pair expires the second rock, which is then skipped.
+      assertEquals( 3, sweep.pairs() );
+      assertEquals( 3, hits[0] );
+
+      sweep.update();
+
+      assertEquals( 1, sweep.size() );
+
+      sweep.release();
+
+      assertEquals( 0, sweep.size() );
+
+      for (Entity e : rocks)
+      {
+         e.delete();
+      }
+   }
+
+   private static float surfaceDistance( Entity e, float px, float py )
+   {
+      float dx = e.get( POSITION ).x - px;
+      float dy = e.get( POSITION ).y - py;
+      return Math.max( 0.0f, (float)Math.sqrt( dx * dx + dy * dy ) - e.get( RADIUS ).v );
+   }
+
+   private static void assertTreeQuery( BoundingVolumeHierarchy tree, Entity[] bodies, float qx, float qy, float qr )
+   {
+      final Set<Entity> found = new HashSet<Entity>();
+
+      tree.query( qx, qy, qr, null, new EntityVisitor() {
+
+         public void visit( Entity e )
+         {
+            assertTrue( found.add( e ) );
+         }
+      } );
+
+      for (Entity e : bodies)
+      {
+         assertEquals( surfaceDistance( e, qx, qy ) <= qr, found.contains( e ) );
+      }
+   }
+
+   @Test
+   public void testTreeQuery()
+   {
+      Entity[] bodies = newBodies( 500, 500.0f, 8.0f, 6 );
+
+      BoundingVolumeHierarchy tree = new BoundingVolumeHierarchy( ADAPTER );
+
+      for (Entity e : bodies)
+      {
+         tree.add( e );
+      }
+
+      tree.update();
+
+      assertTrue( tree.getDepth() <= 10 );
+
+      assertTreeQuery( tree, bodies, 250.0f, 250.0f, 40.0f );
+      assertTreeQuery( tree, bodies, 0.0f, 500.0f, 75.0f );
+
+      // Move everything a little and refit.
+      Random rnd = new Random( 7 );
+
+      for (Entity e : bodies)
+      {
+         Vector p = e.get( POSITION );
+         p.set( p.x + rnd.nextFloat() * 10.0f - 5.0f, p.y + rnd.nextFloat() * 10.0f - 5.0f );
+      }
+
+      tree.refit();
+
+      assertTreeQuery( tree, bodies, 250.0f, 250.0f, 40.0f );
+      assertTreeQuery( tree, bodies, 100.0f, 400.0f, 30.0f );
+
+      delete( bodies );
+   }
+
+   @Test
+   public void testTreeNearest()
+   {
+      Entity[] bodies = newBodies( 400, 400.0f, 6.0f, 8 );
+
+      for (int i = 0; i < bodies.length; i += 3)
+      {
+         bodies[i].setVisible( false );
+      }
+
+      BoundingVolumeHierarchy tree = new BoundingVolumeHierarchy( ADAPTER );
+
+      for (Entity e : bodies)
+      {
+         tree.add( e );
+      }
+
+      EntityFilter visible = Filters.visible();
+      Entity[] nearest = new Entity[8];
+
+      assertEquals( 8, tree.nearest( 200.0f, 200.0f, visible, nearest ) );
+
+      // The eighth nearest visible body is no further than any visible body that wasn't found.
+      Set<Entity> found = new HashSet<Entity>();
+
+      for (int i = 0; i < nearest.length; i++)
+      {
+         assertTrue( nearest[i].isVisible() );
+         assertEquals( surfaceDistance( nearest[i], 200.0f, 200.0f ), tree.getDistance( i ), 0.0001f );
+         assertTrue( i == 0 || tree.getDistance( i - 1 ) <= tree.getDistance( i ) );
+         found.add( nearest[i] );
+      }
+
+      for (Entity e : bodies)
+      {
+         if (e.isVisible() && !found.contains( e ))
+         {
+            assertTrue( surfaceDistance( e, 200.0f, 200.0f ) >= tree.getDistance( 7 ) );
+         }
+      }
+
+      delete( bodies );
+   }
+
+   @Test
+   public void testTreeRaycast()
+   {
+      Entity a = newBody( 10.0f, 0.0f, 1.0f );
+      Entity b = newBody( 20.0f, 0.5f, 2.0f );
+      Entity c = newBody( 5.0f, 10.0f, 1.0f );
+
+      BoundingVolumeHierarchy tree = new BoundingVolumeHierarchy( ADAPTER );
+      tree.add( a );
+      tree.add( b );
+      tree.add( c );
+
+      assertTrue( tree.raycast( 0.0f, 0.0f, 2.0f, 0.0f, 100.0f, null ) == a );
+      assertEquals( 9.0f, tree.getRayDistance(), 0.0001f );
+
+      a.setVisible( false );
+
+      assertTrue( tree.raycast( 0.0f, 0.0f, 1.0f, 0.0f, 100.0f, Filters.visible() ) == b );
+      assertTrue( tree.raycast( 0.0f, 0.0f, 1.0f, 0.0f, 10.0f, Filters.visible() ) == null );
+      assertTrue( tree.raycast( 0.0f, 0.0f, -1.0f, 0.0f, 100.0f, null ) == null );
+      assertTrue( tree.raycast( 5.0f, 0.0f, 0.0f, 1.0f, 100.0f, null ) == c );
+      assertTrue( tree.raycast( 5.0f, 10.0f, 0.0f, 1.0f, 100.0f, null ) == c );
+      assertEquals( 0.0f, tree.getRayDistance(), 0.0001f );
+
+      a.delete();
+      b.delete();
+      c.delete();
+   }
+
+   @Test
+   public void testTreeLifecycle()
+   {
+      BoundingVolumeHierarchy tree = new BoundingVolumeHierarchy( Filters.and( Filters.template( ROCK ), Filters.alive() ), ADAPTER );
+
+      Entity[] rocks = new Entity[20];
+
+      for (int i = 0; i < rocks.length; i++)
+      {
+         rocks[i] = new Entity( ROCK );
+         rocks[i].get( POSITION ).set( i * 10.0f, 0.0f );
+         rocks[i].get( RADIUS ).v = 1.0f;
+      }
+
+      tree.update();
+
+      assertEquals( 20, tree.size() );
+
+      Entity[] nearest = new Entity[1];
+
+      assertEquals( 1, tree.nearest( 52.0f, 0.0f, null, nearest ) );
+      assertTrue( nearest[0] == rocks[5] );
+
+      rocks[5].expire();
+      tree.update();
+
+      assertEquals( 19, tree.size() );
+      assertEquals( 1, tree.nearest( 52.0f, 0.0f, null, nearest ) );
+      assertTrue( nearest[0] == rocks[4] || nearest[0] == rocks[6] );
+
+      // Scatter the rocks far enough that refitting degrades the tree and it's rebuilt.
+      for (int i = 0; i < rocks.length; i++)
+      {
+         rocks[i].get( POSITION ).set( (i % 2) * 1000.0f, (i % 3) * 1000.0f );
+      }
+
+      tree.update();
+
+      assertEquals( 1, tree.nearest( 1000.0f, 2000.0f, null, nearest ) );
+      assertEquals( 0.0f, tree.getDistance( 0 ), 1.0f );
+
+      tree.release();
+
+      assertEquals( 0, tree.size() );
+
+      for (Entity e : rocks)
+      {
+         e.delete();
+      }
+   }
+
+}
@@ -17,14 +17,19 @@
 package org.magnos.entity.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.AfterClass;
 import org.junit.Test;
 import org.magnos.entity.Component;
+import org.magnos.entity.DrawList;
 import org.magnos.entity.Entity;
+import org.magnos.entity.EntityList;
 import org.magnos.entity.Ents;
+import org.magnos.entity.RenderPipeline;
+import org.magnos.entity.RendererExtracted;
 import org.magnos.entity.RendererSingle;
 import org.magnos.entity.Template;
 import org.magnos.entity.View;
@@ -44,6 +49,8 @@ public class TestView
    public static final Component<Vector> POSITION = Ents.newComponent( "position", new Vector() );
    public static final View SPRITE_VIEW = Ents.newView( "sprite-view" );
    public static final Template SPRITE = Ents.newTemplate( "sprite", new ComponentSet( POSITION ), new ControllerSet(), SPRITE_VIEW );
+   public static final View DOT_VIEW = Ents.newView( "dot-view" );
+   public static final Template DOT = Ents.newTemplate( "dot", new ComponentSet( POSITION ), new ControllerSet(), DOT_VIEW );
 
    @Test
    public void testDraw()
@@ -66,4 +73,76 @@ public class TestView
       assertEquals( 1, DRAW_COUNTER.get() );
    }
 
+   @Test
+   public void testExtract()
+   {
+      final AtomicInteger DRAW_COUNTER = new AtomicInteger();
+
+      Ents.setViewDefault( DOT_VIEW, new DotRenderer( DRAW_COUNTER ) );
+
+      EntityList list = new EntityList();
+      Entity a = new Entity( DOT );
+      Entity b = new Entity( DOT );
+      Entity c = new Entity( DOT );
+      list.add( a, b, c );
+
+      a.get( POSITION ).set( 1, 2 );
+      b.get( POSITION ).set( 3, 4 );
+      c.hide();
+
+      RenderPipeline pipeline = new RenderPipeline();
+      pipeline.extract( list );
+
+      a.get( POSITION ).set( 5, 6 );
+
+      DrawList frame = pipeline.acquire();
+
+      assertEquals( 1, frame.getFrame() );
+      assertEquals( 2, frame.size() );
+      assertEquals( a.id, frame.getEntity( 0 ) );
+      assertEquals( b.id, frame.getEntity( 1 ) );
+      assertEquals( 1.0f, frame.getX( 0 ), 0.000001f );
+      assertEquals( 2.0f, frame.getY( 0 ), 0.000001f );
+      assertEquals( 0xFF00FF00, frame.getColor( 1 ) );
+
+      pipeline.draw( null );
+
+      assertEquals( 2, DRAW_COUNTER.get() );
+      assertSame( frame, pipeline.acquire() );
+
+      pipeline.extract( list );
+
+      DrawList next = pipeline.acquire();
+
+      assertEquals( 2, next.getFrame() );
+      assertEquals( 5.0f, next.getX( 0 ), 0.000001f );
+      assertEquals( 1, frame.getFrame() );
+   }
+
+   public static class DotRenderer extends RendererSingle implements RendererExtracted
+   {
+      private final AtomicInteger drawCounter;
+
+      public DotRenderer( AtomicInteger drawCounter )
+      {
+         this.drawCounter = drawCounter;
+      }
+
+      public void begin( Entity e, Object drawState )
+      {
+      }
+
+      public void extract( Entity e, DrawList list )
+      {
+         Vector p = e.get( POSITION );
+
+         list.add( this, e, 0xFF00FF00, p.x, p.y, 0.0f, 1.0f );
+      }
+
+      public void draw( DrawList list, int index, Object drawState )
+      {
+         drawCounter.incrementAndGet();
+      }
+   }
+
 }